@@ -0,0 +1,73 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.bench;
+
+/**
+ * A benchmark: an operation whose average time is measured by the {@link BenchmarkRunner}.
+ * <p>
+ * Implementations do all preparation in their constructor and only the measured operation in {@link #run(int)}. To keep
+ * the JIT compiler from optimizing the operation away, {@link #run(int)} must combine the results of all operations
+ * into the value it returns.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+public abstract class Benchmark {
+	private final String name;
+
+	/**
+	 * Creates a new {@link Benchmark} with the specified name.
+	 * 
+	 * @param name
+	 *            The name, usually <code>group.operation(parameters)</code>.
+	 */
+	protected Benchmark(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets the name of this benchmark.
+	 * 
+	 * @return The name.
+	 */
+	public final String getName() {
+		return name;
+	}
+
+	/**
+	 * Runs the operation the specified number of times.
+	 * 
+	 * @param count
+	 *            The number of times.
+	 * @return A value that depends on the results of all operations.
+	 * @throws Exception
+	 *             If the operation fails.
+	 */
+	protected abstract long run(int count) throws Exception;
+
+	/**
+	 * Gets additional information to print with the result, like the size of a serialized object.
+	 * 
+	 * @return The information, or <code>null</code> if there is none.
+	 * @throws Exception
+	 *             If the information can't be determined.
+	 */
+	protected String getInfo() throws Exception {
+		return null;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,143 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs {@link Benchmark}s and prints the average time per operation.
+ * <p>
+ * Each benchmark is first calibrated, so that one round of operations takes about {@link #ROUND_TIME} milliseconds,
+ * then run for {@link #WARMUP_ROUNDS} rounds that are not measured, so that the JIT compiler has compiled the
+ * operation, and then for {@link #MEASURED_ROUNDS} measured rounds. The result is the mean time per operation over
+ * the measured rounds and their standard deviation. All benchmarks run in the same VM, one after the other, so a
+ * result is only comparable to results of the same benchmark from another run.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+public final class BenchmarkRunner {
+	/**
+	 * The time that one round should take, in milliseconds.
+	 */
+	public static final int ROUND_TIME = 100;
+	/**
+	 * The number of rounds before the measurement starts.
+	 */
+	public static final int WARMUP_ROUNDS = 5;
+	/**
+	 * The number of measured rounds.
+	 */
+	public static final int MEASURED_ROUNDS = 10;
+	/**
+	 * Collects the results of all benchmarks, so that they can't be optimized away.
+	 */
+	private static volatile long sink;
+
+	private BenchmarkRunner() {
+		// utility class
+	}
+
+	/**
+	 * Measures a benchmark.
+	 * 
+	 * @param benchmark
+	 *            The benchmark.
+	 * @return The mean time per operation and its standard deviation, in nanoseconds.
+	 * @throws Exception
+	 *             If the benchmark fails.
+	 */
+	public static double[] measure(final Benchmark benchmark) throws Exception {
+		int count = 1;
+		while (true) {
+			final long start = System.nanoTime();
+			sink += benchmark.run(count);
+			final long time = System.nanoTime() - start;
+			if (time >= ROUND_TIME * 1000000L / 4 || count >= 1 << 28) {
+				count = (int) Math.max(1, Math.min(Integer.MAX_VALUE, count * (ROUND_TIME * 1000000L) / Math.max(1,
+						time)));
+				break;
+			}
+			count *= 2;
+		}
+		for (int i = 0; i < WARMUP_ROUNDS; i++)
+			sink += benchmark.run(count);
+		final double[] times = new double[MEASURED_ROUNDS];
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			final long start = System.nanoTime();
+			sink += benchmark.run(count);
+			times[i] = (double) (System.nanoTime() - start) / count;
+		}
+		double mean = 0;
+		for (final double t : times)
+			mean += t;
+		mean /= times.length;
+		double variance = 0;
+		for (final double t : times)
+			variance += (t - mean) * (t - mean);
+		return new double[] {mean, Math.sqrt(variance / (times.length - 1)) };
+	}
+
+	/**
+	 * Runs all benchmarks, or those whose names contain any of the arguments, and prints the results.
+	 * 
+	 * @param args
+	 *            Parts of the names of the benchmarks to run. If there are none, all benchmarks run.
+	 * @throws Exception
+	 *             If a benchmark fails.
+	 */
+	public static void main(final String[] args) throws Exception {
+		final List<Benchmark> benchmarks = new ArrayList<>();
+		benchmarks.addAll(BoardBenchmarks.all());
+		benchmarks.addAll(FixedServerBenchmarks.all());
+		benchmarks.addAll(EventBenchmarks.all());
+		System.out.println(String.format(Locale.ROOT, "%-60s %14s %10s %14s  %s", "Benchmark", "ns/op", "+-",
+				"ops/s", "Info"));
+		for (final Benchmark benchmark : benchmarks) {
+			if (!selected(benchmark, args))
+				continue;
+			final double[] result = measure(benchmark);
+			final String info = benchmark.getInfo();
+			System.out.println(String.format(Locale.ROOT, "%-60s %14.1f %10.1f %14.0f  %s", benchmark.getName(),
+					result[0], result[1], 1e9 / result[0], info == null ? "" : info));
+		}
+		if (sink == 42)
+			System.out.println(); // use the sink
+	}
+
+	/**
+	 * Private utility method to determine if a benchmark was selected.
+	 * 
+	 * @param benchmark
+	 *            The benchmark.
+	 * @param filters
+	 *            Parts of the names of the benchmarks to run.
+	 * @return <code>true</code> if there are no filters or the benchmark's name contains any of them,
+	 *         <code>false</code> otherwise.
+	 */
+	private static boolean selected(final Benchmark benchmark, final String[] filters) {
+		if (filters.length == 0)
+			return true;
+		for (final String filter : filters)
+			if (benchmark.getName().contains(filter))
+				return true;
+		return false;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,217 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.bench;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.servers.ArrayBoard;
+import de.lucaswerkmeister.code.fiar.servers.BitBoard;
+import de.lucaswerkmeister.code.fiar.servers.SparseBoard;
+
+/**
+ * Benchmarks of the {@link Board} operations that servers and clients use most:
+ * {@link Board#wasWinningMove(int, int)}, {@link Board#clone()} and {@link Board#equals(Object)}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+public final class BoardBenchmarks {
+	private static final int[] SIZES = new int[] {10, 19, 50 };
+	private static final int[] RUN_LENGTHS = new int[] {1, 3, 5 };
+	private static final Player P1 = new Player("Player 1", Color.blue, 1);
+	private static final Player P2 = new Player("Player 2", Color.cyan, 2);
+
+	private BoardBenchmarks() {
+		// utility class
+	}
+
+	/**
+	 * Creates all board benchmarks.
+	 * 
+	 * @return The benchmarks.
+	 */
+	public static List<Benchmark> all() {
+		final List<Benchmark> benchmarks = new ArrayList<>();
+		for (final BoardKind kind : BoardKind.values())
+			for (final int size : SIZES) {
+				for (final int runLength : RUN_LENGTHS)
+					benchmarks.add(wasWinningMove(kind, size, runLength));
+				benchmarks.add(cloneBoard(kind, size));
+				benchmarks.add(equalsBoard(kind, size));
+			}
+		return benchmarks;
+	}
+
+	/**
+	 * Creates a benchmark of {@link Board#wasWinningMove(int, int)} for the last stone of a horizontal row.
+	 * 
+	 * @param kind
+	 *            The kind of board.
+	 * @param size
+	 *            The width and height of the board.
+	 * @param runLength
+	 *            The length of the row.
+	 * @return The benchmark.
+	 */
+	private static Benchmark wasWinningMove(final BoardKind kind, final int size, final int runLength) {
+		final Board board = filled(kind, size);
+		final int y = size / 2;
+		for (int x = 0; x < runLength; x++)
+			board.setPlayerAt(x + 1, y, P1);
+		board.setPlayerAt(runLength + 1, y, P2);
+		return new Benchmark(kind.name + ".wasWinningMove(" + size + "x" + size + ", run " + runLength + ")") {
+			@Override
+			protected long run(final int count) {
+				long wins = 0;
+				for (int i = 0; i < count; i++)
+					if (board.wasWinningMove(runLength, y))
+						wins++;
+				return wins;
+			}
+		};
+	}
+
+	/**
+	 * Creates a benchmark of {@link Board#clone()}.
+	 * 
+	 * @param kind
+	 *            The kind of board.
+	 * @param size
+	 *            The width and height of the board.
+	 * @return The benchmark.
+	 */
+	private static Benchmark cloneBoard(final BoardKind kind, final int size) {
+		final Board board = filled(kind, size);
+		return new Benchmark(kind.name + ".clone(" + size + "x" + size + ")") {
+			@Override
+			protected long run(final int count) {
+				long hash = 0;
+				for (int i = 0; i < count; i++)
+					hash += System.identityHashCode(board.clone());
+				return hash;
+			}
+		};
+	}
+
+	/**
+	 * Creates a benchmark of {@link Board#equals(Object)} on two equal boards, which is the slowest case.
+	 * 
+	 * @param kind
+	 *            The kind of board.
+	 * @param size
+	 *            The width and height of the board.
+	 * @return The benchmark.
+	 */
+	private static Benchmark equalsBoard(final BoardKind kind, final int size) {
+		final Board board = filled(kind, size);
+		final Board other = board.clone();
+		return new Benchmark(kind.name + ".equals(" + size + "x" + size + ")") {
+			@Override
+			protected long run(final int count) {
+				long equal = 0;
+				for (int i = 0; i < count; i++)
+					if (board.equals(other))
+						equal++;
+				return equal;
+			}
+		};
+	}
+
+	/**
+	 * Private utility method to create a board with stones on a tenth of its fields, away from the rows that the
+	 * benchmarks use.
+	 * 
+	 * @param kind
+	 *            The kind of board.
+	 * @param size
+	 *            The width and height of the board.
+	 * @return The board.
+	 */
+	private static Board filled(final BoardKind kind, final int size) {
+		final Board board = kind.create(size);
+		final Random random = new Random(size);
+		for (int i = 0; i < size * size / 10; i++) {
+			final int y = random.nextInt(size);
+			if (Math.abs(y - size / 2) > 1)
+				board.setPlayerAt(random.nextInt(size), y, random.nextBoolean() ? P1 : P2);
+		}
+		return board;
+	}
+
+	/**
+	 * The kinds of boards that are benchmarked.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private enum BoardKind {
+		/**
+		 * {@link ArrayBoard}.
+		 */
+		ARRAY("ArrayBoard") {
+			@Override
+			Board create(final int size) {
+				return new ArrayBoard(size, size);
+			}
+		},
+		/**
+		 * {@link BitBoard}.
+		 */
+		BIT("BitBoard") {
+			@Override
+			Board create(final int size) {
+				return new BitBoard(size, size);
+			}
+		},
+		/**
+		 * {@link SparseBoard}.
+		 */
+		SPARSE("SparseBoard") {
+			@Override
+			Board create(final int size) {
+				return new SparseBoard(size, size);
+			}
+		};
+
+		private final String name;
+
+		/**
+		 * Creates a new {@link BoardKind}.
+		 * 
+		 * @param name
+		 *            The name of the board class.
+		 */
+		private BoardKind(final String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Creates an empty board of this kind.
+		 * 
+		 * @param size
+		 *            The width and height of the board.
+		 * @return The board.
+		 */
+		abstract Board create(int size);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,129 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.bench;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.event.AllOthersForfeit;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockField;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.Forfeit;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerField;
+import de.lucaswerkmeister.code.fiar.framework.event.PhaseChange;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerVictory;
+import de.lucaswerkmeister.code.fiar.framework.event.Tie;
+import de.lucaswerkmeister.code.fiar.framework.event.UnblockField;
+import de.lucaswerkmeister.code.fiar.network.EventCodec;
+import de.lucaswerkmeister.code.fiar.servers.ArrayBoard;
+
+/**
+ * Benchmarks of the size and the encoding time of each {@link GameEvent}, once with Java serialization, as RMI sends
+ * them, and once with the {@link EventCodec}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+public final class EventBenchmarks {
+	private static final Player P1 = new Player("Player 1", Color.blue, 1);
+	private static final Player P2 = new Player("Player 2", Color.cyan, 2);
+
+	private EventBenchmarks() {
+		// utility class
+	}
+
+	/**
+	 * Creates all event benchmarks.
+	 * 
+	 * @return The benchmarks.
+	 */
+	public static List<Benchmark> all() {
+		final Board board = new ArrayBoard(19, 19);
+		for (int i = 0; i < 19; i += 3)
+			board.setPlayerAt(i, 18 - i, Block.getInstance());
+		final GameEvent[] events = new GameEvent[] {new BoardSizeProposal(P1, new Dimension(19, 19)),
+				new PhaseChange(new int[] {1, 1, 2 }), new BlockField(P1, 3, 4), new UnblockField(P1, 3, 4),
+				new JokerField(P2, 9, 9), new BlockDistributionAccepted(P1, board),
+				new JokerDistributionAccepted(P2, board), new PlaceStone(P1, 7, 12), new Forfeit(P2),
+				new PlayerVictory(P1), new AllOthersForfeit(P1), new Tie() };
+		final EventCodec codec = new EventCodec(Arrays.asList(P1, P2));
+		final List<Benchmark> benchmarks = new ArrayList<>();
+		for (final GameEvent e : events) {
+			final String name = e.getClass().getSimpleName();
+			benchmarks.add(new Benchmark("GameEvent.serialize(" + name + ")") {
+				@Override
+				protected long run(final int count) throws IOException {
+					long size = 0;
+					for (int i = 0; i < count; i++)
+						size += serialize(e).length;
+					return size;
+				}
+
+				@Override
+				protected String getInfo() throws IOException {
+					return serialize(e).length + " bytes";
+				}
+			});
+			benchmarks.add(new Benchmark("GameEvent.encode(" + name + ")") {
+				@Override
+				protected long run(final int count) {
+					long size = 0;
+					for (int i = 0; i < count; i++)
+						size += codec.encode(e).length;
+					return size;
+				}
+
+				@Override
+				protected String getInfo() {
+					return codec.encode(e).length + " bytes";
+				}
+			});
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Private utility method to serialize an event into a fresh stream, as each RMI call does.
+	 * 
+	 * @param e
+	 *            The event.
+	 * @return The serialized event.
+	 * @throws IOException
+	 *             If serialization fails.
+	 */
+	private static byte[] serialize(final GameEvent e) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(e);
+		}
+		return bytes.toByteArray();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.bench;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lucaswerkmeister.code.fiar.framework.Client;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.servers.FixedServer;
+
+/**
+ * Benchmarks of {@link FixedServer#action(Client, de.lucaswerkmeister.code.fiar.framework.event.PlayerAction)}: each
+ * operation plays a full game, from the board size proposals to the victory, like
+ * <code>FixedServerTest.testBasic()</code>.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+public final class FixedServerBenchmarks {
+	private static final int[] SIZES = new int[] {10, 19, 50 };
+	private static final int[][] MOVES = new int[][] { {1, 1 }, {9, 9 }, {2, 1 }, {8, 8 }, {3, 1 }, {7, 7 }, {4, 1 },
+			{0, 1 }, {5, 1 } };
+	private static final int ACTIONS = 6 + MOVES.length;
+	private static final Player P1 = new Player("Player 1", Color.blue, 1);
+	private static final Player P2 = new Player("Player 2", Color.cyan, 2);
+
+	private FixedServerBenchmarks() {
+		// utility class
+	}
+
+	/**
+	 * Creates all server benchmarks.
+	 * 
+	 * @return The benchmarks.
+	 */
+	public static List<Benchmark> all() {
+		final List<Benchmark> benchmarks = new ArrayList<>();
+		for (final int size : SIZES)
+			benchmarks.add(fullGame(size));
+		return benchmarks;
+	}
+
+	/**
+	 * Creates a benchmark that plays full games on boards of the specified size.
+	 * 
+	 * @param size
+	 *            The width and height of the board.
+	 * @return The benchmark.
+	 */
+	private static Benchmark fullGame(final int size) {
+		final Client client = new Client() {
+			@Override
+			public void gameEvent(final GameEvent e) {
+				// events are not part of the benchmark
+			}
+		};
+		return new Benchmark("FixedServer.fullGame(" + size + "x" + size + ", " + ACTIONS + " actions)") {
+			@Override
+			protected long run(final int count) throws Exception {
+				long phases = 0;
+				for (int i = 0; i < count; i++) {
+					final Server server = new FixedServer(new Client[] {client }, new Player[][] {{P1, P2 } });
+					server.action(client, new BoardSizeProposal(P1, new Dimension(size, size)));
+					server.action(client, new BoardSizeProposal(P2, new Dimension(size, size)));
+					server.action(client, new BlockDistributionAccepted(P1, server.getCurrentBoard(client)));
+					server.action(client, new BlockDistributionAccepted(P2, server.getCurrentBoard(client)));
+					server.action(client, new JokerDistributionAccepted(P1, server.getCurrentBoard(client)));
+					server.action(client, new JokerDistributionAccepted(P2, server.getCurrentBoard(client)));
+					for (int m = 0; m < MOVES.length; m++)
+						server.action(client, new PlaceStone(m % 2 == 0 ? P1 : P2, MOVES[m][0], MOVES[m][1]));
+					phases += server.getPhase(client)[0];
+				}
+				return phases;
+			}
+		};
+	}
+}
\ No newline at end of file
@@ -0,0 +1,403 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.bench;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.lucaswerkmeister.code.fiar.clients.ai.AIClient;
+import de.lucaswerkmeister.code.fiar.framework.Client;
+import de.lucaswerkmeister.code.fiar.framework.Hoster;
+import de.lucaswerkmeister.code.fiar.framework.LatencyHistogram;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.RemoteClient;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEnd;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
+import de.lucaswerkmeister.code.fiar.framework.event.Tie;
+import de.lucaswerkmeister.code.fiar.network.NioTransport;
+import de.lucaswerkmeister.code.fiar.servers.GameEngine;
+
+/**
+ * Plays many games at once against a {@link GameEngine} with synthetic clients and reports how the server copes: games
+ * per second, action latency, event fan-out lag and garbage collection.
+ * <p>
+ * The generator keeps one {@link Table} busy for every two clients. Each table seats two new clients for each game, and
+ * starts the next game as soon as both clients saw the last one end, until the requested number of games has ended.
+ * The clients either place their stones on random fields ({@link RandomClient}), think with the {@link AIClient}, or
+ * one of each. Random clients also block {@value #BLOCKS} fields and mark {@value #JOKERS} as joker field before the
+ * game, so that all setup phases are played; the AI only accepts.
+ * <p>
+ * The clients either call the engine in the same process, or connect to it over the loopback interface with the
+ * {@link NioTransport}. Either way, the games are hosted by a {@link LoadHoster}, since the
+ * {@link de.lucaswerkmeister.code.fiar.hosters.FixedHoster FixedHoster} needs a GUI.
+ * <p>
+ * Action latency is the time that a client waits for {@link Server#action(Client, PlayerAction)}. Event fan-out lag
+ * is the time from sending a stone until a client of the game receives it, recorded once for each client. Both are
+ * measured where the clients run, so they include the transport; the engine's own {@link GameEngine#getMetrics()
+ * metrics} are printed as well. Rejected actions are decisions that crossed a phase change on their way, like a stone
+ * that was sent just before the victory of the other player arrived.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.2
+ */
+public final class LoadGenerator {
+	/**
+	 * The number of fields that the first random client of each game blocks.
+	 */
+	public static final int BLOCKS = 2;
+	/**
+	 * The number of fields that the first random client of each game marks as joker fields.
+	 */
+	public static final int JOKERS = 1;
+	/**
+	 * The time after which the generator gives up if no game ended, in seconds.
+	 */
+	public static final int STALL_TIMEOUT = 60;
+	/**
+	 * The binary logarithm of the number of entries in the transposition table of each {@link AIClient}. The tables
+	 * of a thousand clients with the {@link AIClient#DEFAULT_TABLE_SIZE_BITS default size} would fill gigabytes of heap
+	 * and distort the GC figures; 64 kilobytes per client suffice for short searches on small boards.
+	 */
+	public static final int AI_TABLE_SIZE_BITS = 12;
+	private static final int MAX_THINKERS = 256;
+	private final Transport transport;
+	private final int clients;
+	private final int games;
+	private final Policy policy;
+	private final long thinkTime;
+	private final Dimension boardSize;
+	private final LatencyHistogram actionLatency;
+	private final LatencyHistogram fanOutLag;
+	private final AtomicLong rejectedActions;
+	private final AtomicLong failedActions;
+	private final AtomicReference<Exception> firstFailure;
+	private final AtomicLong ties;
+	private final BlockingQueue<Table> endedTables;
+	private LoadHoster hoster;
+	private NioTransport nio;
+	private InetSocketAddress address;
+	private ScheduledExecutorService thinkers;
+
+	/**
+	 * How the clients reach the server.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	public static enum Transport {
+		/**
+		 * The clients call the engine directly.
+		 */
+		LOCAL,
+		/**
+		 * Each client connects to the hoster over the loopback interface.
+		 */
+		NIO
+	}
+
+	/**
+	 * How the clients decide on their moves.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	public static enum Policy {
+		/**
+		 * Both clients place their stones on random free fields.
+		 */
+		RANDOM,
+		/**
+		 * Both clients are {@link AIClient}s.
+		 */
+		AI,
+		/**
+		 * A random client plays against an {@link AIClient}.
+		 */
+		MIXED
+	}
+
+	/**
+	 * Creates a new {@link LoadGenerator}.
+	 * 
+	 * @param transport
+	 *            How the clients reach the server.
+	 * @param clients
+	 *            The number of clients that play at once; two per game.
+	 * @param games
+	 *            The total number of games to play.
+	 * @param policy
+	 *            How the clients decide on their moves.
+	 * @param thinkTime
+	 *            The mean time that a random client waits before each decision, or the time that an AI client searches
+	 *            for each move, in milliseconds.
+	 * @param boardSize
+	 *            The width and height of the boards.
+	 */
+	public LoadGenerator(final Transport transport, final int clients, final int games, final Policy policy,
+			final long thinkTime, final int boardSize) {
+		this.transport = transport;
+		this.clients = Math.max(clients, Table.PLAYERS.length);
+		this.games = games;
+		this.policy = policy;
+		this.thinkTime = thinkTime;
+		this.boardSize = new Dimension(boardSize, boardSize);
+		actionLatency = new LatencyHistogram();
+		fanOutLag = new LatencyHistogram();
+		rejectedActions = new AtomicLong();
+		failedActions = new AtomicLong();
+		firstFailure = new AtomicReference<>();
+		ties = new AtomicLong();
+		endedTables = new LinkedBlockingQueue<>();
+	}
+
+	/**
+	 * Plays all games. Games are seated one at a time, but played at once.
+	 * 
+	 * @return The report.
+	 * @throws Exception
+	 *             If the games can't be hosted or a client can't join.
+	 */
+	public String run() throws Exception {
+		final GameEngine engine = new GameEngine();
+		hoster = new LoadHoster(engine, Table.PLAYERS.length);
+		if (transport == Transport.NIO) {
+			nio = new NioTransport();
+			address = nio.host(hoster, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		}
+		thinkers = Executors.newScheduledThreadPool(Math.min(clients, MAX_THINKERS), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread t = new Thread(r, "LoadGenerator thinker " + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+				pool.resetPeakUsage();
+			final long[] gcBefore = gcTotals();
+			final long start = System.nanoTime();
+			int started = 0;
+			for (int t = 0; t < clients / Table.PLAYERS.length && started < games; t++, started++)
+				new Table(this).start();
+			int ended = 0;
+			while (ended < started) {
+				final Table table = endedTables.poll(STALL_TIMEOUT, TimeUnit.SECONDS);
+				if (table == null)
+					break;
+				ended++;
+				table.leave();
+				if (started < games) {
+					table.start();
+					started++;
+				}
+			}
+			final long time = System.nanoTime() - start;
+			final long[] gcAfter = gcTotals();
+			final StringBuilder report = new StringBuilder();
+			report.append(String.format(Locale.ROOT, "Transport: %s, clients: %d, policy: %s, think time: %d ms, "
+					+ "board: %dx%d%n", transport, clients, policy, thinkTime, boardSize.width, boardSize.height));
+			report.append(String.format(Locale.ROOT, "Games: %d ended in %.2f s = %.1f games/s (%d ties)%n", ended,
+					time / 1e9, ended * 1e9 / time, ties.get()));
+			if (ended < started)
+				report.append(String.format(Locale.ROOT, "Stalled: no game ended for %d s, %d games still running%n",
+						STALL_TIMEOUT, started - ended));
+			report.append(String.format(Locale.ROOT, "Actions: %d = %.0f actions/s, %d rejected, %d failed%n",
+					actionLatency.getCount(), actionLatency.getCount() * 1e9 / time, rejectedActions.get(),
+					failedActions.get()));
+			report.append("Action latency: ").append(percentiles(actionLatency)).append(String.format("%n"));
+			report.append("Event fan-out lag: ").append(percentiles(fanOutLag)).append(String.format("%n"));
+			report.append(String.format(Locale.ROOT, "GC: %d collections, %d ms (%.1f %% of the time), "
+					+ "peak heap %.1f MB%n", gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], (gcAfter[1]
+					- gcBefore[1]) * 1e8 / time, peakHeap() / 1e6));
+			if (firstFailure.get() != null)
+				report.append("First failure: ").append(firstFailure.get()).append(String.format("%n"));
+			report.append("Server:").append(String.format("%n")).append(engine.getMetrics().dump());
+			return report.toString();
+		} finally {
+			thinkers.shutdownNow();
+			if (nio != null)
+				nio.shutdown();
+			engine.shutdown();
+		}
+	}
+
+	/**
+	 * Creates the client for a seat of a table, according to the policy.
+	 * 
+	 * @param seat
+	 *            The seat, starting at 0.
+	 * @param player
+	 *            The player of the seat.
+	 * @return The client.
+	 */
+	RemoteClient newClient(final int seat, final Player player) {
+		if (policy == Policy.AI || policy == Policy.MIXED && seat > 0)
+			return new AIClient(boardSize, thinkTime, 1, AI_TABLE_SIZE_BITS, player);
+		return new RandomClient(player, boardSize, seat == 0 ? BLOCKS : 0, seat == 0 ? JOKERS : 0, thinkTime,
+				thinkers);
+	}
+
+	/**
+	 * Gets a connection to the hoster for one client.
+	 * 
+	 * @return The hoster itself or, for the {@link Transport#NIO NIO} transport, a new connection to it.
+	 * @throws IOException
+	 *             If the connection fails.
+	 */
+	Hoster connect() throws IOException {
+		return transport == Transport.NIO ? nio.connect(address) : hoster;
+	}
+
+	/**
+	 * Records the latency of an action.
+	 * 
+	 * @param nanos
+	 *            The time that the client waited for the action, in nanoseconds.
+	 */
+	void actionExecuted(final long nanos) {
+		actionLatency.record(nanos);
+	}
+
+	/**
+	 * Counts an action that the server rejected as illegal.
+	 */
+	void actionRejected() {
+		rejectedActions.incrementAndGet();
+	}
+
+	/**
+	 * Counts an action that failed for other reasons.
+	 * 
+	 * @param e
+	 *            The exception.
+	 */
+	void actionFailed(final Exception e) {
+		failedActions.incrementAndGet();
+		firstFailure.compareAndSet(null, e);
+	}
+
+	/**
+	 * Records the lag of a stone that a client received.
+	 * 
+	 * @param nanos
+	 *            The time since the stone was sent, in nanoseconds.
+	 */
+	void eventReceived(final long nanos) {
+		fanOutLag.record(nanos);
+	}
+
+	/**
+	 * Notes that a game ended for all its clients.
+	 * 
+	 * @param table
+	 *            The table of the game.
+	 * @param end
+	 *            The event that ended the game.
+	 */
+	void gameEnded(final Table table, final GameEnd end) {
+		if (end instanceof Tie)
+			ties.incrementAndGet();
+		endedTables.add(table);
+	}
+
+	/**
+	 * Private utility method to describe the distribution of a histogram.
+	 * 
+	 * @param histogram
+	 *            The histogram.
+	 * @return The description.
+	 */
+	private static String percentiles(final LatencyHistogram histogram) {
+		final long count = histogram.getCount();
+		if (count == 0)
+			return "none";
+		return String.format(Locale.ROOT, "%d, mean %.1f us, median < %.1f us, 90 %% < %.1f us, 99 %% < %.1f us, "
+				+ "99.9 %% < %.1f us", count, histogram.getTotalNanos() / 1e3 / count,
+				histogram.getPercentile(0.5) / 1e3, histogram.getPercentile(0.9) / 1e3,
+				histogram.getPercentile(0.99) / 1e3, histogram.getPercentile(0.999) / 1e3);
+	}
+
+	/**
+	 * Private utility method to sum up the collections and collection times of all garbage collectors.
+	 * 
+	 * @return The number of collections and the time spent collecting, in milliseconds.
+	 */
+	private static long[] gcTotals() {
+		final long[] totals = new long[2];
+		for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			totals[0] += Math.max(0, gc.getCollectionCount());
+			totals[1] += Math.max(0, gc.getCollectionTime());
+		}
+		return totals;
+	}
+
+	/**
+	 * Private utility method to sum up the peak usage of all heap memory pools.
+	 * 
+	 * @return The peak heap usage, in bytes.
+	 */
+	private static long peakHeap() {
+		long peak = 0;
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP)
+				peak += pool.getPeakUsage().getUsed();
+		return peak;
+	}
+
+	/**
+	 * Plays games and prints the report.
+	 * 
+	 * @param args
+	 *            Optionally, in this order: the transport, <code>local</code> (default) or <code>nio</code>; the number
+	 *            of clients (default 1000); the number of games (default 5000); the policy, <code>random</code>
+	 *            (default), <code>ai</code> or <code>mixed</code>; the think time in milliseconds (default 0); and the
+	 *            board size (default 15).
+	 * @throws Exception
+	 *             If the games can't be played.
+	 */
+	public static void main(final String[] args) throws Exception {
+		final Transport transport = args.length > 0 ? Transport.valueOf(args[0].toUpperCase(Locale.ROOT))
+				: Transport.LOCAL;
+		final int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		final int games = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+		final Policy policy = args.length > 3 ? Policy.valueOf(args[3].toUpperCase(Locale.ROOT)) : Policy.RANDOM;
+		final long thinkTime = args.length > 4 ? Long.parseLong(args[4]) : 0;
+		final int boardSize = args.length > 5 ? Integer.parseInt(args[5]) : 15;
+		System.out.print(new LoadGenerator(transport, clients, games, policy, thinkTime, boardSize).run());
+	}
+}
\ No newline at end of file
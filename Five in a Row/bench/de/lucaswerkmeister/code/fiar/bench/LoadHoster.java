@@ -0,0 +1,130 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.bench;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.lucaswerkmeister.code.fiar.framework.Client;
+import de.lucaswerkmeister.code.fiar.framework.Hoster;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.RemoteClient;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.exception.UnknownPlayerException;
+import de.lucaswerkmeister.code.fiar.servers.ClientPlayerPair;
+import de.lucaswerkmeister.code.fiar.servers.GameEngine;
+
+/**
+ * A hoster without a GUI that starts a game on a {@link GameEngine} as soon as enough players joined, and removes the
+ * game again once all of its clients left.
+ * <p>
+ * Players are seated in the order in which they join, so whoever adds players must add all players of one game before
+ * the players of the next one.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+final class LoadHoster implements Hoster {
+	private static final long serialVersionUID = 1L;
+	private final transient GameEngine engine;
+	private final int playersPerGame;
+	private final transient List<ClientPlayerPair> waiting;
+	private final transient Map<RemoteClient, Long> games;
+	private final transient Map<Long, Integer> clientCounts;
+
+	/**
+	 * Creates a new {@link LoadHoster}.
+	 * 
+	 * @param engine
+	 *            The engine that the games run on.
+	 * @param playersPerGame
+	 *            The number of players that start a game.
+	 */
+	LoadHoster(final GameEngine engine, final int playersPerGame) {
+		this.engine = engine;
+		this.playersPerGame = playersPerGame;
+		waiting = new ArrayList<>();
+		games = new HashMap<>();
+		clientCounts = new HashMap<>();
+	}
+
+	@Override
+	public void addClient(final RemoteClient client) {
+		// the client is seated when its player joins
+	}
+
+	/**
+	 * Removes the client from its game. When the last client of a game leaves, the game is removed from the engine.
+	 */
+	@Override
+	public synchronized void removeClient(final RemoteClient client) {
+		final Long gameID = games.remove(client);
+		if (gameID == null)
+			return;
+		final int remaining = clientCounts.get(gameID) - 1;
+		if (remaining > 0)
+			clientCounts.put(gameID, remaining);
+		else {
+			clientCounts.remove(gameID);
+			engine.removeGame(gameID);
+		}
+	}
+
+	/**
+	 * Seats the player. If this completes a game, the game is started.
+	 */
+	@Override
+	public synchronized void addPlayer(final RemoteClient controller, final Player player) throws RemoteException {
+		waiting.add(new ClientPlayerPair(controller, player));
+		if (waiting.size() < playersPerGame)
+			return;
+		final Set<RemoteClient> clients = new LinkedHashSet<>();
+		for (final ClientPlayerPair pair : waiting)
+			clients.add((RemoteClient) pair.getClient());
+		final long gameID = engine.createGame(new LinkedHashSet<>(waiting), Collections.<Client> emptySet());
+		final Server server = engine.getServer(gameID);
+		for (final RemoteClient client : clients) {
+			games.put(client, gameID);
+			for (final ClientPlayerPair pair : waiting)
+				client.playerJoined(pair.getPlayer());
+		}
+		clientCounts.put(gameID, clients.size());
+		waiting.clear();
+		for (final RemoteClient client : clients)
+			client.gameStarts(server);
+	}
+
+	/**
+	 * Removes a player that is still waiting for its game to start.
+	 */
+	@Override
+	public synchronized void removePlayer(final Player player) throws UnknownPlayerException {
+		for (final ClientPlayerPair pair : waiting)
+			if (pair.getPlayer().equals(player)) {
+				waiting.remove(pair);
+				return;
+			}
+		throw new UnknownPlayerException(player);
+	}
+}
\ No newline at end of file
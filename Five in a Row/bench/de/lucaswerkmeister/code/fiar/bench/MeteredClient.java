@@ -0,0 +1,174 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.bench;
+
+import java.rmi.RemoteException;
+import java.util.Set;
+
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.BoardDelta;
+import de.lucaswerkmeister.code.fiar.framework.Client;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.RemoteClient;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEnd;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
+import de.lucaswerkmeister.code.fiar.framework.exception.IllegalMoveException;
+
+/**
+ * Wraps the client of one player of a {@link Table} and measures what the client experiences.
+ * <p>
+ * The wrapped client never sees the real server, but a view of it that times each action and passes this client as
+ * the requester, so any client can be measured without changing it. Every {@link PlaceStone} that arrives is matched
+ * with the time at which the stone was sent, which gives the lag until the event reaches each client of the game.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+final class MeteredClient implements RemoteClient {
+	private static final long serialVersionUID = 1L;
+	private final transient LoadGenerator generator;
+	private final transient Table table;
+	private final RemoteClient client;
+	private transient boolean ended;
+
+	/**
+	 * Creates a new {@link MeteredClient}.
+	 * 
+	 * @param generator
+	 *            The load generator that collects the measurements.
+	 * @param table
+	 *            The table whose game the client plays.
+	 * @param client
+	 *            The wrapped client.
+	 */
+	MeteredClient(final LoadGenerator generator, final Table table, final RemoteClient client) {
+		this.generator = generator;
+		this.table = table;
+		this.client = client;
+	}
+
+	/**
+	 * Gets the wrapped client.
+	 * 
+	 * @return The client.
+	 */
+	RemoteClient getClient() {
+		return client;
+	}
+
+	@Override
+	public void playerJoined(final Player player) throws RemoteException {
+		client.playerJoined(player);
+	}
+
+	@Override
+	public void playerLeft(final Player player) throws RemoteException {
+		client.playerLeft(player);
+	}
+
+	@Override
+	public void gameStarts(final Server server) throws RemoteException {
+		client.gameStarts(new MeteredServer(server));
+	}
+
+	@Override
+	public void gameEvent(final GameEvent e) throws RemoteException {
+		if (e instanceof PlaceStone)
+			table.stoneReceived((PlaceStone) e);
+		client.gameEvent(e);
+		if (e instanceof GameEnd && !ended) {
+			ended = true;
+			table.clientEnded((GameEnd) e);
+		}
+	}
+
+	/**
+	 * The view of the server that the wrapped client sees.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private final class MeteredServer implements Server {
+		private static final long serialVersionUID = 1L;
+		private final Server server;
+
+		/**
+		 * Creates a new {@link MeteredServer} for the specified server.
+		 * 
+		 * @param server
+		 *            The real server.
+		 */
+		MeteredServer(final Server server) {
+			this.server = server;
+		}
+
+		@Override
+		public int[] getPhase(final Client requester) throws RemoteException {
+			return server.getPhase(MeteredClient.this);
+		}
+
+		@Override
+		public int getPhasesVersion(final Client requester) throws RemoteException {
+			return server.getPhasesVersion(MeteredClient.this);
+		}
+
+		@Override
+		public boolean canAct(final Client requester, final Player p) throws RemoteException {
+			return server.canAct(MeteredClient.this, p);
+		}
+
+		@Override
+		public Set<Class<? extends PlayerAction>> getAllowedActions(final Client requester, final Player p)
+				throws RemoteException {
+			return server.getAllowedActions(MeteredClient.this, p);
+		}
+
+		@Override
+		public void action(final Client requester, final PlayerAction action) throws IllegalStateException,
+				IllegalMoveException, RemoteException {
+			if (action instanceof PlaceStone)
+				table.stoneSent((PlaceStone) action);
+			final long start = System.nanoTime();
+			try {
+				server.action(MeteredClient.this, action);
+			} catch (final IllegalStateException | IllegalMoveException e) {
+				generator.actionRejected();
+				throw e;
+			} catch (final RemoteException | RuntimeException e) {
+				generator.actionFailed(e);
+				throw e;
+			} finally {
+				generator.actionExecuted(System.nanoTime() - start);
+			}
+		}
+
+		@Override
+		public Board getCurrentBoard(final Client requester) throws RemoteException {
+			return server.getCurrentBoard(MeteredClient.this);
+		}
+
+		@Override
+		public BoardDelta getBoardChangesSince(final Client requester, final int version)
+				throws IllegalArgumentException, RemoteException {
+			return server.getBoardChangesSince(MeteredClient.this, version);
+		}
+	}
+}
\ No newline at end of file
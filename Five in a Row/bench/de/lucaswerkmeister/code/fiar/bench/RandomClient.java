@@ -0,0 +1,270 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.bench;
+
+import java.awt.Dimension;
+import java.rmi.RemoteException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import de.lucaswerkmeister.code.fiar.clients.BoardMirror;
+import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.RemoteClient;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockField;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEnd;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerField;
+import de.lucaswerkmeister.code.fiar.framework.event.PhaseChange;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
+import de.lucaswerkmeister.code.fiar.framework.event.UnblockField;
+import de.lucaswerkmeister.code.fiar.framework.event.UnjokerField;
+import de.lucaswerkmeister.code.fiar.framework.exception.IllegalMoveException;
+
+/**
+ * A client for one player of a two-player game that places its stones on random free fields.
+ * <p>
+ * The client has no thread of its own: it reacts to each event by scheduling its next decision on a shared executor,
+ * after a random think time. It proposes a fixed board size, optionally places blocks and jokers on random fields, and
+ * accepts every distribution once it has seen all changes to it.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+final class RandomClient implements RemoteClient {
+	private static final long serialVersionUID = 1L;
+	private static final int SIZE = 0;
+	private static final int BLOCKS = 1;
+	private static final int JOKERS = 2;
+	private static final int PLAY = 3;
+	private static final int OVER = 4;
+	private final Player player;
+	private final Dimension boardSize;
+	private final int blocks;
+	private final int jokers;
+	private final long thinkTime;
+	private final transient ScheduledExecutorService thinkers;
+	private final transient BoardMirror mirror;
+	private transient volatile Server server;
+	private transient volatile int stage = SIZE;
+
+	/**
+	 * Creates a new {@link RandomClient}.
+	 * 
+	 * @param player
+	 *            The player.
+	 * @param boardSize
+	 *            The board size that the client proposes.
+	 * @param blocks
+	 *            The number of fields that the client blocks.
+	 * @param jokers
+	 *            The number of fields that the client marks as joker fields.
+	 * @param thinkTime
+	 *            The mean time that the client waits before each decision, in milliseconds.
+	 * @param thinkers
+	 *            The executor that makes the client's decisions.
+	 */
+	RandomClient(final Player player, final Dimension boardSize, final int blocks, final int jokers,
+			final long thinkTime, final ScheduledExecutorService thinkers) {
+		this.player = player;
+		this.boardSize = new Dimension(boardSize);
+		this.blocks = blocks;
+		this.jokers = jokers;
+		this.thinkTime = thinkTime;
+		this.thinkers = thinkers;
+		// the other client may act before this one is told that the game starts, so the mirror must exist already;
+		// it never resyncs, since events arrive in order, and thus needs no server
+		mirror = new BoardMirror(null, this);
+	}
+
+	@Override
+	public void playerJoined(final Player p) {
+		// the client only plays two-player games
+	}
+
+	@Override
+	public void playerLeft(final Player p) {
+		// nothing to do
+	}
+
+	@Override
+	public void gameStarts(final Server s) {
+		server = s;
+		think(new Runnable() {
+			@Override
+			public void run() {
+				act(new BoardSizeProposal(player, boardSize));
+			}
+		});
+	}
+
+	@Override
+	public void gameEvent(final GameEvent e) {
+		mirror.gameEvent(e);
+		if (e instanceof PhaseChange) {
+			final int[] phase = ((PhaseChange) e).getNewPhase();
+			if (phase[0] == 0 && phase[1] == 1)
+				prepare(stage = BLOCKS, blocks);
+			else if (phase[0] == 0 && phase[1] == 2)
+				prepare(stage = JOKERS, jokers);
+			else if (phase[0] == 1) {
+				stage = PLAY;
+				if (phase[2] == player.getID())
+					move();
+			}
+		} else if (e instanceof BlockField || e instanceof UnblockField)
+			accept(BLOCKS);
+		else if (e instanceof JokerField || e instanceof UnjokerField)
+			accept(JOKERS);
+		else if (e instanceof PlaceStone && !player.equals(((PlaceStone) e).getActingPlayer()))
+			move();
+		else if (e instanceof GameEnd)
+			stage = OVER;
+	}
+
+	/**
+	 * Private utility method to decide on the fields to block or mark as joker fields at the start of a setup stage.
+	 * The fields are accepted once their events arrived; if there are none, the empty distribution is accepted right
+	 * away.
+	 * 
+	 * @param setupStage
+	 *            {@link #BLOCKS} or {@link #JOKERS}.
+	 * @param count
+	 *            The number of fields.
+	 */
+	private void prepare(final int setupStage, final int count) {
+		if (count == 0) {
+			accept(setupStage);
+			return;
+		}
+		think(new Runnable() {
+			@Override
+			public void run() {
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				final Set<Long> chosen = new HashSet<>();
+				while (chosen.size() < count) {
+					final int x = random.nextInt(boardSize.width);
+					final int y = random.nextInt(boardSize.height);
+					if (!isFree(x, y) || !chosen.add((long) x << 32 | y))
+						continue;
+					act(setupStage == BLOCKS ? new BlockField(player, x, y) : new JokerField(player, x, y));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Private utility method to accept the current distribution of a setup stage, unless the stage is over by the time
+	 * the client has decided.
+	 * 
+	 * @param setupStage
+	 *            {@link #BLOCKS} or {@link #JOKERS}.
+	 */
+	private void accept(final int setupStage) {
+		think(new Runnable() {
+			@Override
+			public void run() {
+				if (stage != setupStage)
+					return;
+				final long hash = mirror.getHash();
+				act(setupStage == BLOCKS ? new BlockDistributionAccepted(player, hash) : new JokerDistributionAccepted(
+						player, hash));
+			}
+		});
+	}
+
+	/**
+	 * Private utility method to place a stone on a random free field.
+	 */
+	private void move() {
+		think(new Runnable() {
+			@Override
+			public void run() {
+				if (stage != PLAY)
+					return;
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				// random guesses are quick while the board is empty; after that, scan from a random field
+				for (int i = 0; i < 16; i++) {
+					final int x = random.nextInt(boardSize.width);
+					final int y = random.nextInt(boardSize.height);
+					if (isFree(x, y)) {
+						act(new PlaceStone(player, x, y));
+						return;
+					}
+				}
+				final int fields = boardSize.width * boardSize.height;
+				final int start = random.nextInt(fields);
+				for (int i = 0; i < fields; i++) {
+					final int field = (start + i) % fields;
+					if (isFree(field % boardSize.width, field / boardSize.width)) {
+						act(new PlaceStone(player, field % boardSize.width, field / boardSize.width));
+						return;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Private utility method to determine if a field of the mirrored board is free.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @return <code>true</code> if no player, block or joker occupies the field, <code>false</code> otherwise.
+	 */
+	private boolean isFree(final int x, final int y) {
+		return mirror.getPlayerAt(x, y).equals(NoPlayer.getInstance());
+	}
+
+	/**
+	 * Private utility method to schedule a decision after a random think time between zero and twice the mean think
+	 * time.
+	 * 
+	 * @param decision
+	 *            The decision.
+	 */
+	private void think(final Runnable decision) {
+		final long delay = thinkTime == 0 ? 0 : ThreadLocalRandom.current().nextLong(2 * thinkTime + 1);
+		thinkers.schedule(decision, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Private utility method to perform an action. The server's view counts rejected and failed actions, so they are
+	 * ignored here.
+	 * 
+	 * @param action
+	 *            The action.
+	 */
+	private void act(final PlayerAction action) {
+		try {
+			server.action(this, action);
+		} catch (final IllegalMoveException | RemoteException | RuntimeException e) {
+			// counted by the server's view
+		}
+	}
+}
\ No newline at end of file
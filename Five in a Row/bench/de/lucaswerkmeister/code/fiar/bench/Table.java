@@ -0,0 +1,166 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.bench;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.lucaswerkmeister.code.fiar.clients.ai.AIClient;
+import de.lucaswerkmeister.code.fiar.framework.Hoster;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEnd;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.network.NioClient;
+
+/**
+ * The seats of one game of the {@link LoadGenerator}, which play one game after another. Each seat is taken by a new
+ * client for each game.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+final class Table {
+	/**
+	 * The players of each game.
+	 */
+	static final Player[] PLAYERS = new Player[] {new Player("Player 1", Color.blue, 1),
+			new Player("Player 2", Color.cyan, 2) };
+	/**
+	 * The time that an {@link AIClient} gets to finish its last action after the game ended, in milliseconds.
+	 */
+	static final long FINISH_TIMEOUT = 10000;
+	private final LoadGenerator generator;
+	private final MeteredClient[] clients;
+	private final Hoster[] hosters;
+	private final ConcurrentMap<Long, Long> stones; // the time each stone was sent, keyed by field
+	private final AtomicInteger endedClients;
+
+	/**
+	 * Creates a new, empty {@link Table}.
+	 * 
+	 * @param generator
+	 *            The load generator.
+	 */
+	Table(final LoadGenerator generator) {
+		this.generator = generator;
+		clients = new MeteredClient[PLAYERS.length];
+		hosters = new Hoster[PLAYERS.length];
+		stones = new ConcurrentHashMap<>();
+		endedClients = new AtomicInteger();
+	}
+
+	/**
+	 * Seats a new client for each player, which starts a game.
+	 * 
+	 * @throws IOException
+	 *             If a client can't connect to the hoster.
+	 */
+	void start() throws IOException {
+		stones.clear();
+		endedClients.set(0);
+		for (int seat = 0; seat < PLAYERS.length; seat++) {
+			clients[seat] = new MeteredClient(generator, this, generator.newClient(seat, PLAYERS[seat]));
+			hosters[seat] = generator.connect();
+			hosters[seat].addClient(clients[seat]);
+		}
+		// all players of one game are added one after another
+		for (int seat = 0; seat < PLAYERS.length; seat++)
+			hosters[seat].addPlayer(clients[seat], PLAYERS[seat]);
+	}
+
+	/**
+	 * Makes the clients of the last game leave and closes their connections. {@link AIClient}s only queue the end of
+	 * the game and may still be searching or acting, so their threads are waited for first; a thread that does not
+	 * end within {@link #FINISH_TIMEOUT} is stopped.
+	 * 
+	 * @throws IOException
+	 *             If a client can't be removed from the hoster, or the waiting thread is interrupted.
+	 */
+	void leave() throws IOException {
+		try {
+			for (final MeteredClient client : clients)
+				if (client != null && client.getClient() instanceof AIClient) {
+					final AIClient ai = (AIClient) client.getClient();
+					if (!ai.join(FINISH_TIMEOUT)) {
+						ai.stop();
+						ai.join(FINISH_TIMEOUT);
+					}
+				}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the clients to finish!");
+		}
+		for (int seat = 0; seat < PLAYERS.length; seat++) {
+			if (clients[seat] == null)
+				continue;
+			hosters[seat].removeClient(clients[seat]);
+			if (hosters[seat] instanceof NioClient)
+				((NioClient) hosters[seat]).close();
+			clients[seat] = null;
+			hosters[seat] = null;
+		}
+	}
+
+	/**
+	 * Notes the time at which a stone is sent. Must be called before the stone is sent.
+	 * 
+	 * @param stone
+	 *            The stone.
+	 */
+	void stoneSent(final PlaceStone stone) {
+		stones.put(key(stone), System.nanoTime());
+	}
+
+	/**
+	 * Records the lag of a stone that a client received.
+	 * 
+	 * @param stone
+	 *            The stone.
+	 */
+	void stoneReceived(final PlaceStone stone) {
+		final Long sent = stones.get(key(stone));
+		if (sent != null)
+			generator.eventReceived(System.nanoTime() - sent);
+	}
+
+	/**
+	 * Notes that one client saw the game end. When all clients did, the game is finished.
+	 * 
+	 * @param end
+	 *            The event that ended the game.
+	 */
+	void clientEnded(final GameEnd end) {
+		if (endedClients.incrementAndGet() == PLAYERS.length)
+			generator.gameEnded(this, end);
+	}
+
+	/**
+	 * Private utility method to get the key of the field of a stone.
+	 * 
+	 * @param stone
+	 *            The stone.
+	 * @return The key.
+	 */
+	private static long key(final PlaceStone stone) {
+		return (long) stone.getX() << 32 | stone.getY() & 0xffffffffL;
+	}
+}
\ No newline at end of file
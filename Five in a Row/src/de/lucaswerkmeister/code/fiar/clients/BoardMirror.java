@@ -0,0 +1,203 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.clients;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.rmi.RemoteException;
+
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.BoardDelta;
+import de.lucaswerkmeister.code.fiar.framework.Client;
+import de.lucaswerkmeister.code.fiar.framework.Joker;
+import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockField;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.FieldAction;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerField;
+import de.lucaswerkmeister.code.fiar.framework.event.PhaseChange;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.servers.SparseBoard;
+
+/**
+ * A client-side copy of the server's board, kept up to date by the {@link GameEvent}s that the client receives.
+ * <p>
+ * Each {@link FieldAction} changes exactly one field, so applying it locally is much cheaper than asking the server
+ * for the whole board with {@link Server#getCurrentBoard(Client)} after every event, which, for a remote server, means
+ * serializing the entire board. The mirror counts the applied field changes like the server counts its board version,
+ * so if the client ever misses events, {@link #resync()} fetches only the missing changes.
+ * <p>
+ * The client must pass every event it receives to {@link #gameEvent(GameEvent)}, starting with the first
+ * {@link BoardSizeProposal}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.3
+ */
+public class BoardMirror {
+	private final Server server;
+	private final Client client;
+	private Dimension boardSize;
+	private Board board;
+	private int version;
+
+	/**
+	 * Creates a new {@link BoardMirror} of the board of the specified server.
+	 * 
+	 * @param server
+	 *            The server.
+	 * @param client
+	 *            The client that owns the mirror; used as requester for {@link #resync()}.
+	 */
+	public BoardMirror(final Server server, final Client client) {
+		this.server = server;
+		this.client = client;
+	}
+
+	/**
+	 * Applies the specified event to the mirrored board.
+	 * 
+	 * @param e
+	 *            The event.
+	 */
+	public synchronized void gameEvent(final GameEvent e) {
+		if (e instanceof BoardSizeProposal)
+			// the last proposal before the phase change is the one that all players agreed on
+			boardSize = ((BoardSizeProposal) e).getSize();
+		else if (e instanceof PhaseChange) {
+			final int[] phase = ((PhaseChange) e).getNewPhase();
+			if (phase[0] == 0 && phase[1] == 1 && boardSize != null) {
+				board = SparseBoard.newBoard(boardSize.width, boardSize.height);
+				version = 0;
+			}
+		} else if (e instanceof FieldAction && board != null) {
+			final FieldAction fa = (FieldAction) e;
+			board.setPlayerAt(fa.getX(), fa.getY(), playerAfter(fa));
+			version++;
+		}
+	}
+
+	/**
+	 * Fetches all changes that the mirror is missing from the server. If the mirror has not seen the board being
+	 * created, it fetches all changes since version <code>0</code> and applies them to a new board of the size that the
+	 * delta reports.
+	 * 
+	 * @throws RemoteException
+	 *             If something remotely goes wrong.
+	 */
+	public synchronized void resync() throws RemoteException {
+		final BoardDelta delta = server.getBoardChangesSince(client, board == null ? 0 : version);
+		if (delta == null)
+			return;
+		if (board == null)
+			board = SparseBoard.newBoard(delta.getWidth(), delta.getHeight());
+		delta.applyTo(board);
+		version = delta.getToVersion();
+	}
+
+	/**
+	 * Gets the player that occupies the specified field of the mirrored board.
+	 * 
+	 * @param field
+	 *            The field.
+	 * @return The player at the field.
+	 * @throws IllegalStateException
+	 *             If the board has not yet been decided on.
+	 */
+	public synchronized Player getPlayerAt(final Point field) throws IllegalStateException {
+		return checkBoard().getPlayerAt(field);
+	}
+
+	/**
+	 * Gets the player that occupies the field at (x,y) of the mirrored board.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @return The player at the field.
+	 * @throws IllegalStateException
+	 *             If the board has not yet been decided on.
+	 */
+	public synchronized Player getPlayerAt(final int x, final int y) throws IllegalStateException {
+		return checkBoard().getPlayerAt(x, y);
+	}
+
+	/**
+	 * Gets a copy of the mirrored board.
+	 * 
+	 * @return A copy of the board, or <code>null</code> if the board has not yet been decided on.
+	 */
+	public synchronized Board getBoard() {
+		return board == null ? null : board.clone();
+	}
+
+	/**
+	 * Gets the {@link Board#getHash() hash} of the mirrored board, which is what a player accepts to agree on a
+	 * distribution of blocks or jokers.
+	 * 
+	 * @return The hash of the board.
+	 * @throws IllegalStateException
+	 *             If the board has not yet been decided on.
+	 */
+	public synchronized long getHash() throws IllegalStateException {
+		return checkBoard().getHash();
+	}
+
+	/**
+	 * Gets the version of the mirrored board, that is, the number of field changes applied to it.
+	 * 
+	 * @return The board version.
+	 */
+	public synchronized int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Private utility method to get the board, throwing an exception if there is none yet.
+	 * 
+	 * @return The board.
+	 * @throws IllegalStateException
+	 *             If the board has not yet been decided on.
+	 */
+	private Board checkBoard() throws IllegalStateException {
+		if (board == null)
+			throw new IllegalStateException("The board has not yet been decided on!");
+		return board;
+	}
+
+	/**
+	 * Determines which player occupies the field of a {@link FieldAction} after the action.
+	 * 
+	 * @param action
+	 *            The action.
+	 * @return The player at the field after the action.
+	 */
+	private static Player playerAfter(final FieldAction action) {
+		if (action instanceof PlaceStone)
+			return action.getActingPlayer();
+		if (action instanceof BlockField)
+			return Block.getInstance();
+		if (action instanceof JokerField)
+			return Joker.getInstance();
+		return NoPlayer.getInstance(); // UnblockField, UnjokerField
+	}
+}
\ No newline at end of file
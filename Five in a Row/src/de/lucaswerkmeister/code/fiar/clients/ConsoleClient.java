@@ -30,7 +30,6 @@ import java.util.Queue;
 import java.util.Set;
 
 import de.lucaswerkmeister.code.fiar.framework.Block;
-import de.lucaswerkmeister.code.fiar.framework.Board;
 import de.lucaswerkmeister.code.fiar.framework.Client;
 import de.lucaswerkmeister.code.fiar.framework.Joker;
 import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
@@ -50,32 +49,46 @@ import de.lucaswerkmeister.code.fiar.servers.FixedServer;
 
 /**
  * A Client that runs in the console and handles two players.
+ * <p>
+ * The client keeps a {@link BoardMirror} of the board instead of asking the server for a copy of it, and draws the
+ * board with a {@link ConsoleRenderer}.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.1
  */
 public final class ConsoleClient implements Client, Runnable {
 	private final Server server;
 	private final Player p1;
 	private final Player p2;
 	private final Queue<GameEvent> eventQueue;
+	private final BoardMirror board;
+	private final ConsoleRenderer renderer;
 	private boolean bbInstalled = false;
 
 	/**
 	 * Creates a new {@link ConsoleClient} instance.
+	 * 
+	 * @param ansi
+	 *            Whether to redraw only the changed fields using ANSI escape sequences instead of printing the whole
+	 *            board after each change.
 	 */
-	private ConsoleClient() {
+	private ConsoleClient(final boolean ansi) {
 		p1 = new Player("Player 1", Color.blue, 1);
 		p2 = new Player("Player 2", Color.yellow, 2);
 		server = new FixedServer(new Client[] {this }, new Player[][] {{p1, p2 } });
 		eventQueue = new LinkedList<>();
+		board = new BoardMirror(server, this);
+		renderer = new ConsoleRenderer(System.out, ansi);
 	}
 
 	@Override
 	public void gameEvent(final GameEvent e) throws RemoteException {
 		eventQueue.add(e);
-		if (e instanceof FieldAction)
-			printBoard(server.getCurrentBoard(this));
+		board.gameEvent(e);
+		if (e instanceof FieldAction) {
+			final FieldAction fa = (FieldAction) e;
+			renderer.fieldChanged(fa.getX(), fa.getY(), board.getPlayerAt(fa.getX(), fa.getY()));
+		}
 	}
 
 	@Override
@@ -99,6 +112,7 @@ public final class ConsoleClient implements Client, Runnable {
 			while (true);
 			server.action(this, new BoardSizeProposal(p1, new Dimension(boardSize, boardSize)));
 			server.action(this, new BoardSizeProposal(p2, new Dimension(boardSize, boardSize)));
+			renderer.clear(boardSize, boardSize);
 			eventQueue.poll(); // BoardSizeProposal
 			eventQueue.poll(); // BoardSizeProposal
 			eventQueue.poll(); // PhaseChange
@@ -114,7 +128,7 @@ public final class ConsoleClient implements Client, Runnable {
 					.equalsIgnoreCase("leave"))) {
 				try {
 					for (final Point p : parseCoordinates(input, inputReader)) {
-						if (server.getCurrentBoard(this).getPlayerAt(p) == Block.getInstance())
+						if (board.getPlayerAt(p) == Block.getInstance())
 							server.action(this, new UnblockField(p1, p));
 						else
 							server.action(this, new BlockField(p1, p));
@@ -148,9 +162,9 @@ public final class ConsoleClient implements Client, Runnable {
 					.equalsIgnoreCase("leave"))) {
 				try {
 					for (final Point p : parseCoordinates(input, inputReader)) {
-						if (server.getCurrentBoard(this).getPlayerAt(p) == Joker.getInstance())
+						if (board.getPlayerAt(p) == Joker.getInstance())
 							server.action(this, new UnjokerField(p1, p));
-						else if (!server.getCurrentBoard(this).getPlayerAt(p).equals(NoPlayer.getInstance())) {
+						else if (!board.getPlayerAt(p).equals(NoPlayer.getInstance())) {
 							System.out.println("That field is already in use! Please enter another field.");
 							input = inputReader.readLine();
 							continue;
@@ -177,7 +191,7 @@ public final class ConsoleClient implements Client, Runnable {
 
 			// Game
 			System.out.println("Game started!");
-			printBoard(server.getCurrentBoard(this));
+			renderer.redraw();
 			int player = 1;
 			while (server.getPhase(this)[0] == 1) {
 				System.out.println("Player " + player + ", where do you want to place your stone?");
@@ -193,8 +207,7 @@ public final class ConsoleClient implements Client, Runnable {
 						System.out.println("Wrong coordinates count! Please re-type the coordinates.");
 						continue;
 					}
-					if (!server.getCurrentBoard(this).getPlayerAt(coordinate.iterator().next())
-							.equals(NoPlayer.getInstance())) {
+					if (!board.getPlayerAt(coordinate.iterator().next()).equals(NoPlayer.getInstance())) {
 						System.out.println("That field is already in use! Please enter another field.");
 						continue;
 					}
@@ -204,6 +217,7 @@ public final class ConsoleClient implements Client, Runnable {
 				} while (true);
 				player = (player % 2) + 1;
 			}
+			renderer.finish();
 			System.out.println("Player " + server.getPhase(this)[2] + " won!");
 		} catch (final Throwable t) { // I will catch Throwable whenever I feel like it and nobody can forbid it.
 			// I always want the user to see this message before the confusing log starts
@@ -223,36 +237,6 @@ public final class ConsoleClient implements Client, Runnable {
 		}
 	}
 
-	/**
-	 * Prints the board to the console.
-	 * 
-	 * @param b
-	 *            The board to print.
-	 */
-	private void printBoard(final Board b) {
-		for (int y = 0; y < b.getHeight(); y++) {
-			for (int x = 0; x < b.getWidth(); x++)
-				switch (b.getPlayerAt(x, y) == null ? 0 : b.getPlayerAt(x, y).getID()) {
-				case Joker.ID:
-					System.out.print('J');
-					break;
-				case Block.ID:
-					System.out.print('B');
-					break;
-				case 1:
-					System.out.print('X');
-					break;
-				case 2:
-					System.out.print('O');
-					break;
-				default:
-					System.out.print('·');
-					break;
-				}
-			System.out.println();
-		}
-	}
-
 	/**
 	 * Parses an input string into coordinates.
 	 * <p>
@@ -329,9 +313,10 @@ public final class ConsoleClient implements Client, Runnable {
 	 * The main method.
 	 * 
 	 * @param args
-	 *            The arguments. Currently ignored.
+	 *            The arguments. If the first argument is <code>--ansi</code>, only the changed fields of the board are
+	 *            redrawn, using ANSI escape sequences; otherwise, the whole board is printed after each change.
 	 */
 	public static void main(final String[] args) {
-		new Thread(new ConsoleClient()).start();
+		new Thread(new ConsoleClient(args.length > 0 && args[0].equals("--ansi"))).start();
 	}
 }
\ No newline at end of file
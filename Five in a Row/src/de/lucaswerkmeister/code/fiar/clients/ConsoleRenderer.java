@@ -0,0 +1,196 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.clients;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Joker;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+
+/**
+ * Draws a board to a console, one character per field: <code>X</code> and <code>O</code> for the stones of players 1
+ * and 2, <code>B</code> for blocked fields, <code>J</code> for joker fields and <code>·</code> for free fields.
+ * <p>
+ * The renderer keeps its own copy of the characters on screen, which {@link #fieldChanged(int, int, Player)} updates
+ * field by field, so drawing never needs to look at a {@link Board}. Each frame is built in a reusable buffer and
+ * written with a single call, instead of one call per field.
+ * <p>
+ * In plain mode, every change prints the whole board again, row by row. In ANSI mode, the board is drawn once at the
+ * top of the screen, the rest of the screen scrolls below it, and each change only redraws the changed field using
+ * ANSI cursor positioning; this requires a terminal that understands ANSI escape sequences and is taller than the
+ * board.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+public final class ConsoleRenderer {
+	private static final String CSI = "\u001b[";
+	private static final String SAVE_CURSOR = "\u001b7";
+	private static final String RESTORE_CURSOR = "\u001b8";
+	private static final char FREE = '·';
+	private final PrintStream out;
+	private final boolean ansi;
+	private final String lineSeparator = System.lineSeparator();
+	private final StringBuilder frame = new StringBuilder();
+	private char[] fields = new char[0]; // fields[y * width + x], as drawn on screen
+	private int width;
+	private int height;
+	private boolean drawn;
+
+	/**
+	 * Creates a new {@link ConsoleRenderer} for an empty board of size 0&times;0.
+	 * 
+	 * @param out
+	 *            The stream to draw to.
+	 * @param ansi
+	 *            Whether to use ANSI mode and only redraw changed fields (<code>true</code>) or to print the whole
+	 *            board after each change (<code>false</code>).
+	 */
+	public ConsoleRenderer(final PrintStream out, final boolean ansi) {
+		this.out = out;
+		this.ansi = ansi;
+	}
+
+	/**
+	 * Clears the board and sets its size. Nothing is drawn.
+	 * 
+	 * @param width
+	 *            The width of the board.
+	 * @param height
+	 *            The height of the board.
+	 */
+	public void clear(final int width, final int height) {
+		this.width = width;
+		this.height = height;
+		if (fields.length != width * height)
+			fields = new char[width * height];
+		Arrays.fill(fields, FREE);
+		frame.ensureCapacity(height * (width + lineSeparator.length()) + 32);
+		drawn = false;
+	}
+
+	/**
+	 * Copies all fields from the specified board, which also sets the size, and draws it.
+	 * 
+	 * @param b
+	 *            The board.
+	 */
+	public void render(final Board b) {
+		clear(b.getWidth(), b.getHeight());
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				fields[y * width + x] = symbol(b.getPlayerAt(x, y));
+		redraw();
+	}
+
+	/**
+	 * Sets a field to the specified player and draws the change: in plain mode, the whole board is printed again; in
+	 * ANSI mode, only the field is redrawn, unless the board is not on screen yet.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @param p
+	 *            The player now occupying the field.
+	 */
+	public void fieldChanged(final int x, final int y, final Player p) {
+		final char c = symbol(p);
+		fields[y * width + x] = c;
+		if (!ansi || !drawn) {
+			redraw();
+			return;
+		}
+		frame.setLength(0);
+		frame.append(SAVE_CURSOR).append(CSI).append(y + 1).append(';').append(x + 1).append('H').append(c)
+				.append(RESTORE_CURSOR);
+		write();
+	}
+
+	/**
+	 * Draws the whole board. In ANSI mode, the screen is cleared, the board is drawn at the top, and the area below it
+	 * is set up as the scrolling region for all other output.
+	 */
+	public void redraw() {
+		frame.setLength(0);
+		if (ansi)
+			frame.append(CSI).append("2J").append(CSI).append('H');
+		for (int y = 0; y < height; y++)
+			frame.append(fields, y * width, width).append(lineSeparator);
+		if (ansi)
+			// setting the scrolling region moves the cursor home, so move it below the board again
+			frame.append(CSI).append(height + 1).append('r').append(CSI).append(height + 1).append(";1H");
+		write();
+		drawn = true;
+	}
+
+	/**
+	 * Undoes the screen setup of ANSI mode, so that the whole screen scrolls again. In plain mode, this does nothing.
+	 */
+	public void finish() {
+		if (!ansi || !drawn)
+			return;
+		frame.setLength(0);
+		frame.append(SAVE_CURSOR).append(CSI).append('r').append(RESTORE_CURSOR);
+		write();
+		drawn = false;
+	}
+
+	/**
+	 * Determines whether this renderer is in ANSI mode.
+	 * 
+	 * @return <code>true</code> if only changed fields are redrawn, <code>false</code> if the whole board is printed
+	 *         after each change.
+	 */
+	public boolean isAnsi() {
+		return ansi;
+	}
+
+	/**
+	 * Gets the character that represents the specified player on the board.
+	 * 
+	 * @param p
+	 *            The player. May be <code>null</code>.
+	 * @return The character for that player.
+	 */
+	public static char symbol(final Player p) {
+		switch (p == null ? 0 : p.getID()) {
+		case Joker.ID:
+			return 'J';
+		case Block.ID:
+			return 'B';
+		case 1:
+			return 'X';
+		case 2:
+			return 'O';
+		default:
+			return FREE;
+		}
+	}
+
+	/**
+	 * Writes the frame buffer to the stream with a single call.
+	 */
+	private void write() {
+		out.print(frame);
+		out.flush();
+	}
+}
\ No newline at end of file
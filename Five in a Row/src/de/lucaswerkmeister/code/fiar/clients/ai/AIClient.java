@@ -0,0 +1,426 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.clients.ai;
+
+import java.awt.Dimension;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import de.lucaswerkmeister.code.fiar.clients.BoardMirror;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.RemoteClient;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockField;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.Forfeit;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEnd;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerField;
+import de.lucaswerkmeister.code.fiar.framework.event.PhaseChange;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
+import de.lucaswerkmeister.code.fiar.framework.event.UnblockField;
+import de.lucaswerkmeister.code.fiar.framework.event.UnjokerField;
+import de.lucaswerkmeister.code.fiar.framework.exception.IllegalMoveException;
+
+/**
+ * A client that plays for one or more players on its own.
+ * <p>
+ * The client agrees to the smallest board size that any player proposes and accepts every block and joker
+ * distribution. When it is one of its players' turn, it {@link Search searches} for the best field to place a stone on
+ * for a configurable time, optionally with several threads. Events are handled on a thread of the client's own, so
+ * the client can be called by the server in the middle of an action.
+ * <p>
+ * The client is started by {@link #gameStarts(Server)}, which must be called by the hoster or, if the client is added
+ * to a server directly, by whoever creates the server.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.2
+ */
+public class AIClient implements RemoteClient, Runnable {
+	private static final long serialVersionUID = -4521378871960323618L;
+	/**
+	 * The default time that the client thinks about each move, in milliseconds.
+	 */
+	public static final long DEFAULT_THINKING_TIME = 1000;
+	/**
+	 * The default binary logarithm of the number of entries in the client's transposition table. Each entry takes two
+	 * <code>long</code>s, so the default table takes four megabytes.
+	 */
+	public static final int DEFAULT_TABLE_SIZE_BITS = 18;
+	/**
+	 * The largest binary logarithm of the number of entries in the client's transposition table.
+	 */
+	public static final int MAX_TABLE_SIZE_BITS = 30;
+	private final Player[] players;
+	private final long thinkingTime;
+	private final int searchThreads;
+	private final int tableSizeBits;
+	private final transient BlockingQueue<GameEvent> events;
+	private final transient List<Player> knownPlayers; // all players, in the order of their first proposals
+	private final transient List<Player> turnOrder; // the players in the order of their first moves
+	private final transient Set<Player> forfeited;
+	private transient Dimension proposedSize;
+	private transient Server server;
+	private transient BoardMirror mirror;
+	private transient ParallelSearch search;
+	private transient boolean playing;
+	private transient int awaitedStones;
+	private transient Thread thread;
+
+	/**
+	 * Creates a new {@link AIClient} for the specified players that proposes a board of 15&times;15 fields and thinks
+	 * {@link #DEFAULT_THINKING_TIME} milliseconds about each move.
+	 * 
+	 * @param players
+	 *            The players.
+	 */
+	public AIClient(final Player... players) {
+		this(new Dimension(15, 15), DEFAULT_THINKING_TIME, players);
+	}
+
+	/**
+	 * Creates a new {@link AIClient} for the specified players.
+	 * 
+	 * @param boardSize
+	 *            The board size that the client proposes. If another player proposes a smaller board, the client
+	 *            agrees to it.
+	 * @param thinkingTime
+	 *            The time that the client thinks about each move, in milliseconds.
+	 * @param players
+	 *            The players.
+	 */
+	public AIClient(final Dimension boardSize, final long thinkingTime, final Player... players) {
+		this(boardSize, thinkingTime, 1, players);
+	}
+
+	/**
+	 * Creates a new {@link AIClient} for the specified players that searches with the specified number of threads.
+	 * 
+	 * @param boardSize
+	 *            The board size that the client proposes. If another player proposes a smaller board, the client
+	 *            agrees to it.
+	 * @param thinkingTime
+	 *            The time that the client thinks about each move, in milliseconds.
+	 * @param searchThreads
+	 *            The number of threads that search at once, usually the number of available processors.
+	 * @param players
+	 *            The players.
+	 */
+	public AIClient(final Dimension boardSize, final long thinkingTime, final int searchThreads,
+			final Player... players) {
+		this(boardSize, thinkingTime, searchThreads, DEFAULT_TABLE_SIZE_BITS, players);
+	}
+
+	/**
+	 * Creates a new {@link AIClient} for the specified players that searches with the specified number of threads and
+	 * a transposition table of the specified size. Many clients in one virtual machine should use small tables.
+	 * 
+	 * @param boardSize
+	 *            The board size that the client proposes. If another player proposes a smaller board, the client
+	 *            agrees to it.
+	 * @param thinkingTime
+	 *            The time that the client thinks about each move, in milliseconds.
+	 * @param searchThreads
+	 *            The number of threads that search at once, usually the number of available processors.
+	 * @param tableSizeBits
+	 *            The binary logarithm of the number of entries in the transposition table, which the client allocates
+	 *            when it first searches.
+	 * @param players
+	 *            The players.
+	 * @throws IllegalArgumentException
+	 *             If the table size is negative or greater than {@link #MAX_TABLE_SIZE_BITS}.
+	 */
+	public AIClient(final Dimension boardSize, final long thinkingTime, final int searchThreads,
+			final int tableSizeBits, final Player... players) throws IllegalArgumentException {
+		if (tableSizeBits < 0 || tableSizeBits > MAX_TABLE_SIZE_BITS)
+			throw new IllegalArgumentException("Invalid table size " + tableSizeBits + "!");
+		this.players = players.clone();
+		this.thinkingTime = thinkingTime;
+		this.searchThreads = searchThreads;
+		this.tableSizeBits = tableSizeBits;
+		proposedSize = new Dimension(boardSize);
+		events = new LinkedBlockingQueue<>();
+		knownPlayers = new ArrayList<>();
+		turnOrder = new ArrayList<>();
+		forfeited = new HashSet<>();
+	}
+
+	/**
+	 * Gets the players of this client.
+	 * 
+	 * @return The players.
+	 */
+	public Player[] getPlayers() {
+		return players.clone();
+	}
+
+	@Override
+	public void playerJoined(final Player player) {
+		// the client learns about the players from their board size proposals
+	}
+
+	@Override
+	public void playerLeft(final Player player) {
+		// nothing to do
+	}
+
+	/**
+	 * Starts the client's thread.
+	 * 
+	 * @throws IllegalStateException
+	 *             If the client was already started.
+	 */
+	@Override
+	public synchronized void gameStarts(final Server s) throws IllegalStateException {
+		if (thread != null)
+			throw new IllegalStateException("The client was already started!");
+		server = s;
+		mirror = new BoardMirror(s, this);
+		thread = new Thread(this, "AIClient " + Arrays.toString(players));
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void gameEvent(final GameEvent e) {
+		events.add(e);
+	}
+
+	/**
+	 * Stops the client's thread. The client no longer acts afterwards.
+	 */
+	public synchronized void stop() {
+		if (thread != null)
+			thread.interrupt();
+	}
+
+	/**
+	 * Waits until the client's thread ends, which it does when the game ends or the client is {@link #stop()
+	 * stopped}.
+	 * 
+	 * @param timeout
+	 *            The maximum time to wait, in milliseconds.
+	 * @return <code>true</code> if the thread ended, <code>false</code> if the timeout elapsed first.
+	 * @throws InterruptedException
+	 *             If the waiting thread is interrupted.
+	 */
+	public boolean join(final long timeout) throws InterruptedException {
+		final Thread t;
+		synchronized (this) {
+			t = thread;
+		}
+		if (t == null)
+			return false;
+		t.join(timeout);
+		return !t.isAlive();
+	}
+
+	/**
+	 * Handles the client's events until the game ends. Called on the client's own thread.
+	 */
+	@Override
+	public void run() {
+		try {
+			for (final Player p : players)
+				act(new BoardSizeProposal(p, proposedSize));
+			while (true) {
+				final GameEvent e = events.take();
+				mirror.gameEvent(e);
+				if (e instanceof GameEnd)
+					return;
+				handle(e);
+				if (playing && awaitedStones == 0 && events.isEmpty())
+					move();
+			}
+		} catch (final InterruptedException e) {
+			// stopped
+		} catch (final RemoteException e) {
+			e.printStackTrace();
+		} finally {
+			if (search != null)
+				search.shutdown();
+		}
+	}
+
+	/**
+	 * Private utility method to handle an event.
+	 * 
+	 * @param e
+	 *            The event.
+	 * @throws RemoteException
+	 *             If something remotely goes wrong.
+	 */
+	private void handle(final GameEvent e) throws RemoteException {
+		if (e instanceof PlayerAction && !knownPlayers.contains(((PlayerAction) e).getActingPlayer()))
+			knownPlayers.add(((PlayerAction) e).getActingPlayer());
+		final boolean own = e instanceof PlayerAction && isOwn(((PlayerAction) e).getActingPlayer());
+		if (e instanceof BoardSizeProposal) {
+			final Dimension size = ((BoardSizeProposal) e).getSize();
+			if (!own && isSmaller(size, proposedSize)) {
+				proposedSize = new Dimension(size);
+				for (final Player p : players)
+					act(new BoardSizeProposal(p, proposedSize));
+			}
+		} else if (e instanceof PhaseChange) {
+			final int[] phase = ((PhaseChange) e).getNewPhase();
+			if (phase[0] == 0 && phase[1] == 1)
+				acceptBlocks();
+			else if (phase[0] == 0 && phase[1] == 2)
+				acceptJokers();
+			else if (phase[0] == 1 && phase[1] == 1) {
+				playing = true;
+				for (final Player p : knownPlayers)
+					if (p.getID() == phase[2] && !turnOrder.contains(p))
+						turnOrder.add(p);
+			}
+		} else if (!own && (e instanceof BlockField || e instanceof UnblockField))
+			acceptBlocks();
+		else if (!own && (e instanceof JokerField || e instanceof UnjokerField))
+			acceptJokers();
+		else if (e instanceof PlaceStone) {
+			final Player p = ((PlaceStone) e).getActingPlayer();
+			if (own)
+				awaitedStones--;
+			if (!turnOrder.contains(p))
+				turnOrder.add(p);
+		} else if (e instanceof Forfeit)
+			forfeited.add(((Forfeit) e).getActingPlayer());
+	}
+
+	/**
+	 * Private utility method to accept the current block distribution for all players of this client.
+	 * 
+	 * @throws RemoteException
+	 *             If something remotely goes wrong.
+	 */
+	private void acceptBlocks() throws RemoteException {
+		for (final Player p : players)
+			act(new BlockDistributionAccepted(p, mirror.getHash()));
+	}
+
+	/**
+	 * Private utility method to accept the current joker distribution for all players of this client.
+	 * 
+	 * @throws RemoteException
+	 *             If something remotely goes wrong.
+	 */
+	private void acceptJokers() throws RemoteException {
+		for (final Player p : players)
+			act(new JokerDistributionAccepted(p, mirror.getHash()));
+	}
+
+	/**
+	 * Private utility method to place a stone if it is the turn of one of this client's players.
+	 * 
+	 * @throws RemoteException
+	 *             If something remotely goes wrong.
+	 */
+	private void move() throws RemoteException {
+		final int[] phase = server.getPhase(this);
+		if (phase[0] != 1 || phase[1] != 1)
+			return;
+		Player mover = null;
+		for (final Player p : players)
+			if (p.getID() == phase[2])
+				mover = p;
+		if (mover == null)
+			return;
+		if (!knownPlayers.contains(mover))
+			knownPlayers.add(mover);
+
+		final Position position = Position.of(mirror.getBoard(), knownPlayers);
+
+		// the players who still play, starting with the mover
+		final List<Player> order = new ArrayList<>(turnOrder);
+		for (final Player p : knownPlayers)
+			if (!order.contains(p))
+				order.add(p);
+		order.removeAll(forfeited);
+		final int[] indices = new int[order.size()];
+		final int start = order.indexOf(mover);
+		for (int i = 0; i < indices.length; i++)
+			indices[i] = knownPlayers.indexOf(order.get((start + i) % indices.length)) + 1;
+
+		if (search == null)
+			search = new ParallelSearch(new TranspositionTable(tableSizeBits), searchThreads);
+		final int field = search.findMove(position, indices, thinkingTime * 1000000);
+		if (field < 0)
+			return;
+		awaitedStones++;
+		if (!act(new PlaceStone(mover, position.x(field), position.y(field))))
+			awaitedStones--;
+	}
+
+	/**
+	 * Private utility method to perform an action. Actions that the server rejects are ignored: the client may have
+	 * fallen behind, and the events that it has yet to handle will tell it what happened.
+	 * 
+	 * @param action
+	 *            The action.
+	 * @return <code>true</code> if the server accepted the action, <code>false</code> otherwise.
+	 * @throws RemoteException
+	 *             If something remotely goes wrong.
+	 */
+	private boolean act(final PlayerAction action) throws RemoteException {
+		try {
+			server.action(this, action);
+			return true;
+		} catch (final IllegalStateException | IllegalMoveException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Private utility method to determine if a player is one of this client's players.
+	 * 
+	 * @param p
+	 *            The player.
+	 * @return <code>true</code> if the player is one of this client's players, <code>false</code> otherwise.
+	 */
+	private boolean isOwn(final Player p) {
+		for (final Player own : players)
+			if (own.equals(p))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Private utility method to compare board sizes: the size with fewer fields is smaller, and of two sizes with the
+	 * same number of fields, the narrower one.
+	 * 
+	 * @param a
+	 *            A size.
+	 * @param b
+	 *            Another size.
+	 * @return <code>true</code> if <code>a</code> is smaller than <code>b</code>, <code>false</code> otherwise.
+	 */
+	private static boolean isSmaller(final Dimension a, final Dimension b) {
+		final long fieldsA = (long) a.width * a.height;
+		final long fieldsB = (long) b.width * b.height;
+		return fieldsA < fieldsB || fieldsA == fieldsB && a.width < b.width;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,200 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.clients.ai;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.servers.BitBoard;
+
+/**
+ * A parallel search using <i>lazy SMP</i>: several {@link Search}es search copies of the same position at once, sharing
+ * one {@link TranspositionTable}. The threads don't coordinate at all; each profits from the results that the others
+ * stored in the table, and half of the helpers start one iteration deeper, so that they run ahead of the main search
+ * and fill the table for it. The main search, on the calling thread, determines the result; once it is done, the
+ * helpers are stopped.
+ * <p>
+ * The {@link #main(String[]) main} method measures the nodes per second and the speedup for different thread counts.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+final class ParallelSearch {
+	private final Search[] searches;
+	private final ExecutorService helpers;
+
+	/**
+	 * Creates a new {@link ParallelSearch} with the specified number of threads, including the calling thread.
+	 * 
+	 * @param table
+	 *            The transposition table that all threads share.
+	 * @param threads
+	 *            The number of threads.
+	 */
+	ParallelSearch(final TranspositionTable table, final int threads) {
+		searches = new Search[threads];
+		for (int i = 0; i < threads; i++)
+			searches[i] = new Search(table);
+		helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread t = new Thread(r, "Search helper " + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Searches for the best field to place a stone on.
+	 * 
+	 * @param position
+	 *            The position. It is changed during the search, but the same again when the search returns.
+	 * @param order
+	 *            The players in the order in which they move, starting with the player to move now.
+	 * @param timeBudget
+	 *            The time that the search may take, in nanoseconds. The first iteration is always completed.
+	 * @return The field, or <code>-1</code> if there is no empty field left.
+	 */
+	int findMove(final Position position, final int[] order, final long timeBudget) {
+		return findMove(position, order, timeBudget, Search.MAX_DEPTH);
+	}
+
+	/**
+	 * Searches for the best field to place a stone on, at most to the specified depth.
+	 * 
+	 * @param position
+	 *            The position. It is changed during the search, but the same again when the search returns.
+	 * @param order
+	 *            The players in the order in which they move, starting with the player to move now.
+	 * @param timeBudget
+	 *            The time that the search may take, in nanoseconds. The first iteration is always completed.
+	 * @param maxDepth
+	 *            The maximum depth.
+	 * @return The field, or <code>-1</code> if there is no empty field left.
+	 */
+	int findMove(final Position position, final int[] order, final long timeBudget, final int maxDepth) {
+		final long deadline = System.nanoTime() + timeBudget;
+		final AtomicBoolean stop = new AtomicBoolean();
+		final Future<?>[] running = new Future<?>[searches.length];
+		for (int i = 1; i < searches.length; i++) {
+			final Search helper = searches[i];
+			final Position copy = new Position(position);
+			final int firstDepth = 1 + i % 2;
+			running[i] = helpers.submit(new Runnable() {
+				@Override
+				public void run() {
+					helper.search(copy, order, deadline, firstDepth, maxDepth, stop);
+				}
+			});
+		}
+		final int move = searches[0].search(position, order, deadline, 1, maxDepth, stop);
+		stop.set(true);
+		for (int i = 1; i < searches.length; i++)
+			try {
+				running[i].get();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (final ExecutionException e) {
+				e.printStackTrace();
+			}
+		return move;
+	}
+
+	/**
+	 * Gets the number of positions visited by all threads during the last search.
+	 * 
+	 * @return The number of nodes.
+	 */
+	long getNodeCount() {
+		long nodes = 0;
+		for (final Search search : searches)
+			nodes += search.getNodeCount();
+		return nodes;
+	}
+
+	/**
+	 * Gets the depth of the last iteration that the main search completed during the last search.
+	 * 
+	 * @return The depth.
+	 */
+	int getCompletedDepth() {
+		return searches[0].getCompletedDepth();
+	}
+
+	/**
+	 * Stops the helper threads. The search can't be used afterwards.
+	 */
+	void shutdown() {
+		if (helpers != null)
+			helpers.shutdown();
+	}
+
+	/**
+	 * Measures the parallel search on a position from the middle of a game on a 15&times;15 board. The first run, with
+	 * one thread, determines how deep the search gets within the time budget; every thread count then searches to that
+	 * depth, and the nodes per second and the speedup of the time to depth are printed.
+	 * 
+	 * @param args
+	 *            Optionally, the time budget in milliseconds (default 2000) and the maximum number of threads (default:
+	 *            the number of available processors).
+	 */
+	public static void main(final String[] args) {
+		final long budget = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+		final int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime()
+				.availableProcessors();
+		final Player[] players = new Player[] {new Player("Player 1", Color.blue, 1),
+				new Player("Player 2", Color.cyan, 2) };
+		final Board board = new BitBoard(15, 15);
+		final int[][] opening = new int[][] { {7, 7 }, {7, 8 }, {8, 8 }, {6, 6 }, {8, 6 }, {8, 7 }, {6, 8 }, {9, 5 } };
+		for (int i = 0; i < opening.length; i++)
+			board.setPlayerAt(opening[i][0], opening[i][1], players[i % 2]);
+		final int[] order = new int[] {1, 2 };
+
+		final ParallelSearch probe = new ParallelSearch(new TranspositionTable(22), 1);
+		probe.findMove(Position.of(board, Arrays.asList(players)), order, budget * 1000000);
+		final int depth = probe.getCompletedDepth();
+		long baseTime = 0;
+		System.out.println("Depth " + depth + " within " + budget + " ms");
+		System.out.println("threads\tnodes\tnodes/s\ttime (ms)\tspeedup");
+		for (int threads = 1;; threads = Math.min(2 * threads, maxThreads)) {
+			final ParallelSearch search = new ParallelSearch(new TranspositionTable(22), threads);
+			final long start = System.nanoTime();
+			search.findMove(Position.of(board, Arrays.asList(players)), order, Long.MAX_VALUE / 2, depth);
+			final long time = System.nanoTime() - start;
+			if (baseTime == 0)
+				baseTime = time;
+			System.out.printf("%d\t%d\t%.0f\t%d\t%.2f%n", threads, search.getNodeCount(), search.getNodeCount() * 1e9
+					/ time, time / 1000000, (double) baseTime / time);
+			search.shutdown();
+			if (threads >= maxThreads)
+				break;
+		}
+	}
+}
\ No newline at end of file
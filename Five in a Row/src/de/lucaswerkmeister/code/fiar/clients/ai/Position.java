@@ -0,0 +1,517 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.clients.ai;
+
+import java.util.List;
+import java.util.Random;
+
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Joker;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+
+/**
+ * The position that the {@link Search} works on: a board whose fields can be occupied and cleared again cheaply, with
+ * an evaluation and a Zobrist hash that are updated along the way.
+ * <p>
+ * The evaluation looks at every <i>window</i>, a row of {@link Server#IN_A_ROW} fields in any of the four directions.
+ * A window that contains no block and stones of only one player is worth {@link #WEIGHT weight} <code>n</code> to that
+ * player, where <code>n</code> counts the player's stones and the joker fields in the window; once <code>n</code>
+ * reaches {@link Server#IN_A_ROW}, the player has won. Each field lies in at most <code>4 &times; IN_A_ROW</code>
+ * windows, so occupying a field only updates those.
+ * <p>
+ * Players are numbered from <code>1</code> to the player count; fields hold a player number, {@link #EMPTY},
+ * {@link #BLOCK} or {@link #JOKER}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+final class Position {
+	/**
+	 * An empty field.
+	 */
+	static final byte EMPTY = 0;
+	/**
+	 * A blocked field, which counts for nobody.
+	 */
+	static final byte BLOCK = -1;
+	/**
+	 * A joker field, which counts for everybody.
+	 */
+	static final byte JOKER = -2;
+	/**
+	 * The value of a window to a player, by the number of fields in it that count for the player.
+	 */
+	static final int[] WEIGHT;
+	private static final int[] DX = new int[] {1, 0, 1, 1 };
+	private static final int[] DY = new int[] {0, 1, 1, -1 };
+	private static final int NEAR = 2; // fields within this distance of a stone are candidates
+	private final int width;
+	private final int height;
+	private final int playerCount;
+	private final byte[] fields;
+	private final int[][] windowsOf; // windowsOf[field] lists the windows that contain the field
+	private final byte[] windowBlocks;
+	private final byte[] windowJokers;
+	private final byte[] windowStones;
+	private final byte[][] windowCounts; // windowCounts[p][window] counts the stones of player p + 1
+	private final int[] scores; // scores[p] sums the values of all windows to player p + 1
+	private final int[] near; // near[field] counts the stones and jokers within NEAR of the field
+	private final long[][] keys; // keys[p][field] for player p, keys[0] for blocks, keys[playerCount + 1] for jokers
+	private final long[] moverKeys;
+	private int emptyFields;
+	private long hash;
+
+	static {
+		WEIGHT = new int[Server.IN_A_ROW + 1];
+		for (int n = 1; n < Server.IN_A_ROW; n++)
+			WEIGHT[n] = 1 << 3 * (n - 1);
+		WEIGHT[Server.IN_A_ROW] = 1 << 24;
+	}
+
+	/**
+	 * Creates a new, empty {@link Position}.
+	 * 
+	 * @param width
+	 *            The width of the board.
+	 * @param height
+	 *            The height of the board.
+	 * @param playerCount
+	 *            The number of players.
+	 */
+	Position(final int width, final int height, final int playerCount) {
+		this.width = width;
+		this.height = height;
+		this.playerCount = playerCount;
+		final int size = width * height;
+		fields = new byte[size];
+		near = new int[size];
+		emptyFields = size;
+
+		// count the windows first, then list the windows of each field
+		final int[] windowCount = new int[size];
+		int windows = 0;
+		for (int d = 0; d < 4; d++)
+			for (int x = 0; x < width; x++)
+				for (int y = 0; y < height; y++)
+					if (onBoard(x + (Server.IN_A_ROW - 1) * DX[d], y + (Server.IN_A_ROW - 1) * DY[d])) {
+						for (int i = 0; i < Server.IN_A_ROW; i++)
+							windowCount[field(x + i * DX[d], y + i * DY[d])]++;
+						windows++;
+					}
+		windowsOf = new int[size][];
+		for (int f = 0; f < size; f++)
+			windowsOf[f] = new int[windowCount[f]];
+		final int[] filled = new int[size];
+		int window = 0;
+		for (int d = 0; d < 4; d++)
+			for (int x = 0; x < width; x++)
+				for (int y = 0; y < height; y++)
+					if (onBoard(x + (Server.IN_A_ROW - 1) * DX[d], y + (Server.IN_A_ROW - 1) * DY[d])) {
+						for (int i = 0; i < Server.IN_A_ROW; i++) {
+							final int f = field(x + i * DX[d], y + i * DY[d]);
+							windowsOf[f][filled[f]++] = window;
+						}
+						window++;
+					}
+		windowBlocks = new byte[windows];
+		windowJokers = new byte[windows];
+		windowStones = new byte[windows];
+		windowCounts = new byte[playerCount][windows];
+		scores = new int[playerCount];
+
+		// a fixed seed, so that searches are reproducible
+		final Random random = new Random(0x5EED);
+		keys = new long[playerCount + 2][size];
+		for (final long[] k : keys)
+			for (int f = 0; f < size; f++)
+				k[f] = random.nextLong();
+		moverKeys = new long[playerCount + 1];
+		for (int p = 1; p <= playerCount; p++)
+			moverKeys[p] = random.nextLong();
+	}
+
+	/**
+	 * Creates a copy of the specified {@link Position}, which can be searched independently of the original.
+	 * 
+	 * @param original
+	 *            The position to copy.
+	 */
+	Position(final Position original) {
+		width = original.width;
+		height = original.height;
+		playerCount = original.playerCount;
+		fields = original.fields.clone();
+		windowsOf = original.windowsOf; // never changed
+		windowBlocks = original.windowBlocks.clone();
+		windowJokers = original.windowJokers.clone();
+		windowStones = original.windowStones.clone();
+		windowCounts = new byte[playerCount][];
+		for (int p = 0; p < playerCount; p++)
+			windowCounts[p] = original.windowCounts[p].clone();
+		scores = original.scores.clone();
+		near = original.near.clone();
+		keys = original.keys; // never changed
+		moverKeys = original.moverKeys;
+		emptyFields = original.emptyFields;
+		hash = original.hash;
+	}
+
+	/**
+	 * Creates a {@link Position} with the fields of the specified board.
+	 * 
+	 * @param board
+	 *            The board.
+	 * @param players
+	 *            The players; the stones of <code>players.get(i)</code> belong to player <code>i + 1</code>. Stones of
+	 *            other players are ignored.
+	 * @return The position.
+	 */
+	static Position of(final Board board, final List<Player> players) {
+		final Position position = new Position(board.getWidth(), board.getHeight(), players.size());
+		// blocks and jokers first, as setSpecial requires
+		for (int x = 0; x < board.getWidth(); x++)
+			for (int y = 0; y < board.getHeight(); y++) {
+				final Player p = board.getPlayerAt(x, y);
+				if (p.equals(Block.getInstance()))
+					position.setSpecial(position.field(x, y), BLOCK);
+				else if (p.equals(Joker.getInstance()))
+					position.setSpecial(position.field(x, y), JOKER);
+			}
+		for (int x = 0; x < board.getWidth(); x++)
+			for (int y = 0; y < board.getHeight(); y++) {
+				final int index = players.indexOf(board.getPlayerAt(x, y));
+				if (index >= 0)
+					position.play(position.field(x, y), index + 1);
+			}
+		return position;
+	}
+
+	/**
+	 * Blocks a field or makes it a joker field. This may only be done before any stones are placed.
+	 * 
+	 * @param field
+	 *            The field.
+	 * @param occupant
+	 *            {@link #BLOCK} or {@link #JOKER}.
+	 */
+	void setSpecial(final int field, final byte occupant) {
+		fields[field] = occupant;
+		emptyFields--;
+		if (occupant == BLOCK)
+			hash ^= keys[0][field];
+		else {
+			hash ^= keys[playerCount + 1][field];
+			addNear(field, 1);
+		}
+		for (final int w : windowsOf[field]) {
+			if (windowBlocks[w] == 0)
+				for (int p = 0; p < playerCount; p++)
+					scores[p] -= value(p, w);
+			if (occupant == BLOCK)
+				windowBlocks[w]++;
+			else
+				windowJokers[w]++;
+			if (windowBlocks[w] == 0)
+				for (int p = 0; p < playerCount; p++)
+					scores[p] += value(p, w);
+		}
+	}
+
+	/**
+	 * Places a stone.
+	 * 
+	 * @param field
+	 *            The field, which must be empty.
+	 * @param player
+	 *            The player.
+	 * @return <code>true</code> if the stone wins the game for the player, <code>false</code> otherwise.
+	 */
+	boolean play(final int field, final int player) {
+		fields[field] = (byte) player;
+		emptyFields--;
+		hash ^= keys[player][field];
+		addNear(field, 1);
+		final byte[] counts = windowCounts[player - 1];
+		boolean won = false;
+		for (final int w : windowsOf[field]) {
+			if (windowBlocks[w] != 0)
+				continue;
+			for (int p = 0; p < playerCount; p++)
+				scores[p] -= value(p, w);
+			counts[w]++;
+			windowStones[w]++;
+			for (int p = 0; p < playerCount; p++)
+				scores[p] += value(p, w);
+			if (windowStones[w] == counts[w] && counts[w] + windowJokers[w] == Server.IN_A_ROW)
+				won = true;
+		}
+		return won;
+	}
+
+	/**
+	 * Removes a stone that was placed with {@link #play(int, int)}.
+	 * 
+	 * @param field
+	 *            The field.
+	 * @param player
+	 *            The player whose stone it is.
+	 */
+	void unplay(final int field, final int player) {
+		fields[field] = EMPTY;
+		emptyFields++;
+		hash ^= keys[player][field];
+		addNear(field, -1);
+		final byte[] counts = windowCounts[player - 1];
+		for (final int w : windowsOf[field]) {
+			if (windowBlocks[w] != 0)
+				continue;
+			for (int p = 0; p < playerCount; p++)
+				scores[p] -= value(p, w);
+			counts[w]--;
+			windowStones[w]--;
+			for (int p = 0; p < playerCount; p++)
+				scores[p] += value(p, w);
+		}
+	}
+
+	/**
+	 * Evaluates the position for the specified player, whom all other players are assumed to play against.
+	 * 
+	 * @param player
+	 *            The player.
+	 * @return The player's score minus the scores of all other players.
+	 */
+	int evaluate(final int player) {
+		int value = 0;
+		for (int p = 0; p < playerCount; p++)
+			value += p == player - 1 ? scores[p] : -scores[p];
+		return value;
+	}
+
+	/**
+	 * Lists the fields worth considering for the next stone: the empty fields near existing stones and jokers, ordered
+	 * by how much a stone there would gain for the player or take from the other players. If there are no stones yet,
+	 * the empty field closest to the center is the only candidate.
+	 * 
+	 * @param player
+	 *            The player to place the stone.
+	 * @param moves
+	 *            The array to store the fields in. Must be large enough for all fields of the board.
+	 * @param values
+	 *            An array for the values of the fields, of the same length.
+	 * @param limit
+	 *            The maximum number of candidates.
+	 * @return The number of candidates.
+	 */
+	int candidates(final int player, final int[] moves, final int[] values, final int limit) {
+		int count = 0;
+		for (int f = 0; f < fields.length; f++) {
+			if (fields[f] != EMPTY || near[f] == 0)
+				continue;
+			final int value = heuristic(f, player);
+			// insertion sort, best first; only the best <limit> are kept
+			int i = Math.min(count, limit - 1);
+			if (count == limit && values[i] >= value)
+				continue;
+			while (i > 0 && values[i - 1] < value) {
+				moves[i] = moves[i - 1];
+				values[i] = values[i - 1];
+				i--;
+			}
+			moves[i] = f;
+			values[i] = value;
+			if (count < limit)
+				count++;
+		}
+		if (count == 0 && emptyFields > 0) {
+			int best = -1;
+			int bestDistance = Integer.MAX_VALUE;
+			for (int f = 0; f < fields.length; f++) {
+				final int dx = 2 * (f % width) - (width - 1);
+				final int dy = 2 * (f / width) - (height - 1);
+				if (fields[f] == EMPTY && dx * dx + dy * dy < bestDistance) {
+					best = f;
+					bestDistance = dx * dx + dy * dy;
+				}
+			}
+			moves[0] = best;
+			values[0] = 0;
+			count = 1;
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the Zobrist hash of the position, which also depends on the player to move next.
+	 * 
+	 * @param mover
+	 *            The player to move next.
+	 * @return The hash.
+	 */
+	long hash(final int mover) {
+		return hash ^ moverKeys[mover];
+	}
+
+	/**
+	 * Gets the occupant of a field.
+	 * 
+	 * @param field
+	 *            The field.
+	 * @return The occupant.
+	 */
+	byte get(final int field) {
+		return fields[field];
+	}
+
+	/**
+	 * Gets the number of empty fields.
+	 * 
+	 * @return The number of empty fields.
+	 */
+	int getEmptyFieldCount() {
+		return emptyFields;
+	}
+
+	/**
+	 * Gets the number of fields.
+	 * 
+	 * @return The number of fields.
+	 */
+	int getFieldCount() {
+		return fields.length;
+	}
+
+	/**
+	 * Gets the number of players.
+	 * 
+	 * @return The number of players.
+	 */
+	int getPlayerCount() {
+		return playerCount;
+	}
+
+	/**
+	 * Gets the index of the field at (x,y).
+	 * 
+	 * @param x
+	 *            The x coordinate.
+	 * @param y
+	 *            The y coordinate.
+	 * @return The field index.
+	 */
+	int field(final int x, final int y) {
+		return y * width + x;
+	}
+
+	/**
+	 * Gets the x coordinate of a field.
+	 * 
+	 * @param field
+	 *            The field index.
+	 * @return The x coordinate.
+	 */
+	int x(final int field) {
+		return field % width;
+	}
+
+	/**
+	 * Gets the y coordinate of a field.
+	 * 
+	 * @param field
+	 *            The field index.
+	 * @return The y coordinate.
+	 */
+	int y(final int field) {
+		return field / width;
+	}
+
+	/**
+	 * Private utility method to rate a stone of the player on the specified field for move ordering: every window that
+	 * the stone would extend counts, as well as every window of a single other player that it would spoil.
+	 * 
+	 * @param field
+	 *            The field.
+	 * @param player
+	 *            The player.
+	 * @return The rating.
+	 */
+	private int heuristic(final int field, final int player) {
+		final byte[] counts = windowCounts[player - 1];
+		int value = 0;
+		for (final int w : windowsOf[field]) {
+			if (windowBlocks[w] != 0)
+				continue;
+			final int stones = windowStones[w];
+			if (stones == counts[w])
+				value += WEIGHT[stones + windowJokers[w] + 1];
+			else
+				for (int p = 0; p < playerCount; p++)
+					if (windowCounts[p][w] == stones) {
+						// one other player owns the window; blocking it is worth a bit less than extending own rows
+						value += WEIGHT[stones + windowJokers[w] + 1] - 1;
+						break;
+					}
+		}
+		return value;
+	}
+
+	/**
+	 * Private utility method to get the value of a window to a player.
+	 * 
+	 * @param p
+	 *            The player, counted from zero.
+	 * @param w
+	 *            The window.
+	 * @return The value.
+	 */
+	private int value(final int p, final int w) {
+		final int own = windowCounts[p][w];
+		return windowStones[w] == own ? WEIGHT[own + windowJokers[w]] : 0;
+	}
+
+	/**
+	 * Private utility method to update the counts of stones near the fields around a field.
+	 * 
+	 * @param field
+	 *            The field.
+	 * @param delta
+	 *            <code>1</code> if the field was occupied, <code>-1</code> if it was cleared.
+	 */
+	private void addNear(final int field, final int delta) {
+		final int fx = x(field);
+		final int fy = y(field);
+		for (int x = Math.max(0, fx - NEAR); x <= Math.min(width - 1, fx + NEAR); x++)
+			for (int y = Math.max(0, fy - NEAR); y <= Math.min(height - 1, fy + NEAR); y++)
+				near[field(x, y)] += delta;
+	}
+
+	/**
+	 * Private utility method to determine if a field lies on the board.
+	 * 
+	 * @param x
+	 *            The x coordinate.
+	 * @param y
+	 *            The y coordinate.
+	 * @return <code>true</code> if the field lies on the board, <code>false</code> otherwise.
+	 */
+	private boolean onBoard(final int x, final int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,281 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.clients.ai;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An iterative-deepening alpha-beta search for the best field to place a stone on.
+ * <p>
+ * With more than two players, the search is <i>paranoid</i>: all other players are assumed to play together against
+ * the player whose move is searched. Only the most promising {@link #MAX_CANDIDATES candidates} of each position are
+ * searched, except at the root; results are kept in a {@link TranspositionTable} and also order the moves of the next,
+ * deeper iteration.
+ * <p>
+ * A search uses one thread; several searches can share one table to search a position in parallel, see
+ * {@link ParallelSearch}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+final class Search {
+	/**
+	 * The score of a won position, minus the number of moves it takes to win.
+	 */
+	static final int WIN = 1000000000;
+	/**
+	 * The maximum number of moves searched in each position below the root.
+	 */
+	static final int MAX_CANDIDATES = 16;
+	/**
+	 * The maximum search depth.
+	 */
+	static final int MAX_DEPTH = 64;
+	private static final int WIN_BOUND = WIN - 1000000; // scores beyond this are wins or losses
+	private final TranspositionTable table;
+	private final int[][] moves;
+	private final int[][] values;
+	private Position position;
+	private int[] order;
+	private long salt;
+	private long deadline;
+	private AtomicBoolean stop;
+	private long nodes;
+	private int completedDepth;
+	private boolean aborted;
+	private int rootMove;
+
+	/**
+	 * Creates a new {@link Search} that uses the specified table.
+	 * 
+	 * @param table
+	 *            The transposition table.
+	 */
+	Search(final TranspositionTable table) {
+		this.table = table;
+		moves = new int[MAX_DEPTH][];
+		values = new int[MAX_DEPTH][];
+	}
+
+	/**
+	 * Searches for the best field to place a stone on.
+	 * 
+	 * @param position
+	 *            The position. It is changed during the search, but the same again when the search returns.
+	 * @param order
+	 *            The players in the order in which they move, starting with the player to move now.
+	 * @param timeBudget
+	 *            The time that the search may take, in nanoseconds. The first iteration is always completed.
+	 * @return The field, or <code>-1</code> if there is no empty field left.
+	 */
+	int findMove(final Position position, final int[] order, final long timeBudget) {
+		return search(position, order, System.nanoTime() + timeBudget, 1, MAX_DEPTH, new AtomicBoolean());
+	}
+
+	/**
+	 * Searches for the best field to place a stone on, deepening from <code>firstDepth</code> up to
+	 * <code>maxDepth</code> until the deadline passes or the search is stopped.
+	 * 
+	 * @param position
+	 *            The position. It is changed during the search, but the same again when the search returns.
+	 * @param order
+	 *            The players in the order in which they move, starting with the player to move now.
+	 * @param deadline
+	 *            The {@link System#nanoTime()} after which the search ends. The first iteration is always completed.
+	 * @param firstDepth
+	 *            The depth of the first iteration.
+	 * @param maxDepth
+	 *            The depth of the last iteration.
+	 * @param stop
+	 *            A flag that ends the search once it is set, unless the first iteration is not yet completed.
+	 * @return The field, or <code>-1</code> if there is no empty field left.
+	 */
+	int search(final Position position, final int[] order, final long deadline, final int firstDepth,
+			final int maxDepth, final AtomicBoolean stop) {
+		this.position = position;
+		this.order = order;
+		this.deadline = deadline;
+		this.stop = stop;
+		nodes = 0;
+		completedDepth = 0;
+		aborted = false;
+		salt = 0;
+		for (final int p : order)
+			salt = salt * 0x9E3779B97F4A7C15L + p;
+		int best = -1;
+		final int lastDepth = Math.min(Math.min(maxDepth, MAX_DEPTH), position.getEmptyFieldCount());
+		for (int depth = Math.min(firstDepth, lastDepth); depth <= lastDepth; depth++) {
+			final int score = alphaBeta(depth, 0, -WIN - 1, WIN + 1);
+			if (aborted)
+				break;
+			best = rootMove;
+			completedDepth = depth;
+			if (Math.abs(score) >= WIN_BOUND || System.nanoTime() > deadline || stop.get())
+				break;
+		}
+		return best;
+	}
+
+	/**
+	 * Gets the number of positions visited by the last search.
+	 * 
+	 * @return The number of nodes.
+	 */
+	long getNodeCount() {
+		return nodes;
+	}
+
+	/**
+	 * Gets the depth of the last completed iteration of the last search.
+	 * 
+	 * @return The depth.
+	 */
+	int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	/**
+	 * Private utility method that searches a position.
+	 * 
+	 * @param depth
+	 *            The remaining depth.
+	 * @param ply
+	 *            The distance from the root.
+	 * @param alpha
+	 *            The score that the searching player is already guaranteed.
+	 * @param beta
+	 *            The score that the other players are already guaranteed.
+	 * @return The score of the position for the searching player.
+	 */
+	private int alphaBeta(final int depth, final int ply, int alpha, int beta) {
+		if ((++nodes & 1023) == 0 && completedDepth > 0 && (System.nanoTime() > deadline || stop.get())) {
+			aborted = true;
+			return 0;
+		}
+		final int root = order[0];
+		if (depth == 0)
+			return position.evaluate(root);
+		final int mover = order[ply % order.length];
+		final boolean maximizing = mover == root;
+		final long hash = position.hash(mover) ^ salt;
+		final long entry = table.probe(hash);
+		int tableMove = -1;
+		if (entry != 0) {
+			tableMove = TranspositionTable.move(entry);
+			if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+				final int score = fromTable(TranspositionTable.score(entry), ply);
+				final int bound = TranspositionTable.bound(entry);
+				if (bound == TranspositionTable.EXACT || bound == TranspositionTable.LOWER && score >= beta
+						|| bound == TranspositionTable.UPPER && score <= alpha)
+					return score;
+			}
+		}
+
+		if (moves[ply] == null) {
+			moves[ply] = new int[position.getFieldCount() + 1];
+			values[ply] = new int[position.getFieldCount() + 1];
+		}
+		final int[] candidates = moves[ply];
+		int count = position.candidates(mover, candidates, values[ply], ply == 0 ? position.getFieldCount()
+				: MAX_CANDIDATES);
+		if (count == 0)
+			return 0; // the board is full
+		if (tableMove >= 0 && tableMove < position.getFieldCount() && position.get(tableMove) == Position.EMPTY) {
+			// search the table's move first
+			int i = 0;
+			while (i < count && candidates[i] != tableMove)
+				i++;
+			if (i == count)
+				count++;
+			System.arraycopy(candidates, 0, candidates, 1, i);
+			candidates[0] = tableMove;
+		}
+
+		final int alphaBefore = alpha;
+		final int betaBefore = beta;
+		int best = maximizing ? -WIN - 1 : WIN + 1;
+		int bestMove = -1;
+		for (int i = 0; i < count; i++) {
+			final int move = candidates[i];
+			final int score;
+			if (position.play(move, mover))
+				score = maximizing ? WIN - ply : ply - WIN;
+			else
+				score = alphaBeta(depth - 1, ply + 1, alpha, beta);
+			position.unplay(move, mover);
+			if (aborted)
+				return 0;
+			if (maximizing ? score > best : score < best) {
+				best = score;
+				bestMove = move;
+			}
+			if (maximizing)
+				alpha = Math.max(alpha, score);
+			else
+				beta = Math.min(beta, score);
+			if (alpha >= beta)
+				break;
+		}
+
+		final int bound;
+		if (best <= alphaBefore)
+			bound = TranspositionTable.UPPER;
+		else if (best >= betaBefore)
+			bound = TranspositionTable.LOWER;
+		else
+			bound = TranspositionTable.EXACT;
+		table.store(hash, bestMove, depth, bound, toTable(best, ply));
+		if (ply == 0)
+			rootMove = bestMove;
+		return best;
+	}
+
+	/**
+	 * Private utility method to make a win or loss score relative to the position it is stored for.
+	 * 
+	 * @param score
+	 *            The score, relative to the root.
+	 * @param ply
+	 *            The distance of the position from the root.
+	 * @return The score to store.
+	 */
+	private static int toTable(final int score, final int ply) {
+		if (score >= WIN_BOUND)
+			return score + ply;
+		if (score <= -WIN_BOUND)
+			return score - ply;
+		return score;
+	}
+
+	/**
+	 * Private utility method to undo {@link #toTable(int, int)}.
+	 * 
+	 * @param score
+	 *            The stored score.
+	 * @param ply
+	 *            The distance of the position from the root.
+	 * @return The score relative to the root.
+	 */
+	private static int fromTable(final int score, final int ply) {
+		if (score >= WIN_BOUND)
+			return score - ply;
+		if (score <= -WIN_BOUND)
+			return score + ply;
+		return score;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,157 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.clients.ai;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A hash table of search results, indexed by the Zobrist hash of the position they were found for.
+ * <p>
+ * Each entry packs the result into one <code>long</code>: the score in the low 32 bits, then the best move plus one
+ * (22 bits), the search depth (8 bits) and the kind of bound (2 bits). The table stores the hash XORed with the entry,
+ * so that an entry is only found again with the hash it was stored with. A colliding entry simply replaces the old one.
+ * <p>
+ * The table is shared by all threads of a {@link ParallelSearch} without any locking. Hash and entry are two separate
+ * writes, so a thread may read the hash of one store and the entry of another; the XOR check then fails, and the
+ * torn entry is treated like a missing one.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+final class TranspositionTable {
+	/**
+	 * The score is exact.
+	 */
+	static final int EXACT = 1;
+	/**
+	 * The score is a lower bound: the search was cut off because a move was too good.
+	 */
+	static final int LOWER = 2;
+	/**
+	 * The score is an upper bound: no move reached alpha.
+	 */
+	static final int UPPER = 3;
+	/**
+	 * The maximum number of fields of boards whose moves can be stored.
+	 */
+	static final int MAX_FIELDS = (1 << 22) - 1;
+	private final AtomicLongArray keys;
+	private final AtomicLongArray entries;
+	private final int mask;
+
+	/**
+	 * Creates a new, empty {@link TranspositionTable} with <code>2<sup>sizeBits</sup></code> entries.
+	 * 
+	 * @param sizeBits
+	 *            The binary logarithm of the number of entries.
+	 */
+	TranspositionTable(final int sizeBits) {
+		keys = new AtomicLongArray(1 << sizeBits);
+		entries = new AtomicLongArray(1 << sizeBits);
+		mask = (1 << sizeBits) - 1;
+	}
+
+	/**
+	 * Looks up the entry for a position.
+	 * 
+	 * @param hash
+	 *            The hash of the position.
+	 * @return The entry, or <code>0</code> if there is none.
+	 */
+	long probe(final long hash) {
+		final int index = (int) hash & mask;
+		final long entry = entries.get(index);
+		return (keys.get(index) ^ entry) == hash ? entry : 0;
+	}
+
+	/**
+	 * Stores a search result.
+	 * 
+	 * @param hash
+	 *            The hash of the position.
+	 * @param move
+	 *            The best move, or <code>-1</code> if there is none.
+	 * @param depth
+	 *            The depth that the position was searched to.
+	 * @param bound
+	 *            {@link #EXACT}, {@link #LOWER} or {@link #UPPER}.
+	 * @param score
+	 *            The score.
+	 */
+	void store(final long hash, final int move, final int depth, final int bound, final int score) {
+		final int index = (int) hash & mask;
+		final long entry = (long) bound << 62 | (long) Math.min(depth, 255) << 54 | (long) (move + 1) << 32
+				| score & 0xFFFFFFFFL;
+		keys.lazySet(index, hash ^ entry);
+		entries.lazySet(index, entry);
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	void clear() {
+		for (int i = 0; i < keys.length(); i++) {
+			keys.set(i, 0);
+			entries.set(i, 0);
+		}
+	}
+
+	/**
+	 * Gets the best move of an entry.
+	 * 
+	 * @param entry
+	 *            The entry.
+	 * @return The move, or <code>-1</code> if there is none.
+	 */
+	static int move(final long entry) {
+		return (int) (entry >>> 32 & MAX_FIELDS) - 1;
+	}
+
+	/**
+	 * Gets the depth of an entry.
+	 * 
+	 * @param entry
+	 *            The entry.
+	 * @return The depth.
+	 */
+	static int depth(final long entry) {
+		return (int) (entry >>> 54 & 0xFF);
+	}
+
+	/**
+	 * Gets the kind of bound of an entry.
+	 * 
+	 * @param entry
+	 *            The entry.
+	 * @return {@link #EXACT}, {@link #LOWER} or {@link #UPPER}.
+	 */
+	static int bound(final long entry) {
+		return (int) (entry >>> 62);
+	}
+
+	/**
+	 * Gets the score of an entry.
+	 * 
+	 * @param entry
+	 *            The entry.
+	 * @return The score.
+	 */
+	static int score(final long entry) {
+		return (int) entry;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,434 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.clients.swingClients;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseEvent;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.JComponent;
+import javax.swing.ToolTipManager;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Joker;
+import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+
+/**
+ * Displays a board in one component.
+ * <p>
+ * The canvas paints the fields straight from a {@link Board}, and only those fields that intersect the area that
+ * needs painting; changing a field only repaints that field. Mouse positions are mapped to fields by dividing by the
+ * field size. A board of any size thus costs one component, instead of one {@link Field} component per field.
+ * <p>
+ * The canvas is a window onto the board: it shows the fields from its {@link #setOrigin(int, int) origin} on, at a
+ * {@link #setFieldSize(int) field size} that can be zoomed, and never looks at fields outside the window. Painting and
+ * memory thus only depend on the size of the canvas, not on the size of the board, which may even be
+ * {@link de.lucaswerkmeister.code.fiar.servers.SparseBoard#UNBOUNDED unbounded}. Fields smaller than
+ * {@link #DETAIL_FIELD_SIZE} are painted without borders, and empty fields are not painted at all then. A
+ * {@link BoardViewport} adds scroll bars and mouse wheel zooming to the canvas.
+ * <p>
+ * Like the grid of {@link Field}s that the canvas replaces, it shows the x coordinate downwards and the y coordinate to
+ * the right.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+public class BoardCanvas extends JComponent {
+	private static final long serialVersionUID = 3365402513217062170L;
+	/**
+	 * The smallest field size in pixels.
+	 */
+	public static final int MIN_FIELD_SIZE = 1;
+	/**
+	 * The largest field size in pixels.
+	 */
+	public static final int MAX_FIELD_SIZE = 64;
+	/**
+	 * The smallest field size in pixels at which fields are painted with borders.
+	 */
+	public static final int DETAIL_FIELD_SIZE = 6;
+	/**
+	 * The largest number of fields in each direction that the preferred size of the canvas shows.
+	 */
+	public static final int MAX_PREFERRED_FIELDS = 40;
+	private final Board board;
+	private int fieldSize;
+	private int originX; // the x coordinate of the topmost visible fields
+	private int originY; // the y coordinate of the leftmost visible fields
+	// fields whose enabled state differs from the default, keyed by field number; see isFieldEnabled()
+	private final Map<Long, Boolean> enabledFields;
+
+	/**
+	 * Creates a new {@link BoardCanvas} that shows a copy of the specified board.
+	 * 
+	 * @param board
+	 *            The board. The canvas keeps its own copy, which is changed with
+	 *            {@link #setPlayerAt(int, int, Player)}.
+	 * @param fieldSize
+	 *            The initial size of one field in pixels.
+	 */
+	public BoardCanvas(final Board board, final int fieldSize) {
+		this.board = board.clone();
+		this.fieldSize = Math.max(MIN_FIELD_SIZE, Math.min(fieldSize, MAX_FIELD_SIZE));
+		enabledFields = new HashMap<>();
+		setPreferredSize(new Dimension(Math.min(board.getHeight(), MAX_PREFERRED_FIELDS) * this.fieldSize, Math.min(
+				board.getWidth(), MAX_PREFERRED_FIELDS) * this.fieldSize));
+		ToolTipManager.sharedInstance().registerComponent(this);
+	}
+
+	@Override
+	protected void paintComponent(final Graphics g) {
+		final Rectangle clip = g.getClipBounds();
+		final Rectangle area = clip == null ? new Rectangle(getSize()) : clip;
+		final int firstY = originY + Math.max(area.x / fieldSize, 0);
+		final int lastY = (int) Math.min((long) originY + (area.x + area.width - 1) / fieldSize, board.getHeight() - 1);
+		final int firstX = originX + Math.max(area.y / fieldSize, 0);
+		final int lastX = (int) Math.min((long) originX + (area.y + area.height - 1) / fieldSize, board.getWidth() - 1);
+		if (fieldSize >= DETAIL_FIELD_SIZE) {
+			for (int x = firstX; x <= lastX; x++)
+				for (int y = firstY; y <= lastY; y++)
+					paintField(g, x, y);
+			return;
+		}
+		// zoomed out: no borders, so the board is one background rectangle with the occupied fields on top
+		g.setColor(getBackground());
+		g.fillRect((firstY - originY) * fieldSize, (firstX - originX) * fieldSize, (lastY - firstY + 1) * fieldSize,
+				(lastX - firstX + 1) * fieldSize);
+		for (int x = firstX; x <= lastX; x++)
+			for (int y = firstY; y <= lastY; y++) {
+				final Player player = board.getPlayerAt(x, y);
+				if (player != null && !(player instanceof NoPlayer)) {
+					g.setColor(player.getColor());
+					g.fillRect((y - originY) * fieldSize, (x - originX) * fieldSize, fieldSize, fieldSize);
+				}
+			}
+	}
+
+	/**
+	 * Paints one field the way {@link Field#paint(Graphics)} does.
+	 * 
+	 * @param g
+	 *            The graphics context.
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 */
+	private void paintField(final Graphics g, final int x, final int y) {
+		final int left = (y - originY) * fieldSize;
+		final int top = (x - originX) * fieldSize;
+		final Player player = board.getPlayerAt(x, y);
+		if (player == null || player instanceof NoPlayer)
+			g.setColor(getBackground());
+		else
+			g.setColor(player.getColor());
+		g.fillRect(left + 1, top + 1, fieldSize - 2, fieldSize - 2);
+		g.setColor(Color.black);
+		g.drawRect(left, top, fieldSize - 1, fieldSize - 1);
+	}
+
+	@Override
+	public String getToolTipText(final MouseEvent event) {
+		final Point xy = fieldAt(event.getX(), event.getY());
+		if (xy == null)
+			return null;
+		final Player player = board.getPlayerAt(xy.x, xy.y);
+		return player == null || player instanceof NoPlayer ? null : player.getName();
+	}
+
+	/**
+	 * Gets the coordinates of the field at the specified pixel.
+	 * 
+	 * @param pixelX
+	 *            The horizontal position of the pixel within this component.
+	 * @param pixelY
+	 *            The vertical position of the pixel within this component.
+	 * @return The coordinates of the field, or <code>null</code> if the pixel is not on the board.
+	 */
+	public Point fieldAt(final int pixelX, final int pixelY) {
+		if (pixelX < 0 || pixelY < 0)
+			return null;
+		final long x = (long) originX + pixelY / fieldSize;
+		final long y = (long) originY + pixelX / fieldSize;
+		if (x >= board.getWidth() || y >= board.getHeight())
+			return null;
+		return new Point((int) x, (int) y);
+	}
+
+	/**
+	 * Gets the board that this canvas shows. The board must not be changed other than through
+	 * {@link #setPlayerAt(int, int, Player)}.
+	 * 
+	 * @return The board.
+	 */
+	public Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * Gets the player at the specified field.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @return The player at the field.
+	 */
+	public Player getPlayerAt(final int x, final int y) {
+		return board.getPlayerAt(x, y);
+	}
+
+	/**
+	 * Sets the player at the specified field and repaints that field if it is visible. If the player is an actual
+	 * player, the field is disabled as well, like {@link Field#setPlayer(Player)} does.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @param p
+	 *            The player.
+	 */
+	public void setPlayerAt(final int x, final int y, final Player p) {
+		final long field = field(x, y);
+		if (isPlayer(p))
+			enabledFields.put(field, false);
+		else if (isPlayer(board.getPlayerAt(x, y)) && !enabledFields.containsKey(field))
+			enabledFields.put(field, false); // the field stays disabled when the player leaves it
+		board.setPlayerAt(x, y, p);
+		if (x >= originX && x - originX <= getVisibleRows() && y >= originY && y - originY <= getVisibleColumns())
+			repaint((y - originY) * fieldSize, (x - originX) * fieldSize, fieldSize, fieldSize);
+	}
+
+	/**
+	 * Determines if the specified field is enabled. Fields are enabled unless they are occupied by an actual player or
+	 * were {@link #setFieldEnabled(int, int, boolean) disabled}.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @return <code>true</code> if the field is enabled, <code>false</code> otherwise.
+	 */
+	public boolean isFieldEnabled(final int x, final int y) {
+		final Boolean enabled = enabledFields.get(field(x, y));
+		return enabled == null ? !isPlayer(board.getPlayerAt(x, y)) : enabled;
+	}
+
+	/**
+	 * Enables or disables the specified field.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @param enabled
+	 *            If the field is enabled or not.
+	 */
+	public void setFieldEnabled(final int x, final int y, final boolean enabled) {
+		enabledFields.put(field(x, y), enabled);
+	}
+
+	/**
+	 * Gets the size of one field in pixels.
+	 * 
+	 * @return The field size.
+	 */
+	public int getFieldSize() {
+		return fieldSize;
+	}
+
+	/**
+	 * Sets the size of one field in pixels, keeping the origin.
+	 * 
+	 * @param fieldSize
+	 *            The new field size. It is clamped to the range from {@link #MIN_FIELD_SIZE} to
+	 *            {@link #MAX_FIELD_SIZE}.
+	 */
+	public void setFieldSize(final int fieldSize) {
+		final int newSize = Math.max(MIN_FIELD_SIZE, Math.min(fieldSize, MAX_FIELD_SIZE));
+		if (newSize == this.fieldSize)
+			return;
+		this.fieldSize = newSize;
+		setOrigin(originX, originY); // fewer fields may be hidden now
+		viewChanged();
+	}
+
+	/**
+	 * Sets the size of one field in pixels, keeping the field at the specified pixel in place.
+	 * 
+	 * @param fieldSize
+	 *            The new field size. It is clamped to the range from {@link #MIN_FIELD_SIZE} to
+	 *            {@link #MAX_FIELD_SIZE}.
+	 * @param pixelX
+	 *            The horizontal position of the pixel within this component.
+	 * @param pixelY
+	 *            The vertical position of the pixel within this component.
+	 */
+	public void zoomAt(final int fieldSize, final int pixelX, final int pixelY) {
+		final long x = (long) originX + pixelY / this.fieldSize;
+		final long y = (long) originY + pixelX / this.fieldSize;
+		setFieldSize(fieldSize);
+		setOrigin((int) Math.max(x - pixelY / this.fieldSize, 0), (int) Math.max(y - pixelX / this.fieldSize, 0));
+	}
+
+	/**
+	 * Gets the x coordinate of the topmost visible fields.
+	 * 
+	 * @return The x coordinate of the origin.
+	 */
+	public int getOriginX() {
+		return originX;
+	}
+
+	/**
+	 * Gets the y coordinate of the leftmost visible fields.
+	 * 
+	 * @return The y coordinate of the origin.
+	 */
+	public int getOriginY() {
+		return originY;
+	}
+
+	/**
+	 * Scrolls the canvas so that the specified field is the top left visible field. The origin is clamped so that the
+	 * canvas shows as much of the board as possible.
+	 * 
+	 * @param x
+	 *            The x coordinate of the new origin.
+	 * @param y
+	 *            The y coordinate of the new origin.
+	 */
+	public void setOrigin(final int x, final int y) {
+		final int newX = Math.max(0, Math.min(x, board.getWidth() - getVisibleRows()));
+		final int newY = Math.max(0, Math.min(y, board.getHeight() - getVisibleColumns()));
+		if (newX == originX && newY == originY)
+			return;
+		originX = newX;
+		originY = newY;
+		viewChanged();
+	}
+
+	/**
+	 * Gets the number of fields that fit completely into the canvas vertically, which is the number of x coordinates
+	 * that are visible.
+	 * 
+	 * @return The number of visible rows.
+	 */
+	public int getVisibleRows() {
+		return getHeight() / fieldSize;
+	}
+
+	/**
+	 * Gets the number of fields that fit completely into the canvas horizontally, which is the number of y
+	 * coordinates that are visible.
+	 * 
+	 * @return The number of visible columns.
+	 */
+	public int getVisibleColumns() {
+		return getWidth() / fieldSize;
+	}
+
+	/*
+	 * A larger canvas may show more of the board, so the origin may have to move back.
+	 * 
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.Component#setBounds(int, int, int, int)
+	 */
+	@Override
+	public void setBounds(final int x, final int y, final int width, final int height) {
+		super.setBounds(x, y, width, height);
+		setOrigin(originX, originY);
+		fireStateChanged();
+	}
+
+	/**
+	 * Adds a change listener, which is notified whenever the origin, the field size or the size of the canvas
+	 * changes.
+	 * 
+	 * @param l
+	 *            The change listener.
+	 */
+	public void addChangeListener(final ChangeListener l) {
+		listenerList.add(ChangeListener.class, l);
+	}
+
+	/**
+	 * Removes a change listener.
+	 * 
+	 * @param l
+	 *            The change listener.
+	 */
+	public void removeChangeListener(final ChangeListener l) {
+		listenerList.remove(ChangeListener.class, l);
+	}
+
+	/**
+	 * Private utility method to repaint the whole canvas and notify the change listeners after the visible part of the
+	 * board changed.
+	 */
+	private void viewChanged() {
+		repaint();
+		fireStateChanged();
+	}
+
+	/**
+	 * Private utility method to notify all change listeners.
+	 */
+	private void fireStateChanged() {
+		final ChangeEvent e = new ChangeEvent(this);
+		for (final ChangeListener l : listenerList.getListeners(ChangeListener.class))
+			l.stateChanged(e);
+	}
+
+	/**
+	 * Private utility method to number a field. Fields are numbered row by row, like in
+	 * {@link de.lucaswerkmeister.code.fiar.servers.SparseBoard#getOccupiedFields()}.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @return The number of the field.
+	 */
+	private long field(final int x, final int y) {
+		return (long) y * board.getWidth() + x;
+	}
+
+	/**
+	 * Private utility method to determine if a field occupant is an actual player.
+	 * 
+	 * @param p
+	 *            The occupant. May be <code>null</code>.
+	 * @return <code>true</code> if the occupant is neither <code>null</code> nor the {@link NoPlayer}, the
+	 *         {@link Block} or the {@link Joker}, <code>false</code> otherwise.
+	 */
+	private static boolean isPlayer(final Player p) {
+		return p != null && !(p instanceof NoPlayer) && !(p instanceof Block) && !(p instanceof Joker);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,161 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.clients.swingClients;
+
+import java.awt.BorderLayout;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+
+import javax.swing.JPanel;
+import javax.swing.JScrollBar;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Adds scroll bars and mouse wheel zooming to a {@link BoardCanvas}.
+ * <p>
+ * Unlike a {@link javax.swing.JScrollPane}, which would need a component as large as the whole board, the viewport
+ * scrolls by moving the {@link BoardCanvas#setOrigin(int, int) origin} of the canvas, and its scroll bars count
+ * fields instead of pixels, so that even boards that are billions of fields wide can be scrolled. Scroll bars are
+ * only shown while the board does not fit into the canvas.
+ * <p>
+ * The mouse wheel scrolls the board vertically, or horizontally while the shift key is held down; while the control
+ * key is held down, it zooms in and out around the mouse pointer.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+public class BoardViewport extends JPanel {
+	private static final long serialVersionUID = -1493167920437466372L;
+	/**
+	 * The number of fields that one step of the mouse wheel scrolls.
+	 */
+	public static final int WHEEL_FIELDS = 3;
+	private final BoardCanvas canvas;
+	private final JScrollBar rows; // scrolls the x coordinate
+	private final JScrollBar columns; // scrolls the y coordinate
+
+	/**
+	 * Creates a new {@link BoardViewport} around the specified canvas.
+	 * 
+	 * @param canvas
+	 *            The canvas.
+	 */
+	public BoardViewport(final BoardCanvas canvas) {
+		super(new BorderLayout());
+		this.canvas = canvas;
+		rows = new JScrollBar(JScrollBar.VERTICAL);
+		columns = new JScrollBar(JScrollBar.HORIZONTAL);
+		add(canvas, BorderLayout.CENTER);
+		add(rows, BorderLayout.EAST);
+		add(columns, BorderLayout.SOUTH);
+		update();
+
+		final AdjustmentListener scroll = new AdjustmentListener() {
+			@Override
+			public void adjustmentValueChanged(final AdjustmentEvent e) {
+				canvas.setOrigin(rows.getValue(), columns.getValue());
+			}
+		};
+		rows.addAdjustmentListener(scroll);
+		columns.addAdjustmentListener(scroll);
+		canvas.addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(final ChangeEvent e) {
+				update();
+			}
+		});
+		canvas.addMouseWheelListener(new MouseWheelListener() {
+			@Override
+			public void mouseWheelMoved(final MouseWheelEvent e) {
+				final int steps = e.getWheelRotation();
+				if ((e.getModifiersEx() & InputEvent.CTRL_DOWN_MASK) != 0)
+					zoom(steps, e.getX(), e.getY());
+				else if ((e.getModifiersEx() & InputEvent.SHIFT_DOWN_MASK) != 0)
+					canvas.setOrigin(canvas.getOriginX(), canvas.getOriginY() + steps * WHEEL_FIELDS);
+				else
+					canvas.setOrigin(canvas.getOriginX() + steps * WHEEL_FIELDS, canvas.getOriginY());
+			}
+		});
+	}
+
+	/**
+	 * Gets the canvas that this viewport scrolls.
+	 * 
+	 * @return The canvas.
+	 */
+	public BoardCanvas getCanvas() {
+		return canvas;
+	}
+
+	/**
+	 * Zooms the canvas by the specified number of steps around the specified pixel. Each step changes the field size
+	 * by about a quarter.
+	 * 
+	 * @param steps
+	 *            The number of steps; negative to zoom in, positive to zoom out, like the rotation of a mouse wheel.
+	 * @param pixelX
+	 *            The horizontal position of the pixel within the canvas.
+	 * @param pixelY
+	 *            The vertical position of the pixel within the canvas.
+	 */
+	public void zoom(final int steps, final int pixelX, final int pixelY) {
+		int size = canvas.getFieldSize();
+		for (int i = 0; i < Math.abs(steps); i++)
+			size = steps < 0 ? size * 5 / 4 + 1 : size * 4 / 5;
+		canvas.zoomAt(size, pixelX, pixelY);
+	}
+
+	/**
+	 * Private utility method to make the scroll bars show the part of the board that the canvas shows.
+	 */
+	private void update() {
+		// before the first layout, assume that the canvas gets its preferred size
+		final boolean laidOut = canvas.getWidth() > 0 || canvas.getHeight() > 0;
+		final int visibleRows = laidOut ? canvas.getVisibleRows() : canvas.getPreferredSize().height
+				/ canvas.getFieldSize();
+		final int visibleColumns = laidOut ? canvas.getVisibleColumns() : canvas.getPreferredSize().width
+				/ canvas.getFieldSize();
+		update(rows, canvas.getOriginX(), visibleRows, canvas.getBoard().getWidth());
+		update(columns, canvas.getOriginY(), visibleColumns, canvas.getBoard().getHeight());
+	}
+
+	/**
+	 * Private utility method to update one scroll bar.
+	 * 
+	 * @param bar
+	 *            The scroll bar.
+	 * @param origin
+	 *            The first visible field.
+	 * @param visible
+	 *            The number of visible fields.
+	 * @param fields
+	 *            The number of fields of the board.
+	 */
+	private static void update(final JScrollBar bar, final int origin, final int visible, final int fields) {
+		final int extent = Math.min(visible, fields - origin);
+		bar.setValues(origin, extent, 0, fields);
+		bar.setBlockIncrement(Math.max(extent - 1, 1));
+		final boolean needed = extent < fields;
+		if (bar.isVisible() != needed)
+			bar.setVisible(needed);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,182 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.clients.swingClients;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+import de.lucaswerkmeister.code.fiar.framework.LatencyHistogram;
+
+/**
+ * Sends commands to a remote server without blocking the Swing event dispatch thread.
+ * <p>
+ * Commands are queued and executed one after another, in the order they were submitted, on a background thread, so
+ * remote calls never hold up the user interface and a user's actions still reach the server in order. The result of
+ * each command, or the exception it threw, is then handed to its {@link Callback} on the event dispatch thread, where
+ * it may change the user interface.
+ * <p>
+ * The pipeline tracks the latency of each stage of a command: how long it waited in the queue, how long the remote
+ * calls took, and how long it took until the result was applied on the event dispatch thread.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+public class CommandPipeline {
+	private final ExecutorService sender;
+	private final LatencyHistogram queued;
+	private final LatencyHistogram sent;
+	private final LatencyHistogram applied;
+
+	/**
+	 * The callback of a command, which is called on the event dispatch thread.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 * @param <T>
+	 *            The result type of the command.
+	 */
+	public interface Callback<T> {
+		/**
+		 * Applies the result of a command that completed normally.
+		 * 
+		 * @param result
+		 *            The result of the command.
+		 */
+		public void succeeded(T result);
+
+		/**
+		 * Handles the exception that a command threw.
+		 * 
+		 * @param e
+		 *            The exception.
+		 */
+		public void failed(Exception e);
+	}
+
+	/**
+	 * Creates a new {@link CommandPipeline} with its own background thread.
+	 */
+	public CommandPipeline() {
+		sender = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "CommandPipeline sender");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		queued = new LatencyHistogram();
+		sent = new LatencyHistogram();
+		applied = new LatencyHistogram();
+	}
+
+	/**
+	 * Queues a command. The command is executed on the background thread after all commands that were submitted
+	 * before it, and its callback is then called on the event dispatch thread.
+	 * 
+	 * @param command
+	 *            The command, which may make remote calls.
+	 * @param callback
+	 *            The callback, which may change the user interface.
+	 * @param <T>
+	 *            The result type of the command.
+	 */
+	public <T> void submit(final Callable<T> command, final Callback<T> callback) {
+		final long submitted = System.nanoTime();
+		sender.execute(new Runnable() {
+			@Override
+			public void run() {
+				final long started = System.nanoTime();
+				queued.record(started - submitted);
+				T result = null;
+				Exception failure = null;
+				try {
+					result = command.call();
+				} catch (final Exception e) {
+					failure = e;
+				}
+				final long finished = System.nanoTime();
+				sent.record(finished - started);
+				final T finalResult = result;
+				final Exception finalFailure = failure;
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							if (finalFailure == null)
+								callback.succeeded(finalResult);
+							else
+								callback.failed(finalFailure);
+						} finally {
+							applied.record(System.nanoTime() - finished);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Gets the latencies of the queue stage: the time from submitting a command until it starts executing.
+	 * 
+	 * @return The queue latencies.
+	 */
+	public LatencyHistogram getQueueLatency() {
+		return queued;
+	}
+
+	/**
+	 * Gets the latencies of the send stage: the time that executing a command, including its remote calls, takes.
+	 * 
+	 * @return The send latencies.
+	 */
+	public LatencyHistogram getSendLatency() {
+		return sent;
+	}
+
+	/**
+	 * Gets the latencies of the apply stage: the time from the end of a command until its callback has returned on the
+	 * event dispatch thread.
+	 * 
+	 * @return The apply latencies.
+	 */
+	public LatencyHistogram getApplyLatency() {
+		return applied;
+	}
+
+	/**
+	 * Stops the background thread after all queued commands have been executed.
+	 */
+	public void shutdown() {
+		sender.shutdown();
+	}
+
+	/**
+	 * Summarizes the latencies of all stages, one stage per line.
+	 * 
+	 * @return The summary.
+	 */
+	@Override
+	public String toString() {
+		return "Queue: " + queued + "\nSend: " + sent + "\nApply: " + applied + "\n";
+	}
+}
\ No newline at end of file
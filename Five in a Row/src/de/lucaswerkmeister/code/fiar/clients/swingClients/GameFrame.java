@@ -32,9 +32,12 @@ import de.lucaswerkmeister.code.fiar.framework.Player;
 
 /**
  * Displays the game to a user and sents user actions to action listeners.
+ * <p>
+ * The board is painted by one {@link BoardCanvas} in a {@link BoardViewport}, which can be scrolled and zoomed; the
+ * {@link Field}s that {@link BoardListener}s receive are created when the user clicks.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.2
  */
 public class GameFrame extends JFrame {
 	private static final long serialVersionUID = -8649428295633759928L;
@@ -55,10 +58,9 @@ public class GameFrame extends JFrame {
 		public void fieldClicked(Field field);
 	}
 
-	private final JPanel board;
+	private final BoardCanvas board;
 	private final JPanel buttons;
 	private final JLabel statusBar;
-	private final Field[][] fields;
 	private final Set<ActionListener> actionListeners;
 	private final Set<BoardListener> boardListeners;
 	private static final Random random = new Random();
@@ -78,23 +80,16 @@ public class GameFrame extends JFrame {
 		actionListeners = new HashSet<>();
 		boardListeners = new HashSet<>();
 		final JPanel content = new JPanel(new BorderLayout());
-		board = new JPanel();
-		board.setLayout(new GridLayout(b.getWidth(), b.getHeight(), 0, 0));
-		fields = new Field[b.getWidth()][b.getHeight()];
-		for (int x = 0; x < b.getWidth(); x++)
-			for (int y = 0; y < b.getHeight(); y++) {
-				final Field f = new Field(null, FIELD_SIZE, new Point(x, y));
-				f.addMouseListener(new MouseAdapter() {
-					@Override
-					public void mouseClicked(final MouseEvent e) {
-						if (f.isEnabled() && isEnabled()) // disabled lightweight components still receive MouseEvents
-							fireFieldClicked(f);
-					}
-				});
-				fields[x][y] = f;
-				board.add(f);
+		board = new BoardCanvas(b, FIELD_SIZE.width);
+		board.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(final MouseEvent e) {
+				final Point xy = board.fieldAt(e.getX(), e.getY());
+				if (xy != null && board.isFieldEnabled(xy.x, xy.y) && isEnabled())
+					fireFieldClicked(new Field(board.getPlayerAt(xy.x, xy.y), FIELD_SIZE, xy));
 			}
-		content.add(this.board, BorderLayout.CENTER);
+		});
+		content.add(new BoardViewport(board), BorderLayout.CENTER);
 		buttons = new JPanel();
 		content.add(buttons, BorderLayout.EAST);
 		statusBar = new JLabel("Ready");
@@ -170,7 +165,7 @@ public class GameFrame extends JFrame {
 	 *            The player.
 	 */
 	public void setPlayerAt(final int x, final int y, final Player p) {
-		fields[x][y].setPlayer(p);
+		board.setPlayerAt(x, y, p);
 	}
 
 	/**
@@ -196,7 +191,7 @@ public class GameFrame extends JFrame {
 	 *            If the field is enabled or not.
 	 */
 	public void setEnabled(final int x, final int y, final boolean enabled) {
-		fields[x][y].setEnabled(enabled);
+		board.setFieldEnabled(x, y, enabled);
 	}
 
 	/**
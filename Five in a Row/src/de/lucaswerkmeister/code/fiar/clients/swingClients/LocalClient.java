@@ -29,6 +29,7 @@ import java.util.Queue;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 
+import de.lucaswerkmeister.code.fiar.clients.BoardMirror;
 import de.lucaswerkmeister.code.fiar.clients.swingClients.GameFrame.BoardListener;
 import de.lucaswerkmeister.code.fiar.framework.Block;
 import de.lucaswerkmeister.code.fiar.framework.Client;
@@ -56,11 +57,12 @@ import de.lucaswerkmeister.code.fiar.servers.FixedServer;
  * A client that runs in a Swing GUI and handles two or more players.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.1
  */
 public final class LocalClient implements Client, Runnable {
 	private static LocalClient instance;
 	private final Server server;
+	private final BoardMirror board;
 	private final List<Player> players; // note that the contents of the list are not final
 	private GameFrame gui;
 	private final Queue<GameEvent> events;
@@ -80,11 +82,13 @@ public final class LocalClient implements Client, Runnable {
 			player = GameFrame.showAddPlayerDialog(false, id++, gui);
 		}
 		server = new FixedServer(new Client[] {this }, new Player[][] {players.toArray(new Player[] {}) });
+		board = new BoardMirror(server, this);
 		events = new LinkedList<>();
 	}
 
 	@Override
 	public void gameEvent(final GameEvent e) throws RemoteException {
+		board.gameEvent(e);
 		if (e instanceof Forfeit) {
 			final Player p = ((Forfeit) e).getActingPlayer();
 			final int index = players.indexOf(p);
@@ -102,7 +106,7 @@ public final class LocalClient implements Client, Runnable {
 		}
 		if (e instanceof FieldAction) {
 			final FieldAction fa = (FieldAction) e;
-			gui.setPlayerAt(fa.getField().x, fa.getField().y, server.getCurrentBoard(this).getPlayerAt(fa.getField()));
+			gui.setPlayerAt(fa.getX(), fa.getY(), board.getPlayerAt(fa.getX(), fa.getY()));
 		}
 		events.add(e);
 	}
@@ -120,7 +124,7 @@ public final class LocalClient implements Client, Runnable {
 
 			// @formatter:off
 			gui = new GameFrame(
-					server.getCurrentBoard(this), (Server.IN_A_ROW == 5 ? "Five" : Server.IN_A_ROW) + " in a Row");
+					board.getBoard(), (Server.IN_A_ROW == 5 ? "Five" : Server.IN_A_ROW) + " in a Row");
 			// @formatter:on
 			gui.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 			gui.addBoardListener(new BoardListener() {
@@ -134,7 +138,7 @@ public final class LocalClient implements Client, Runnable {
 							// blocking
 							// @formatter:off
 							server.action(instance,
-									server.getCurrentBoard(instance).getPlayerAt(xy) == NoPlayer.getInstance()
+									board.getPlayerAt(xy) == NoPlayer.getInstance()
 											? new BlockField(players.get(0), xy)
 											: new UnblockField(players.get(0), xy));
 							// @formatter:on
@@ -143,7 +147,7 @@ public final class LocalClient implements Client, Runnable {
 							// jokers
 							// @formatter:off
 							server.action(instance,
-									server.getCurrentBoard(instance).getPlayerAt(xy) == NoPlayer.getInstance()
+									board.getPlayerAt(xy) == NoPlayer.getInstance()
 											? new JokerField(players.get(0), xy)
 											: new UnjokerField(players.get(0), xy));
 							// @formatter:on
@@ -186,7 +190,7 @@ public final class LocalClient implements Client, Runnable {
 				public void actionPerformed(final ActionEvent e) {
 					for (final Player p : players) {
 						try {
-							server.action(instance, new BlockDistributionAccepted(p, server.getCurrentBoard(instance)));
+							server.action(instance, new BlockDistributionAccepted(p, board.getHash()));
 						} catch (IllegalStateException | IllegalMoveException | RemoteException e1) {
 							e1.printStackTrace();
 						}
@@ -206,7 +210,7 @@ public final class LocalClient implements Client, Runnable {
 			// disable blocked fields
 			for (int x = 0; x < boardSize.width; x++)
 				for (int y = 0; y < boardSize.height; y++)
-					if (server.getCurrentBoard(this).getPlayerAt(x, y) == Block.getInstance())
+					if (board.getPlayerAt(x, y) == Block.getInstance())
 						gui.setEnabled(x, y, false);
 
 			// jokers
@@ -217,7 +221,7 @@ public final class LocalClient implements Client, Runnable {
 				public void actionPerformed(final ActionEvent e) {
 					for (final Player p : players) {
 						try {
-							server.action(instance, new JokerDistributionAccepted(p, server.getCurrentBoard(instance)));
+							server.action(instance, new JokerDistributionAccepted(p, board.getHash()));
 						} catch (IllegalStateException | IllegalMoveException | RemoteException e1) {
 							e1.printStackTrace();
 						}
@@ -236,7 +240,7 @@ public final class LocalClient implements Client, Runnable {
 			// disable blocked fields
 			for (int x = 0; x < boardSize.width; x++)
 				for (int y = 0; y < boardSize.height; y++)
-					if (server.getCurrentBoard(this).getPlayerAt(x, y) == Joker.getInstance())
+					if (board.getPlayerAt(x, y) == Joker.getInstance())
 						gui.setEnabled(x, y, false);
 
 			// normal gameplay
@@ -15,6 +15,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.swing.DefaultListModel;
 import javax.swing.JButton;
@@ -23,7 +24,10 @@ import javax.swing.JList;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
 
+import de.lucaswerkmeister.code.fiar.clients.BoardMirror;
+import de.lucaswerkmeister.code.fiar.clients.swingClients.CommandPipeline.Callback;
 import de.lucaswerkmeister.code.fiar.clients.swingClients.GameFrame.BoardListener;
 import de.lucaswerkmeister.code.fiar.framework.Hoster;
 import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
@@ -41,19 +45,23 @@ import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
 import de.lucaswerkmeister.code.fiar.framework.event.JokerField;
 import de.lucaswerkmeister.code.fiar.framework.event.PhaseChange;
 import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
 import de.lucaswerkmeister.code.fiar.framework.event.PlayerVictory;
 import de.lucaswerkmeister.code.fiar.framework.event.UnblockField;
 import de.lucaswerkmeister.code.fiar.framework.event.UnjokerField;
 import de.lucaswerkmeister.code.fiar.framework.exception.IllegalMoveException;
 import de.lucaswerkmeister.code.fiar.framework.exception.UnknownClientException;
-import de.lucaswerkmeister.code.fiar.framework.exception.UnknownPlayerException;
 import de.lucaswerkmeister.code.fiar.hosters.FixedHoster;
 
 /**
  * A client that runs in a Swing GUI and is connected to a remote {@link Server} / {@link Hoster}.
+ * <p>
+ * Requests that the user triggers are sent through a {@link CommandPipeline}, so that the user interface never waits
+ * for the network. Events from the server are applied to the board mirror and the user interface on the event
+ * dispatch thread. Once the game ends, the latencies of the pipeline can be shown.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.4
  */
 public class NetworkClient implements RemoteClient, Runnable {
 	private static final long serialVersionUID = 2228474887736398898L;
@@ -61,10 +69,12 @@ public class NetworkClient implements RemoteClient, Runnable {
 	private final List<Player> ownPlayers; // note that the contents of the list are not final
 	private final Map<Integer, Player> allPlayers;
 	private final NetworkClient instance; // needed for event listeners
+	private final CommandPipeline commands;
 	private DefaultListModel<String> playerListModel;
 	private List<Player> listPlayers;
 	private DefaultListModel<String> dimensionListModel;
 	private Server server;
+	private volatile BoardMirror board; // assigned by the server's thread, read on the event dispatch thread
 	private JFrame initFrame;
 	private GameFrame gameFrame;
 	private volatile int currentPlayerID;
@@ -111,6 +121,7 @@ public class NetworkClient implements RemoteClient, Runnable {
 	 */
 	public NetworkClient(final String hostName, final int port) throws RemoteException, NotBoundException {
 		instance = this;
+		commands = new CommandPipeline();
 		hoster = (Hoster) LocateRegistry.getRegistry(hostName, port).lookup("hoster");
 		UnicastRemoteObject.exportObject(this, 0);
 		ownPlayers = new LinkedList<>();
@@ -168,22 +179,34 @@ public class NetworkClient implements RemoteClient, Runnable {
 			removePlayerButton.addActionListener(new ActionListener() {
 				@Override
 				public void actionPerformed(final ActionEvent event) {
-					final int[] players = playerList.getSelectedIndices();
-					if (players.length > 0)
-						try {
-							for (final int index : players)
-								hoster.removePlayer(listPlayers.get(index));
-						} catch (final UnknownPlayerException e) {
-							// This should NEVER EVER happen, so again no user-friendly shutdown
-							e.printStackTrace();
-							System.exit(1);
-						} catch (final RemoteException e) {
-							JOptionPane.showMessageDialog(initFrame,
-									"An error occured while sending the information to the hoster. Exiting.", "Error",
-									JOptionPane.ERROR_MESSAGE);
-							e.printStackTrace();
-							System.exit(1);
-						}
+					final List<Player> players = new LinkedList<>();
+					for (final int index : playerList.getSelectedIndices())
+						players.add(listPlayers.get(index));
+					if (players.size() > 0)
+						commands.submit(new Callable<Void>() {
+							@Override
+							public Void call() throws RemoteException {
+								for (final Player p : players)
+									hoster.removePlayer(p);
+								return null;
+							}
+						}, new Callback<Void>() {
+							@Override
+							public void succeeded(final Void result) {
+								// the hoster tells us through playerLeft
+							}
+
+							@Override
+							public void failed(final Exception e) {
+								if (e instanceof RemoteException)
+									JOptionPane.showMessageDialog(initFrame,
+											"An error occured while sending the information to the hoster. Exiting.",
+											"Error", JOptionPane.ERROR_MESSAGE);
+								// an unknown player should NEVER EVER happen, so again no user-friendly shutdown
+								e.printStackTrace();
+								System.exit(1);
+							}
+						});
 				}
 			});
 			final JPanel removePlayerPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -211,13 +234,7 @@ public class NetworkClient implements RemoteClient, Runnable {
 				public void actionPerformed(final ActionEvent event) {
 					final Dimension size = GameFrame.showChooseBoardSizeDialog(initFrame);
 					for (final Player p : ownPlayers)
-						try {
-							server.action(instance, new BoardSizeProposal(p, size));
-						} catch (IllegalStateException | IllegalMoveException e) {
-							e.printStackTrace();
-						} catch (final RemoteException e) {
-							failRemote(e);
-						}
+						send(new BoardSizeProposal(p, size), false);
 				}
 			});
 			final JPanel addDimensionPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -231,18 +248,11 @@ public class NetworkClient implements RemoteClient, Runnable {
 				@Override
 				public void actionPerformed(final ActionEvent event) {
 					for (final String d : dimensionList.getSelectedValuesList())
-						for (final Player p : ownPlayers)
-							try {
-								final String[] coords = d.split("×");
-								server.action(
-										instance,
-										new BoardSizeProposal(p, new Dimension(Integer.parseInt(coords[0]), Integer
-												.parseInt(coords[1]))));
-							} catch (IllegalStateException | IllegalMoveException e) {
-								e.printStackTrace();
-							} catch (final RemoteException e) {
-								failRemote(e);
-							}
+						for (final Player p : ownPlayers) {
+							final String[] coords = d.split("×");
+							send(new BoardSizeProposal(p, new Dimension(Integer.parseInt(coords[0]), Integer
+									.parseInt(coords[1]))), false);
+						}
 				}
 			});
 			final JPanel acceptDimensionPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -265,64 +275,52 @@ public class NetworkClient implements RemoteClient, Runnable {
 
 			// @formatter:off
 			gameFrame = new GameFrame(
-					server.getCurrentBoard(this), (Server.IN_A_ROW == 5 ? "Five" : Server.IN_A_ROW) + " in a Row");
+					board.getBoard(), (Server.IN_A_ROW == 5 ? "Five" : Server.IN_A_ROW) + " in a Row");
 			// @formatteR:on
 			gameFrame.setButtons(new String[] {"Accept current block distribution" });
 			gameFrame.addActionListener(new ActionListener() {
 				@Override
 				public void actionPerformed(final ActionEvent event) {
-					try {
-						for (final Player p : ownPlayers)
-							switch (event.getActionCommand()) {
-							case "Accept current block distribution":
-								server.action(instance,
-										new BlockDistributionAccepted(p, server.getCurrentBoard(instance)));
-								break;
-							case "Accept current joker distribution":
-								server.action(instance,
-										new JokerDistributionAccepted(p, server.getCurrentBoard(instance)));
-								break;
-							}
-					} catch (final RemoteException e) {
-						failRemote(e);
-					} catch (IllegalStateException | IllegalMoveException e) {
-						e.printStackTrace();
-						System.exit(1);
-					}
+					// the hash of the distribution that the user sees right now
+					final long hash = board.getHash();
+					for (final Player p : ownPlayers)
+						switch (event.getActionCommand()) {
+						case "Accept current block distribution":
+							send(new BlockDistributionAccepted(p, hash), true);
+							break;
+						case "Accept current joker distribution":
+							send(new JokerDistributionAccepted(p, hash), true);
+							break;
+						}
 				}
 			});
 			gameFrame.addBoardListener(new BoardListener() {
 				@Override
 				public void fieldClicked(final Field field) {
-					try {
-						// This board listener is going to stay in place for the rest of the game, so it doesn't just
-						// handle blocking
-						final int[] phase = server.getPhase(instance);
-						final Point xy = field.getField();
-						if (phase[0] == 0 && phase[1] == 1)
-							// blocking
-							server.action(
-									instance,
-									NoPlayer.getInstance().equals(server.getCurrentBoard(instance).getPlayerAt(xy))
-											? new BlockField(ownPlayers.get(0), xy) : new UnblockField(ownPlayers
-													.get(0), xy));
-						else if (phase[0] == 0 && phase[1] == 2)
-							// jokers
-							server.action(
-									instance,
-									NoPlayer.getInstance().equals(server.getCurrentBoard(instance).getPlayerAt(xy))
-											? new JokerField(ownPlayers.get(0), xy) : new UnjokerField(ownPlayers
-													.get(0), xy));
-						else if (phase[0] == 1 && phase[1] == 1)
-							// move
-							if (ownPlayers.contains(allPlayers.get(currentPlayerID)))
-								server.action(instance, new PlaceStone(allPlayers.get(currentPlayerID), xy));
-					} catch (final RemoteException e) {
-						failRemote(e);
-					} catch (final IllegalMoveException e) {
-						e.printStackTrace();
-						System.exit(1);
-					}
+					final Point xy = field.getField();
+					// read the mirror here, where the events are applied to it; the command runs on the sender
+					final boolean empty = NoPlayer.getInstance().equals(board.getPlayerAt(xy));
+					commands.submit(new Callable<Void>() {
+						@Override
+						public Void call() throws RemoteException, IllegalMoveException {
+							// This board listener is going to stay in place for the rest of the game, so it doesn't
+							// just handle blocking
+							final int[] phase = server.getPhase(instance);
+							if (phase[0] == 0 && phase[1] == 1)
+								// blocking
+								server.action(instance, empty ? new BlockField(ownPlayers.get(0), xy)
+										: new UnblockField(ownPlayers.get(0), xy));
+							else if (phase[0] == 0 && phase[1] == 2)
+								// jokers
+								server.action(instance, empty ? new JokerField(ownPlayers.get(0), xy)
+										: new UnjokerField(ownPlayers.get(0), xy));
+							else if (phase[0] == 1 && phase[1] == 1)
+								// move
+								if (ownPlayers.contains(allPlayers.get(currentPlayerID)))
+									server.action(instance, new PlaceStone(allPlayers.get(currentPlayerID), xy));
+							return null;
+						}
+					}, new ActionCallback(true));
 				}
 			});
 			gameFrame.setStatus("Choose blocked fields");
@@ -356,14 +354,7 @@ public class NetworkClient implements RemoteClient, Runnable {
 
 				@Override
 				public void actionPerformed(final ActionEvent event) {
-					try {
-						server.action(instance, new Forfeit(allPlayers.get(currentPlayerID)));
-					} catch (final RemoteException e) {
-						failRemote(e);
-					} catch (IllegalStateException | IllegalMoveException e) {
-						e.printStackTrace();
-						System.exit(1);
-					}
+					send(new Forfeit(allPlayers.get(currentPlayerID)), true);
 				}
 			});
 			synchronized (this) {
@@ -377,8 +368,16 @@ public class NetworkClient implements RemoteClient, Runnable {
 			}
 
 			gameFrame.setStatus(victoryMessage);
-			gameFrame.setButtons(new String[0]);
+			gameFrame.setButtons(new String[] {"Show command latencies" });
 			gameFrame.removeAllActionListeners();
+			gameFrame.addActionListener(new ActionListener() {
+				@Override
+				public void actionPerformed(final ActionEvent event) {
+					JOptionPane.showMessageDialog(gameFrame, "Queue: " + commands.getQueueLatency() + "\nSend: "
+							+ commands.getSendLatency() + "\nApply: " + commands.getApplyLatency(),
+							"Command latencies", JOptionPane.INFORMATION_MESSAGE);
+				}
+			});
 			gameFrame.removeAllBoardListeners();
 			JOptionPane.showMessageDialog(gameFrame, victoryMessage, "Game ended", JOptionPane.INFORMATION_MESSAGE);
 			gameFrame.toFront();
@@ -421,6 +420,7 @@ public class NetworkClient implements RemoteClient, Runnable {
 	public void gameStarts(final Server server) {
 		GameFrame.hideAddPlayerDialog();
 		this.server = server;
+		board = new BoardMirror(server, this);
 		synchronized (this) {
 			this.notify();
 		}
@@ -428,6 +428,26 @@ public class NetworkClient implements RemoteClient, Runnable {
 
 	@Override
 	public void gameEvent(final GameEvent e) throws RemoteException {
+		// fetched here, so that the event dispatch thread never waits for the network
+		final int[] phase = e instanceof PlaceStone ? server.getPhase(instance) : null;
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				applyEvent(e, phase);
+			}
+		});
+	}
+
+	/**
+	 * Applies an event to the board mirror and the user interface. Must be called on the event dispatch thread.
+	 * 
+	 * @param e
+	 *            The event.
+	 * @param phase
+	 *            The phase after the event if it is a {@link PlaceStone} event, <code>null</code> otherwise.
+	 */
+	private void applyEvent(final GameEvent e, final int[] phase) {
+		board.gameEvent(e);
 		if (e instanceof BoardSizeProposal) {
 			final Dimension d = ((BoardSizeProposal) e).getSize();
 			final String size = d.width + "×" + d.height;
@@ -442,10 +462,8 @@ public class NetworkClient implements RemoteClient, Runnable {
 			}
 		else if (e instanceof FieldAction) {
 			final FieldAction fa = (FieldAction) e;
-			gameFrame
-					.setPlayerAt(((FieldAction) e).getField(), server.getCurrentBoard(this).getPlayerAt(fa.getField()));
+			gameFrame.setPlayerAt(fa.getX(), fa.getY(), board.getPlayerAt(fa.getX(), fa.getY()));
 			if (e instanceof PlaceStone) {
-				final int[] phase = server.getPhase(instance);
 				currentPlayerID = phase[2];
 				gameFrame.setButtons(new String[] {"Forfeit" },
 						new boolean[] {ownPlayers.contains(allPlayers.get(currentPlayerID)) });
@@ -483,6 +501,24 @@ public class NetworkClient implements RemoteClient, Runnable {
 		return id;
 	}
 
+	/**
+	 * Private utility method to send an action to the server through the {@link CommandPipeline}.
+	 * 
+	 * @param action
+	 *            The action.
+	 * @param exitOnIllegalMove
+	 *            Whether the client should exit if the server rejects the action with an {@link IllegalMoveException}.
+	 */
+	private void send(final PlayerAction action, final boolean exitOnIllegalMove) {
+		commands.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws RemoteException, IllegalMoveException {
+				server.action(instance, action);
+				return null;
+			}
+		}, new ActionCallback(exitOnIllegalMove));
+	}
+
 	/**
 	 * Private utility method to tell the user that a {@link RemoteException} occurred,
 	 * {@link RemoteException#printStackTrace() print its stack trace}, and then {@link System#exit(int) exit}.
@@ -511,4 +547,49 @@ public class NetworkClient implements RemoteClient, Runnable {
 	public static void main(final String[] args) throws RemoteException, NotBoundException {
 		new Thread(new NetworkClient()).start();
 	}
+
+	/**
+	 * Handles the failures of actions that were sent through the {@link CommandPipeline}, on the event dispatch
+	 * thread.
+	 * <p>
+	 * A {@link RemoteException} makes the client {@link NetworkClient#failRemote(RemoteException) fail}. An
+	 * {@link IllegalStateException} is only printed: since actions are sent in the background, the game may have moved
+	 * on to another phase before an action arrives. An {@link IllegalMoveException} is printed as well, and may make
+	 * the client exit.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private final class ActionCallback implements Callback<Void> {
+		private final boolean exitOnIllegalMove;
+
+		/**
+		 * Creates a new {@link ActionCallback}.
+		 * 
+		 * @param exitOnIllegalMove
+		 *            Whether the client should exit after an {@link IllegalMoveException}.
+		 */
+		ActionCallback(final boolean exitOnIllegalMove) {
+			this.exitOnIllegalMove = exitOnIllegalMove;
+		}
+
+		@Override
+		public void succeeded(final Void result) {
+			// the server tells us about the action through gameEvent
+		}
+
+		@Override
+		public void failed(final Exception e) {
+			if (e instanceof RemoteException)
+				failRemote((RemoteException) e);
+			else if (e instanceof IllegalStateException || e instanceof IllegalMoveException) {
+				e.printStackTrace();
+				if (exitOnIllegalMove && e instanceof IllegalMoveException)
+					System.exit(1);
+			} else if (e instanceof RuntimeException)
+				throw (RuntimeException) e;
+			else
+				throw new IllegalStateException(e);
+		}
+	}
 }
\ No newline at end of file
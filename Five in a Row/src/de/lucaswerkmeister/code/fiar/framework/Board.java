@@ -22,12 +22,43 @@ import java.io.Serializable;
 
 /**
  * Provides access to the game board.
+ * <p>
+ * All methods that take a field's coordinates as two <code>int</code>s are free of allocations; the variants taking a
+ * {@link Point} are only convenience methods that delegate to them.
+ * <p>
+ * A board's contents can be summarized in a 64-bit {@link #getHash() Zobrist hash}, which is what players exchange to
+ * agree on a distribution of blocks or jokers instead of the whole board. Boards that
+ * {@link #reportsFieldChanges() report field changes} keep the hash up to date with every change, so that it can also
+ * serve as {@link #hashCode()} and let {@link #equals(Object)} reject most unequal boards without comparing them field
+ * by field.
  * 
  * @author Lucas Werkmeister
- * @version 1.3
+ * @version 1.9
  */
 public abstract class Board implements Serializable {
 	private static final long serialVersionUID = -1655149922458049620L;
+	private transient RunLengthIndex runLengths; // built on the first winning check, see indexesRows()
+	private long hash = 0; // only kept up to date if reportsFieldChanges()
+
+	/**
+	 * Creates a new, empty {@link Board}.
+	 */
+	protected Board() {
+		// nothing to initialize
+	}
+
+	/**
+	 * Creates a new {@link Board} with the same contents as the original board. Subclasses that
+	 * {@link #reportsFieldChanges() report field changes} must use this constructor when they copy a board, so that
+	 * the copy also has the original's hash; they must then copy all fields without calling
+	 * {@link #fieldChanged(int, int, Player, Player)}.
+	 * 
+	 * @param original
+	 *            The board that is copied.
+	 */
+	protected Board(final Board original) {
+		hash = original.getHash();
+	}
 
 	/**
 	 * Gets the player that occupies the field at (x,y).
@@ -47,7 +78,9 @@ public abstract class Board implements Serializable {
 	 *            The position of the field.
 	 * @return The player at this position.
 	 */
-	public abstract Player getPlayerAt(Point position);
+	public Player getPlayerAt(final Point position) {
+		return getPlayerAt(position.x, position.y);
+	}
 
 	/**
 	 * Sets the player that occupies the field at (x,y) to the specified player.
@@ -69,7 +102,9 @@ public abstract class Board implements Serializable {
 	 * @param p
 	 *            The player that is to occupy this field.
 	 */
-	public abstract void setPlayerAt(Point position, Player p);
+	public void setPlayerAt(final Point position, final Player p) {
+		setPlayerAt(position.x, position.y, p);
+	}
 
 	/**
 	 * Gets the width of the board.
@@ -88,8 +123,79 @@ public abstract class Board implements Serializable {
 	@Override
 	public abstract Board clone();
 
+	/**
+	 * Determines if this board calls {@link #fieldChanged(int, int, Player, Player)} whenever a field is changed.
+	 * <p>
+	 * If it does, {@link #wasWinningMove(int, int)} can keep an {@link #indexesRows() index of the rows} on the board
+	 * that is updated with every change, instead of walking along the rows on every check, and {@link #getHash()} is
+	 * updated with every change instead of being computed from all fields. The default implementation returns
+	 * <code>false</code>.
+	 * 
+	 * @return <code>true</code> if this board reports all changes of its fields, <code>false</code> otherwise.
+	 */
+	protected boolean reportsFieldChanges() {
+		return false;
+	}
+
+	/**
+	 * Determines if {@link #wasWinningMove(int, int)} keeps an index of the rows on the board. The index needs eight
+	 * bytes per field and player, so boards whose memory use does not grow with their area should not keep it. The
+	 * index is only possible on boards that {@link #reportsFieldChanges() report field changes}.
+	 * <p>
+	 * The default implementation returns {@link #reportsFieldChanges()}.
+	 * 
+	 * @return <code>true</code> if this board keeps an index of its rows, <code>false</code> otherwise.
+	 */
+	protected boolean indexesRows() {
+		return reportsFieldChanges();
+	}
+
+	/**
+	 * Estimates how many bytes this board uses: the {@link #getFieldMemoryEstimate() memory for its fields}, plus the
+	 * memory for the {@link #indexesRows() index of its rows}, if it has built one. Object headers and other constant
+	 * overhead are not counted.
+	 * 
+	 * @return The estimated memory use in bytes.
+	 */
+	public long getMemoryEstimate() {
+		return getFieldMemoryEstimate() + (runLengths == null ? 0 : runLengths.getMemoryEstimate());
+	}
+
+	/**
+	 * Estimates how many bytes this board uses to store its fields. The default implementation assumes one
+	 * four-byte reference per field.
+	 * 
+	 * @return The estimated memory use in bytes.
+	 */
+	protected long getFieldMemoryEstimate() {
+		return 4L * getWidth() * getHeight();
+	}
+
+	/**
+	 * Notifies the board that the field at (x,y) has changed. Subclasses that {@link #reportsFieldChanges() report
+	 * field changes} must call this method at the end of every {@link #setPlayerAt(int, int, Player) setPlayerAt}
+	 * call.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @param old
+	 *            The player that occupied the field before the change.
+	 * @param p
+	 *            The player that now occupies the field.
+	 */
+	protected final void fieldChanged(final int x, final int y, final Player old, final Player p) {
+		hash ^= fieldHash(x, y, old) ^ fieldHash(x, y, p);
+		if (runLengths != null)
+			runLengths.fieldChanged(x, y, p);
+	}
+
 	/**
 	 * Two boards are equal if and only if they have the same size and return the same player at every field.
+	 * <p>
+	 * If both boards {@link #reportsFieldChanges() report field changes}, their hashes are compared first, and the
+	 * fields are only compared if the hashes are equal.
 	 * 
 	 * @param other
 	 *            The other object.
@@ -102,6 +208,8 @@ public abstract class Board implements Serializable {
 		final Board otherBoard = (Board) other;
 		if (getWidth() != otherBoard.getWidth() || getHeight() != otherBoard.getHeight())
 			return false;
+		if (reportsFieldChanges() && otherBoard.reportsFieldChanges() && hash != otherBoard.hash)
+			return false;
 		for (int x = 0; x < getWidth(); x++)
 			for (int y = 0; y < getHeight(); y++) {
 				final Player p1 = getPlayerAt(x, y);
@@ -112,6 +220,63 @@ public abstract class Board implements Serializable {
 		return true;
 	}
 
+	/**
+	 * A board's hash code is its {@link #getHash() hash}, folded to 32 bits.
+	 * 
+	 * @return The board's hash code.
+	 */
+	@Override
+	public int hashCode() {
+		final long h = getHash();
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Gets the Zobrist hash of this board: the {@link #fieldHash(int, int, Player) keys of all fields}, combined with
+	 * exclusive or. Equal boards have equal hashes, and since changing one field changes the hash by exactly the old
+	 * and the new key of that field, the hash can also be kept up to date incrementally by whoever changes the board.
+	 * <p>
+	 * The size of the board is not part of the hash. Boards that {@link #reportsFieldChanges() report field changes}
+	 * return the hash that they keep up to date, so this method is free for them; for other boards, it looks at every
+	 * field.
+	 * 
+	 * @return The hash of this board.
+	 */
+	public long getHash() {
+		if (reportsFieldChanges())
+			return hash;
+		long h = 0;
+		for (int x = 0; x < getWidth(); x++)
+			for (int y = 0; y < getHeight(); y++)
+				h ^= fieldHash(x, y, getPlayerAt(x, y));
+		return h;
+	}
+
+	/**
+	 * Gets the Zobrist key of the field at (x,y) when it is occupied by the specified player. Empty fields have the key
+	 * <code>0</code>, so that only occupied fields contribute to a board's {@link #getHash() hash}.
+	 * <p>
+	 * Instead of a table of random numbers, which would have to be as large as the board and shared between server
+	 * and clients, the keys are derived from the coordinates and the player ID with the SplitMix64 finalizer. They are
+	 * therefore the same in every virtual machine.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @param p
+	 *            The player occupying the field. May be <code>null</code>, which counts as the {@link NoPlayer}.
+	 * @return The key of the field for that player.
+	 */
+	public static long fieldHash(final int x, final int y, final Player p) {
+		if (p == null || p.getID() == 0)
+			return 0;
+		long z = x * 0x9E3779B97F4A7C15L + y * 0xC2B2AE3D27D4EB4FL + p.getID() * 0x165667B19E3779F9L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
 	/**
 	 * Checks if a specific stone completes a row in any direction.
 	 * 
@@ -123,6 +288,15 @@ public abstract class Board implements Serializable {
 	 *         <code>false</code> otherwise.
 	 */
 	public boolean wasWinningMove(final int x, final int y) {
+		if (indexesRows() && reportsFieldChanges()) {
+			final Player p = getPlayerAt(x, y);
+			if (p != null && p.getID() > 0) { // Block, Joker and NoPlayer can't win, let the loops below handle them
+				if (runLengths == null)
+					runLengths = new RunLengthIndex(this);
+				return runLengths.isWinning(x, y, p);
+			}
+		}
+
 		int equalStonesLeft = 0;
 		int equalStonesRight = 0;
 		for (; x - equalStonesLeft - 1 >= 0
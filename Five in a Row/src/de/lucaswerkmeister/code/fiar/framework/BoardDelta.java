@@ -0,0 +1,162 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.framework;
+
+import java.io.Serializable;
+
+/**
+ * A list of changes to the fields of a {@link Board}, as returned by
+ * {@link Server#getBoardChangesSince(Client, int)}.
+ * <p>
+ * Each change sets one field to one player. The board version counts the changes made to the board since it was
+ * created, so a board of version <code>n</code> that {@link #applyTo(Board) applies} the changes of a delta from
+ * version <code>n</code> is brought up to version {@link #getToVersion()}. A delta also carries the size of the board,
+ * so that a client without a board can apply a delta from version <code>0</code> to a new, empty board.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+public class BoardDelta implements Serializable {
+	private static final long serialVersionUID = -6093364180562375640L;
+	private final int width;
+	private final int height;
+	private final int fromVersion;
+	private final int[] xs;
+	private final int[] ys;
+	private final Player[] players;
+
+	/**
+	 * Creates a new {@link BoardDelta} with the specified changes. Change <code>i</code> sets the field
+	 * <code>(xs[i]|ys[i])</code> to <code>players[i]</code>; all three arrays must have the same length.
+	 * <p>
+	 * The arrays are not copied.
+	 * 
+	 * @param width
+	 *            The width of the board.
+	 * @param height
+	 *            The height of the board.
+	 * @param fromVersion
+	 *            The board version before the first change.
+	 * @param xs
+	 *            The x coordinates of the changed fields.
+	 * @param ys
+	 *            The y coordinates of the changed fields.
+	 * @param players
+	 *            The players that occupy the changed fields.
+	 */
+	public BoardDelta(final int width, final int height, final int fromVersion, final int[] xs, final int[] ys,
+			final Player[] players) {
+		if (xs.length != ys.length || xs.length != players.length)
+			throw new IllegalArgumentException("Arrays must have the same length!");
+		this.width = width;
+		this.height = height;
+		this.fromVersion = fromVersion;
+		this.xs = xs;
+		this.ys = ys;
+		this.players = players;
+	}
+
+	/**
+	 * Gets the width of the board that this delta changes.
+	 * 
+	 * @return The width.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of the board that this delta changes.
+	 * 
+	 * @return The height.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets the board version before the first change of this delta.
+	 * 
+	 * @return The version that this delta starts from.
+	 */
+	public int getFromVersion() {
+		return fromVersion;
+	}
+
+	/**
+	 * Gets the board version after the last change of this delta.
+	 * 
+	 * @return The version that this delta leads to.
+	 */
+	public int getToVersion() {
+		return fromVersion + xs.length;
+	}
+
+	/**
+	 * Gets the number of changes in this delta.
+	 * 
+	 * @return The number of changes.
+	 */
+	public int getChangeCount() {
+		return xs.length;
+	}
+
+	/**
+	 * Gets the x coordinate of the field changed by the specified change.
+	 * 
+	 * @param change
+	 *            The index of the change.
+	 * @return The x coordinate.
+	 */
+	public int getX(final int change) {
+		return xs[change];
+	}
+
+	/**
+	 * Gets the y coordinate of the field changed by the specified change.
+	 * 
+	 * @param change
+	 *            The index of the change.
+	 * @return The y coordinate.
+	 */
+	public int getY(final int change) {
+		return ys[change];
+	}
+
+	/**
+	 * Gets the player that occupies the field after the specified change.
+	 * 
+	 * @param change
+	 *            The index of the change.
+	 * @return The player.
+	 */
+	public Player getPlayer(final int change) {
+		return players[change];
+	}
+
+	/**
+	 * Applies all changes of this delta to the specified board, in order.
+	 * 
+	 * @param board
+	 *            The board, which should be of version {@link #getFromVersion()}.
+	 */
+	public void applyTo(final Board board) {
+		for (int i = 0; i < xs.length; i++)
+			board.setPlayerAt(xs[i], ys[i], players[i]);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,138 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.framework;
+
+/**
+ * A histogram of durations in nanoseconds that many threads can record into at the same time without locking.
+ * <p>
+ * Durations are sorted into buckets by powers of two: bucket <code>0</code> counts durations of zero nanoseconds, and
+ * bucket <code>i</code> counts durations of at least <code>2<sup>i-1</sup></code> and less than
+ * <code>2<sup>i</sup></code> nanoseconds. Recording a duration is thus a bit count and two atomic additions, and
+ * {@link #getPercentile(double) percentiles} are accurate to a factor of two, which is plenty to tell a slow action
+ * from a fast one. The buckets and the total duration are kept in one {@link StripedCounter}, so that threads
+ * recording at the same time don't contend for the same bucket.
+ * <p>
+ * Servers record into histograms through {@link de.lucaswerkmeister.code.fiar.servers.ServerMetrics ServerMetrics};
+ * clients may use them to time their own requests.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.3
+ */
+public final class LatencyHistogram {
+	/**
+	 * The number of buckets. The last bucket counts all durations of <code>2<sup>BUCKETS-2</sup></code> nanoseconds
+	 * (about nine minutes) and more.
+	 */
+	public static final int BUCKETS = 41;
+	private static final int TOTAL_NANOS = BUCKETS; // cell of the total duration, after the buckets
+	private final StripedCounter cells;
+
+	/**
+	 * Creates a new, empty {@link LatencyHistogram}.
+	 */
+	public LatencyHistogram() {
+		cells = new StripedCounter(BUCKETS + 1);
+	}
+
+	/**
+	 * Records a duration. Negative durations, which {@link System#nanoTime()} may produce on some systems, are recorded
+	 * as zero.
+	 * 
+	 * @param nanos
+	 *            The duration in nanoseconds.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		cells.add(Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1), 1);
+		cells.add(TOTAL_NANOS, nanos);
+	}
+
+	/**
+	 * Gets the number of recorded durations.
+	 * 
+	 * @return The count.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			count += cells.sum(i);
+		return count;
+	}
+
+	/**
+	 * Gets the sum of all recorded durations.
+	 * 
+	 * @return The total duration in nanoseconds.
+	 */
+	public long getTotalNanos() {
+		return cells.sum(TOTAL_NANOS);
+	}
+
+	/**
+	 * Gets the counts of all buckets.
+	 * 
+	 * @return A new array of length {@link #BUCKETS}, where element <code>i</code> is the count of bucket
+	 *         <code>i</code>.
+	 */
+	public long[] getBuckets() {
+		final long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] = cells.sum(i);
+		return counts;
+	}
+
+	/**
+	 * Gets an upper bound for the specified percentile of the recorded durations: the exclusive upper bound of the
+	 * bucket that contains it, which is at most twice the actual percentile.
+	 * 
+	 * @param percentile
+	 *            The percentile, between <code>0</code> and <code>1</code>; for example, <code>0.99</code> for the
+	 *            99th percentile.
+	 * @return The upper bound in nanoseconds, or <code>0</code> if no durations were recorded.
+	 */
+	public long getPercentile(final double percentile) {
+		final long[] counts = getBuckets();
+		long total = 0;
+		for (final long c : counts)
+			total += c;
+		final long rank = (long) Math.ceil(percentile * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank && seen > 0)
+				return 1L << i;
+		}
+		return 0;
+	}
+
+	/**
+	 * Summarizes this histogram in one line: the count and, if there are any durations, their mean, median and 99th
+	 * percentile.
+	 * 
+	 * @return The summary.
+	 */
+	@Override
+	public String toString() {
+		final long count = getCount();
+		if (count == 0)
+			return "0";
+		return count + ", mean " + getTotalNanos() / count + " ns, median < " + getPercentile(0.5) + " ns, 99% < "
+				+ getPercentile(0.99) + " ns";
+	}
+}
\ No newline at end of file
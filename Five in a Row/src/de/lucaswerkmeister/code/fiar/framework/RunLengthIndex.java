@@ -0,0 +1,218 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.framework;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the length of the rows running through each field of a {@link Board}, so that
+ * {@link Board#wasWinningMove(int, int)} only has to look at the field itself.
+ * <p>
+ * For every player and each of the four directions (horizontal, vertical and both diagonals), the index stores how
+ * many consecutive fields that {@link Player#equalsWithJoker(Player) count for the player} end at a field, once looking
+ * backwards and once looking forwards along that direction. A row through a field is then as long as both counts
+ * added, minus the field itself. All counts are capped at {@link Server#IN_A_ROW}, which is all a winning check needs
+ * to know; thanks to that cap, changing one field only touches at most {@link Server#IN_A_ROW} fields per direction.
+ * <p>
+ * The index for a player is built from the board the first time that player's rows are asked for, and from then on
+ * kept up to date by {@link #fieldChanged(int, int, Player)}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+final class RunLengthIndex {
+	private static final int[] DX = new int[] {1, 0, 1, 1 };
+	private static final int[] DY = new int[] {0, 1, 1, -1 };
+	private final Board board;
+	private final int width;
+	private final int height;
+	private int[] ids; // ids[i] is the ID of the player whose counts are stored in runs[i]
+	// runs[i][d][field] counts backwards along direction d, runs[i][d + 4][field] forwards
+	private byte[][][] runs;
+
+	/**
+	 * Creates a new, empty {@link RunLengthIndex} for the specified board.
+	 * 
+	 * @param board
+	 *            The board.
+	 */
+	RunLengthIndex(final Board board) {
+		this.board = board;
+		width = board.getWidth();
+		height = board.getHeight();
+		ids = new int[0];
+		runs = new byte[0][][];
+	}
+
+	/**
+	 * Determines if the rows through the specified field are long enough to win for the specified player.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @param p
+	 *            The player.
+	 * @return <code>true</code> if a row of at least {@link Server#IN_A_ROW} fields counting for the player runs
+	 *         through the field in any direction, <code>false</code> otherwise.
+	 */
+	boolean isWinning(final int x, final int y, final Player p) {
+		final byte[][] r = runsOf(p.getID());
+		final int field = x * height + y;
+		for (int d = 0; d < 4; d++)
+			if (r[d][field] + r[d + 4][field] - 1 >= Server.IN_A_ROW)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Estimates how many bytes the counts of this index use.
+	 * 
+	 * @return The estimated memory use in bytes.
+	 */
+	long getMemoryEstimate() {
+		return 8L * ids.length * width * height;
+	}
+
+	/**
+	 * Updates the index after a field of the board changed. This method must be called after the board has been
+	 * changed.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @param p
+	 *            The player now occupying the field.
+	 */
+	void fieldChanged(final int x, final int y, final Player p) {
+		final int field = x * height + y;
+		for (int i = 0; i < ids.length; i++) {
+			final boolean counts = countsFor(p, ids[i]);
+			final byte[][] r = runs[i];
+			if (counts == (r[0][field] != 0))
+				continue; // nothing changes for this player
+			for (int d = 0; d < 4; d++) {
+				update(r[d], x, y, DX[d], DY[d], counts);
+				update(r[d + 4], x, y, -DX[d], -DY[d], counts);
+			}
+		}
+	}
+
+	/**
+	 * Recounts one field and propagates the change along one direction until the counts no longer change.
+	 * 
+	 * @param run
+	 *            The counts for one player and direction.
+	 * @param x
+	 *            The x coordinate of the changed field.
+	 * @param y
+	 *            The y coordinate of the changed field.
+	 * @param dx
+	 *            The x step of the direction; counts are taken looking towards <code>-dx</code>.
+	 * @param dy
+	 *            The y step of the direction; counts are taken looking towards <code>-dy</code>.
+	 * @param counts
+	 *            Whether the changed field now counts for the player.
+	 */
+	private void update(final byte[] run, int x, int y, final int dx, final int dy, final boolean counts) {
+		byte count = counts ? next(run, x - dx, y - dy) : 0;
+		run[x * height + y] = count;
+		for (x += dx, y += dy; onBoard(x, y); x += dx, y += dy) {
+			final int field = x * height + y;
+			if (run[field] == 0)
+				return;
+			count = (byte) Math.min(count + 1, Server.IN_A_ROW);
+			if (run[field] == count)
+				return;
+			run[field] = count;
+		}
+	}
+
+	/**
+	 * Gets the count of a field that follows the specified field and counts for the player.
+	 * 
+	 * @param run
+	 *            The counts for one player and direction.
+	 * @param x
+	 *            The x coordinate of the preceding field.
+	 * @param y
+	 *            The y coordinate of the preceding field.
+	 * @return The preceding field's count plus one, capped at {@link Server#IN_A_ROW}.
+	 */
+	private byte next(final byte[] run, final int x, final int y) {
+		if (!onBoard(x, y))
+			return 1;
+		return (byte) Math.min(run[x * height + y] + 1, Server.IN_A_ROW);
+	}
+
+	/**
+	 * Gets the counts for the specified player, building them from the board if they don't exist yet.
+	 * 
+	 * @param id
+	 *            The player's ID.
+	 * @return The counts for that player.
+	 */
+	private byte[][] runsOf(final int id) {
+		for (int i = 0; i < ids.length; i++)
+			if (ids[i] == id)
+				return runs[i];
+		final byte[][] r = new byte[8][width * height];
+		// Ascending x and y visits each field after the field preceding it in all four directions
+		for (int x = 0; x < width; x++)
+			for (int y = 0; y < height; y++)
+				if (countsFor(board.getPlayerAt(x, y), id))
+					for (int d = 0; d < 4; d++)
+						r[d][x * height + y] = next(r[d], x - DX[d], y - DY[d]);
+		for (int x = width - 1; x >= 0; x--)
+			for (int y = height - 1; y >= 0; y--)
+				if (r[0][x * height + y] != 0)
+					for (int d = 0; d < 4; d++)
+						r[d + 4][x * height + y] = next(r[d + 4], x + DX[d], y + DY[d]);
+		ids = Arrays.copyOf(ids, ids.length + 1);
+		runs = Arrays.copyOf(runs, runs.length + 1);
+		ids[ids.length - 1] = id;
+		return runs[runs.length - 1] = r;
+	}
+
+	/**
+	 * Determines if a field occupied by <code>p</code> counts for the player with the specified ID.
+	 * 
+	 * @param p
+	 *            The occupying player. May be <code>null</code>.
+	 * @param id
+	 *            The ID of the player for whom the field may count.
+	 * @return <code>true</code> if the field counts for that player, <code>false</code> otherwise.
+	 */
+	private static boolean countsFor(final Player p, final int id) {
+		return p != null && (p.getID() == id || p.getID() == Joker.ID);
+	}
+
+	/**
+	 * Determines if a field lies on the board.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @return <code>true</code> if the field lies on the board, <code>false</code> otherwise.
+	 */
+	private boolean onBoard(final int x, final int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+}
\ No newline at end of file
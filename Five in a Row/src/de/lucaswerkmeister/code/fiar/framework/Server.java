@@ -22,6 +22,7 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.Set;
 
+import de.lucaswerkmeister.code.fiar.framework.event.FieldAction;
 import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
 import de.lucaswerkmeister.code.fiar.framework.exception.ClientFiredException;
 import de.lucaswerkmeister.code.fiar.framework.exception.IllegalMoveException;
@@ -43,7 +44,7 @@ import de.lucaswerkmeister.code.fiar.framework.exception.UnknownClientException;
  * preferred way for it to do so is to throw a {@link ClientFiredException}.
  * 
  * @author Lucas Werkmeister
- * @version 1.1
+ * @version 1.2
  */
 public interface Server extends Remote, Serializable {
 	/**
@@ -174,4 +175,27 @@ public interface Server extends Remote, Serializable {
 	 *             If some remote error occurs
 	 */
 	public Board getCurrentBoard(Client requester) throws RemoteException;
+
+	/**
+	 * Gets the changes made to the board since the specified board version.
+	 * <p>
+	 * The board version is the number of field changes since the board was created; the empty board has version
+	 * <code>0</code>. Every field change is also fired as a {@link FieldAction}, so a client can keep its own copy of the
+	 * board up to date by applying these events, and use this method to catch up if it missed some of them. Unlike
+	 * {@link #getCurrentBoard(Client)}, this only transfers the changed fields.
+	 * <p>
+	 * If the board has not yet been decided on, this method returns <code>null</code>.
+	 * 
+	 * @param requester
+	 *            The requesting client.
+	 * @param version
+	 *            The board version that the client already knows.
+	 * @return The changes since that version, or <code>null</code>.
+	 * @throws IllegalArgumentException
+	 *             If the version is negative or newer than the current board version.
+	 * @throws RemoteException
+	 *             If some remote error occurs
+	 */
+	public BoardDelta getBoardChangesSince(Client requester, int version) throws IllegalArgumentException,
+			RemoteException;
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.framework;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter, or a fixed number of counters, that many threads can increase at the same time without contending for
+ * one memory location.
+ * <p>
+ * The counts are split over several stripes, and each thread adds to the stripe picked by its thread ID; each stripe
+ * holds one cell per counter, and the stripes are spaced at least a cache line apart, so that threads on different
+ * processors don't invalidate each other's caches. Adding is thus cheap, while reading a {@link #sum(int) sum} has to
+ * add up all stripes. The sum is not a snapshot: additions that happen while it is being computed may or may not be
+ * included.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.2
+ */
+public final class StripedCounter {
+	private static final int PADDING = 8; // longs per cache line
+	private static final int MAX_STRIPES = 64;
+	private static final int STRIPES;
+	private final AtomicLongArray stripes;
+	private final int cells;
+	private final int stride; // distance between two stripes
+
+	static {
+		int stripes = 1;
+		while (stripes < 2 * Runtime.getRuntime().availableProcessors() && stripes < MAX_STRIPES)
+			stripes <<= 1;
+		STRIPES = stripes;
+	}
+
+	/**
+	 * Creates a new {@link StripedCounter} with one count of zero.
+	 */
+	public StripedCounter() {
+		this(1);
+	}
+
+	/**
+	 * Creates a new {@link StripedCounter} with the specified number of counts, which are all zero.
+	 * 
+	 * @param cells
+	 *            The number of counts.
+	 */
+	public StripedCounter(final int cells) {
+		this.cells = cells;
+		// at least PADDING longs between the last cell of one stripe and the first cell of the next one
+		stride = (cells + 2 * PADDING - 2) / PADDING * PADDING;
+		stripes = new AtomicLongArray(STRIPES * stride);
+	}
+
+	/**
+	 * Adds the specified value to the count.
+	 * 
+	 * @param value
+	 *            The value.
+	 */
+	public void add(final long value) {
+		add(0, value);
+	}
+
+	/**
+	 * Adds the specified value to the specified count.
+	 * 
+	 * @param cell
+	 *            The index of the count.
+	 * @param value
+	 *            The value.
+	 */
+	public void add(final int cell, final long value) {
+		if (cell < 0 || cell >= cells)
+			throw new IndexOutOfBoundsException("Cell " + cell + " of " + cells + "!");
+		stripes.getAndAdd(stripe() * stride + cell, value);
+	}
+
+	/**
+	 * Adds one to the count.
+	 */
+	public void increment() {
+		add(1);
+	}
+
+	/**
+	 * Gets the sum of all stripes.
+	 * 
+	 * @return The count.
+	 */
+	public long sum() {
+		return sum(0);
+	}
+
+	/**
+	 * Gets the sum of the specified count over all stripes.
+	 * 
+	 * @param cell
+	 *            The index of the count.
+	 * @return The count.
+	 */
+	public long sum(final int cell) {
+		if (cell < 0 || cell >= cells)
+			throw new IndexOutOfBoundsException("Cell " + cell + " of " + cells + "!");
+		long sum = 0;
+		for (int i = 0; i < STRIPES; i++)
+			sum += stripes.get(i * stride + cell);
+		return sum;
+	}
+
+	/**
+	 * Private utility method to pick the stripe of the current thread.
+	 * 
+	 * @return The number of the stripe.
+	 */
+	private static int stripe() {
+		long id = Thread.currentThread().getId();
+		id *= 0x9E3779B97F4A7C15L; // spread consecutive IDs over all stripes
+		return (int) (id >>> 58) & STRIPES - 1; // the top six bits suffice for MAX_STRIPES
+	}
+
+}
\ No newline at end of file
@@ -25,10 +25,14 @@ import de.lucaswerkmeister.code.fiar.framework.Player;
  * Indicates that a player has marked a field as blocked. Only allowed during "Block fields" phase.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.1
  */
 public class BlockField extends FieldAction {
 	private static final long serialVersionUID = -4341291965176463496L;
+	/**
+	 * The {@link PlayerAction#getTag() tag} of this action class.
+	 */
+	public static final int TAG = 1;
 
 	/**
 	 * A new {@link BlockField} by the specified player on the specified field.
@@ -55,4 +59,9 @@ public class BlockField extends FieldAction {
 	public BlockField(final Player actingPlayer, final Point point) {
 		super(actingPlayer, point);
 	}
+
+	@Override
+	public int getTag() {
+		return TAG;
+	}
 }
\ No newline at end of file
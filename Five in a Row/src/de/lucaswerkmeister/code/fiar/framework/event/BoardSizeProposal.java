@@ -25,10 +25,14 @@ import de.lucaswerkmeister.code.fiar.framework.Player;
  * Indicates that a player proposed a specific board size. Only allowed during "Choose board size" phase.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.1
  */
 public class BoardSizeProposal extends PlayerAction {
 	private static final long serialVersionUID = 6868425142825023278L;
+	/**
+	 * The {@link PlayerAction#getTag() tag} of this action class.
+	 */
+	public static final int TAG = 0;
 	private final Dimension size;
 
 	/**
@@ -52,4 +56,9 @@ public class BoardSizeProposal extends PlayerAction {
 	public Dimension getSize() {
 		return size;
 	}
+
+	@Override
+	public int getTag() {
+		return TAG;
+	}
 }
\ No newline at end of file
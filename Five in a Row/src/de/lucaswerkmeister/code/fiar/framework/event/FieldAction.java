@@ -25,7 +25,7 @@ import de.lucaswerkmeister.code.fiar.framework.Player;
  * Represents an action on one field of the board.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.1
  */
 public abstract class FieldAction extends PlayerAction {
 	private static final long serialVersionUID = 4156717078863597905L;
@@ -62,10 +62,31 @@ public abstract class FieldAction extends PlayerAction {
 
 	/**
 	 * Gets the field that was acted upon.
+	 * <p>
+	 * This method creates a new {@link Point} on every call; {@link #getX()} and {@link #getY()} don't allocate
+	 * anything.
 	 * 
 	 * @return The field.
 	 */
 	public final Point getField() {
 		return new Point(x, y);
 	}
+
+	/**
+	 * Gets the x coordinate of the field that was acted upon.
+	 * 
+	 * @return The x coordinate of the field.
+	 */
+	public final int getX() {
+		return x;
+	}
+
+	/**
+	 * Gets the y coordinate of the field that was acted upon.
+	 * 
+	 * @return The y coordinate of the field.
+	 */
+	public final int getY() {
+		return y;
+	}
 }
\ No newline at end of file
@@ -23,10 +23,14 @@ import de.lucaswerkmeister.code.fiar.framework.Player;
  * Indicates a forfeit of a player.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.1
  */
 public class Forfeit extends PlayerAction {
 	private static final long serialVersionUID = 35599765809926089L;
+	/**
+	 * The {@link PlayerAction#getTag() tag} of this action class.
+	 */
+	public static final int TAG = 8;
 
 	/**
 	 * A new {@link Forfeit} by the specified player.
@@ -37,4 +41,9 @@ public class Forfeit extends PlayerAction {
 	public Forfeit(final Player capitulatingPlayer) {
 		super(capitulatingPlayer);
 	}
+
+	@Override
+	public int getTag() {
+		return TAG;
+	}
 }
\ No newline at end of file
@@ -24,10 +24,14 @@ import de.lucaswerkmeister.code.fiar.framework.Player;
  * Indicates that the player accepts the distribution of "joker" fields as it is saved in this instance.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.2
  */
 public class JokerDistributionAccepted extends StoneDistributionAccepted {
 	private static final long serialVersionUID = -8196308727321069709L;
+	/**
+	 * The {@link PlayerAction#getTag() tag} of this action class.
+	 */
+	public static final int TAG = 6;
 
 	/**
 	 * A new {@link JokerDistributionAccepted} by the specified player with the specified board.
@@ -40,4 +44,21 @@ public class JokerDistributionAccepted extends StoneDistributionAccepted {
 	public JokerDistributionAccepted(final Player acceptingPlayer, final Board acceptedBoard) {
 		super(acceptingPlayer, acceptedBoard);
 	}
+
+	/**
+	 * A new {@link JokerDistributionAccepted} by the specified player with the specified board hash.
+	 * 
+	 * @param acceptingPlayer
+	 *            The player that accepts the distribution.
+	 * @param acceptedHash
+	 *            The {@link Board#getHash() hash} of the board that the player accepts.
+	 */
+	public JokerDistributionAccepted(final Player acceptingPlayer, final long acceptedHash) {
+		super(acceptingPlayer, acceptedHash);
+	}
+
+	@Override
+	public int getTag() {
+		return TAG;
+	}
 }
\ No newline at end of file
@@ -25,10 +25,14 @@ import de.lucaswerkmeister.code.fiar.framework.Player;
  * Indicates that a player marked a field as Joker field. Only allowed during "Set joker fields" phase.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.1
  */
 public class JokerField extends FieldAction {
 	private static final long serialVersionUID = 3832525610688669797L;
+	/**
+	 * The {@link PlayerAction#getTag() tag} of this action class.
+	 */
+	public static final int TAG = 4;
 
 	/**
 	 * A new {@link JokerField} by the specified player on the specified field.
@@ -55,4 +59,9 @@ public class JokerField extends FieldAction {
 	public JokerField(final Player actingPlayer, final Point point) {
 		super(actingPlayer, point);
 	}
+
+	@Override
+	public int getTag() {
+		return TAG;
+	}
 }
\ No newline at end of file
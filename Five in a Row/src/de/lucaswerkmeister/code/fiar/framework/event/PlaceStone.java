@@ -25,10 +25,14 @@ import de.lucaswerkmeister.code.fiar.framework.Player;
  * Indicates that a stone was placed by a player.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.1
  */
 public class PlaceStone extends FieldAction {
 	private static final long serialVersionUID = -6366562301577889658L;
+	/**
+	 * The {@link PlayerAction#getTag() tag} of this action class.
+	 */
+	public static final int TAG = 7;
 
 	/**
 	 * A new {@link PlaceStone} by the specified player on the specified field.
@@ -55,4 +59,9 @@ public class PlaceStone extends FieldAction {
 	public PlaceStone(final Player actingPlayer, final Point point) {
 		super(actingPlayer, point);
 	}
+
+	@Override
+	public int getTag() {
+		return TAG;
+	}
 }
\ No newline at end of file
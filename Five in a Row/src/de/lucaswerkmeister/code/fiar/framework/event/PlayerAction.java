@@ -23,10 +23,14 @@ import de.lucaswerkmeister.code.fiar.framework.Player;
  * Represents some action that one player acts.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.1
  */
 public abstract class PlayerAction extends GameEvent {
 	private static final long serialVersionUID = 6259563891916770883L;
+	/**
+	 * The number of action classes, which is one more than the highest {@link #getTag() tag}.
+	 */
+	public static final int TAG_COUNT = 9;
 	private final Player actingPlayer;
 
 	/**
@@ -39,6 +43,15 @@ public abstract class PlayerAction extends GameEvent {
 		this.actingPlayer = actingPlayer;
 	}
 
+	/**
+	 * Gets the tag of this action's class: a small number, unique among all action classes and less than
+	 * {@link #TAG_COUNT}, which servers use to look up whether an action is allowed in a bit mask instead of a set of
+	 * classes. Each concrete action class declares its tag as a constant <code>TAG</code>.
+	 * 
+	 * @return The tag of this action's class.
+	 */
+	public abstract int getTag();
+
 	/**
 	 * Gets the player that fired the action.
 	 * 
@@ -21,14 +21,17 @@ import de.lucaswerkmeister.code.fiar.framework.Board;
 import de.lucaswerkmeister.code.fiar.framework.Player;
 
 /**
- * Indicates that the player accepts the board as it is saved in this instance.
+ * Indicates that the player accepts the board whose {@link Board#getHash() hash} is saved in this instance.
+ * <p>
+ * Only the hash is saved, not the board itself, so accepting a distribution doesn't send the whole board to the
+ * server, and the server only has to compare the hash with the hash of its own board.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.1
  */
 public abstract class StoneDistributionAccepted extends PlayerAction {
-	private static final long serialVersionUID = -2383498821580521814L;
-	private final Board acceptedBoard;
+	private static final long serialVersionUID = 4470157380637493307L;
+	private final long acceptedHash;
 
 	/**
 	 * A new {@link StoneDistributionAccepted} by the specified player with the specified board.
@@ -39,16 +42,28 @@ public abstract class StoneDistributionAccepted extends PlayerAction {
 	 *            The board that the player accepts.
 	 */
 	public StoneDistributionAccepted(final Player acceptingPlayer, final Board acceptedBoard) {
+		this(acceptingPlayer, acceptedBoard.getHash());
+	}
+
+	/**
+	 * A new {@link StoneDistributionAccepted} by the specified player with the specified board hash.
+	 * 
+	 * @param acceptingPlayer
+	 *            The player that accepts the distribution.
+	 * @param acceptedHash
+	 *            The hash of the board that the player accepts.
+	 */
+	public StoneDistributionAccepted(final Player acceptingPlayer, final long acceptedHash) {
 		super(acceptingPlayer);
-		this.acceptedBoard = acceptedBoard;
+		this.acceptedHash = acceptedHash;
 	}
 
 	/**
-	 * Gets a copy of the board that this instance marks as accepted.
+	 * Gets the hash of the board that this instance marks as accepted.
 	 * 
-	 * @return The accepted board.
+	 * @return The accepted board's hash.
 	 */
-	public Board getAcceptedBoard() {
-		return acceptedBoard.clone();
+	public long getAcceptedHash() {
+		return acceptedHash;
 	}
 }
\ No newline at end of file
@@ -30,6 +30,10 @@ import de.lucaswerkmeister.code.fiar.framework.Player;
  */
 public class UnblockField extends FieldAction {
 	private static final long serialVersionUID = 2867548602925526571L;
+	/**
+	 * The {@link PlayerAction#getTag() tag} of this action class.
+	 */
+	public static final int TAG = 2;
 
 	/**
 	 * A new {@link UnblockField} by the specified player on the specified field.
@@ -57,4 +61,9 @@ public class UnblockField extends FieldAction {
 	public UnblockField(final Player actingPlayer, final Point point) {
 		super(actingPlayer, point);
 	}
+
+	@Override
+	public int getTag() {
+		return TAG;
+	}
 }
\ No newline at end of file
@@ -25,10 +25,14 @@ import de.lucaswerkmeister.code.fiar.framework.Player;
  * Indicates that a player unmarked a field as Joker field. Only allowed during "set joker fields" phase.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.1
  */
 public class UnjokerField extends FieldAction {
 	private static final long serialVersionUID = -2669408717603994560L;
+	/**
+	 * The {@link PlayerAction#getTag() tag} of this action class.
+	 */
+	public static final int TAG = 5;
 
 	/**
 	 * A new {@link UnjokerField} by the specified player on the specified field.
@@ -55,4 +59,9 @@ public class UnjokerField extends FieldAction {
 	public UnjokerField(final Player actingPlayer, final Point point) {
 		super(actingPlayer, point);
 	}
+
+	@Override
+	public int getTag() {
+		return TAG;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,281 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.network;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A connection that sends and receives frames over a non-blocking {@link SocketChannel}.
+ * <p>
+ * A frame is a four-byte length followed by that many bytes, which are interpreted by the subclass. Frames can be
+ * {@link #send(ByteBuffer) sent} from any thread; they are queued and written by the connection's {@link EventLoop},
+ * several at once if possible. Received frames are passed to {@link #frameReceived(ByteBuffer)} on the event loop.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+abstract class Connection implements EventLoop.Handler {
+	/**
+	 * The maximum length of a frame. Longer frames are treated as a protocol error.
+	 */
+	static final int MAX_FRAME_SIZE = 1 << 24;
+	/**
+	 * The maximum number of bytes that may be waiting to be written. If a peer does not read fast enough to stay below
+	 * this limit, the connection is closed.
+	 */
+	static final int MAX_BACKLOG = 1 << 22;
+	private static final int MAX_GATHER = 64;
+	private final EventLoop loop;
+	private final SocketChannel channel;
+	private final Queue<ByteBuffer> writeQueue;
+	private final AtomicInteger backlog;
+	private final AtomicBoolean flushScheduled;
+	private final AtomicBoolean closed;
+	private final ByteBuffer[] gather;
+	private final Runnable flushTask;
+	private SelectionKey key;
+	private ByteBuffer readBuffer;
+
+	/**
+	 * Creates a new {@link Connection} on the specified channel. The connection must be {@link #start() started}
+	 * before it can send or receive frames.
+	 * 
+	 * @param loop
+	 *            The event loop of the connection.
+	 * @param channel
+	 *            The channel, which must be connected.
+	 */
+	Connection(final EventLoop loop, final SocketChannel channel) {
+		this.loop = loop;
+		this.channel = channel;
+		writeQueue = new ConcurrentLinkedQueue<>();
+		backlog = new AtomicInteger();
+		flushScheduled = new AtomicBoolean();
+		closed = new AtomicBoolean();
+		gather = new ByteBuffer[MAX_GATHER];
+		readBuffer = ByteBuffer.allocate(8192);
+		flushTask = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					flush();
+				} catch (final IOException e) {
+					close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Registers the connection with its event loop, so that it starts receiving frames.
+	 */
+	final void start() {
+		loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					channel.configureBlocking(false);
+					channel.socket().setTcpNoDelay(true);
+					key = loop.register(channel, SelectionKey.OP_READ, Connection.this);
+					if (!writeQueue.isEmpty())
+						flush();
+				} catch (final IOException e) {
+					try {
+						channel.close();
+					} catch (final IOException e1) {
+						// nothing we can do about it
+					}
+					closed();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Queues a frame for sending.
+	 * 
+	 * @param frame
+	 *            The frame, including its length, from position zero to its limit. The buffer must not be modified
+	 *            afterwards.
+	 * @return <code>true</code> if the frame was queued, <code>false</code> if the connection is closed or was closed
+	 *         because too many bytes are waiting to be written.
+	 */
+	final boolean send(final ByteBuffer frame) {
+		if (closed.get())
+			return false;
+		if (backlog.addAndGet(frame.remaining()) > MAX_BACKLOG) {
+			close();
+			return false;
+		}
+		writeQueue.add(frame);
+		if (flushScheduled.compareAndSet(false, true))
+			loop.execute(flushTask);
+		return true;
+	}
+
+	/**
+	 * Closes the connection. Frames that are still waiting to be written are discarded.
+	 */
+	final void close() {
+		loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (key != null)
+					EventLoop.close(key);
+				else {
+					try {
+						channel.close();
+					} catch (final IOException e) {
+						// nothing we can do about it
+					}
+					closed();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Determines if the connection is closed.
+	 * 
+	 * @return <code>true</code> if the connection is closed, <code>false</code> otherwise.
+	 */
+	final boolean isClosed() {
+		return closed.get();
+	}
+
+	@Override
+	public final void ready(final SelectionKey key) throws IOException {
+		if (key.isReadable())
+			read();
+		if (key.isValid() && key.isWritable())
+			flush();
+	}
+
+	@Override
+	public final void closed() {
+		if (closed.compareAndSet(false, true)) {
+			writeQueue.clear();
+			connectionClosed();
+		}
+	}
+
+	/**
+	 * Handles a received frame. Called on the event loop; the frame's contents are only valid until this method
+	 * returns.
+	 * 
+	 * @param frame
+	 *            The frame without its length, from its position to its limit.
+	 * @throws IOException
+	 *             If the frame is invalid. The connection is closed afterwards.
+	 */
+	abstract void frameReceived(ByteBuffer frame) throws IOException;
+
+	/**
+	 * Called once after the connection was closed, for whatever reason.
+	 */
+	abstract void connectionClosed();
+
+	/**
+	 * Private utility method to read from the channel and pass all complete frames to
+	 * {@link #frameReceived(ByteBuffer)}.
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs, the peer closed the connection, or a frame is empty, too long or truncated.
+	 */
+	private void read() throws IOException {
+		if (channel.read(readBuffer) < 0)
+			throw new EOFException();
+		readBuffer.flip();
+		while (readBuffer.remaining() >= 4) {
+			final int length = readBuffer.getInt(readBuffer.position());
+			// every frame starts with its type
+			if (length < 1 || length > MAX_FRAME_SIZE)
+				throw new StreamCorruptedException("Invalid frame length " + length + "!");
+			if (readBuffer.remaining() < 4 + length) {
+				if (readBuffer.capacity() < 4 + length) {
+					// grow the buffer so that the frame fits
+					final ByteBuffer bigger = ByteBuffer.allocate(4 + length);
+					bigger.put(readBuffer);
+					readBuffer = bigger;
+					return;
+				}
+				break;
+			}
+			final int end = readBuffer.position() + 4 + length;
+			final int limit = readBuffer.limit();
+			readBuffer.position(readBuffer.position() + 4).limit(end);
+			try {
+				frameReceived(readBuffer.slice());
+			} catch (final BufferUnderflowException e) {
+				throw new StreamCorruptedException("Frame is truncated!");
+			}
+			readBuffer.limit(limit).position(end);
+		}
+		readBuffer.compact();
+	}
+
+	/**
+	 * Private utility method to write as many queued frames as possible. If the channel can't take all frames, the
+	 * connection waits until the channel is writable again.
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs.
+	 */
+	private void flush() throws IOException {
+		if (key == null || !key.isValid())
+			return; // not started yet or closed
+		while (true) {
+			int count = 0;
+			for (final ByteBuffer frame : writeQueue) {
+				gather[count++] = frame;
+				if (count == MAX_GATHER)
+					break;
+			}
+			if (count == 0) {
+				key.interestOps(SelectionKey.OP_READ);
+				flushScheduled.set(false);
+				// a frame may have been queued after the queue was found empty, but before the flag was cleared
+				if (writeQueue.isEmpty() || !flushScheduled.compareAndSet(false, true))
+					return;
+				continue;
+			}
+			channel.write(gather, 0, count);
+			for (int i = 0; i < count; i++) {
+				if (gather[i].hasRemaining()) {
+					Arrays.fill(gather, null);
+					key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					return;
+				}
+				backlog.addAndGet(-gather[i].limit());
+				writeQueue.poll();
+			}
+			Arrays.fill(gather, 0, count, null);
+		}
+	}
+}
\ No newline at end of file
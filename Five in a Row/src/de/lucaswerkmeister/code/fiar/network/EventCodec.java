@@ -0,0 +1,605 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.network;
+
+import java.awt.Dimension;
+import java.io.StreamCorruptedException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Joker;
+import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.event.AllOthersForfeit;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockField;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.FieldAction;
+import de.lucaswerkmeister.code.fiar.framework.event.Forfeit;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.InternalError;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerField;
+import de.lucaswerkmeister.code.fiar.framework.event.OnlyPlayerLeft;
+import de.lucaswerkmeister.code.fiar.framework.event.PhaseChange;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerQuit;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerVictory;
+import de.lucaswerkmeister.code.fiar.framework.event.Tie;
+import de.lucaswerkmeister.code.fiar.framework.event.UnblockField;
+import de.lucaswerkmeister.code.fiar.framework.event.UnjokerField;
+import de.lucaswerkmeister.code.fiar.servers.SparseBoard;
+
+/**
+ * Encodes {@link GameEvent}s in a compact binary format, as an alternative to Java serialization.
+ * <p>
+ * A serialized event carries class descriptors for the event and everything it references, including the whole
+ * {@link Player} with its name and {@link java.awt.Color Color}. In this format, an event is one tag byte that
+ * identifies its class, followed by its fields:
+ * <ul>
+ * <li>Coordinates, sizes and counts are unsigned varints: seven bits per byte, least significant group first, with
+ * the high bit set on all but the last byte. Coordinates below 128 thus take one byte.</li>
+ * <li>Players are sent as their ID only, as a zigzag-encoded varint (so that {@link Block#ID} and {@link Joker#ID}
+ * stay short). The decoding side looks them up among the players it knows; both sides must therefore know the same
+ * players, which all clients do since the hoster tells them about every player that joins.</li>
+ * <li>Boards are sent as width and height, the number of occupied fields, and then for each occupied field in row
+ * order the number of empty fields skipped since the previous one (as a varint of up to ten bytes, since on a
+ * {@link SparseBoard} it can exceed the range of an <code>int</code>) and the occupying player. Events only carry the
+ * {@link Board#getHash() hash} of a board, which is sent as eight bytes, most significant byte first.</li>
+ * <li>Strings are sent as the varint length of their UTF-8 encoding, followed by the bytes.</li>
+ * </ul>
+ * A {@link PlaceStone} on a board smaller than 128&times;128 by a player with an ID below 64 is thus four bytes long.
+ * <p>
+ * This class is thread-safe.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.3
+ */
+public class EventCodec {
+	private static final byte BOARD_SIZE_PROPOSAL = 1;
+	private static final byte BLOCK_FIELD = 2;
+	private static final byte UNBLOCK_FIELD = 3;
+	private static final byte BLOCK_DISTRIBUTION_ACCEPTED = 4;
+	private static final byte JOKER_FIELD = 5;
+	private static final byte UNJOKER_FIELD = 6;
+	private static final byte JOKER_DISTRIBUTION_ACCEPTED = 7;
+	private static final byte PLACE_STONE = 8;
+	private static final byte FORFEIT = 9;
+	private static final byte PHASE_CHANGE = 10;
+	private static final byte PLAYER_VICTORY = 11;
+	private static final byte ONLY_PLAYER_LEFT = 12;
+	private static final byte ALL_OTHERS_FORFEIT = 13;
+	private static final byte TIE = 14;
+	private static final byte PLAYER_QUIT = 15;
+	private static final byte INTERNAL_ERROR = 16;
+	private static final Map<Class<? extends GameEvent>, Byte> TAGS = new HashMap<>();
+	private static final Map<Byte, Class<? extends PlayerAction>> ACTION_CLASSES = new HashMap<>();
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private final Map<Integer, Player> players;
+
+	static {
+		TAGS.put(BoardSizeProposal.class, BOARD_SIZE_PROPOSAL);
+		TAGS.put(BlockField.class, BLOCK_FIELD);
+		TAGS.put(UnblockField.class, UNBLOCK_FIELD);
+		TAGS.put(BlockDistributionAccepted.class, BLOCK_DISTRIBUTION_ACCEPTED);
+		TAGS.put(JokerField.class, JOKER_FIELD);
+		TAGS.put(UnjokerField.class, UNJOKER_FIELD);
+		TAGS.put(JokerDistributionAccepted.class, JOKER_DISTRIBUTION_ACCEPTED);
+		TAGS.put(PlaceStone.class, PLACE_STONE);
+		TAGS.put(Forfeit.class, FORFEIT);
+		TAGS.put(PhaseChange.class, PHASE_CHANGE);
+		TAGS.put(PlayerVictory.class, PLAYER_VICTORY);
+		TAGS.put(OnlyPlayerLeft.class, ONLY_PLAYER_LEFT);
+		TAGS.put(AllOthersForfeit.class, ALL_OTHERS_FORFEIT);
+		TAGS.put(Tie.class, TIE);
+		TAGS.put(PlayerQuit.class, PLAYER_QUIT);
+		TAGS.put(InternalError.class, INTERNAL_ERROR);
+		for (final Map.Entry<Class<? extends GameEvent>, Byte> tag : TAGS.entrySet())
+			if (PlayerAction.class.isAssignableFrom(tag.getKey()))
+				ACTION_CLASSES.put(tag.getValue(), tag.getKey().asSubclass(PlayerAction.class));
+	}
+
+	/**
+	 * Creates a new {@link EventCodec} that knows the specified players, as well as the {@link NoPlayer}, the
+	 * {@link Block} and the {@link Joker}.
+	 * 
+	 * @param players
+	 *            The players.
+	 */
+	public EventCodec(final Collection<? extends Player> players) {
+		this.players = new ConcurrentHashMap<>();
+		addPlayer(NoPlayer.getInstance());
+		addPlayer(Block.getInstance());
+		addPlayer(Joker.getInstance());
+		for (final Player p : players)
+			addPlayer(p);
+	}
+
+	/**
+	 * Adds a player to the players that this codec knows, replacing any known player with the same ID.
+	 * 
+	 * @param p
+	 *            The player.
+	 */
+	public void addPlayer(final Player p) {
+		players.put(p.getID(), p);
+	}
+
+	/**
+	 * Gets the player with the specified ID.
+	 * 
+	 * @param id
+	 *            The player ID.
+	 * @return The player, or <code>null</code> if this codec does not know a player with that ID.
+	 */
+	public Player getPlayer(final int id) {
+		return players.get(id);
+	}
+
+	/**
+	 * Encodes the specified event into a new byte array.
+	 * 
+	 * @param e
+	 *            The event.
+	 * @return The encoded event.
+	 * @throws IllegalArgumentException
+	 *             If the event's class is not supported.
+	 */
+	public byte[] encode(final GameEvent e) throws IllegalArgumentException {
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		while (true)
+			try {
+				encode(e, buffer);
+				return Arrays.copyOf(buffer.array(), buffer.position());
+			} catch (final BufferOverflowException overflow) {
+				buffer = ByteBuffer.allocate(buffer.capacity() * 2); // only long strings need this
+			}
+	}
+
+	/**
+	 * Encodes the specified event into the buffer, starting at the buffer's position.
+	 * 
+	 * @param e
+	 *            The event.
+	 * @param out
+	 *            The buffer.
+	 * @throws IllegalArgumentException
+	 *             If the event's class is not supported.
+	 * @throws BufferOverflowException
+	 *             If the buffer is too small. The buffer's position is then undefined.
+	 */
+	public void encode(final GameEvent e, final ByteBuffer out) throws IllegalArgumentException,
+			BufferOverflowException {
+		final byte tag = tagOf(e.getClass());
+		out.put(tag);
+		switch (tag) {
+		case BOARD_SIZE_PROPOSAL:
+			final Dimension size = ((BoardSizeProposal) e).getSize();
+			putPlayer(out, ((PlayerAction) e).getActingPlayer());
+			putVarint(out, size.width);
+			putVarint(out, size.height);
+			return;
+		case BLOCK_FIELD:
+		case UNBLOCK_FIELD:
+		case JOKER_FIELD:
+		case UNJOKER_FIELD:
+		case PLACE_STONE:
+			final FieldAction fa = (FieldAction) e;
+			putPlayer(out, fa.getActingPlayer());
+			putVarint(out, fa.getX());
+			putVarint(out, fa.getY());
+			return;
+		case BLOCK_DISTRIBUTION_ACCEPTED:
+			putPlayer(out, ((PlayerAction) e).getActingPlayer());
+			out.putLong(((BlockDistributionAccepted) e).getAcceptedHash());
+			return;
+		case JOKER_DISTRIBUTION_ACCEPTED:
+			putPlayer(out, ((PlayerAction) e).getActingPlayer());
+			out.putLong(((JokerDistributionAccepted) e).getAcceptedHash());
+			return;
+		case FORFEIT:
+			putPlayer(out, ((PlayerAction) e).getActingPlayer());
+			return;
+		case PHASE_CHANGE:
+			final int[] phase = ((PhaseChange) e).getNewPhase();
+			putVarint(out, phase.length);
+			for (final int p : phase)
+				putVarint(out, zigzag(p));
+			return;
+		case PLAYER_VICTORY:
+		case ONLY_PLAYER_LEFT:
+		case ALL_OTHERS_FORFEIT:
+			putPlayer(out, ((PlayerVictory) e).getWinningPlayer());
+			return;
+		case TIE:
+			return;
+		case PLAYER_QUIT:
+			putPlayer(out, ((PlayerQuit) e).getQuittingPlayer());
+			return;
+		case INTERNAL_ERROR:
+			// the cause is not sent, but it is usually part of the message anyway
+			putString(out, ((InternalError) e).getMessage());
+			return;
+		}
+	}
+
+	/**
+	 * Decodes the specified event.
+	 * 
+	 * @param in
+	 *            The encoded event.
+	 * @return The event.
+	 * @throws StreamCorruptedException
+	 *             If the bytes are not a valid event or refer to an unknown player.
+	 */
+	public GameEvent decode(final byte[] in) throws StreamCorruptedException {
+		final ByteBuffer buffer = ByteBuffer.wrap(in);
+		final GameEvent e = decode(buffer);
+		if (buffer.hasRemaining())
+			throw new StreamCorruptedException("Trailing bytes after event!");
+		return e;
+	}
+
+	/**
+	 * Decodes one event from the buffer, starting at the buffer's position. Afterwards, the buffer is positioned
+	 * directly behind the event.
+	 * 
+	 * @param in
+	 *            The buffer.
+	 * @return The event.
+	 * @throws StreamCorruptedException
+	 *             If the bytes are not a valid event or refer to an unknown player.
+	 */
+	public GameEvent decode(final ByteBuffer in) throws StreamCorruptedException {
+		try {
+			final byte tag = in.get();
+			switch (tag) {
+			case BOARD_SIZE_PROPOSAL: {
+				final Player p = getPlayer(in);
+				return new BoardSizeProposal(p, new Dimension(getVarint(in), getVarint(in)));
+			}
+			case BLOCK_FIELD:
+				return new BlockField(getPlayer(in), getVarint(in), getVarint(in));
+			case UNBLOCK_FIELD:
+				return new UnblockField(getPlayer(in), getVarint(in), getVarint(in));
+			case BLOCK_DISTRIBUTION_ACCEPTED:
+				return new BlockDistributionAccepted(getPlayer(in), in.getLong());
+			case JOKER_FIELD:
+				return new JokerField(getPlayer(in), getVarint(in), getVarint(in));
+			case UNJOKER_FIELD:
+				return new UnjokerField(getPlayer(in), getVarint(in), getVarint(in));
+			case JOKER_DISTRIBUTION_ACCEPTED:
+				return new JokerDistributionAccepted(getPlayer(in), in.getLong());
+			case PLACE_STONE:
+				return new PlaceStone(getPlayer(in), getVarint(in), getVarint(in));
+			case FORFEIT:
+				return new Forfeit(getPlayer(in));
+			case PHASE_CHANGE:
+				final int[] phase = new int[getLength(in)];
+				for (int i = 0; i < phase.length; i++)
+					phase[i] = unzigzag(getVarint(in));
+				return new PhaseChange(phase);
+			case PLAYER_VICTORY:
+				return new PlayerVictory(getPlayer(in));
+			case ONLY_PLAYER_LEFT:
+				return new OnlyPlayerLeft(getPlayer(in));
+			case ALL_OTHERS_FORFEIT:
+				return new AllOthersForfeit(getPlayer(in));
+			case TIE:
+				return new Tie();
+			case PLAYER_QUIT:
+				return new PlayerQuit(getPlayer(in));
+			case INTERNAL_ERROR:
+				return new InternalError(getString(in));
+			default:
+				throw new StreamCorruptedException("Unknown event tag " + tag + "!");
+			}
+		} catch (final BufferUnderflowException e) {
+			throw new StreamCorruptedException("Event is truncated!");
+		}
+	}
+
+	/**
+	 * Gets the tag that identifies the specified event class in this format.
+	 * 
+	 * @param eventClass
+	 *            The event class.
+	 * @return The tag.
+	 * @throws IllegalArgumentException
+	 *             If the event class is not supported.
+	 */
+	static byte tagOf(final Class<? extends GameEvent> eventClass) throws IllegalArgumentException {
+		final Byte tag = TAGS.get(eventClass);
+		if (tag == null)
+			throw new IllegalArgumentException("Unsupported event class " + eventClass.getName() + "!");
+		return tag;
+	}
+
+	/**
+	 * Gets the action class identified by the specified tag.
+	 * 
+	 * @param tag
+	 *            The tag.
+	 * @return The action class.
+	 * @throws StreamCorruptedException
+	 *             If the tag does not identify a {@link PlayerAction} class.
+	 */
+	static Class<? extends PlayerAction> actionClassOf(final byte tag) throws StreamCorruptedException {
+		final Class<? extends PlayerAction> actionClass = ACTION_CLASSES.get(tag);
+		if (actionClass == null)
+			throw new StreamCorruptedException("Unknown action tag " + tag + "!");
+		return actionClass;
+	}
+
+	/**
+	 * Utility method to write an unsigned varint.
+	 * 
+	 * @param out
+	 *            The buffer.
+	 * @param value
+	 *            The value, interpreted as unsigned.
+	 */
+	static void putVarint(final ByteBuffer out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	/**
+	 * Utility method to read an unsigned varint.
+	 * 
+	 * @param in
+	 *            The buffer.
+	 * @return The value.
+	 * @throws StreamCorruptedException
+	 *             If the varint is longer than five bytes.
+	 */
+	static int getVarint(final ByteBuffer in) throws StreamCorruptedException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			final byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new StreamCorruptedException("Varint is too long!");
+	}
+
+	/**
+	 * Utility method to read the number of elements that follow, each of which takes at least one byte.
+	 * 
+	 * @param in
+	 *            The buffer.
+	 * @return The number of elements.
+	 * @throws StreamCorruptedException
+	 *             If the varint is invalid, or if fewer bytes remain than the number of elements.
+	 */
+	static int getLength(final ByteBuffer in) throws StreamCorruptedException {
+		final int length = getVarint(in);
+		if (length < 0 || length > in.remaining())
+			throw new StreamCorruptedException("Invalid length " + (length & 0xFFFFFFFFL) + "!");
+		return length;
+	}
+
+	/**
+	 * Utility method to write an unsigned varint of up to ten bytes.
+	 * 
+	 * @param out
+	 *            The buffer.
+	 * @param value
+	 *            The value.
+	 */
+	static void putVarlong(final ByteBuffer out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	/**
+	 * Utility method to read an unsigned varint of up to ten bytes.
+	 * 
+	 * @param in
+	 *            The buffer.
+	 * @return The value.
+	 * @throws StreamCorruptedException
+	 *             If the varint is longer than ten bytes.
+	 */
+	static long getVarlong(final ByteBuffer in) throws StreamCorruptedException {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			final byte b = in.get();
+			value |= (b & 0x7FL) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new StreamCorruptedException("Varint is too long!");
+	}
+
+	/**
+	 * Utility method to map signed values to unsigned ones, so that small negative values stay small.
+	 * 
+	 * @param value
+	 *            The signed value.
+	 * @return The zigzag-encoded value.
+	 */
+	static int zigzag(final int value) {
+		return value << 1 ^ value >> 31;
+	}
+
+	/**
+	 * Utility method to reverse {@link #zigzag(int)}.
+	 * 
+	 * @param value
+	 *            The zigzag-encoded value.
+	 * @return The signed value.
+	 */
+	static int unzigzag(final int value) {
+		return value >>> 1 ^ -(value & 1);
+	}
+
+	/**
+	 * Utility method to write a player ID.
+	 * 
+	 * @param out
+	 *            The buffer.
+	 * @param p
+	 *            The player.
+	 */
+	static void putPlayer(final ByteBuffer out, final Player p) {
+		putVarint(out, zigzag(p.getID()));
+	}
+
+	/**
+	 * Utility method to read a player ID and look up the player.
+	 * 
+	 * @param in
+	 *            The buffer.
+	 * @return The player.
+	 * @throws StreamCorruptedException
+	 *             If the ID is invalid or the player is unknown.
+	 */
+	Player getPlayer(final ByteBuffer in) throws StreamCorruptedException {
+		final int id = unzigzag(getVarint(in));
+		final Player p = players.get(id);
+		if (p == null)
+			throw new StreamCorruptedException("Unknown player ID " + id + "!");
+		return p;
+	}
+
+	/**
+	 * Utility method to write a board.
+	 * 
+	 * @param out
+	 *            The buffer.
+	 * @param board
+	 *            The board.
+	 */
+	static void putBoard(final ByteBuffer out, final Board board) {
+		final int width = board.getWidth();
+		final int height = board.getHeight();
+		putVarint(out, width);
+		putVarint(out, height);
+		if (board instanceof SparseBoard) {
+			// walking over all fields of a sparse board could take forever
+			final long[] fields = ((SparseBoard) board).getOccupiedFields();
+			putVarint(out, fields.length);
+			long last = -1;
+			for (final long field : fields) {
+				putVarlong(out, field - last - 1);
+				putPlayer(out, board.getPlayerAt((int) (field % width), (int) (field / width)));
+				last = field;
+			}
+			return;
+		}
+		int occupied = 0;
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				if (board.getPlayerAt(x, y).getID() != 0)
+					occupied++;
+		putVarint(out, occupied);
+		int last = -1;
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++) {
+				final Player p = board.getPlayerAt(x, y);
+				if (p.getID() != 0) {
+					final int field = y * width + x;
+					putVarlong(out, field - last - 1);
+					putPlayer(out, p);
+					last = field;
+				}
+			}
+	}
+
+	/**
+	 * Utility method to read a board.
+	 * 
+	 * @param in
+	 *            The buffer.
+	 * @return The board.
+	 * @throws StreamCorruptedException
+	 *             If the board is invalid or refers to an unknown player.
+	 */
+	Board getBoard(final ByteBuffer in) throws StreamCorruptedException {
+		final int width = getVarint(in);
+		final int height = getVarint(in);
+		if (width < 0 || height < 0)
+			throw new StreamCorruptedException("Invalid board size " + width + "×" + height + "!");
+		final Board board = SparseBoard.newBoard(width, height);
+		final int occupied = getLength(in);
+		long field = -1;
+		for (int i = 0; i < occupied; i++) {
+			field += getVarlong(in) + 1;
+			if (field < 0 || field >= (long) width * height)
+				throw new StreamCorruptedException("Field " + field + " is not on the board!");
+			board.setPlayerAt((int) (field % width), (int) (field / width), getPlayer(in));
+		}
+		return board;
+	}
+
+	/**
+	 * Utility method to write a string, or <code>null</code>.
+	 * 
+	 * @param out
+	 *            The buffer.
+	 * @param s
+	 *            The string. May be <code>null</code>.
+	 */
+	static void putString(final ByteBuffer out, final String s) {
+		if (s == null) {
+			putVarint(out, 0);
+			return;
+		}
+		final byte[] bytes = s.getBytes(UTF_8);
+		putVarint(out, bytes.length + 1); // 0 means null
+		out.put(bytes);
+	}
+
+	/**
+	 * Utility method to read a string, or <code>null</code>.
+	 * 
+	 * @param in
+	 *            The buffer.
+	 * @return The string. May be <code>null</code>.
+	 * @throws StreamCorruptedException
+	 *             If the string is invalid.
+	 */
+	static String getString(final ByteBuffer in) throws StreamCorruptedException {
+		final int length = getVarint(in) - 1;
+		if (length < 0)
+			return null;
+		if (length > in.remaining())
+			throw new StreamCorruptedException("String is truncated!");
+		final byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+}
\ No newline at end of file
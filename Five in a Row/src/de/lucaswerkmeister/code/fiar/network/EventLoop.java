@@ -0,0 +1,188 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.network;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A thread that waits for any of its channels to become ready and then lets the channel's {@link Handler} handle it.
+ * <p>
+ * All work on a channel happens on its event loop's thread; other threads pass work to the loop with
+ * {@link #execute(Runnable)}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+final class EventLoop implements Runnable {
+	private final Selector selector;
+	private final Thread thread;
+	private final Queue<Runnable> tasks;
+	private final AtomicBoolean wakingUp;
+	private volatile boolean running;
+
+	/**
+	 * Handles the readiness of a channel.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	interface Handler {
+		/**
+		 * Handles the channel of the specified key, which is ready for some of the operations in its interest set.
+		 * 
+		 * @param key
+		 *            The key.
+		 * @throws IOException
+		 *             If an I/O error occurs. The channel is closed afterwards.
+		 */
+		void ready(SelectionKey key) throws IOException;
+
+		/**
+		 * Called after the channel was closed, either because {@link #ready(SelectionKey)} failed or because the loop
+		 * shut down.
+		 */
+		void closed();
+	}
+
+	/**
+	 * Creates and starts a new {@link EventLoop}.
+	 * 
+	 * @param name
+	 *            The name of the loop's thread.
+	 * @throws IOException
+	 *             If the selector can't be opened.
+	 */
+	EventLoop(final String name) throws IOException {
+		selector = Selector.open();
+		tasks = new ConcurrentLinkedQueue<>();
+		wakingUp = new AtomicBoolean();
+		running = true;
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Runs the task on the loop's thread: immediately if called from that thread, otherwise as soon as the loop
+	 * wakes up.
+	 * 
+	 * @param task
+	 *            The task.
+	 */
+	void execute(final Runnable task) {
+		if (Thread.currentThread() == thread) {
+			task.run();
+			return;
+		}
+		tasks.add(task);
+		if (wakingUp.compareAndSet(false, true))
+			selector.wakeup();
+	}
+
+	/**
+	 * Registers the channel with this loop. Must be called on the loop's thread.
+	 * 
+	 * @param channel
+	 *            The channel, which must be in non-blocking mode.
+	 * @param ops
+	 *            The initial interest set.
+	 * @param handler
+	 *            The handler for the channel.
+	 * @return The selection key of the channel.
+	 * @throws IOException
+	 *             If the channel can't be registered.
+	 */
+	SelectionKey register(final SelectableChannel channel, final int ops, final Handler handler) throws IOException {
+		return channel.register(selector, ops, handler);
+	}
+
+	/**
+	 * Determines if the current thread is this loop's thread.
+	 * 
+	 * @return <code>true</code> if called on the loop's thread, <code>false</code> otherwise.
+	 */
+	boolean inLoop() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * Stops the loop and closes all its channels.
+	 */
+	void shutdown() {
+		running = false;
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				selector.select();
+				wakingUp.set(false);
+				Runnable task;
+				while ((task = tasks.poll()) != null)
+					task.run();
+				final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					final SelectionKey key = keys.next();
+					keys.remove();
+					final Handler handler = (Handler) key.attachment();
+					try {
+						handler.ready(key);
+					} catch (IOException | RuntimeException e) {
+						// whatever went wrong, only this connection is affected
+						close(key);
+					}
+				}
+			}
+		} catch (final IOException e) {
+			e.printStackTrace();
+		} finally {
+			for (final SelectionKey key : selector.keys())
+				close(key);
+			try {
+				selector.close();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Closes the channel of the specified key and notifies its handler.
+	 * 
+	 * @param key
+	 *            The key.
+	 */
+	static void close(final SelectionKey key) {
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (final IOException e) {
+			// nothing we can do about it
+		}
+		((Handler) key.attachment()).closed();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,413 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.network;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.BoardDelta;
+import de.lucaswerkmeister.code.fiar.framework.Hoster;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.RemoteClient;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
+import de.lucaswerkmeister.code.fiar.framework.exception.ClientFiredException;
+
+/**
+ * The host side of a connection: executes the client's requests on the {@link Hoster} and on the {@link Server} that
+ * the game runs on, and pushes everything the hoster and the server send to the client.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+final class HostConnection extends Connection {
+	private final NioTransport transport;
+	private final Hoster hoster;
+	private final EventCodec codec;
+	private final ClientProxy proxy;
+	private final String address;
+	private volatile Server server;
+	private volatile boolean clientAdded;
+
+	/**
+	 * Creates a new {@link HostConnection}.
+	 * 
+	 * @param transport
+	 *            The transport.
+	 * @param loop
+	 *            The event loop of the connection.
+	 * @param channel
+	 *            The accepted channel.
+	 * @param hoster
+	 *            The hoster.
+	 */
+	HostConnection(final NioTransport transport, final EventLoop loop, final SocketChannel channel,
+			final Hoster hoster) {
+		super(loop, channel);
+		this.transport = transport;
+		this.hoster = hoster;
+		codec = new EventCodec(Collections.<Player> emptySet());
+		proxy = new ClientProxy();
+		address = String.valueOf(channel.socket().getRemoteSocketAddress());
+	}
+
+	@Override
+	void frameReceived(final ByteBuffer frame) throws IOException {
+		final byte type = frame.get();
+		final int requestID = EventCodec.getVarint(frame);
+		switch (type) {
+		case Protocol.ADD_CLIENT:
+			execute(hoster, new Request(requestID) {
+				@Override
+				Protocol.Payload call() throws Exception {
+					hoster.addClient(proxy);
+					clientAdded = true;
+					return Protocol.EMPTY;
+				}
+			});
+			return;
+		case Protocol.REMOVE_CLIENT:
+			execute(hoster, new Request(requestID) {
+				@Override
+				Protocol.Payload call() throws Exception {
+					clientAdded = false;
+					hoster.removeClient(proxy);
+					return Protocol.EMPTY;
+				}
+			});
+			return;
+		case Protocol.ADD_PLAYER: {
+			final Player p = Protocol.getPlayerInfo(frame);
+			codec.addPlayer(p);
+			execute(hoster, new Request(requestID) {
+				@Override
+				Protocol.Payload call() throws Exception {
+					hoster.addPlayer(proxy, p);
+					return Protocol.EMPTY;
+				}
+			});
+			return;
+		}
+		case Protocol.REMOVE_PLAYER: {
+			final Player p = codec.getPlayer(frame);
+			execute(hoster, new Request(requestID) {
+				@Override
+				Protocol.Payload call() throws Exception {
+					hoster.removePlayer(p);
+					return Protocol.EMPTY;
+				}
+			});
+			return;
+		}
+		}
+
+		final Server s = server;
+		if (s == null) {
+			fail(requestID, new IllegalStateException("The game has not started yet!"));
+			return;
+		}
+		switch (type) {
+		case Protocol.GET_PHASE:
+			execute(s, new Request(requestID) {
+				@Override
+				Protocol.Payload call() throws Exception {
+					final int[] phase = s.getPhase(proxy);
+					return new Protocol.Payload() {
+						@Override
+						public void writeTo(final ByteBuffer out) {
+							EventCodec.putVarint(out, phase.length);
+							for (final int p : phase)
+								EventCodec.putVarint(out, EventCodec.zigzag(p));
+						}
+					};
+				}
+			});
+			return;
+		case Protocol.GET_PHASES_VERSION:
+			execute(s, new Request(requestID) {
+				@Override
+				Protocol.Payload call() throws Exception {
+					final int version = s.getPhasesVersion(proxy);
+					return new Protocol.Payload() {
+						@Override
+						public void writeTo(final ByteBuffer out) {
+							EventCodec.putVarint(out, EventCodec.zigzag(version));
+						}
+					};
+				}
+			});
+			return;
+		case Protocol.CAN_ACT: {
+			final Player p = codec.getPlayer(frame);
+			execute(s, new Request(requestID) {
+				@Override
+				Protocol.Payload call() throws Exception {
+					final boolean canAct = s.canAct(proxy, p);
+					return new Protocol.Payload() {
+						@Override
+						public void writeTo(final ByteBuffer out) {
+							out.put((byte) (canAct ? 1 : 0));
+						}
+					};
+				}
+			});
+			return;
+		}
+		case Protocol.GET_ALLOWED_ACTIONS: {
+			final Player p = codec.getPlayer(frame);
+			execute(s, new Request(requestID) {
+				@Override
+				Protocol.Payload call() throws Exception {
+					final Set<Class<? extends PlayerAction>> actions = s.getAllowedActions(proxy, p);
+					return new Protocol.Payload() {
+						@Override
+						public void writeTo(final ByteBuffer out) {
+							EventCodec.putVarint(out, actions.size());
+							for (final Class<? extends PlayerAction> action : actions)
+								out.put(EventCodec.tagOf(action));
+						}
+					};
+				}
+			});
+			return;
+		}
+		case Protocol.ACTION: {
+			final GameEvent action = codec.decode(frame);
+			if (!(action instanceof PlayerAction))
+				throw new StreamCorruptedException("Event " + action + " is not an action!");
+			execute(s, new Request(requestID) {
+				@Override
+				Protocol.Payload call() throws Exception {
+					s.action(proxy, (PlayerAction) action);
+					return Protocol.EMPTY;
+				}
+			});
+			return;
+		}
+		case Protocol.GET_CURRENT_BOARD:
+			execute(s, new Request(requestID) {
+				@Override
+				Protocol.Payload call() throws Exception {
+					final Board board = s.getCurrentBoard(proxy);
+					return new Protocol.Payload() {
+						@Override
+						public void writeTo(final ByteBuffer out) {
+							out.put((byte) (board == null ? 0 : 1));
+							if (board != null)
+								EventCodec.putBoard(out, board);
+						}
+					};
+				}
+			});
+			return;
+		case Protocol.GET_BOARD_CHANGES_SINCE: {
+			final int version = EventCodec.getVarint(frame);
+			execute(s, new Request(requestID) {
+				@Override
+				Protocol.Payload call() throws Exception {
+					final BoardDelta delta = s.getBoardChangesSince(proxy, version);
+					return new Protocol.Payload() {
+						@Override
+						public void writeTo(final ByteBuffer out) {
+							out.put((byte) (delta == null ? 0 : 1));
+							if (delta == null)
+								return;
+							EventCodec.putVarint(out, delta.getWidth());
+							EventCodec.putVarint(out, delta.getHeight());
+							EventCodec.putVarint(out, delta.getFromVersion());
+							EventCodec.putVarint(out, delta.getChangeCount());
+							for (int i = 0; i < delta.getChangeCount(); i++) {
+								EventCodec.putVarint(out, delta.getX(i));
+								EventCodec.putVarint(out, delta.getY(i));
+								EventCodec.putPlayer(out, delta.getPlayer(i));
+							}
+						}
+					};
+				}
+			});
+			return;
+		}
+		default:
+			throw new StreamCorruptedException("Unknown request type " + type + "!");
+		}
+	}
+
+	@Override
+	void connectionClosed() {
+		if (clientAdded)
+			try {
+				transport.executorFor(hoster).execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							hoster.removeClient(proxy);
+						} catch (final RemoteException e) {
+							e.printStackTrace();
+						}
+					}
+				});
+			} catch (final RejectedExecutionException e) {
+				// the hoster is overloaded; it will notice that the client is gone when it pushes to it
+			}
+	}
+
+	/**
+	 * Private utility method to execute a request on the executor of the hoster or server. If too many requests are
+	 * already waiting for that executor, the request fails with a {@link ClientFiredException}.
+	 * 
+	 * @param target
+	 *            The hoster or server.
+	 * @param request
+	 *            The request.
+	 */
+	private void execute(final Object target, final Request request) {
+		try {
+			transport.executorFor(target).execute(request);
+		} catch (final RejectedExecutionException e) {
+			fail(request.requestID, new ClientFiredException(proxy, "Too many pending requests!", e));
+		}
+	}
+
+	/**
+	 * Private utility method to answer a request with a failure.
+	 * 
+	 * @param requestID
+	 *            The request ID.
+	 * @param failure
+	 *            The exception.
+	 */
+	private void fail(final int requestID, final Throwable failure) {
+		send(Protocol.frame(Protocol.FAILURE, requestID, new Protocol.Payload() {
+			@Override
+			public void writeTo(final ByteBuffer out) {
+				Protocol.putFailure(out, failure);
+			}
+		}));
+	}
+
+	/**
+	 * A request that is executed by a worker thread and answered with its result or its exception.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private abstract class Request implements Runnable {
+		private final int requestID;
+
+		/**
+		 * Creates a new {@link Request} with the specified ID.
+		 * 
+		 * @param requestID
+		 *            The request ID.
+		 */
+		Request(final int requestID) {
+			this.requestID = requestID;
+		}
+
+		/**
+		 * Executes the request.
+		 * 
+		 * @return The result.
+		 * @throws Exception
+		 *             If the request fails.
+		 */
+		abstract Protocol.Payload call() throws Exception;
+
+		@Override
+		public final void run() {
+			if (isClosed())
+				return;
+			final Protocol.Payload result;
+			try {
+				result = call();
+			} catch (final Exception e) {
+				fail(requestID, e);
+				return;
+			}
+			send(Protocol.frame(Protocol.RESULT, requestID, result));
+		}
+	}
+
+	/**
+	 * The client at the other end of the connection, as seen by the hoster and the server.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private final class ClientProxy implements RemoteClient {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void playerJoined(final Player player) throws RemoteException {
+			codec.addPlayer(player);
+			push(Protocol.frame(Protocol.PLAYER_JOINED, 0, new Protocol.Payload() {
+				@Override
+				public void writeTo(final ByteBuffer out) {
+					Protocol.putPlayerInfo(out, player);
+				}
+			}));
+		}
+
+		@Override
+		public void playerLeft(final Player player) throws RemoteException {
+			push(Protocol.frame(Protocol.PLAYER_LEFT, 0, new Protocol.Payload() {
+				@Override
+				public void writeTo(final ByteBuffer out) {
+					EventCodec.putPlayer(out, player);
+				}
+			}));
+		}
+
+		@Override
+		public void gameStarts(final Server server) throws RemoteException {
+			HostConnection.this.server = server;
+			push(Protocol.frame(Protocol.GAME_STARTS, 0, Protocol.EMPTY));
+		}
+
+		@Override
+		public void gameEvent(final GameEvent e) throws RemoteException {
+			push(transport.eventFrame(e, codec));
+		}
+
+		@Override
+		public String toString() {
+			return "NIO client at " + address;
+		}
+
+		/**
+		 * Private utility method to push a frame to the client.
+		 * 
+		 * @param frame
+		 *            The frame.
+		 * @throws RemoteException
+		 *             If the connection is closed or the client does not keep up with the pushed frames.
+		 */
+		private void push(final ByteBuffer frame) throws RemoteException {
+			if (!send(frame))
+				throw new RemoteException("Connection to " + this + " is closed!");
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,610 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.BoardDelta;
+import de.lucaswerkmeister.code.fiar.framework.Client;
+import de.lucaswerkmeister.code.fiar.framework.Hoster;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.RemoteClient;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
+import de.lucaswerkmeister.code.fiar.framework.exception.IllegalMoveException;
+import de.lucaswerkmeister.code.fiar.framework.exception.UnknownClientException;
+import de.lucaswerkmeister.code.fiar.framework.exception.UnknownPlayerException;
+
+/**
+ * The client side of a connection to a hoster that was made available by {@link NioTransport#host(Hoster,
+ * java.net.InetSocketAddress)}. It is used like the hoster itself; the {@link Server} that the game runs on is handed
+ * to the client as a {@link ServerStub}.
+ * <p>
+ * One {@link RemoteClient} can be {@link #addClient(RemoteClient) added} per connection. The hoster's and server's
+ * calls to that client are delivered one at a time and in order, but not on the thread that called the hoster or
+ * server, so the client may call them again without deadlocking.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+public class NioClient implements Hoster {
+	private static final long serialVersionUID = 3408117950432758011L;
+	/**
+	 * The number of seconds to wait for the answer to a request before giving up with a {@link RemoteException}.
+	 */
+	public static final int REQUEST_TIMEOUT = 60;
+	private final transient ClientConnection connection;
+	private final transient EventCodec codec;
+	private final transient Executor callbacks;
+	private final transient AtomicInteger nextRequestID;
+	private final transient ConcurrentMap<Integer, Reply> replies;
+	private final transient ServerStub server;
+	private transient volatile RemoteClient client;
+
+	/**
+	 * Creates a new {@link NioClient}.
+	 * 
+	 * @param transport
+	 *            The transport.
+	 * @param loop
+	 *            The event loop of the connection.
+	 * @param channel
+	 *            The connected channel.
+	 */
+	NioClient(final NioTransport transport, final EventLoop loop, final SocketChannel channel) {
+		connection = new ClientConnection(loop, channel);
+		codec = new EventCodec(Collections.<Player> emptySet());
+		callbacks = transport.newCallbackExecutor();
+		nextRequestID = new AtomicInteger();
+		replies = new ConcurrentHashMap<>();
+		server = new ServerStub();
+	}
+
+	/**
+	 * Starts the connection.
+	 */
+	void start() {
+		connection.start();
+	}
+
+	/**
+	 * Closes the connection. Requests that are still waiting for an answer fail with a {@link RemoteException}.
+	 */
+	public void close() {
+		connection.close();
+	}
+
+	/**
+	 * Adds the client to the hoster. Only one client can be added per connection.
+	 * 
+	 * @throws IllegalStateException
+	 *             If a different client was already added.
+	 */
+	@Override
+	public void addClient(final RemoteClient client) throws IllegalStateException, RemoteException {
+		synchronized (this) {
+			if (this.client != null && this.client != client)
+				throw new IllegalStateException("Only one client can be added per connection!");
+			this.client = client;
+		}
+		await(request(Protocol.ADD_CLIENT, Protocol.EMPTY));
+	}
+
+	@Override
+	public void removeClient(final RemoteClient client) throws RemoteException {
+		if (client != this.client)
+			return;
+		await(request(Protocol.REMOVE_CLIENT, Protocol.EMPTY));
+	}
+
+	@Override
+	public void addPlayer(final RemoteClient controller, final Player player) throws UnknownClientException,
+			IllegalArgumentException, RemoteException {
+		if (controller != client)
+			throw new UnknownClientException(controller);
+		codec.addPlayer(player);
+		await(request(Protocol.ADD_PLAYER, new Protocol.Payload() {
+			@Override
+			public void writeTo(final ByteBuffer out) {
+				Protocol.putPlayerInfo(out, player);
+			}
+		}));
+	}
+
+	@Override
+	public void removePlayer(final Player player) throws UnknownPlayerException, RemoteException {
+		await(request(Protocol.REMOVE_PLAYER, playerPayload(player)));
+	}
+
+	/**
+	 * Gets the stub of the server that the game runs on. The stub is handed to the client when the game starts.
+	 * 
+	 * @return The server stub.
+	 */
+	public ServerStub getServer() {
+		return server;
+	}
+
+	/**
+	 * Private utility method to send a request.
+	 * 
+	 * @param type
+	 *            The request type.
+	 * @param payload
+	 *            The payload.
+	 * @return The reply, which is completed when the answer arrives.
+	 */
+	private Reply request(final byte type, final Protocol.Payload payload) {
+		int requestID;
+		do
+			requestID = nextRequestID.incrementAndGet();
+		while (requestID == 0); // 0 marks pushed messages
+		final Reply reply = new Reply();
+		replies.put(requestID, reply);
+		if (!connection.send(Protocol.frame(type, requestID, payload)))
+			fail(requestID, new RemoteException("Connection to the hoster is closed!"));
+		else if (connection.isClosed())
+			// the connection may have been closed, failing all replies, before this reply was added
+			fail(requestID, new RemoteException("Connection to the hoster is closed!"));
+		return reply;
+	}
+
+	/**
+	 * Private utility method to wait for the answer to a request.
+	 * 
+	 * @param reply
+	 *            The reply.
+	 * @return The answer.
+	 * @throws IllegalMoveException
+	 *             If the request failed with an {@link IllegalMoveException}.
+	 * @throws RemoteException
+	 *             If the request failed with a {@link RemoteException} or timed out, or the waiting thread was
+	 *             interrupted.
+	 */
+	private static ByteBuffer awaitMove(final Reply reply) throws IllegalMoveException, RemoteException {
+		try {
+			return reply.await();
+		} catch (final RuntimeException | IllegalMoveException | RemoteException e) {
+			throw e;
+		} catch (final Exception e) {
+			throw new RemoteException("Request failed!", e);
+		}
+	}
+
+	/**
+	 * Private utility method to wait for the answer to a request that can't fail with an {@link IllegalMoveException}.
+	 * 
+	 * @param reply
+	 *            The reply.
+	 * @return The answer.
+	 * @throws RemoteException
+	 *             If the request failed with a {@link RemoteException} or timed out, or the waiting thread was
+	 *             interrupted.
+	 */
+	private static ByteBuffer await(final Reply reply) throws RemoteException {
+		try {
+			return awaitMove(reply);
+		} catch (final IllegalMoveException e) {
+			throw new RemoteException("Request failed!", e);
+		}
+	}
+
+	/**
+	 * Private utility method to complete a reply with a failure.
+	 * 
+	 * @param requestID
+	 *            The request ID.
+	 * @param failure
+	 *            The failure.
+	 */
+	private void fail(final int requestID, final Exception failure) {
+		final Reply reply = replies.remove(requestID);
+		if (reply != null)
+			reply.complete(null, failure);
+	}
+
+	/**
+	 * Private utility method to create the payload of a request that refers to a player.
+	 * 
+	 * @param p
+	 *            The player.
+	 * @return The payload.
+	 */
+	private static Protocol.Payload playerPayload(final Player p) {
+		return new Protocol.Payload() {
+			@Override
+			public void writeTo(final ByteBuffer out) {
+				EventCodec.putPlayer(out, p);
+			}
+		};
+	}
+
+	/**
+	 * Private utility method to deliver a pushed message to the client.
+	 * 
+	 * @param callback
+	 *            The callback, which calls the client.
+	 */
+	private void deliver(final Callback callback) {
+		final RemoteClient c = client;
+		if (c == null)
+			return;
+		callbacks.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					callback.call(c);
+				} catch (final RemoteException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * A call to the client.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private interface Callback {
+		/**
+		 * Calls the client.
+		 * 
+		 * @param c
+		 *            The client.
+		 * @throws RemoteException
+		 *             If the client throws it.
+		 */
+		void call(RemoteClient c) throws RemoteException;
+	}
+
+	/**
+	 * The connection to the hoster.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private final class ClientConnection extends Connection {
+		/**
+		 * Creates a new {@link ClientConnection}.
+		 * 
+		 * @param loop
+		 *            The event loop.
+		 * @param channel
+		 *            The connected channel.
+		 */
+		ClientConnection(final EventLoop loop, final SocketChannel channel) {
+			super(loop, channel);
+		}
+
+		@Override
+		void frameReceived(final ByteBuffer frame) throws IOException {
+			final byte type = frame.get();
+			final int requestID = EventCodec.getVarint(frame);
+			switch (type) {
+			case Protocol.RESULT: {
+				final Reply reply = replies.remove(requestID);
+				if (reply != null) {
+					final ByteBuffer result = ByteBuffer.allocate(frame.remaining());
+					result.put(frame).flip();
+					reply.complete(result, null);
+				}
+				return;
+			}
+			case Protocol.FAILURE:
+				fail(requestID, Protocol.getFailure(frame, client));
+				return;
+			case Protocol.PLAYER_JOINED: {
+				final Player p = Protocol.getPlayerInfo(frame);
+				codec.addPlayer(p);
+				deliver(new Callback() {
+					@Override
+					public void call(final RemoteClient c) throws RemoteException {
+						c.playerJoined(p);
+					}
+				});
+				return;
+			}
+			case Protocol.PLAYER_LEFT: {
+				final Player p = codec.getPlayer(frame);
+				deliver(new Callback() {
+					@Override
+					public void call(final RemoteClient c) throws RemoteException {
+						c.playerLeft(p);
+					}
+				});
+				return;
+			}
+			case Protocol.GAME_STARTS:
+				deliver(new Callback() {
+					@Override
+					public void call(final RemoteClient c) throws RemoteException {
+						c.gameStarts(server);
+					}
+				});
+				return;
+			case Protocol.GAME_EVENT: {
+				final GameEvent e = codec.decode(frame);
+				deliver(new Callback() {
+					@Override
+					public void call(final RemoteClient c) throws RemoteException {
+						c.gameEvent(e);
+					}
+				});
+				return;
+			}
+			default:
+				throw new IOException("Unknown message type " + type + "!");
+			}
+		}
+
+		@Override
+		void connectionClosed() {
+			final Iterator<Integer> ids = replies.keySet().iterator();
+			while (ids.hasNext())
+				fail(ids.next(), new RemoteException("Connection to the hoster was closed!"));
+		}
+	}
+
+	/**
+	 * The answer to a request, which may not have arrived yet.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private static final class Reply implements Future<Void> {
+		private final CountDownLatch done;
+		private volatile ByteBuffer result;
+		private volatile Exception failure;
+
+		/**
+		 * Creates a new {@link Reply} that is not done yet.
+		 */
+		Reply() {
+			done = new CountDownLatch(1);
+		}
+
+		/**
+		 * Completes the reply.
+		 * 
+		 * @param result
+		 *            The answer, or <code>null</code> if the request failed.
+		 * @param failure
+		 *            The exception that the request failed with, or <code>null</code> if it succeeded.
+		 */
+		void complete(final ByteBuffer result, final Exception failure) {
+			this.result = result;
+			this.failure = failure;
+			done.countDown();
+		}
+
+		/**
+		 * Waits for the answer, at most {@link NioClient#REQUEST_TIMEOUT} seconds.
+		 * 
+		 * @return The answer.
+		 * @throws Exception
+		 *             The exception that the request failed with, or a {@link RemoteException} if the request timed
+		 *             out or the waiting thread was interrupted.
+		 */
+		ByteBuffer await() throws Exception {
+			try {
+				if (!done.await(REQUEST_TIMEOUT, TimeUnit.SECONDS))
+					throw new RemoteException("Request timed out after " + REQUEST_TIMEOUT + " seconds!");
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RemoteException("Interrupted while waiting for the answer!", e);
+			}
+			if (failure != null) {
+				failure.fillInStackTrace();
+				throw failure;
+			}
+			return result;
+		}
+
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isDone() {
+			return done.getCount() == 0;
+		}
+
+		@Override
+		public Void get() throws InterruptedException, ExecutionException {
+			done.await();
+			if (failure != null)
+				throw new ExecutionException(failure);
+			return null;
+		}
+
+		@Override
+		public Void get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException,
+				TimeoutException {
+			if (!done.await(timeout, unit))
+				throw new TimeoutException();
+			if (failure != null)
+				throw new ExecutionException(failure);
+			return null;
+		}
+	}
+
+	/**
+	 * The client's view of the {@link Server} that the game runs on. Besides the {@link Server} methods, the stub can
+	 * {@link #submitAction(Client, PlayerAction) submit actions} without waiting for each to be executed.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	public final class ServerStub implements Server {
+		private static final long serialVersionUID = -6104339236372581542L;
+
+		/**
+		 * Creates a new {@link ServerStub}.
+		 */
+		ServerStub() {
+			// do nothing
+		}
+
+		@Override
+		public int[] getPhase(final Client requester) throws RemoteException {
+			final ByteBuffer in = await(request(Protocol.GET_PHASE, Protocol.EMPTY));
+			try {
+				final int[] phase = new int[EventCodec.getLength(in)];
+				for (int i = 0; i < phase.length; i++)
+					phase[i] = EventCodec.unzigzag(EventCodec.getVarint(in));
+				return phase;
+			} catch (final IOException e) {
+				throw new RemoteException("Invalid phase!", e);
+			}
+		}
+
+		@Override
+		public int getPhasesVersion(final Client requester) throws RemoteException {
+			final ByteBuffer in = await(request(Protocol.GET_PHASES_VERSION, Protocol.EMPTY));
+			try {
+				return EventCodec.unzigzag(EventCodec.getVarint(in));
+			} catch (final IOException e) {
+				throw new RemoteException("Invalid phases version!", e);
+			}
+		}
+
+		@Override
+		public boolean canAct(final Client requester, final Player p) throws RemoteException {
+			return await(request(Protocol.CAN_ACT, playerPayload(p))).get() != 0;
+		}
+
+		@Override
+		public Set<Class<? extends PlayerAction>> getAllowedActions(final Client requester, final Player p)
+				throws RemoteException {
+			final ByteBuffer in = await(request(Protocol.GET_ALLOWED_ACTIONS, playerPayload(p)));
+			try {
+				final int count = EventCodec.getLength(in);
+				final Set<Class<? extends PlayerAction>> actions = new HashSet<>();
+				for (int i = 0; i < count; i++)
+					actions.add(EventCodec.actionClassOf(in.get()));
+				return actions;
+			} catch (final IOException e) {
+				throw new RemoteException("Invalid actions!", e);
+			}
+		}
+
+		@Override
+		public void action(final Client requester, final PlayerAction action) throws IllegalStateException,
+				IllegalMoveException, RemoteException {
+			awaitMove(submit(action));
+		}
+
+		/**
+		 * Submits an action without waiting for the server to execute it. Actions submitted through the same
+		 * connection are executed in the order in which they were submitted.
+		 * 
+		 * @param requester
+		 *            The client that requests the action.
+		 * @param action
+		 *            The action.
+		 * @return A future that completes when the server has executed the action. If the server rejected it,
+		 *         {@link Future#get()} throws an {@link ExecutionException} with the exception that
+		 *         {@link #action(Client, PlayerAction)} would have thrown as its cause.
+		 */
+		public Future<Void> submitAction(final Client requester, final PlayerAction action) {
+			return submit(action);
+		}
+
+		@Override
+		public Board getCurrentBoard(final Client requester) throws RemoteException {
+			final ByteBuffer in = await(request(Protocol.GET_CURRENT_BOARD, Protocol.EMPTY));
+			try {
+				return in.get() == 0 ? null : codec.getBoard(in);
+			} catch (final IOException e) {
+				throw new RemoteException("Invalid board!", e);
+			}
+		}
+
+		@Override
+		public BoardDelta getBoardChangesSince(final Client requester, final int version)
+				throws IllegalArgumentException, RemoteException {
+			final ByteBuffer in = await(request(Protocol.GET_BOARD_CHANGES_SINCE, new Protocol.Payload() {
+				@Override
+				public void writeTo(final ByteBuffer out) {
+					EventCodec.putVarint(out, version);
+				}
+			}));
+			if (in.get() == 0)
+				return null;
+			try {
+				final int width = EventCodec.getVarint(in);
+				final int height = EventCodec.getVarint(in);
+				final int fromVersion = EventCodec.getVarint(in);
+				final int count = EventCodec.getLength(in);
+				final int[] xs = new int[count];
+				final int[] ys = new int[count];
+				final Player[] players = new Player[count];
+				for (int i = 0; i < count; i++) {
+					xs[i] = EventCodec.getVarint(in);
+					ys[i] = EventCodec.getVarint(in);
+					players[i] = codec.getPlayer(in);
+				}
+				return new BoardDelta(width, height, fromVersion, xs, ys, players);
+			} catch (final IOException e) {
+				throw new RemoteException("Invalid board changes!", e);
+			}
+		}
+
+		/**
+		 * Private utility method to send an action request.
+		 * 
+		 * @param action
+		 *            The action.
+		 * @return The reply.
+		 */
+		private Reply submit(final PlayerAction action) {
+			return request(Protocol.ACTION, new Protocol.Payload() {
+				@Override
+				public void writeTo(final ByteBuffer out) {
+					codec.encode(action, out);
+				}
+			});
+		}
+	}
+}
\ No newline at end of file
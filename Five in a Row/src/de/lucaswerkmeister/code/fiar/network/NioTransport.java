@@ -0,0 +1,259 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.lucaswerkmeister.code.fiar.framework.Hoster;
+import de.lucaswerkmeister.code.fiar.framework.RemoteClient;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.servers.SerialExecutor;
+
+/**
+ * A transport for {@link Hoster}s, {@link Server}s and {@link RemoteClient}s over non-blocking sockets, as an
+ * alternative to RMI.
+ * <p>
+ * RMI needs a thread per connection and a synchronous round trip per call. This transport instead multiplexes all
+ * connections over a few {@link EventLoop} threads, lets clients send further requests before earlier ones are
+ * answered, and pushes events to clients without waiting for them. A process can thus serve thousands of clients.
+ * <p>
+ * To host, pass any {@link Hoster} to {@link #host(Hoster, InetSocketAddress)}; the hoster sees each connection as a
+ * {@link RemoteClient}. Requests to the hoster and to each {@link Server} that it {@link RemoteClient#gameStarts(Server)
+ * hands out} are executed one at a time by a pool of worker threads, so neither has to be thread-safe. To connect,
+ * {@link #connect(InetSocketAddress)} returns a {@link NioClient}, which is used like a hoster obtained from the RMI
+ * registry.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+public class NioTransport {
+	/**
+	 * The maximum number of requests that may be waiting for execution by one hoster or server. Further requests are
+	 * answered with a {@link de.lucaswerkmeister.code.fiar.framework.exception.ClientFiredException
+	 * ClientFiredException}.
+	 */
+	public static final int MAX_PENDING_REQUESTS = 4096;
+	private final EventLoop[] loops;
+	private final AtomicInteger nextLoop;
+	private final ExecutorService workers;
+	private final Map<Object, SerialExecutor> targets;
+	private volatile EncodedEvent lastEvent;
+
+	/**
+	 * Creates a new {@link NioTransport} with one event loop and two worker threads per available processor.
+	 * 
+	 * @throws IOException
+	 *             If the event loops can't be created.
+	 */
+	public NioTransport() throws IOException {
+		this(Runtime.getRuntime().availableProcessors(), 2 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new {@link NioTransport} with the specified number of event loops and worker threads.
+	 * 
+	 * @param loopCount
+	 *            The number of event loops, which read and write the sockets.
+	 * @param workerCount
+	 *            The number of worker threads, which execute requests and deliver pushed messages to clients.
+	 * @throws IOException
+	 *             If the event loops can't be created.
+	 */
+	public NioTransport(final int loopCount, final int workerCount) throws IOException {
+		loops = new EventLoop[loopCount];
+		for (int i = 0; i < loopCount; i++)
+			loops[i] = new EventLoop("NioTransport loop " + (i + 1));
+		nextLoop = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread t = new Thread(r, "NioTransport worker " + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		targets = Collections.synchronizedMap(new WeakHashMap<Object, SerialExecutor>());
+	}
+
+	/**
+	 * Makes the hoster available at the specified address.
+	 * 
+	 * @param hoster
+	 *            The hoster.
+	 * @param address
+	 *            The address to listen on. Port <code>0</code> picks a free port.
+	 * @return The address that the hoster is available at.
+	 * @throws IOException
+	 *             If the address can't be bound.
+	 */
+	public InetSocketAddress host(final Hoster hoster, final InetSocketAddress address) throws IOException {
+		final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+		serverChannel.socket().setReuseAddress(true);
+		serverChannel.bind(address, 1024);
+		serverChannel.configureBlocking(false);
+		final EventLoop loop = nextLoop();
+		loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					loop.register(serverChannel, SelectionKey.OP_ACCEPT, new EventLoop.Handler() {
+						@Override
+						public void ready(final SelectionKey key) throws IOException {
+							SocketChannel channel;
+							while ((channel = serverChannel.accept()) != null)
+								new HostConnection(NioTransport.this, nextLoop(), channel, hoster).start();
+						}
+
+						@Override
+						public void closed() {
+							// nothing to clean up
+						}
+					});
+				} catch (final IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		return (InetSocketAddress) serverChannel.getLocalAddress();
+	}
+
+	/**
+	 * Connects to a hoster that was made available with {@link #host(Hoster, InetSocketAddress)}.
+	 * 
+	 * @param address
+	 *            The address of the hoster.
+	 * @return The connection to the hoster.
+	 * @throws IOException
+	 *             If the connection fails.
+	 */
+	public NioClient connect(final InetSocketAddress address) throws IOException {
+		final SocketChannel channel = SocketChannel.open(address);
+		final NioClient client = new NioClient(this, nextLoop(), channel);
+		client.start();
+		return client;
+	}
+
+	/**
+	 * Stops all event loops, closing all connections, and the worker threads.
+	 */
+	public void shutdown() {
+		for (final EventLoop loop : loops)
+			loop.shutdown();
+		workers.shutdown();
+	}
+
+	/**
+	 * Gets the executor for requests to the specified hoster or server, which executes them one at a time.
+	 * 
+	 * @param target
+	 *            The hoster or server.
+	 * @return The executor.
+	 */
+	SerialExecutor executorFor(final Object target) {
+		synchronized (targets) {
+			SerialExecutor executor = targets.get(target);
+			if (executor == null) {
+				executor = new SerialExecutor(workers, MAX_PENDING_REQUESTS);
+				targets.put(target, executor);
+			}
+			return executor;
+		}
+	}
+
+	/**
+	 * Creates a new executor that delivers pushed messages to one client in order.
+	 * 
+	 * @return The executor.
+	 */
+	Executor newCallbackExecutor() {
+		return new SerialExecutor(workers, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gets the {@link Protocol#GAME_EVENT} frame for the specified event. A server sends the same event instance to all
+	 * its clients, so the last frame is kept and only encoded again for a different event.
+	 * 
+	 * @param e
+	 *            The event.
+	 * @param codec
+	 *            The codec to encode the event with.
+	 * @return The frame.
+	 */
+	ByteBuffer eventFrame(final GameEvent e, final EventCodec codec) {
+		EncodedEvent encoded = lastEvent;
+		if (encoded == null || encoded.event != e) {
+			final ByteBuffer frame = Protocol.frame(Protocol.GAME_EVENT, 0, new Protocol.Payload() {
+				@Override
+				public void writeTo(final ByteBuffer out) {
+					codec.encode(e, out);
+				}
+			});
+			lastEvent = encoded = new EncodedEvent(e, frame);
+		}
+		return encoded.frame.duplicate();
+	}
+
+	/**
+	 * Private utility method to pick the event loop for a new channel.
+	 * 
+	 * @return The event loop.
+	 */
+	private EventLoop nextLoop() {
+		return loops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+	}
+
+	/**
+	 * An event and its frame.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private static final class EncodedEvent {
+		private final GameEvent event;
+		private final ByteBuffer frame;
+
+		/**
+		 * Creates a new {@link EncodedEvent}.
+		 * 
+		 * @param event
+		 *            The event.
+		 * @param frame
+		 *            The frame of the event, which must not be modified.
+		 */
+		EncodedEvent(final GameEvent event, final ByteBuffer frame) {
+			this.event = event;
+			this.frame = frame;
+		}
+	}
+}
\ No newline at end of file
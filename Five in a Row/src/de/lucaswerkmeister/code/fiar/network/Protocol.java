@@ -0,0 +1,202 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.network;
+
+import java.awt.Color;
+import java.io.StreamCorruptedException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.rmi.RemoteException;
+
+import de.lucaswerkmeister.code.fiar.framework.Client;
+import de.lucaswerkmeister.code.fiar.framework.Hoster;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.exception.ClientFiredException;
+import de.lucaswerkmeister.code.fiar.framework.exception.IllegalMoveException;
+import de.lucaswerkmeister.code.fiar.framework.exception.UnknownClientException;
+import de.lucaswerkmeister.code.fiar.framework.exception.UnknownPlayerException;
+
+/**
+ * The message types and encoding helpers of the NIO transport.
+ * <p>
+ * Every frame starts with a one-byte message type and a varint request ID, followed by the message's payload, which
+ * uses the encodings of {@link EventCodec}. Requests are sent by the client; the host answers each one with a
+ * {@link #RESULT} or {@link #FAILURE} that carries the same request ID. Because of the IDs, a client may send further
+ * requests before the answers to earlier ones arrived. Messages that the host pushes to the client without a request
+ * have the request ID <code>0</code>.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+final class Protocol {
+	// requests from the client to the host, named after the Hoster and Server methods
+	static final byte ADD_CLIENT = 1;
+	static final byte REMOVE_CLIENT = 2;
+	static final byte ADD_PLAYER = 3;
+	static final byte REMOVE_PLAYER = 4;
+	static final byte GET_PHASE = 5;
+	static final byte GET_PHASES_VERSION = 6;
+	static final byte CAN_ACT = 7;
+	static final byte GET_ALLOWED_ACTIONS = 8;
+	static final byte ACTION = 9;
+	static final byte GET_CURRENT_BOARD = 10;
+	static final byte GET_BOARD_CHANGES_SINCE = 11;
+	// answers from the host to the client
+	static final byte RESULT = 32;
+	static final byte FAILURE = 33;
+	// messages that the host pushes to the client, named after the RemoteClient methods
+	static final byte PLAYER_JOINED = 48;
+	static final byte PLAYER_LEFT = 49;
+	static final byte GAME_STARTS = 50;
+	static final byte GAME_EVENT = 51;
+
+	/**
+	 * The payload of a message.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	interface Payload {
+		/**
+		 * Writes the payload to the buffer. If the buffer overflows, this method is called again with a bigger buffer.
+		 * 
+		 * @param out
+		 *            The buffer.
+		 */
+		void writeTo(ByteBuffer out);
+	}
+
+	/**
+	 * An empty payload.
+	 */
+	static final Payload EMPTY = new Payload() {
+		@Override
+		public void writeTo(final ByteBuffer out) {
+			// nothing to write
+		}
+	};
+
+	private Protocol() {
+		// utility class
+	}
+
+	/**
+	 * Builds a frame, ready to be {@link Connection#send(ByteBuffer) sent}.
+	 * 
+	 * @param type
+	 *            The message type.
+	 * @param requestID
+	 *            The request ID.
+	 * @param payload
+	 *            The payload.
+	 * @return The frame.
+	 */
+	static ByteBuffer frame(final byte type, final int requestID, final Payload payload) {
+		int size = 64;
+		while (true)
+			try {
+				final ByteBuffer frame = ByteBuffer.allocate(size);
+				frame.position(4);
+				frame.put(type);
+				EventCodec.putVarint(frame, requestID);
+				payload.writeTo(frame);
+				frame.flip();
+				frame.putInt(0, frame.limit() - 4);
+				return frame;
+			} catch (final BufferOverflowException e) {
+				size *= 4;
+			}
+	}
+
+	/**
+	 * Writes a player with name and color, for clients that don't know the player yet.
+	 * 
+	 * @param out
+	 *            The buffer.
+	 * @param p
+	 *            The player.
+	 */
+	static void putPlayerInfo(final ByteBuffer out, final Player p) {
+		EventCodec.putPlayer(out, p);
+		EventCodec.putString(out, p.getName());
+		out.putInt(p.getColor().getRGB());
+	}
+
+	/**
+	 * Reads a player written by {@link #putPlayerInfo(ByteBuffer, Player)}.
+	 * 
+	 * @param in
+	 *            The buffer.
+	 * @return The player.
+	 * @throws StreamCorruptedException
+	 *             If the player is invalid.
+	 */
+	static Player getPlayerInfo(final ByteBuffer in) throws StreamCorruptedException {
+		final int id = EventCodec.unzigzag(EventCodec.getVarint(in));
+		final String name = EventCodec.getString(in);
+		return new Player(name, new Color(in.getInt(), true), id);
+	}
+
+	/**
+	 * Writes an exception that a request failed with.
+	 * 
+	 * @param out
+	 *            The buffer.
+	 * @param failure
+	 *            The exception.
+	 */
+	static void putFailure(final ByteBuffer out, final Throwable failure) {
+		EventCodec.putString(out, failure.getClass().getSimpleName());
+		EventCodec.putString(out, failure.getMessage());
+	}
+
+	/**
+	 * Reads an exception written by {@link #putFailure(ByteBuffer, Throwable)}. The exceptions of the {@link Server}
+	 * and {@link Hoster} contracts are recreated with the same class, all others are turned into a
+	 * {@link RemoteException}.
+	 * 
+	 * @param in
+	 *            The buffer.
+	 * @param client
+	 *            The local client, for exceptions that refer to it.
+	 * @return The exception.
+	 * @throws StreamCorruptedException
+	 *             If the exception is invalid.
+	 */
+	static Exception getFailure(final ByteBuffer in, final Client client) throws StreamCorruptedException {
+		final String type = EventCodec.getString(in);
+		final String message = EventCodec.getString(in);
+		switch (type == null ? "" : type) {
+		case "IllegalMoveException":
+			return new IllegalMoveException(message);
+		case "IllegalStateException":
+			return new IllegalStateException(message);
+		case "IllegalArgumentException":
+			return new IllegalArgumentException(message);
+		case "ClientFiredException":
+			return new ClientFiredException(client, message);
+		case "UnknownClientException":
+			return new UnknownClientException(client, message);
+		case "UnknownPlayerException":
+			return new UnknownPlayerException(null, message);
+		default:
+			return new RemoteException(type + ": " + message);
+		}
+	}
+}
\ No newline at end of file
@@ -18,7 +18,6 @@
 package de.lucaswerkmeister.code.fiar.servers;
 
 import java.awt.Dimension;
-import java.awt.Point;
 import java.util.Arrays;
 
 import de.lucaswerkmeister.code.fiar.framework.Board;
@@ -29,7 +28,7 @@ import de.lucaswerkmeister.code.fiar.framework.Player;
  * An implementation of the {@link Board} interface that uses an array for internal representation of the board.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.2
  */
 public class ArrayBoard extends Board {
 	private static final long serialVersionUID = 8910447580797731071L;
@@ -60,24 +59,29 @@ public class ArrayBoard extends Board {
 		this(boardSize.width, boardSize.height);
 	}
 
-	@Override
-	public Player getPlayerAt(final int x, final int y) {
-		return board[x][y];
+	/**
+	 * Creates a copy of the specified {@link ArrayBoard}.
+	 * 
+	 * @param original
+	 *            The board to copy.
+	 */
+	private ArrayBoard(final ArrayBoard original) {
+		super(original);
+		board = new Player[original.board.length][];
+		for (int i = 0; i < board.length; i++)
+			board[i] = original.board[i].clone();
 	}
 
 	@Override
-	public Player getPlayerAt(final Point position) {
-		return board[position.x][position.y];
+	public Player getPlayerAt(final int x, final int y) {
+		return board[x][y];
 	}
 
 	@Override
 	public void setPlayerAt(final int x, final int y, final Player p) {
+		final Player old = board[x][y];
 		board[x][y] = p;
-	}
-
-	@Override
-	public void setPlayerAt(final Point position, final Player p) {
-		board[position.x][position.y] = p;
+		fieldChanged(x, y, old, p);
 	}
 
 	@Override
@@ -90,12 +94,14 @@ public class ArrayBoard extends Board {
 		return board[0].length;
 	}
 
+	@Override
+	protected boolean reportsFieldChanges() {
+		return true;
+	}
+
 	@Override
 	public Board clone() {
-		final ArrayBoard ret = new ArrayBoard(getWidth(), getHeight());
-		for (int i = 0; i < ret.board.length; i++)
-			System.arraycopy(board[i], 0, ret.board[i], 0, board[i].length);
-		return ret;
+		return new ArrayBoard(this);
 	}
 
 	/*
@@ -112,6 +118,8 @@ public class ArrayBoard extends Board {
 		final ArrayBoard otherBoard = (ArrayBoard) other;
 		if (otherBoard.getWidth() != getWidth() || otherBoard.getHeight() != getHeight())
 			return false;
+		if (otherBoard.getHash() != getHash())
+			return false;
 		for (int i = 0; i < board.length; i++)
 			if (!Arrays.equals(board[i], otherBoard.board[i]))
 				return false;
@@ -0,0 +1,461 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.servers;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Joker;
+import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+
+/**
+ * An implementation of the {@link Board} interface that stores the board as bit planes.
+ * <p>
+ * Every player that occupies at least one field gets its own plane, with one bit per field; blocked fields and joker
+ * fields have separate planes. Fields are numbered row by row, so a horizontal row of fields is a contiguous run of
+ * bits. A 19&times;19 board with two players thus needs four planes of six <code>long</code>s each instead of 361
+ * object references.
+ * <p>
+ * Each plane is split into chunks of {@value #CHUNK_WORDS} <code>long</code>s, and chunks that have never been written
+ * to are not allocated at all. Chunks are shared between a board and its {@link #clone() clones}: cloning a board
+ * only copies a few references, and the first change to a chunk afterwards, on either board, copies that chunk (and
+ * the arrays of chunk references) before changing it. Clones can thus be handed out freely, and a board and many
+ * clones of it need little more memory than the board alone.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.4
+ */
+public class BitBoard extends Board {
+	private static final long serialVersionUID = 7541203397860155528L;
+	private static final int CHUNK_SHIFT = 4;
+	/**
+	 * The number of <code>long</code>s in one chunk of a plane.
+	 */
+	public static final int CHUNK_WORDS = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_WORDS - 1;
+	private static final Player[] NO_PLAYERS = new Player[0];
+	private static final Chunk[][] NO_PLANES = new Chunk[0][];
+	private final int width;
+	private final int height;
+	private final int words; // the number of longs in each plane
+	// null chunks are empty; chunks whose owner isn't this board's owner are shared with other boards
+	private Chunk[] blocks;
+	private Chunk[] jokers;
+	private Player[] players; // players[i] occupies the fields set in planes[i]; only ever replaced, never changed
+	private Chunk[][] planes;
+	private transient Object owner; // the owner of all chunks that this board may change in place
+	private transient boolean shared; // whether blocks, jokers and planes (and its elements) are shared
+
+	/**
+	 * Creates a new {@link BitBoard} with the specified dimensions.
+	 * 
+	 * @param width
+	 *            The width of the new BitBoard.
+	 * @param height
+	 *            The height of the new BitBoard.
+	 */
+	public BitBoard(final int width, final int height) {
+		this.width = width;
+		this.height = height;
+		words = (width * height + 63) >>> 6;
+		final int chunks = (words + CHUNK_MASK) >>> CHUNK_SHIFT;
+		blocks = new Chunk[chunks];
+		jokers = new Chunk[chunks];
+		players = NO_PLAYERS;
+		planes = NO_PLANES;
+		owner = new Object();
+	}
+
+	/**
+	 * Creates a new {@link BitBoard} with the specified dimension.
+	 * 
+	 * @param boardSize
+	 *            The size of the new BitBoard.
+	 */
+	public BitBoard(final Dimension boardSize) {
+		this(boardSize.width, boardSize.height);
+	}
+
+	/**
+	 * Creates a copy of the specified {@link BitBoard} that shares all chunks with it. Afterwards, neither board owns
+	 * any chunks.
+	 * 
+	 * @param original
+	 *            The board to copy.
+	 */
+	private BitBoard(final BitBoard original) {
+		super(original);
+		width = original.width;
+		height = original.height;
+		words = original.words;
+		blocks = original.blocks;
+		jokers = original.jokers;
+		players = original.players;
+		planes = original.planes;
+		owner = new Object();
+		shared = true;
+		original.owner = new Object();
+		original.shared = true;
+	}
+
+	@Override
+	public Player getPlayerAt(final int x, final int y) {
+		final int index = index(x, y);
+		final int word = index >>> 6;
+		final long mask = 1L << index;
+		if ((word(blocks, word) & mask) != 0)
+			return Block.getInstance();
+		if ((word(jokers, word) & mask) != 0)
+			return Joker.getInstance();
+		for (int i = 0; i < planes.length; i++)
+			if ((word(planes[i], word) & mask) != 0)
+				return players[i];
+		return NoPlayer.getInstance();
+	}
+
+	@Override
+	public void setPlayerAt(final int x, final int y, final Player p) {
+		final Player old = getPlayerAt(x, y);
+		final int index = index(x, y);
+		final int word = index >>> 6;
+		final long mask = 1L << index;
+		unshare();
+		clear(blocks, word, mask);
+		clear(jokers, word, mask);
+		for (final Chunk[] plane : planes)
+			clear(plane, word, mask);
+		if (p != null)
+			switch (p.getID()) {
+			case 0: // NoPlayer
+				break;
+			case Block.ID:
+				writable(blocks, word)[word & CHUNK_MASK] |= mask;
+				break;
+			case Joker.ID:
+				writable(jokers, word)[word & CHUNK_MASK] |= mask;
+				break;
+			default:
+				writable(planeOf(p), word)[word & CHUNK_MASK] |= mask;
+			}
+		fieldChanged(x, y, old, p);
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Counts the fields that are occupied by anything other than the {@link NoPlayer}, including blocked fields and
+	 * joker fields.
+	 * 
+	 * @return The number of occupied fields.
+	 */
+	public int getOccupiedFieldCount() {
+		int count = 0;
+		for (int word = 0; word < words; word++) {
+			long occupied = word(blocks, word) | word(jokers, word);
+			for (final Chunk[] plane : planes)
+				occupied |= word(plane, word);
+			count += Long.bitCount(occupied);
+		}
+		return count;
+	}
+
+	/*
+	 * Only allocated chunks count, plus one reference per chunk of each plane. Chunks that are shared with clones are
+	 * counted for every board that shares them.
+	 * 
+	 * (non-Javadoc)
+	 * 
+	 * @see de.lucaswerkmeister.code.fiar.framework.Board#getFieldMemoryEstimate()
+	 */
+	@Override
+	protected long getFieldMemoryEstimate() {
+		long bytes = planeMemory(blocks) + planeMemory(jokers);
+		for (final Chunk[] plane : planes)
+			bytes += planeMemory(plane);
+		return bytes;
+	}
+
+	@Override
+	protected boolean reportsFieldChanges() {
+		return true;
+	}
+
+	/*
+	 * Cloning a BitBoard takes constant time; see the class comment.
+	 * 
+	 * (non-Javadoc)
+	 * 
+	 * @see de.lucaswerkmeister.code.fiar.framework.Board#clone()
+	 */
+	@Override
+	public Board clone() {
+		return new BitBoard(this);
+	}
+
+	/*
+	 * Comparing two BitBoards compares their hashes first, and then whole chunks of fields at once, skipping chunks
+	 * that the boards share.
+	 * 
+	 * (non-Javadoc)
+	 * 
+	 * @see de.lucaswerkmeister.code.fiar.framework.Board#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object other) {
+		if (!(other instanceof BitBoard))
+			return super.equals(other);
+		final BitBoard otherBoard = (BitBoard) other;
+		if (otherBoard.width != width || otherBoard.height != height)
+			return false;
+		if (otherBoard.getHash() != getHash())
+			return false;
+		if (!equalPlanes(blocks, otherBoard.blocks) || !equalPlanes(jokers, otherBoard.jokers))
+			return false;
+		return containsPlanesOf(otherBoard) && otherBoard.containsPlanesOf(this);
+	}
+
+	/**
+	 * Determines if every player plane of the other board is equal to the plane of the same player on this board. A
+	 * player that has no plane on this board may only have an empty plane on the other board.
+	 * 
+	 * @param other
+	 *            The other board.
+	 * @return <code>true</code> if all planes of the other board are also present on this board, <code>false</code>
+	 *         otherwise.
+	 */
+	private boolean containsPlanesOf(final BitBoard other) {
+		for (int i = 0; i < other.players.length; i++) {
+			final Chunk[] plane = findPlane(other.players[i].getID());
+			if (!equalPlanes(plane == null ? new Chunk[other.planes[i].length] : plane, other.planes[i]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the plane of the player with the specified ID.
+	 * 
+	 * @param id
+	 *            The player ID.
+	 * @return The plane of that player, or <code>null</code> if no plane exists yet for that player.
+	 */
+	private Chunk[] findPlane(final int id) {
+		for (int i = 0; i < players.length; i++)
+			if (players[i].getID() == id)
+				return planes[i];
+		return null;
+	}
+
+	/**
+	 * Gets the plane of the specified player, creating it if it does not exist yet. The board must not be
+	 * {@link #unshare() shared}.
+	 * 
+	 * @param p
+	 *            The player.
+	 * @return The plane of that player.
+	 */
+	private Chunk[] planeOf(final Player p) {
+		final Chunk[] plane = findPlane(p.getID());
+		if (plane != null)
+			return plane;
+		players = Arrays.copyOf(players, players.length + 1);
+		planes = Arrays.copyOf(planes, planes.length + 1);
+		players[players.length - 1] = p;
+		return planes[planes.length - 1] = new Chunk[blocks.length];
+	}
+
+	/**
+	 * Private utility method to copy the arrays of chunk references if they are shared with other boards, so that
+	 * chunks can be replaced in them.
+	 */
+	private void unshare() {
+		if (!shared)
+			return;
+		blocks = blocks.clone();
+		jokers = jokers.clone();
+		planes = planes.clone();
+		for (int i = 0; i < planes.length; i++)
+			planes[i] = planes[i].clone();
+		shared = false;
+	}
+
+	/**
+	 * Private utility method to clear one bit of a plane, copying its chunk first if the bit is set and the chunk is
+	 * shared. The board must not be {@link #unshare() shared}.
+	 * 
+	 * @param plane
+	 *            The plane.
+	 * @param word
+	 *            The index of the word in the plane.
+	 * @param mask
+	 *            The bit to clear.
+	 */
+	private void clear(final Chunk[] plane, final int word, final long mask) {
+		if ((word(plane, word) & mask) != 0)
+			writable(plane, word)[word & CHUNK_MASK] &= ~mask;
+	}
+
+	/**
+	 * Private utility method to get the words of the chunk that contains a word of a plane for changing them. If the
+	 * chunk does not exist yet or is shared with other boards, a new chunk that this board owns is put in its place
+	 * first. The board must not be {@link #unshare() shared}.
+	 * 
+	 * @param plane
+	 *            The plane.
+	 * @param word
+	 *            The index of the word in the plane.
+	 * @return The words of the chunk, which this board may change.
+	 */
+	private long[] writable(final Chunk[] plane, final int word) {
+		final int c = word >>> CHUNK_SHIFT;
+		final Chunk chunk = plane[c];
+		if (chunk != null && chunk.owner == owner)
+			return chunk.words;
+		final long[] chunkWords = chunk == null ? new long[Math.min(CHUNK_WORDS, words - (c << CHUNK_SHIFT))]
+				: chunk.words.clone();
+		plane[c] = new Chunk(chunkWords, owner);
+		return chunkWords;
+	}
+
+	/**
+	 * Private utility method to estimate the memory of one plane.
+	 * 
+	 * @param plane
+	 *            The plane.
+	 * @return The estimated memory use in bytes.
+	 */
+	private static long planeMemory(final Chunk[] plane) {
+		long bytes = 4L * plane.length;
+		for (final Chunk chunk : plane)
+			if (chunk != null)
+				bytes += 8L * chunk.words.length;
+		return bytes;
+	}
+
+	/**
+	 * Private utility method to read one word of a plane.
+	 * 
+	 * @param plane
+	 *            The plane.
+	 * @param word
+	 *            The index of the word in the plane.
+	 * @return The word; <code>0</code> if its chunk does not exist.
+	 */
+	private static long word(final Chunk[] plane, final int word) {
+		final Chunk chunk = plane[word >>> CHUNK_SHIFT];
+		return chunk == null ? 0 : chunk.words[word & CHUNK_MASK];
+	}
+
+	/**
+	 * Private utility method to compare two planes of the same size chunk by chunk.
+	 * 
+	 * @param plane1
+	 *            The first plane.
+	 * @param plane2
+	 *            The second plane.
+	 * @return <code>true</code> if both planes have the same bits set, <code>false</code> otherwise.
+	 */
+	private static boolean equalPlanes(final Chunk[] plane1, final Chunk[] plane2) {
+		for (int c = 0; c < plane1.length; c++) {
+			final Chunk chunk1 = plane1[c];
+			final Chunk chunk2 = plane2[c];
+			if (chunk1 == chunk2)
+				continue; // shared or both empty
+			if (chunk1 == null || chunk2 == null) {
+				for (final long word : (chunk1 == null ? chunk2 : chunk1).words)
+					if (word != 0)
+						return false;
+			} else if (!Arrays.equals(chunk1.words, chunk2.words))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Private utility method to get the bit index of a field.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @return The index of the field's bit in each plane.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             If the field is not on the board.
+	 */
+	private int index(final int x, final int y) throws ArrayIndexOutOfBoundsException {
+		if (x < 0 || x >= width || y < 0 || y >= height)
+			throw new ArrayIndexOutOfBoundsException("Field " + x + "|" + y + " is not on the board!");
+		return y * width + x;
+	}
+
+	/**
+	 * Restores a deserialized board. Boards that were serialized together may share chunks, and the owners of the
+	 * chunks are not serialized, so the board starts out owning no chunks.
+	 * 
+	 * @param in
+	 *            The stream.
+	 * @throws IOException
+	 *             If reading the board fails.
+	 * @throws ClassNotFoundException
+	 *             If a class of the board can't be found.
+	 */
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		owner = new Object();
+		shared = true;
+	}
+
+	/**
+	 * A chunk of a plane, together with the owner of the board that may change it in place.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private static final class Chunk implements Serializable {
+		private static final long serialVersionUID = -5264718359020193771L;
+		private final long[] words;
+		private final transient Object owner;
+
+		/**
+		 * Creates a new {@link Chunk} with the specified words and owner.
+		 * 
+		 * @param words
+		 *            The words.
+		 * @param owner
+		 *            The owner.
+		 */
+		Chunk(final long[] words, final Object owner) {
+			this.words = words;
+			this.owner = owner;
+		}
+	}
+}
\ No newline at end of file
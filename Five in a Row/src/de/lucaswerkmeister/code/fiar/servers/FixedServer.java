@@ -18,16 +18,25 @@
 package de.lucaswerkmeister.code.fiar.servers;
 
 import java.awt.Dimension;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import de.lucaswerkmeister.code.fiar.framework.Block;
 import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.BoardDelta;
 import de.lucaswerkmeister.code.fiar.framework.Client;
 import de.lucaswerkmeister.code.fiar.framework.Joker;
 import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
@@ -49,31 +58,82 @@ import de.lucaswerkmeister.code.fiar.framework.event.PlayerVictory;
 import de.lucaswerkmeister.code.fiar.framework.event.Tie;
 import de.lucaswerkmeister.code.fiar.framework.event.UnblockField;
 import de.lucaswerkmeister.code.fiar.framework.event.UnjokerField;
+import de.lucaswerkmeister.code.fiar.framework.exception.ClientFiredException;
 import de.lucaswerkmeister.code.fiar.framework.exception.IllegalMoveException;
 import de.lucaswerkmeister.code.fiar.framework.exception.UnknownClientException;
 import de.lucaswerkmeister.code.fiar.framework.exception.UnknownPlayerException;
+import de.lucaswerkmeister.code.fiar.network.EventCodec;
 
 /**
  * A server with a fixed {@link Client} and {@link Player} set, where each player is bound to one client.
  * <p>
+ * By default, events are sent to all clients before {@link #action(Client, PlayerAction)} returns. Alternatively,
+ * events can be {@link #setEventExecutor(Executor) delivered asynchronously}.
+ * <p>
+ * If a {@link #setJournal(GameJournal, long) journal} is set, every accepted action and every phase change is written
+ * to it before the event is sent to any client, so that a new server can {@link #replay(GameJournal, long) replay}
+ * the game after a restart. Every {@link #setSnapshotInterval(int) few moves}, a snapshot of the game is written to the
+ * journal as well, so that a replay only has to execute the actions after the latest snapshot. A snapshot holds the
+ * board itself; the history of board changes is only kept in memory, so after a replay, board versions count from the
+ * restored board. The events of one action are made durable together, and only then sent to the clients. If the
+ * journal fails, the events of that action are never sent, and the server refuses all further actions, since its game
+ * is no longer the one in the journal.
+ * <p>
+ * Boards of more than {@link SparseBoard#MAX_DENSE_FIELDS} fields are kept in a {@link SparseBoard}, so players may
+ * also agree on huge boards or, with a width or height of {@link SparseBoard#UNBOUNDED}, on a board that is as good as
+ * infinite, where the game can't end in a tie.
+ * <p>
+ * If {@link #setMetrics(ServerMetrics) metrics} are set, the server records how long each action and each delivery of
+ * an event takes, illegal moves and forfeits, the state of the game, and the memory used by its board.
+ * <p>
  * This server is not thread-safe.
  * 
  * @author Lucas Werkmeister
- * @version 1.1
+ * @version 1.15
  */
 public class FixedServer implements Server {
 	private static final long serialVersionUID = 5803548088856474570L;
-	private ClientPlayerPair[] pairs;
-	private int currentPlayerIndex;
+	/**
+	 * The maximum number of events that may be waiting for delivery to one client if events are
+	 * {@link #setEventExecutor(Executor) delivered asynchronously}.
+	 */
+	public static final int EVENT_QUEUE_CAPACITY = 1024;
+	/**
+	 * The default number of placed stones between two snapshots of a {@link #setJournal(GameJournal, long) journaled}
+	 * game.
+	 */
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = 32;
+	private TurnOrder turnOrder;
+	private Map<Client, Set<Player>> clientPlayers; // only clients that control players which are still in the game
 	private final Client[] allClients;
 	private Board board;
 	private int[] phase;
+	private GameState state; // always GameState.of(phase)
 	private final Set<BoardSizeProposal> boardSizeProposals;
 	private Dimension currentBoardSize;
 	private Set<BlockDistributionAccepted> acceptedBlockDistributions;
 	private Set<JokerDistributionAccepted> acceptedJokerDistributions;
 	private int occupiedFields = 0; // number of occupied fields is cached to avoid having to iterate over the whole
 									// board after each move for counting
+	// changed fields in order, for getBoardChangesSince(); the board version is changeCount. Kept in memory only, the
+	// journal's snapshots contain just the board.
+	private int[] changedXs = new int[16];
+	private int[] changedYs = new int[16];
+	private Player[] changedPlayers = new Player[16];
+	private int changeCount = 0;
+	private transient Map<Client, EventQueue> eventQueues; // null if events are delivered synchronously
+	private final Set<Client> firedClients = Collections.newSetFromMap(new ConcurrentHashMap<Client, Boolean>());
+	private transient GameJournal journal; // null if the game is not journaled
+	private transient EventCodec journalCodec;
+	private long journalGameID;
+	private int snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+	private int movesSinceSnapshot = 0;
+	private boolean replaying = false; // no events are journaled or sent while replaying
+	private final List<GameEvent> unsentEvents = new ArrayList<>(); // journaled, but not yet durable events
+	private long journalPosition; // the position behind the last record appended to the journal
+	private transient IOException journalFailure; // if writing to the journal failed, the game is over for good
+	private transient ServerMetrics metrics; // null if no metrics are collected
+	private long boardMemory = 0; // the board memory last reported to the metrics
 
 	/**
 	 * Creates a new {@link FixedServer} instance. The players in <code>players[i]</code> are bound to client
@@ -91,11 +151,11 @@ public class FixedServer implements Server {
 			if (players[i].length > 0)
 				for (int j = 0; j < players[i].length; j++)
 					pairsL.add(new ClientPlayerPair(clients[i], players[i][j]));
-		pairs = pairsL.toArray(new ClientPlayerPair[] {});
+		seat(pairsL.toArray(new ClientPlayerPair[] {}), 0);
 		allClients = new Client[clients.length];
 		System.arraycopy(clients, 0, allClients, 0, clients.length);
-		phase = new int[] {0, 0 };
-		boardSizeProposals = new HashSet<>(pairs.length);
+		setPhase(new int[] {0, 0 });
+		boardSizeProposals = new HashSet<>(pairsL.size());
 		currentBoardSize = new Dimension(0, 0);
 	}
 
@@ -110,18 +170,149 @@ public class FixedServer implements Server {
 	 *            Additional clients that aren't bound to any players.
 	 */
 	public FixedServer(final Set<ClientPlayerPair> pairs, final Set<? extends Client> additionalClients) {
-		this.pairs = pairs.toArray(new ClientPlayerPair[] {});
+		seat(pairs.toArray(new ClientPlayerPair[] {}), 0);
 		final Set<Client> allClients = new HashSet<>(additionalClients);
 		for (final ClientPlayerPair pair : pairs)
 			allClients.add(pair.getClient());
 		this.allClients = allClients.toArray(new Client[] {});
-		phase = new int[] {0, 0 };
+		setPhase(new int[] {0, 0 });
 		boardSizeProposals = new HashSet<>(pairs.size());
 		currentBoardSize = new Dimension(0, 0);
 	}
 
+	/**
+	 * Makes this server deliver events asynchronously on the specified executor.
+	 * <p>
+	 * Each client gets its own queue of events that are waiting for delivery, which is drained by one task of the
+	 * executor at a time, so each client still receives all events in order, but a slow client no longer delays the
+	 * game or the other clients. A client whose queue overflows (it has more than {@link #EVENT_QUEUE_CAPACITY} events
+	 * waiting) or whose {@link Client#gameEvent(GameEvent) gameEvent} method throws an exception is fired: it receives
+	 * no further events, and all its further requests are answered with a {@link ClientFiredException}.
+	 * 
+	 * @param executor
+	 *            The executor that delivers the events, or <code>null</code> to deliver events synchronously again.
+	 */
+	public void setEventExecutor(final Executor executor) {
+		if (executor == null) {
+			eventQueues = null;
+			return;
+		}
+		final Map<Client, EventQueue> queues = new HashMap<>();
+		for (final Client c : allClients)
+			queues.put(c, new EventQueue(c, executor));
+		eventQueues = queues;
+	}
+
+	/**
+	 * Makes this server write every accepted action and every phase change to the specified journal, under the
+	 * specified game ID, before it sends the event to the clients. Events that happened before the journal was set are
+	 * not written. If the journal fails, the action that could not be written is not announced to the clients, and
+	 * all further actions throw an {@link IllegalStateException}.
+	 * 
+	 * @param journal
+	 *            The journal, or <code>null</code> to stop journaling.
+	 * @param gameID
+	 *            The ID under which the events of this game are written.
+	 */
+	public void setJournal(final GameJournal journal, final long gameID) {
+		final Set<Player> players = new HashSet<>();
+		for (final ClientPlayerPair pair : turnOrder.toArray())
+			players.add(pair.getPlayer());
+		journalCodec = journal == null ? null : new EventCodec(players);
+		journalGameID = gameID;
+		this.journal = journal;
+	}
+
+	/**
+	 * Makes this server record metrics about its game. The game is counted in the metrics' games per state from now on,
+	 * and its board memory is added to the metrics' board memory; if the server had other metrics before, the game is
+	 * removed from those.
+	 * 
+	 * @param metrics
+	 *            The metrics, or <code>null</code> to stop recording metrics.
+	 */
+	public void setMetrics(final ServerMetrics metrics) {
+		if (this.metrics != null) {
+			this.metrics.stateChanged(state, null);
+			this.metrics.boardMemoryChanged(-boardMemory);
+		}
+		boardMemory = 0;
+		this.metrics = metrics;
+		if (metrics != null) {
+			metrics.stateChanged(null, state);
+			updateBoardMemory();
+		}
+	}
+
+	/**
+	 * Sets the number of placed stones between two snapshots that this server writes to its
+	 * {@link #setJournal(GameJournal, long) journal}. The default is {@value #DEFAULT_SNAPSHOT_INTERVAL}.
+	 * 
+	 * @param moves
+	 *            The number of moves, or <code>0</code> to write no snapshots.
+	 * @throws IllegalArgumentException
+	 *             If the number of moves is negative.
+	 */
+	public void setSnapshotInterval(final int moves) throws IllegalArgumentException {
+		if (moves < 0)
+			throw new IllegalArgumentException("Snapshot interval must not be negative!");
+		snapshotInterval = moves;
+	}
+
+	/**
+	 * Rebuilds the game with the specified ID from the journal and then {@link #setJournal(GameJournal, long)
+	 * continues journaling} the game. The game is restored from the latest snapshot in the journal, if there is one,
+	 * and all actions journaled after it are executed again. No events are sent to the clients during the replay.
+	 * <p>
+	 * The server must have the same clients and players as the server that wrote the journal, and no action must have
+	 * happened on it yet.
+	 * 
+	 * @param journal
+	 *            The journal.
+	 * @param gameID
+	 *            The ID of the game.
+	 * @throws IllegalStateException
+	 *             If an action already happened on this server.
+	 * @throws IOException
+	 *             If the journal cannot be read, or if its records do not fit this server.
+	 */
+	public void replay(final GameJournal journal, final long gameID) throws IllegalStateException, IOException {
+		if (phase[0] != 0 || phase[1] != 0 || !boardSizeProposals.isEmpty())
+			throw new IllegalStateException("Only a new game can be replayed!");
+		setJournal(journal, gameID);
+		replaying = true;
+		try {
+			final List<byte[]> records = journal.read(gameID);
+			int start = records.size();
+			while (start > 0 && !GameSnapshot.isSnapshot(records.get(start - 1)))
+				start--;
+			if (start > 0)
+				restore(GameSnapshot.decode(records.get(start - 1), journalCodec));
+			for (final byte[] record : records.subList(start, records.size())) {
+				final GameEvent e = journalCodec.decode(record);
+				if (e instanceof PhaseChange) {
+					if (!Arrays.equals(phase, ((PhaseChange) e).getNewPhase()))
+						throw new StreamCorruptedException("Replayed game " + gameID + " is in phase "
+								+ Arrays.toString(phase) + " instead of "
+								+ Arrays.toString(((PhaseChange) e).getNewPhase()) + "!");
+				} else {
+					final PlayerAction action = (PlayerAction) e;
+					action(clientOf(action.getActingPlayer()), action);
+				}
+			}
+		} catch (final IllegalMoveException | RuntimeException e) {
+			final StreamCorruptedException exception = new StreamCorruptedException("Journal of game " + gameID
+					+ " does not fit this server: " + e.getMessage());
+			exception.initCause(e);
+			throw exception;
+		} finally {
+			replaying = false;
+		}
+	}
+
 	@Override
 	public int[] getPhase(final Client requester) {
+		checkFired(requester);
 		if (knowsClient(requester))
 			return Arrays.copyOf(phase, phase.length);
 		throw new UnknownClientException(requester);
@@ -129,6 +320,7 @@ public class FixedServer implements Server {
 
 	@Override
 	public int getPhasesVersion(final Client requester) {
+		checkFired(requester);
 		if (knowsClient(requester))
 			return 0;
 		throw new UnknownClientException(requester);
@@ -136,52 +328,56 @@ public class FixedServer implements Server {
 
 	@Override
 	public boolean canAct(final Client requester, final Player p) {
-		return phase[0] == 0 || (phase[0] == 1 && phase[1] == 1 && phase[2] == p.getID());
+		return state.canAct(isOnTurn(p));
 	}
 
 	@Override
 	public Set<Class<? extends PlayerAction>> getAllowedActions(final Client requester, final Player p) {
-		final HashSet<Class<? extends PlayerAction>> ret = new HashSet<>();
-		try {
-			switch (phase[0]) {
-			case 0:
-				switch (phase[1]) {
-				case 0:
-					ret.add(BoardSizeProposal.class);
-					return ret;
-				case 1:
-					ret.add(BlockField.class);
-					ret.add(UnblockField.class);
-					ret.add(BlockDistributionAccepted.class);
-					return ret;
-				case 2:
-					ret.add(JokerField.class);
-					ret.add(UnjokerField.class);
-					ret.add(JokerDistributionAccepted.class);
-					return ret;
-				}
-			case 1:
-				switch (phase[1]) {
-				case 0:
-					return Collections.emptySet();
-				case 1:
-					if (p.getID() == phase[2])
-						ret.add(PlaceStone.class);
-					ret.add(Forfeit.class);
-					return ret;
-				}
-			case 2:
-				return Collections.emptySet();
-			}
-		} catch (final ArrayIndexOutOfBoundsException e) {
-			// Let control fall through to the IllegalStateException below
-		}
-		throw new IllegalStateException("Server is in unknown phase. This is a serious programming error!");
+		return state.getAllowedActions(isOnTurn(p));
 	}
 
 	@Override
 	public void action(final Client requester, final PlayerAction action) throws IllegalStateException,
 			IllegalMoveException, RemoteException {
+		if (metrics == null) {
+			execute(requester, action);
+			return;
+		}
+		final long start = System.nanoTime();
+		try {
+			execute(requester, action);
+			if (action instanceof Forfeit)
+				metrics.forfeit();
+		} catch (final IllegalStateException | IllegalMoveException e) {
+			metrics.illegalMove();
+			throw e;
+		} finally {
+			metrics.actionExecuted(action, System.nanoTime() - start);
+			updateBoardMemory();
+		}
+	}
+
+	/**
+	 * Private utility method to execute an action; this is what {@link #action(Client, PlayerAction)} does, apart from
+	 * recording metrics.
+	 * 
+	 * @param requester
+	 *            The requesting client.
+	 * @param action
+	 *            The action.
+	 * @throws IllegalStateException
+	 *             If the action is currently not allowed.
+	 * @throws IllegalMoveException
+	 *             If the action is not allowed on the current board.
+	 * @throws RemoteException
+	 *             If an event can't be sent to a client.
+	 */
+	private void execute(final Client requester, final PlayerAction action) throws IllegalStateException,
+			IllegalMoveException, RemoteException {
+		checkFired(requester);
+		if (journalFailure != null)
+			throw new IllegalStateException("The game could not be written to the journal and was stopped!",
+					journalFailure);
 		if (!knowsClient(requester))
 			throw new UnknownClientException(requester);
 		if (!knowsPlayer(action.getActingPlayer()))
@@ -189,175 +385,408 @@ public class FixedServer implements Server {
 		if (!clientPlayerMatch(requester, action.getActingPlayer()))
 			throw new IllegalArgumentException("Client " + requester.toString() + " and player "
 					+ action.getActingPlayer().getName() + " don't match!");
-		if (!getAllowedActions(requester, action.getActingPlayer()).contains(action.getClass())) {
-			System.out.println(action.getClass());
+		if (!state.allows(action, isOnTurn(action.getActingPlayer())))
 			throw new IllegalStateException("This action (" + action.toString() + ") is currently not allowed for "
 					+ action.getActingPlayer().getName() + "!");
-		}
 		try {
-			switch (phase[0]) {
-			case 0:
-				switch (phase[1]) {
-				case 0:
-					boardSizeProposals.add((BoardSizeProposal) action);
-					currentBoardSize = ((BoardSizeProposal) action).getSize();
-					fireEvent(action);
-					if (boardSizeAgreed()) {
-						board = new ArrayBoard(currentBoardSize);
-						acceptedBlockDistributions = new HashSet<>();
-						phase = new int[] {0, 1 };
-						fireEvent(new PhaseChange(phase));
-					}
-					return;
-				case 1:
-					if (action instanceof BlockField) {
-						board.setPlayerAt(((FieldAction) action).getField(), Block.getInstance());
-						occupiedFields++;
-					} else if (action instanceof UnblockField) {
-						board.setPlayerAt(((FieldAction) action).getField(), NoPlayer.getInstance());
-						occupiedFields--;
-					} else
-						acceptedBlockDistributions.add((BlockDistributionAccepted) action);
-					fireEvent(action);
-					if (blockDistributionAgreed()) {
-						acceptedBlockDistributions = null; // free memory
-						acceptedJokerDistributions = new HashSet<>();
-						phase = new int[] {0, 2 };
-						fireEvent(new PhaseChange(phase));
-					}
-					return;
-				case 2:
-					if (action instanceof JokerField) {
-						if (board.getPlayerAt(((JokerField) action).getField()) != NoPlayer.getInstance())
-							throw new IllegalMoveException("Field is already occupied by "
-									+ board.getPlayerAt(((JokerField) action).getField()).getName() + "!");
-						board.setPlayerAt(((FieldAction) action).getField(), Joker.getInstance());
-						occupiedFields++;
-					} else if (action instanceof UnjokerField) {
-						if (board.getPlayerAt(((UnjokerField) action).getField()) != Joker.getInstance())
-							throw new IllegalMoveException("Field is not a Joker field but occupied by "
-									+ board.getPlayerAt(((UnjokerField) action).getField()).getName() + "!");
-						board.setPlayerAt(((FieldAction) action).getField(), NoPlayer.getInstance());
-						occupiedFields--;
-					} else
-						acceptedJokerDistributions.add((JokerDistributionAccepted) action);
+			switch (state) {
+			case BOARD_SIZE:
+				boardSizeProposals.add((BoardSizeProposal) action);
+				currentBoardSize = ((BoardSizeProposal) action).getSize();
+				fireEvent(action);
+				if (boardSizeAgreed()) {
+					board = SparseBoard.newBoard(currentBoardSize.width, currentBoardSize.height);
+					changeCount = 0;
+					acceptedBlockDistributions = new HashSet<>();
+					setPhase(new int[] {0, 1 });
+					fireEvent(new PhaseChange(phase));
+				}
+				return;
+			case BLOCKS:
+				if (action instanceof BlockField) {
+					final FieldAction fa = (FieldAction) action;
+					setField(fa.getX(), fa.getY(), Block.getInstance());
+					occupiedFields++;
+				} else if (action instanceof UnblockField) {
+					final FieldAction fa = (FieldAction) action;
+					setField(fa.getX(), fa.getY(), NoPlayer.getInstance());
+					occupiedFields--;
+				} else
+					acceptedBlockDistributions.add((BlockDistributionAccepted) action);
+				fireEvent(action);
+				if (blockDistributionAgreed()) {
+					acceptedBlockDistributions = null; // free memory
+					acceptedJokerDistributions = new HashSet<>();
+					setPhase(new int[] {0, 2 });
+					fireEvent(new PhaseChange(phase));
+				}
+				return;
+			case JOKERS:
+				if (action instanceof JokerField) {
+					final FieldAction fa = (FieldAction) action;
+					final Player occupant = board.getPlayerAt(fa.getX(), fa.getY());
+					if (occupant != NoPlayer.getInstance())
+						throw new IllegalMoveException("Field is already occupied by " + occupant.getName() + "!");
+					setField(fa.getX(), fa.getY(), Joker.getInstance());
+					occupiedFields++;
+				} else if (action instanceof UnjokerField) {
+					final FieldAction fa = (FieldAction) action;
+					final Player occupant = board.getPlayerAt(fa.getX(), fa.getY());
+					if (occupant != Joker.getInstance())
+						throw new IllegalMoveException("Field is not a Joker field but occupied by "
+								+ occupant.getName() + "!");
+					setField(fa.getX(), fa.getY(), NoPlayer.getInstance());
+					occupiedFields--;
+				} else
+					acceptedJokerDistributions.add((JokerDistributionAccepted) action);
+				fireEvent(action);
+				if (jokerDistributionAgreed()) {
+					acceptedJokerDistributions = null; // free memory
+					turnOrder.rewind();
+					setPhase(new int[] {1, 1, turnOrder.current().getPlayer().getID() });
+					fireEvent(new PhaseChange(phase));
+				}
+				return;
+			case PLAY:
+				if (action instanceof Forfeit) {
+					final ClientPlayerPair seat = turnOrder.remove(action.getActingPlayer().getID());
+					final Set<Player> players = clientPlayers.get(seat.getClient());
+					players.remove(seat.getPlayer());
+					if (players.isEmpty())
+						clientPlayers.remove(seat.getClient());
+					phase[2] = turnOrder.current().getPlayer().getID();
 					fireEvent(action);
-					if (jokerDistributionAgreed()) {
-						acceptedJokerDistributions = null; // free memory
-						phase = new int[] {1, 1, pairs[0].getPlayer().getID() };
-						currentPlayerIndex = 0;
-						fireEvent(new PhaseChange(phase));
+					if (turnOrder.size() < 2) {
+						setPhase(new int[] {2, 0, action.getActingPlayer().getID() });
+						// we know that they forfeit because this server supports no other way to quit a running game
+						fireEvent(new AllOthersForfeit(turnOrder.current().getPlayer()));
 					}
 					return;
 				}
-			case 1:
-				switch (phase[1]) {
-				case 0:
-					break; // Let control fall through to the
-							// IllegalStateException below
-				case 1:
-					if (action instanceof Forfeit) {
-						int index = 0;
-						for (int i = 0; i < pairs.length; i++)
-							if (pairs[i].getPlayer().equals(action.getActingPlayer())) {
-								index = i;
-								break;
-							}
-						final ClientPlayerPair[] newPairs = new ClientPlayerPair[pairs.length - 1];
-						System.arraycopy(pairs, 0, newPairs, 0, index);
-						System.arraycopy(pairs, index + 1, newPairs, index, pairs.length - index - 1);
-						pairs = newPairs;
-						if (currentPlayerIndex > index)
-							currentPlayerIndex--;
-						currentPlayerIndex %= pairs.length;
-						phase[2] = pairs[currentPlayerIndex].getPlayer().getID();
-						fireEvent(action);
-						if (pairs.length < 2) {
-							phase = new int[] {2, 0, action.getActingPlayer().getID() };
-							fireEvent(new AllOthersForfeit(pairs[0].getPlayer())); // we know that they forfeit because
-																					// this
-																					// server supports no other way to
-																					// quit
-																					// a running game
-						}
-						return;
-					}
-					if (action.getActingPlayer().equals(pairs[currentPlayerIndex].getPlayer())) {
-						final PlaceStone placeStone = (PlaceStone) action;
-						if (!board.getPlayerAt(placeStone.getField()).equals(NoPlayer.getInstance()))
-							throw new IllegalMoveException("Field is already occupied by "
-									+ board.getPlayerAt(placeStone.getField()).getName() + "!");
-						board.setPlayerAt(placeStone.getField(), placeStone.getActingPlayer());
-						occupiedFields++;
-
-						currentPlayerIndex++;
-						currentPlayerIndex %= pairs.length;
-						phase[2] = pairs[currentPlayerIndex].getPlayer().getID();
-
-						fireEvent(action);
-
-						if (board.wasWinningMove(placeStone.getField())) {
-							phase = new int[] {2, 0, action.getActingPlayer().getID() };
-							fireEvent(new PlayerVictory(action.getActingPlayer()));
-							return;
-						}
+				// only the current player may place a stone, which the state already checked
+				final PlaceStone placeStone = (PlaceStone) action;
+				final int x = placeStone.getX();
+				final int y = placeStone.getY();
+				final Player occupant = board.getPlayerAt(x, y);
+				if (!occupant.equals(NoPlayer.getInstance()))
+					throw new IllegalMoveException("Field is already occupied by " + occupant.getName() + "!");
+				setField(x, y, placeStone.getActingPlayer());
+				occupiedFields++;
 
-						if (occupiedFields >= board.getWidth() * board.getHeight()) {
-							phase = new int[] {2, 1 };
-							fireEvent(new Tie());
-							return;
-						}
-						return;
-					}
-					break; // Let control fall through to the
-							// IllegalStateException below
+				turnOrder.advance();
+				phase[2] = turnOrder.current().getPlayer().getID();
+
+				fireEvent(action);
+
+				if (board.wasWinningMove(x, y)) {
+					setPhase(new int[] {2, 0, action.getActingPlayer().getID() });
+					fireEvent(new PlayerVictory(action.getActingPlayer()));
+				} else if (occupiedFields >= (long) board.getWidth() * board.getHeight()) {
+					setPhase(new int[] {2, 1 });
+					fireEvent(new Tie());
 				}
-			case 2:
-				break; // Let control fall through to the IllegalStateException
-						// below
+				if (++movesSinceSnapshot >= snapshotInterval && snapshotInterval > 0)
+					writeSnapshot();
+				return;
+			case OVER:
+				break; // Let control fall through to the IllegalStateException below
 			}
 		} catch (final ArrayIndexOutOfBoundsException e) {
 			// Let control fall through to the IllegalStateException below
+		} finally {
+			sendJournaledEvents();
 		}
 		throw new IllegalStateException("Action currently not allowed!");
 	}
 
 	@Override
 	public Board getCurrentBoard(final Client requester) {
+		checkFired(requester);
 		if (knowsClient(requester))
 			return board == null ? null : board.clone();
 		throw new UnknownClientException(requester);
 	}
 
+	@Override
+	public BoardDelta getBoardChangesSince(final Client requester, final int version) throws IllegalArgumentException {
+		checkFired(requester);
+		if (!knowsClient(requester))
+			throw new UnknownClientException(requester);
+		if (board == null)
+			return null;
+		if (version < 0 || version > changeCount)
+			throw new IllegalArgumentException("Unknown board version " + version + ", current version is "
+					+ changeCount + "!");
+		return new BoardDelta(board.getWidth(), board.getHeight(), version, Arrays.copyOfRange(changedXs, version,
+				changeCount), Arrays.copyOfRange(changedYs, version, changeCount), Arrays.copyOfRange(changedPlayers,
+				version, changeCount));
+	}
+
+	/**
+	 * Private utility method to set a field of the board and record the change for
+	 * {@link #getBoardChangesSince(Client, int)}.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @param p
+	 *            The player that is to occupy the field.
+	 */
+	private void setField(final int x, final int y, final Player p) {
+		board.setPlayerAt(x, y, p);
+		if (changeCount == changedXs.length) {
+			changedXs = Arrays.copyOf(changedXs, changeCount * 2);
+			changedYs = Arrays.copyOf(changedYs, changeCount * 2);
+			changedPlayers = Arrays.copyOf(changedPlayers, changeCount * 2);
+		}
+		changedXs[changeCount] = x;
+		changedYs[changeCount] = y;
+		changedPlayers[changeCount] = p;
+		changeCount++;
+	}
+
+	/**
+	 * Private utility method to report the change of the board's memory since the last report to the metrics.
+	 */
+	private void updateBoardMemory() {
+		final long memory = board == null ? 0 : board.getMemoryEstimate();
+		metrics.boardMemoryChanged(memory - boardMemory);
+		boardMemory = memory;
+	}
+
+	/**
+	 * Private utility method to write a snapshot of the game to the journal, if there is one.
+	 */
+	private void writeSnapshot() {
+		movesSinceSnapshot = 0;
+		if (journal == null || replaying)
+			return;
+		final ClientPlayerPair[] seats = turnOrder.toArray();
+		final int[] playerIDs = new int[seats.length];
+		for (int i = 0; i < seats.length; i++)
+			playerIDs[i] = seats[i].getPlayer().getID();
+		final int width = board.getWidth();
+		final int height = board.getHeight();
+		final int[] xs = new int[occupiedFields];
+		final int[] ys = new int[occupiedFields];
+		final Player[] players = new Player[occupiedFields];
+		int count = 0;
+		if (board instanceof SparseBoard) {
+			// walking over all fields of a sparse board could take forever
+			for (final long field : ((SparseBoard) board).getOccupiedFields()) {
+				xs[count] = (int) (field % width);
+				ys[count] = (int) (field / width);
+				players[count] = board.getPlayerAt(xs[count], ys[count]);
+				count++;
+			}
+		} else
+			for (int y = 0; y < height; y++)
+				for (int x = 0; x < width; x++) {
+					final Player p = board.getPlayerAt(x, y);
+					if (p.getID() != 0) {
+						xs[count] = x;
+						ys[count] = y;
+						players[count] = p;
+						count++;
+					}
+				}
+		final GameSnapshot snapshot = new GameSnapshot(phase, turnOrder.currentIndex(), playerIDs, width, height,
+				count, xs, ys, players);
+		try {
+			journalPosition = journal.append(journalGameID, snapshot.encode());
+		} catch (final IOException e) {
+			throw journalFailed(e);
+		}
+	}
+
+	/**
+	 * Private utility method to make the events of the current action durable with a single
+	 * {@link GameJournal#sync(long) sync} and then send them to the clients.
+	 * 
+	 * @throws IllegalStateException
+	 *             If the journal fails.
+	 * @throws RemoteException
+	 *             If an event can't be sent to a client.
+	 */
+	private void sendJournaledEvents() throws IllegalStateException, RemoteException {
+		if (unsentEvents.isEmpty())
+			return;
+		final GameEvent[] events = unsentEvents.toArray(new GameEvent[unsentEvents.size()]);
+		unsentEvents.clear();
+		try {
+			journal.sync(journalPosition);
+		} catch (final IOException e) {
+			throw journalFailed(e);
+		}
+		for (final GameEvent e : events)
+			sendEvent(e);
+	}
+
+	/**
+	 * Private utility method to stop the game after the journal failed. The events that were not yet sent are
+	 * dropped, since they might not be in the journal.
+	 * 
+	 * @param cause
+	 *            The exception that the journal threw.
+	 * @return An exception to throw.
+	 */
+	private IllegalStateException journalFailed(final IOException cause) {
+		journalFailure = cause;
+		unsentEvents.clear();
+		return new IllegalStateException("Could not write to the journal, the game was stopped!", cause);
+	}
+
+	/**
+	 * Private utility method to restore the game from a snapshot. The board is rebuilt by occupying the recorded fields
+	 * directly, without checking them again. The change history starts anew with these fields, so board versions
+	 * count from the restored board instead of the original empty board.
+	 * 
+	 * @param snapshot
+	 *            The snapshot.
+	 * @throws StreamCorruptedException
+	 *             If the snapshot refers to players that are not part of this game.
+	 */
+	private void restore(final GameSnapshot snapshot) throws StreamCorruptedException {
+		final ClientPlayerPair[] newPairs = new ClientPlayerPair[snapshot.playerIDs.length];
+		for (int i = 0; i < newPairs.length; i++) {
+			newPairs[i] = turnOrder.get(snapshot.playerIDs[i]);
+			if (newPairs[i] == null)
+				throw new StreamCorruptedException("Unknown player " + snapshot.playerIDs[i] + " in snapshot!");
+		}
+		if (snapshot.currentPlayerIndex >= newPairs.length)
+			throw new StreamCorruptedException("Invalid current player in snapshot!");
+		seat(newPairs, snapshot.currentPlayerIndex);
+		setPhase(snapshot.phase);
+		currentBoardSize = new Dimension(snapshot.width, snapshot.height);
+		board = SparseBoard.newBoard(snapshot.width, snapshot.height);
+		changeCount = 0;
+		occupiedFields = 0;
+		for (int i = 0; i < snapshot.fieldCount; i++) {
+			if (board.getPlayerAt(snapshot.xs[i], snapshot.ys[i]).getID() != 0)
+				throw new StreamCorruptedException("Field (" + snapshot.xs[i] + "," + snapshot.ys[i]
+						+ ") appears twice in snapshot!");
+			setField(snapshot.xs[i], snapshot.ys[i], snapshot.players[i]);
+			occupiedFields++;
+		}
+
+		acceptedBlockDistributions = null;
+		acceptedJokerDistributions = null;
+	}
+
+	/**
+	 * Private utility method to change the phase, and with it the state of the phase machine.
+	 * 
+	 * @param newPhase
+	 *            The new phase.
+	 * @throws IllegalStateException
+	 *             If the phase is unknown.
+	 */
+	private void setPhase(final int[] newPhase) throws IllegalStateException {
+		final GameState newState = GameState.of(newPhase);
+		if (metrics != null && newState != state)
+			metrics.stateChanged(state, newState);
+		state = newState;
+		phase = newPhase;
+	}
+
+	/**
+	 * Private utility method to determine if it is the specified player's turn.
+	 * 
+	 * @param p
+	 *            The player.
+	 * @return <code>true</code> if the game is running and the player is the current player, <code>false</code>
+	 *         otherwise.
+	 */
+	private boolean isOnTurn(final Player p) {
+		return state == GameState.PLAY && phase[2] == p.getID();
+	}
+
+	/**
+	 * Private utility method to seat the specified players, replacing all previous seats.
+	 * 
+	 * @param pairs
+	 *            The client-player bindings, in turn order.
+	 * @param current
+	 *            The index of the current player.
+	 */
+	private void seat(final ClientPlayerPair[] pairs, final int current) {
+		turnOrder = new TurnOrder(pairs, current);
+		clientPlayers = new HashMap<>();
+		for (final ClientPlayerPair pair : pairs) {
+			Set<Player> players = clientPlayers.get(pair.getClient());
+			if (players == null)
+				clientPlayers.put(pair.getClient(), players = new HashSet<>());
+			players.add(pair.getPlayer());
+		}
+	}
+
 	private boolean knowsClient(final Client c) {
-		for (final ClientPlayerPair pair : pairs)
-			if (pair.getClient().equals(c))
-				return true;
-		return false;
+		return clientPlayers.containsKey(c);
 	}
 
 	private boolean knowsPlayer(final Player p) {
-		for (final ClientPlayerPair pair : pairs)
-			if (pair.getPlayer().equals(p))
-				return true;
-		return false;
+		return turnOrder.get(p.getID()) != null;
+	}
+
+	private Client clientOf(final Player p) {
+		final ClientPlayerPair pair = turnOrder.get(p.getID());
+		return pair == null ? null : pair.getClient();
 	}
 
 	private boolean clientPlayerMatch(final Client c, final Player p) {
-		for (final ClientPlayerPair pair : pairs)
-			if (pair.getPlayer().equals(p))
-				return pair.getClient().equals(c);
-		return false;
+		final ClientPlayerPair pair = turnOrder.get(p.getID());
+		return pair != null && pair.getClient().equals(c);
+	}
+
+	/**
+	 * Private utility method to throw a {@link ClientFiredException} if the client was fired.
+	 * 
+	 * @param c
+	 *            The client.
+	 * @throws ClientFiredException
+	 *             If the client was fired.
+	 */
+	private void checkFired(final Client c) throws ClientFiredException {
+		if (firedClients.contains(c))
+			throw new ClientFiredException(c, "Client did not keep up with the game events and was fired!");
 	}
 
 	private void fireEvent(final GameEvent e) throws RemoteException {
-		for (final Client c : allClients)
-			c.gameEvent(e);
+		if (replaying)
+			return;
+		if (journal == null) {
+			sendEvent(e);
+			return;
+		}
+		if (e instanceof PlayerAction || e instanceof PhaseChange)
+			try {
+				journalPosition = journal.append(journalGameID, journalCodec.encode(e));
+			} catch (final IOException exception) {
+				throw journalFailed(exception);
+			}
+		unsentEvents.add(e);
+	}
+
+	private void sendEvent(final GameEvent e) throws RemoteException {
+		final Map<Client, EventQueue> queues = eventQueues;
+		if (queues == null && metrics == null)
+			for (final Client c : allClients)
+				c.gameEvent(e);
+		else if (queues == null)
+			for (final Client c : allClients) {
+				final long start = System.nanoTime();
+				c.gameEvent(e);
+				metrics.eventDelivered(System.nanoTime() - start);
+			}
+		else
+			for (final EventQueue queue : queues.values())
+				queue.add(e);
 	}
 
 	private boolean boardSizeAgreed() {
 		final Set<Player> unagreedPlayers = new HashSet<>();
-		for (final ClientPlayerPair pair : pairs)
+		for (final ClientPlayerPair pair : turnOrder.toArray())
 			unagreedPlayers.add(pair.getPlayer());
 
 		for (final BoardSizeProposal p : boardSizeProposals)
@@ -369,11 +798,11 @@ public class FixedServer implements Server {
 
 	private boolean blockDistributionAgreed() {
 		final Set<Player> unagreedPlayers = new HashSet<>();
-		for (final ClientPlayerPair pair : pairs)
+		for (final ClientPlayerPair pair : turnOrder.toArray())
 			unagreedPlayers.add(pair.getPlayer());
 
 		for (final BlockDistributionAccepted b : acceptedBlockDistributions)
-			if (b.getAcceptedBoard().equals(board))
+			if (b.getAcceptedHash() == board.getHash())
 				unagreedPlayers.remove(b.getActingPlayer());
 
 		return unagreedPlayers.isEmpty();
@@ -381,13 +810,71 @@ public class FixedServer implements Server {
 
 	private boolean jokerDistributionAgreed() {
 		final Set<Player> unagreedPlayers = new HashSet<>();
-		for (final ClientPlayerPair pair : pairs)
+		for (final ClientPlayerPair pair : turnOrder.toArray())
 			unagreedPlayers.add(pair.getPlayer());
 
 		for (final JokerDistributionAccepted j : acceptedJokerDistributions)
-			if (j.getAcceptedBoard().equals(board))
+			if (j.getAcceptedHash() == board.getHash())
 				unagreedPlayers.remove(j.getActingPlayer());
 
 		return unagreedPlayers.isEmpty();
 	}
+
+	/**
+	 * The queue of events waiting to be delivered to one client.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.2
+	 */
+	private final class EventQueue {
+		private final Client client;
+		private final SerialExecutor sender;
+
+		/**
+		 * Creates a new {@link EventQueue} for the specified client.
+		 * 
+		 * @param client
+		 *            The client.
+		 * @param executor
+		 *            The executor that delivers the events.
+		 */
+		EventQueue(final Client client, final Executor executor) {
+			this.client = client;
+			sender = new SerialExecutor(executor, EVENT_QUEUE_CAPACITY);
+		}
+
+		/**
+		 * Queues an event for delivery. If the queue is full, the client is fired instead.
+		 * 
+		 * @param e
+		 *            The event.
+		 */
+		void add(final GameEvent e) {
+			if (firedClients.contains(client))
+				return;
+			final ServerMetrics m = metrics;
+			try {
+				sender.execute(new Runnable() {
+					@Override
+					public void run() {
+						if (firedClients.contains(client))
+							return;
+						try {
+							final long start = System.nanoTime();
+							client.gameEvent(e);
+							if (m != null)
+								m.eventDelivered(System.nanoTime() - start);
+						} catch (final RemoteException | RuntimeException exception) {
+							// the client is broken; firing it is all the handling it gets
+							if (firedClients.add(client) && m != null)
+								m.clientFired();
+						}
+					}
+				});
+			} catch (final RejectedExecutionException exception) {
+				if (firedClients.add(client) && m != null)
+					m.clientFired();
+			}
+		}
+	}
 }
\ No newline at end of file
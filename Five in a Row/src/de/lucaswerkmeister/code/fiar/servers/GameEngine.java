@@ -0,0 +1,606 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.servers;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.BoardDelta;
+import de.lucaswerkmeister.code.fiar.framework.Client;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
+import de.lucaswerkmeister.code.fiar.framework.exception.ClientFiredException;
+import de.lucaswerkmeister.code.fiar.framework.exception.IllegalMoveException;
+
+/**
+ * Hosts many {@link FixedServer} games in one virtual machine.
+ * <p>
+ * Each game is identified by a game ID and runs on a shared, fixed-size pool of worker threads. All requests to one
+ * game are executed one after another, in the order they were submitted, so the (not thread-safe) {@link FixedServer}
+ * behind each game never sees two requests at once; requests to different games run in parallel without sharing any
+ * lock. A game is only handed to a worker while it has pending requests, so idle games cost no threads at all.
+ * <p>
+ * Game events are {@link FixedServer#setEventExecutor(java.util.concurrent.Executor) delivered asynchronously} by a
+ * second pool of sender threads that is shared by all games as well. Clients may therefore call the server from within
+ * {@link Client#gameEvent(de.lucaswerkmeister.code.fiar.framework.event.GameEvent) gameEvent} without blocking a game
+ * worker.
+ * <p>
+ * Requests can be submitted asynchronously with {@link #submit(long, Client, PlayerAction)}, or through the
+ * {@link Server} view returned by {@link #getServer(long)}, whose methods wait for the request to be executed. A client
+ * that has too many requests pending for one game is fired with a {@link ClientFiredException}.
+ * <p>
+ * If the engine has a {@link GameJournal}, all games are journaled to it, and after a restart, each game in the journal
+ * can be {@link #restoreGame(long, Set, Set) restored} under its old ID. Since all games share the journal, games whose
+ * actions happen at the same time share their disk flushes.
+ * <p>
+ * All games record their {@link #getMetrics() metrics} into one {@link ServerMetrics} instance, which can be
+ * {@link ServerMetrics#register(String) registered} for JMX.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.2
+ */
+public class GameEngine {
+	/**
+	 * The maximum number of requests that may be pending for one game.
+	 */
+	public static final int MAX_PENDING_REQUESTS = 1024;
+	private final ExecutorService workers;
+	private final ExecutorService senders;
+	private final ConcurrentMap<Long, Game> games;
+	private final ConcurrentMap<Client, Set<Long>> clientGames;
+	private final AtomicLong nextGameID;
+	private final GameJournal journal;
+	private final ServerMetrics metrics;
+
+	/**
+	 * Creates a new {@link GameEngine} with one worker thread and one sender thread per available processor.
+	 */
+	public GameEngine() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new {@link GameEngine} with the specified number of worker threads, and as many sender threads.
+	 * 
+	 * @param workerCount
+	 *            The number of worker threads.
+	 */
+	public GameEngine(final int workerCount) {
+		this(workerCount, workerCount);
+	}
+
+	/**
+	 * Creates a new {@link GameEngine} with the specified number of worker and sender threads.
+	 * 
+	 * @param workerCount
+	 *            The number of worker threads, which execute requests to the games.
+	 * @param senderCount
+	 *            The number of sender threads, which deliver game events to the clients.
+	 */
+	public GameEngine(final int workerCount, final int senderCount) {
+		this(workerCount, senderCount, null);
+	}
+
+	/**
+	 * Creates a new {@link GameEngine} with the specified number of worker and sender threads that journals all games
+	 * to the specified journal. New games get IDs above all game IDs in the journal.
+	 * 
+	 * @param workerCount
+	 *            The number of worker threads, which execute requests to the games.
+	 * @param senderCount
+	 *            The number of sender threads, which deliver game events to the clients.
+	 * @param journal
+	 *            The journal, or <code>null</code> if the games should not be journaled.
+	 */
+	public GameEngine(final int workerCount, final int senderCount, final GameJournal journal) {
+		workers = Executors.newFixedThreadPool(workerCount, new DaemonThreadFactory("GameEngine worker "));
+		senders = Executors.newFixedThreadPool(senderCount, new DaemonThreadFactory("GameEngine sender "));
+		games = new ConcurrentHashMap<>();
+		clientGames = new ConcurrentHashMap<>();
+		nextGameID = new AtomicLong();
+		this.journal = journal;
+		metrics = new ServerMetrics();
+		if (journal != null)
+			for (final long id : journal.getGames())
+				if (id > nextGameID.get())
+					nextGameID.set(id);
+	}
+
+	/**
+	 * Creates a new game with the specified client-player bindings and watching clients.
+	 * 
+	 * @param pairs
+	 *            The client-player bindings.
+	 * @param additionalClients
+	 *            Additional clients that aren't bound to any players.
+	 * @return The ID of the new game.
+	 * @see FixedServer#FixedServer(Set, Set)
+	 */
+	public long createGame(final Set<ClientPlayerPair> pairs, final Set<? extends Client> additionalClients) {
+		final long id = nextGameID.incrementAndGet();
+		final FixedServer server = new FixedServer(pairs, additionalClients);
+		if (journal != null)
+			server.setJournal(journal, id);
+		addGame(id, server, pairs, additionalClients);
+		return id;
+	}
+
+	/**
+	 * Restores a game from the engine's journal, with the same client-player bindings and watching clients as before
+	 * the restart. The clients are not told about the events that are replayed.
+	 * 
+	 * @param gameID
+	 *            The ID of the game in the journal.
+	 * @param pairs
+	 *            The client-player bindings.
+	 * @param additionalClients
+	 *            Additional clients that aren't bound to any players.
+	 * @throws IllegalStateException
+	 *             If the engine has no journal, or a game with that ID already exists.
+	 * @throws IOException
+	 *             If the journal cannot be read, or if the journaled game does not fit the clients and players.
+	 * @see FixedServer#replay(GameJournal, long)
+	 */
+	public void restoreGame(final long gameID, final Set<ClientPlayerPair> pairs,
+			final Set<? extends Client> additionalClients) throws IllegalStateException, IOException {
+		if (journal == null)
+			throw new IllegalStateException("This engine has no journal!");
+		if (games.containsKey(gameID))
+			throw new IllegalStateException("Game " + gameID + " already exists!");
+		final FixedServer server = new FixedServer(pairs, additionalClients);
+		server.replay(journal, gameID);
+		addGame(gameID, server, pairs, additionalClients);
+	}
+
+	/**
+	 * Private utility method to add a new game to the engine.
+	 * 
+	 * @param id
+	 *            The ID of the game.
+	 * @param server
+	 *            The server running the game.
+	 * @param pairs
+	 *            The client-player bindings.
+	 * @param additionalClients
+	 *            Additional clients that aren't bound to any players.
+	 */
+	private void addGame(final long id, final FixedServer server, final Set<ClientPlayerPair> pairs,
+			final Set<? extends Client> additionalClients) {
+		final Set<Client> clients = new HashSet<>(additionalClients);
+		for (final ClientPlayerPair pair : pairs)
+			clients.add(pair.getClient());
+		server.setEventExecutor(senders);
+		server.setMetrics(metrics);
+		final Game game = new Game(id, server, clients);
+		games.put(game.id, game);
+		for (final Client c : clients) {
+			Set<Long> ids = clientGames.get(c);
+			if (ids == null) {
+				final Set<Long> newIDs = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+				ids = clientGames.putIfAbsent(c, newIDs);
+				if (ids == null)
+					ids = newIDs;
+			}
+			ids.add(game.id);
+		}
+	}
+
+	/**
+	 * Removes a game from this engine. Requests that are already pending for the game are still executed; the
+	 * game's {@link #getServer(long) server view} rejects all further requests.
+	 * 
+	 * @param gameID
+	 *            The ID of the game.
+	 */
+	public void removeGame(final long gameID) {
+		final Game game = games.remove(gameID);
+		if (game == null)
+			return;
+		for (final Client c : game.clients) {
+			final Set<Long> ids = clientGames.get(c);
+			if (ids != null)
+				ids.remove(gameID);
+		}
+		// the server is not thread-safe, so it leaves the metrics after its pending requests
+		try {
+			game.submit(null, new Callable<Void>() {
+				@Override
+				public Void call() {
+					game.server.setMetrics(null);
+					return null;
+				}
+			});
+		} catch (final ClientFiredException e) {
+			// the game is flooded with requests and stays in the metrics, which is better than a race
+		}
+	}
+
+	/**
+	 * Gets a {@link Server} view of the specified game. All methods of the view are executed on the engine's worker
+	 * threads and wait for their result.
+	 * 
+	 * @param gameID
+	 *            The ID of the game.
+	 * @return The server view of the game.
+	 * @throws IllegalArgumentException
+	 *             If there is no game with that ID.
+	 */
+	public Server getServer(final long gameID) throws IllegalArgumentException {
+		return new GameServer(game(gameID));
+	}
+
+	/**
+	 * Submits an action to the specified game without waiting for it to be executed.
+	 * <p>
+	 * Exceptions thrown by {@link Server#action(Client, PlayerAction)} are reported through the returned
+	 * {@link Future}.
+	 * 
+	 * @param gameID
+	 *            The ID of the game.
+	 * @param requester
+	 *            The requesting client.
+	 * @param action
+	 *            The action.
+	 * @return A future that completes once the action was executed.
+	 * @throws IllegalArgumentException
+	 *             If there is no game with that ID.
+	 * @throws ClientFiredException
+	 *             If too many requests are pending for the game.
+	 */
+	public Future<Void> submit(final long gameID, final Client requester, final PlayerAction action)
+			throws IllegalArgumentException, ClientFiredException {
+		final Game game = game(gameID);
+		return game.submit(requester, new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				game.server.action(requester, action);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Gets the IDs of all games that the specified client takes part in, either as controller of players or as
+	 * watching client.
+	 * 
+	 * @param client
+	 *            The client.
+	 * @return The IDs of the client's games.
+	 */
+	public Set<Long> getGames(final Client client) {
+		final Set<Long> ids = clientGames.get(client);
+		return ids == null ? Collections.<Long> emptySet() : Collections.unmodifiableSet(ids);
+	}
+
+	/**
+	 * Gets the metrics of all games hosted by this engine.
+	 * 
+	 * @return The metrics.
+	 */
+	public ServerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Gets the number of games currently hosted by this engine.
+	 * 
+	 * @return The number of games.
+	 */
+	public int getGameCount() {
+		return games.size();
+	}
+
+	/**
+	 * Shuts down the engine's worker and sender threads. Pending requests and events are still executed and delivered,
+	 * but no new requests are accepted.
+	 */
+	public void shutdown() {
+		workers.shutdown();
+		senders.shutdown();
+	}
+
+	/**
+	 * Private utility method to look up a game.
+	 * 
+	 * @param gameID
+	 *            The ID of the game.
+	 * @return The game.
+	 * @throws IllegalArgumentException
+	 *             If there is no game with that ID.
+	 */
+	private Game game(final long gameID) throws IllegalArgumentException {
+		final Game game = games.get(gameID);
+		if (game == null)
+			throw new IllegalArgumentException("Unknown game " + gameID + "!");
+		return game;
+	}
+
+	/**
+	 * One game of the engine: a {@link FixedServer} together with the {@link SerialExecutor} that executes the requests
+	 * for it.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.1
+	 */
+	private final class Game {
+		private final long id;
+		private final FixedServer server;
+		private final Set<Client> clients;
+		private final SerialExecutor requests;
+
+		/**
+		 * Creates a new {@link Game}.
+		 * 
+		 * @param id
+		 *            The game ID.
+		 * @param server
+		 *            The server running the game.
+		 * @param clients
+		 *            All clients of the game.
+		 */
+		Game(final long id, final FixedServer server, final Set<Client> clients) {
+			this.id = id;
+			this.server = server;
+			this.clients = clients;
+			requests = new SerialExecutor(workers, MAX_PENDING_REQUESTS);
+		}
+
+		/**
+		 * Queues a request for this game.
+		 * 
+		 * @param requester
+		 *            The requesting client.
+		 * @param request
+		 *            The request.
+		 * @return A future for the result of the request.
+		 * @throws ClientFiredException
+		 *             If too many requests are pending for this game.
+		 */
+		<T> Future<T> submit(final Client requester, final Callable<T> request) throws ClientFiredException {
+			final FutureTask<T> task = new FutureTask<>(request);
+			try {
+				requests.execute(task);
+			} catch (final RejectedExecutionException e) {
+				throw new ClientFiredException(requester, "Too many pending requests for game " + id + "!", e);
+			}
+			return task;
+		}
+
+		/**
+		 * Executes a request for this game and waits for its result.
+		 * <p>
+		 * If the calling thread is already executing this game (for example, a client that reacts to a
+		 * {@link Client#gameEvent(de.lucaswerkmeister.code.fiar.framework.event.GameEvent) game event} by calling the
+		 * server again), the request is executed immediately, like a plain {@link FixedServer} would.
+		 * 
+		 * @param requester
+		 *            The requesting client.
+		 * @param request
+		 *            The request.
+		 * @return The result of the request.
+		 * @throws IllegalMoveException
+		 *             If the request throws it.
+		 * @throws RemoteException
+		 *             If the request throws it.
+		 */
+		<T> T call(final Client requester, final Callable<T> request) throws IllegalMoveException, RemoteException {
+			final Future<T> future;
+			if (requests.isExecutingThread()) {
+				final FutureTask<T> task = new FutureTask<>(request);
+				task.run();
+				future = task;
+			} else
+				future = submit(requester, request);
+			boolean interrupted = false;
+			try {
+				while (true)
+					try {
+						return future.get();
+					} catch (final InterruptedException e) {
+						interrupted = true;
+					}
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof IllegalMoveException)
+					throw (IllegalMoveException) cause;
+				if (cause instanceof RemoteException)
+					throw (RemoteException) cause;
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new IllegalStateException(cause);
+			} finally {
+				if (interrupted)
+					Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * The {@link Server} view of one game.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private final class GameServer implements Server {
+		private static final long serialVersionUID = -4435104547786394049L;
+		private final transient Game game;
+
+		/**
+		 * Creates a new {@link GameServer} for the specified game.
+		 * 
+		 * @param game
+		 *            The game.
+		 */
+		GameServer(final Game game) {
+			this.game = game;
+		}
+
+		@Override
+		public int[] getPhase(final Client requester) throws RemoteException {
+			return call(requester, new Callable<int[]>() {
+				@Override
+				public int[] call() throws Exception {
+					return game.server.getPhase(requester);
+				}
+			});
+		}
+
+		@Override
+		public int getPhasesVersion(final Client requester) throws RemoteException {
+			return call(requester, new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					return game.server.getPhasesVersion(requester);
+				}
+			});
+		}
+
+		@Override
+		public boolean canAct(final Client requester, final Player p) throws RemoteException {
+			return call(requester, new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					return game.server.canAct(requester, p);
+				}
+			});
+		}
+
+		@Override
+		public Set<Class<? extends PlayerAction>> getAllowedActions(final Client requester, final Player p)
+				throws RemoteException {
+			return call(requester, new Callable<Set<Class<? extends PlayerAction>>>() {
+				@Override
+				public Set<Class<? extends PlayerAction>> call() throws Exception {
+					return game.server.getAllowedActions(requester, p);
+				}
+			});
+		}
+
+		@Override
+		public void action(final Client requester, final PlayerAction action) throws IllegalStateException,
+				IllegalMoveException, RemoteException {
+			checkRunning();
+			game.call(requester, new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					game.server.action(requester, action);
+					return null;
+				}
+			});
+		}
+
+		@Override
+		public Board getCurrentBoard(final Client requester) throws RemoteException {
+			return call(requester, new Callable<Board>() {
+				@Override
+				public Board call() throws Exception {
+					return game.server.getCurrentBoard(requester);
+				}
+			});
+		}
+
+		@Override
+		public BoardDelta getBoardChangesSince(final Client requester, final int version) throws RemoteException {
+			return call(requester, new Callable<BoardDelta>() {
+				@Override
+				public BoardDelta call() throws Exception {
+					return game.server.getBoardChangesSince(requester, version);
+				}
+			});
+		}
+
+		/**
+		 * Private utility method for requests that can't throw an {@link IllegalMoveException}.
+		 * 
+		 * @param requester
+		 *            The requesting client.
+		 * @param request
+		 *            The request.
+		 * @return The result of the request.
+		 * @throws RemoteException
+		 *             If the request throws it.
+		 */
+		private <T> T call(final Client requester, final Callable<T> request) throws RemoteException {
+			checkRunning();
+			try {
+				return game.call(requester, request);
+			} catch (final IllegalMoveException e) {
+				throw new IllegalStateException(e); // only action() can throw this
+			}
+		}
+
+		/**
+		 * Private utility method to reject requests to games that were removed from the engine.
+		 * 
+		 * @throws IllegalStateException
+		 *             If the game was removed.
+		 */
+		private void checkRunning() throws IllegalStateException {
+			if (games.get(game.id) != game)
+				throw new IllegalStateException("Game " + game.id + " is no longer running!");
+		}
+	}
+
+	/**
+	 * Creates numbered daemon threads for the engine's thread pools.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private static final class DaemonThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count;
+
+		/**
+		 * Creates a new {@link DaemonThreadFactory} whose threads are named with the specified prefix.
+		 * 
+		 * @param prefix
+		 *            The prefix of the thread names.
+		 */
+		DaemonThreadFactory(final String prefix) {
+			this.prefix = prefix;
+			count = new AtomicInteger();
+		}
+
+		@Override
+		public Thread newThread(final Runnable r) {
+			final Thread t = new Thread(r, prefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
\ No newline at end of file
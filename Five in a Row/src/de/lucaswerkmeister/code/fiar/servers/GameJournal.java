@@ -0,0 +1,321 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.servers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of game records, used by {@link FixedServer#setJournal(GameJournal, long) servers} to
+ * survive a restart.
+ * <p>
+ * The journal is one file that any number of games may share. Each record consists of a header, with the length of
+ * the payload, the CRC-32 checksum of game ID and payload, and the game ID, followed by the payload itself. A record
+ * that was only partially written when the process died is detected by its length or checksum; it and everything
+ * after it is cut off when the journal is opened again.
+ * <p>
+ * {@link #append(long, byte[]) Appending} a record only copies it into a buffer. A record is durable once
+ * {@link #sync(long)} returned for its position. Syncing uses group commit: the first thread that needs a sync writes
+ * the records of <em>all</em> threads that have appended so far and forces them to the disk with a single
+ * {@link FileChannel#force(boolean) fsync}, while the other threads wait for it; threads whose records were part of
+ * that batch then return without touching the disk at all. The more games append concurrently, the more records
+ * share each fsync.
+ * <p>
+ * This class is thread-safe.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+public class GameJournal implements Closeable {
+	private static final int HEADER_SIZE = 16; // length, checksum, game ID
+	private static final int INITIAL_BUFFER_SIZE = 4096;
+	private final FileChannel channel;
+	private final Set<Long> games;
+	private ByteBuffer pending; // appended, but not yet written records
+	private ByteBuffer spare; // the buffer that is swapped in for pending while a batch is written
+	private long appended; // end position of the last appended record
+	private long durable; // end position of the last forced record
+	private boolean syncing;
+	private IOException failure; // if writing a batch failed, the journal is unusable
+
+	/**
+	 * Opens the specified journal file, creating it if it does not exist. An incomplete or corrupt record at the end of
+	 * the journal is cut off, together with everything after it.
+	 * 
+	 * @param file
+	 *            The journal file.
+	 * @throws IOException
+	 *             If the file cannot be opened.
+	 */
+	public GameJournal(final File file) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		games = new HashSet<>();
+		final long end = scan(-1, null);
+		if (end < channel.size()) {
+			channel.truncate(end);
+			channel.force(true);
+		}
+		channel.position(end);
+		appended = durable = end;
+		pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+		spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+	}
+
+	/**
+	 * Appends a record to the journal. The record is not durable before {@link #sync(long)} returned for the returned
+	 * position.
+	 * 
+	 * @param gameID
+	 *            The ID of the game that the record belongs to.
+	 * @param payload
+	 *            The record.
+	 * @return The position behind the record.
+	 * @throws IOException
+	 *             If an earlier batch could not be written.
+	 */
+	public synchronized long append(final long gameID, final byte[] payload) throws IOException {
+		checkFailure();
+		final int size = HEADER_SIZE + payload.length;
+		if (pending.remaining() < size) {
+			final ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size));
+			pending.flip();
+			grown.put(pending);
+			pending = grown;
+		}
+		pending.putInt(payload.length);
+		pending.putInt(checksum(gameID, payload));
+		pending.putLong(gameID);
+		pending.put(payload);
+		games.add(gameID);
+		return appended += size;
+	}
+
+	/**
+	 * Waits until all records up to the specified position are durable. If no other thread is currently writing a
+	 * batch, the calling thread writes all pending records, including those of other threads, and forces them to the
+	 * disk.
+	 * 
+	 * @param position
+	 *            The position, as returned by {@link #append(long, byte[])}.
+	 * @throws IOException
+	 *             If the records cannot be written, or the thread is interrupted while waiting.
+	 */
+	public void sync(final long position) throws IOException {
+		final ByteBuffer batch;
+		final long end;
+		synchronized (this) {
+			while (durable < position && syncing) {
+				try {
+					wait();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for the journal!");
+				}
+			}
+			if (durable >= position)
+				return;
+			checkFailure();
+			syncing = true;
+			batch = pending;
+			pending = spare;
+			spare = null;
+			end = appended;
+		}
+		IOException failed = null;
+		try {
+			batch.flip();
+			while (batch.hasRemaining())
+				channel.write(batch);
+			channel.force(false);
+		} catch (final IOException e) {
+			failed = e;
+		}
+		synchronized (this) {
+			batch.clear();
+			spare = batch;
+			syncing = false;
+			if (failed == null)
+				durable = end;
+			else
+				failure = failed;
+			notifyAll();
+		}
+		if (failed != null)
+			throw failed;
+	}
+
+	/**
+	 * Appends a record to the journal and waits until it is durable.
+	 * 
+	 * @param gameID
+	 *            The ID of the game that the record belongs to.
+	 * @param payload
+	 *            The record.
+	 * @throws IOException
+	 *             If the record cannot be written.
+	 * @see #append(long, byte[])
+	 * @see #sync(long)
+	 */
+	public void write(final long gameID, final byte[] payload) throws IOException {
+		sync(append(gameID, payload));
+	}
+
+	/**
+	 * Reads all durable records of the specified game, in the order they were appended.
+	 * 
+	 * @param gameID
+	 *            The ID of the game.
+	 * @return The records of the game.
+	 * @throws IOException
+	 *             If the journal cannot be read.
+	 */
+	public List<byte[]> read(final long gameID) throws IOException {
+		final List<byte[]> records = new ArrayList<>();
+		scan(gameID, records);
+		return records;
+	}
+
+	/**
+	 * Gets the IDs of all games that have records in this journal.
+	 * 
+	 * @return The game IDs.
+	 */
+	public synchronized Set<Long> getGames() {
+		return Collections.unmodifiableSet(new HashSet<>(games));
+	}
+
+	/**
+	 * Writes all pending records and closes the journal.
+	 * 
+	 * @throws IOException
+	 *             If the pending records cannot be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			final long end;
+			synchronized (this) {
+				end = failure == null ? appended : -1;
+			}
+			sync(end);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Private utility method to walk over all complete and intact records of the journal file, from the start up to
+	 * the last durable record. Game IDs are collected in {@link #games} along the way.
+	 * 
+	 * @param gameID
+	 *            The ID of the game whose records are to be collected.
+	 * @param records
+	 *            The list that receives the records of that game, or <code>null</code> if none should be collected.
+	 * @return The position behind the last intact record.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 */
+	private long scan(final long gameID, final List<byte[]> records) throws IOException {
+		final long limit;
+		synchronized (this) {
+			limit = records == null ? channel.size() : durable;
+		}
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		long position = 0;
+		while (position + HEADER_SIZE <= limit) {
+			header.clear();
+			readFully(header, position);
+			header.flip();
+			final int length = header.getInt();
+			final int checksum = header.getInt();
+			final long game = header.getLong();
+			if (length < 0 || position + HEADER_SIZE + length > limit)
+				break; // truncated record
+			final byte[] payload = new byte[length];
+			readFully(ByteBuffer.wrap(payload), position + HEADER_SIZE);
+			if (checksum != checksum(game, payload))
+				break; // torn record
+			if (records == null)
+				games.add(game);
+			else if (game == gameID)
+				records.add(payload);
+			position += HEADER_SIZE + length;
+		}
+		return position;
+	}
+
+	/**
+	 * Private utility method to fill a buffer from the journal file, starting at the specified position.
+	 * 
+	 * @param buffer
+	 *            The buffer.
+	 * @param position
+	 *            The file position.
+	 * @throws IOException
+	 *             If the file cannot be read or ends before the buffer is full.
+	 */
+	private void readFully(final ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			final int read = channel.read(buffer, position);
+			if (read < 0)
+				throw new IOException("Unexpected end of journal!");
+			position += read;
+		}
+	}
+
+	/**
+	 * Private utility method to throw the exception that made an earlier batch fail, if any. Must be called while
+	 * holding the lock of this journal.
+	 * 
+	 * @throws IOException
+	 *             If an earlier batch failed.
+	 */
+	private void checkFailure() throws IOException {
+		if (failure != null)
+			throw new IOException("The journal failed earlier and is no longer usable!", failure);
+	}
+
+	/**
+	 * Private utility method to compute the checksum of a record.
+	 * 
+	 * @param gameID
+	 *            The game ID of the record.
+	 * @param payload
+	 *            The payload of the record.
+	 * @return The CRC-32 checksum of game ID and payload.
+	 */
+	private static int checksum(final long gameID, final byte[] payload) {
+		final CRC32 crc = new CRC32();
+		for (int shift = 56; shift >= 0; shift -= 8)
+			crc.update((int) (gameID >>> shift));
+		crc.update(payload, 0, payload.length);
+		return (int) crc.getValue();
+	}
+}
\ No newline at end of file
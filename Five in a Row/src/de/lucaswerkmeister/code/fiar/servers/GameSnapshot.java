@@ -0,0 +1,271 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.servers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.network.EventCodec;
+
+/**
+ * A snapshot of a running {@link FixedServer} game, which is written to the {@link GameJournal} from time to time so
+ * that a replay only has to execute the actions after the latest snapshot.
+ * <p>
+ * A snapshot has a stable binary layout. Numbers are unsigned varints, as in the {@link EventCodec}; numbers that may
+ * be negative (phase entries and player IDs) are zigzag-encoded first.
+ * <ol>
+ * <li>The tag byte {@link #TAG}, which the {@link EventCodec} never uses, so that snapshots and events can share one
+ * journal.</li>
+ * <li>The format version byte {@link #FORMAT}.</li>
+ * <li>The phase: its length and entries.</li>
+ * <li>The index of the current player in the turn order.</li>
+ * <li>The turn order: the number of players still in the game and their IDs.</li>
+ * <li>The width and height of the board.</li>
+ * <li>The occupied fields of the board: their number and, for each field, x coordinate, y coordinate and the ID of
+ * the player who occupies it. All other fields are empty.</li>
+ * </ol>
+ * The size of a snapshot therefore depends only on the board, not on the number of moves so far.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+final class GameSnapshot {
+	/**
+	 * The first byte of every snapshot.
+	 */
+	static final byte TAG = 0;
+	/**
+	 * The version of the layout written by this class.
+	 */
+	static final byte FORMAT = 2;
+	final int[] phase;
+	final int currentPlayerIndex;
+	final int[] playerIDs;
+	final int width;
+	final int height;
+	final int fieldCount;
+	final int[] xs;
+	final int[] ys;
+	final Player[] players;
+
+	/**
+	 * Creates a new {@link GameSnapshot}. The arrays are not copied; only the first <code>fieldCount</code> entries
+	 * of the field arrays are part of the snapshot.
+	 * 
+	 * @param phase
+	 *            The phase.
+	 * @param currentPlayerIndex
+	 *            The index of the current player in the turn order.
+	 * @param playerIDs
+	 *            The IDs of the players still in the game, in turn order.
+	 * @param width
+	 *            The width of the board.
+	 * @param height
+	 *            The height of the board.
+	 * @param fieldCount
+	 *            The number of occupied fields.
+	 * @param xs
+	 *            The x coordinates of the occupied fields.
+	 * @param ys
+	 *            The y coordinates of the occupied fields.
+	 * @param players
+	 *            The players occupying the fields.
+	 */
+	GameSnapshot(final int[] phase, final int currentPlayerIndex, final int[] playerIDs, final int width,
+			final int height, final int fieldCount, final int[] xs, final int[] ys, final Player[] players) {
+		this.phase = phase;
+		this.currentPlayerIndex = currentPlayerIndex;
+		this.playerIDs = playerIDs;
+		this.width = width;
+		this.height = height;
+		this.fieldCount = fieldCount;
+		this.xs = xs;
+		this.ys = ys;
+		this.players = players;
+	}
+
+	/**
+	 * Determines if the specified journal record is a snapshot.
+	 * 
+	 * @param record
+	 *            The record.
+	 * @return <code>true</code> if the record is a snapshot, <code>false</code> if it is an event.
+	 */
+	static boolean isSnapshot(final byte[] record) {
+		return record.length > 0 && record[0] == TAG;
+	}
+
+	/**
+	 * Encodes this snapshot.
+	 * 
+	 * @return The encoded snapshot.
+	 */
+	byte[] encode() {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + fieldCount * 3);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeByte(TAG);
+			out.writeByte(FORMAT);
+			writeVarint(out, phase.length);
+			for (final int p : phase)
+				writeVarint(out, zigzag(p));
+			writeVarint(out, currentPlayerIndex);
+			writeVarint(out, playerIDs.length);
+			for (final int id : playerIDs)
+				writeVarint(out, zigzag(id));
+			writeVarint(out, width);
+			writeVarint(out, height);
+			writeVarint(out, fieldCount);
+			for (int i = 0; i < fieldCount; i++) {
+				writeVarint(out, xs[i]);
+				writeVarint(out, ys[i]);
+				writeVarint(out, zigzag(players[i].getID()));
+			}
+		} catch (final IOException e) {
+			throw new IllegalStateException("Writing to a byte array failed!", e); // can't happen
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes a snapshot.
+	 * 
+	 * @param record
+	 *            The encoded snapshot.
+	 * @param players
+	 *            A codec that knows all players of the game, used to look up the players by their IDs.
+	 * @return The snapshot.
+	 * @throws StreamCorruptedException
+	 *             If the record is not a valid snapshot, or refers to an unknown player.
+	 */
+	static GameSnapshot decode(final byte[] record, final EventCodec players) throws StreamCorruptedException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		try {
+			if (in.readByte() != TAG)
+				throw new StreamCorruptedException("Record is not a snapshot!");
+			final byte format = in.readByte();
+			if (format != FORMAT)
+				throw new StreamCorruptedException("Unknown snapshot format " + format + "!");
+			final int[] phase = new int[readVarint(in)];
+			for (int i = 0; i < phase.length; i++)
+				phase[i] = unzigzag(readVarint(in));
+			final int currentPlayerIndex = readVarint(in);
+			final int[] playerIDs = new int[readVarint(in)];
+			for (int i = 0; i < playerIDs.length; i++)
+				playerIDs[i] = unzigzag(readVarint(in));
+			final int width = readVarint(in);
+			final int height = readVarint(in);
+			final int fieldCount = readVarint(in);
+			if (fieldCount > record.length)
+				throw new StreamCorruptedException("Snapshot is truncated!");
+			final int[] xs = new int[fieldCount];
+			final int[] ys = new int[fieldCount];
+			final Player[] fieldPlayers = new Player[fieldCount];
+			for (int i = 0; i < fieldCount; i++) {
+				xs[i] = readVarint(in);
+				ys[i] = readVarint(in);
+				if (xs[i] >= width || ys[i] >= height)
+					throw new StreamCorruptedException("Field (" + xs[i] + "," + ys[i] + ") is outside the board!");
+				final int id = unzigzag(readVarint(in));
+				if (id == 0)
+					throw new StreamCorruptedException("Empty field in snapshot!");
+				fieldPlayers[i] = players.getPlayer(id);
+				if (fieldPlayers[i] == null)
+					throw new StreamCorruptedException("Unknown player " + id + "!");
+			}
+			if (in.available() > 0)
+				throw new StreamCorruptedException("Trailing bytes after snapshot!");
+			return new GameSnapshot(phase, currentPlayerIndex, playerIDs, width, height, fieldCount, xs, ys,
+					fieldPlayers);
+		} catch (final EOFException e) {
+			throw new StreamCorruptedException("Snapshot is truncated!");
+		} catch (final StreamCorruptedException e) {
+			throw e;
+		} catch (final IOException e) {
+			throw new IllegalStateException("Reading from a byte array failed!", e); // can't happen
+		}
+	}
+
+	/**
+	 * Private utility method to write an unsigned varint.
+	 * 
+	 * @param out
+	 *            The output.
+	 * @param value
+	 *            The value.
+	 * @throws IOException
+	 *             If the output throws it.
+	 */
+	private static void writeVarint(final DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Private utility method to read an unsigned varint.
+	 * 
+	 * @param in
+	 *            The input.
+	 * @return The value.
+	 * @throws IOException
+	 *             If the input throws it, or the varint is too long.
+	 */
+	private static int readVarint(final DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			final byte b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new StreamCorruptedException("Varint is too long!");
+	}
+
+	/**
+	 * Private utility method to map signed values to unsigned ones, so that small negative values stay small.
+	 * 
+	 * @param value
+	 *            The signed value.
+	 * @return The unsigned value.
+	 */
+	private static int zigzag(final int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	/**
+	 * Private utility method to undo {@link #zigzag(int)}.
+	 * 
+	 * @param value
+	 *            The unsigned value.
+	 * @return The signed value.
+	 */
+	private static int unzigzag(final int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
\ No newline at end of file
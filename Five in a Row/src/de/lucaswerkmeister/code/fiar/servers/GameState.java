@@ -0,0 +1,208 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.servers;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockField;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.Forfeit;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerField;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
+import de.lucaswerkmeister.code.fiar.framework.event.UnblockField;
+import de.lucaswerkmeister.code.fiar.framework.event.UnjokerField;
+
+/**
+ * The states of the phase machine of a {@link FixedServer}, with the actions that are allowed in each state.
+ * <p>
+ * The allowed actions are stored as bit masks over the {@link PlayerAction#getTag() action tags}, once for the player
+ * whose turn it is and once for all other players, so that checking an action is a single bit test. The same actions
+ * are also available as immutable sets of classes, which are computed once and then shared by all servers.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+enum GameState {
+	/**
+	 * Phase <code>{0,0}</code>: the players propose board sizes.
+	 */
+	BOARD_SIZE(mask(BoardSizeProposal.TAG), mask(BoardSizeProposal.TAG)),
+	/**
+	 * Phase <code>{0,1}</code>: the players distribute blocked fields.
+	 */
+	BLOCKS(mask(BlockField.TAG, UnblockField.TAG, BlockDistributionAccepted.TAG), mask(BlockField.TAG,
+			UnblockField.TAG, BlockDistributionAccepted.TAG)),
+	/**
+	 * Phase <code>{0,2}</code>: the players distribute joker fields.
+	 */
+	JOKERS(mask(JokerField.TAG, UnjokerField.TAG, JokerDistributionAccepted.TAG), mask(JokerField.TAG,
+			UnjokerField.TAG, JokerDistributionAccepted.TAG)),
+	/**
+	 * Phase <code>{1,1,id}</code>: the player with the ID <code>id</code> places a stone; any player may forfeit.
+	 */
+	PLAY(mask(PlaceStone.TAG, Forfeit.TAG), mask(Forfeit.TAG)),
+	/**
+	 * Phases <code>{1,0}</code> and <code>{2,...}</code>: nobody can act.
+	 */
+	OVER(0, 0);
+
+	private static final int FORFEIT_MASK = mask(Forfeit.TAG);
+	private final int turnMask;
+	private final int waitMask;
+	private Set<Class<? extends PlayerAction>> turnActions;
+	private Set<Class<? extends PlayerAction>> waitActions;
+
+	static {
+		@SuppressWarnings({"unchecked", "rawtypes" }) // Java can only create arrays of the raw type
+		final Class<? extends PlayerAction>[] classes = new Class[PlayerAction.TAG_COUNT];
+		classes[BoardSizeProposal.TAG] = BoardSizeProposal.class;
+		classes[BlockField.TAG] = BlockField.class;
+		classes[UnblockField.TAG] = UnblockField.class;
+		classes[BlockDistributionAccepted.TAG] = BlockDistributionAccepted.class;
+		classes[JokerField.TAG] = JokerField.class;
+		classes[UnjokerField.TAG] = UnjokerField.class;
+		classes[JokerDistributionAccepted.TAG] = JokerDistributionAccepted.class;
+		classes[PlaceStone.TAG] = PlaceStone.class;
+		classes[Forfeit.TAG] = Forfeit.class;
+		for (final GameState state : values()) {
+			state.turnActions = classesOf(state.turnMask, classes);
+			state.waitActions = classesOf(state.waitMask, classes);
+		}
+	}
+
+	/**
+	 * Creates a new {@link GameState}.
+	 * 
+	 * @param turnMask
+	 *            The actions allowed for the player whose turn it is.
+	 * @param waitMask
+	 *            The actions allowed for all other players.
+	 */
+	private GameState(final int turnMask, final int waitMask) {
+		this.turnMask = turnMask;
+		this.waitMask = waitMask;
+	}
+
+	/**
+	 * Gets the state of the specified phase.
+	 * 
+	 * @param phase
+	 *            The phase.
+	 * @return The state.
+	 * @throws IllegalStateException
+	 *             If the phase is unknown.
+	 */
+	static GameState of(final int[] phase) throws IllegalStateException {
+		switch (phase[0]) {
+		case 0:
+			switch (phase[1]) {
+			case 0:
+				return BOARD_SIZE;
+			case 1:
+				return BLOCKS;
+			case 2:
+				return JOKERS;
+			}
+			break;
+		case 1:
+			switch (phase[1]) {
+			case 0:
+				return OVER;
+			case 1:
+				return PLAY;
+			}
+			break;
+		case 2:
+			return OVER;
+		}
+		throw new IllegalStateException("Server is in unknown phase. This is a serious programming error!");
+	}
+
+	/**
+	 * Determines if the specified action is allowed in this state.
+	 * 
+	 * @param action
+	 *            The action.
+	 * @param onTurn
+	 *            Whether it is the acting player's turn.
+	 * @return <code>true</code> if the action is allowed, <code>false</code> otherwise.
+	 */
+	boolean allows(final PlayerAction action, final boolean onTurn) {
+		return ((onTurn ? turnMask : waitMask) & 1 << action.getTag()) != 0;
+	}
+
+	/**
+	 * Determines if a player can act in this state. Forfeiting, which is always possible while the game is running,
+	 * does not count as acting.
+	 * 
+	 * @param onTurn
+	 *            Whether it is the player's turn.
+	 * @return <code>true</code> if the player can act, <code>false</code> otherwise.
+	 */
+	boolean canAct(final boolean onTurn) {
+		return ((onTurn ? turnMask : waitMask) & ~FORFEIT_MASK) != 0;
+	}
+
+	/**
+	 * Gets the classes of all actions that are allowed in this state.
+	 * 
+	 * @param onTurn
+	 *            Whether it is the acting player's turn.
+	 * @return An immutable set of the allowed action classes.
+	 */
+	Set<Class<? extends PlayerAction>> getAllowedActions(final boolean onTurn) {
+		return onTurn ? turnActions : waitActions;
+	}
+
+	/**
+	 * Private utility method to build a bit mask of action tags.
+	 * 
+	 * @param tags
+	 *            The action tags.
+	 * @return The bit mask.
+	 */
+	private static int mask(final int... tags) {
+		int mask = 0;
+		for (final int tag : tags)
+			mask |= 1 << tag;
+		return mask;
+	}
+
+	/**
+	 * Private utility method to get the action classes of a bit mask.
+	 * 
+	 * @param mask
+	 *            The bit mask.
+	 * @param classes
+	 *            The action classes, indexed by tag.
+	 * @return An immutable set of the action classes.
+	 */
+	private static Set<Class<? extends PlayerAction>> classesOf(final int mask,
+			final Class<? extends PlayerAction>[] classes) {
+		final Set<Class<? extends PlayerAction>> set = new HashSet<>();
+		for (int tag = 0; tag < classes.length; tag++)
+			if ((mask & 1 << tag) != 0)
+				set.add(classes[tag]);
+		return Collections.unmodifiableSet(set);
+	}
+}
\ No newline at end of file
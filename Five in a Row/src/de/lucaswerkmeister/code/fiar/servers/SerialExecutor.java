@@ -0,0 +1,139 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.servers;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link Executor} that executes its tasks one after another, in the order they were submitted, on a shared backing
+ * executor.
+ * <p>
+ * The serial executor only occupies a thread of the backing executor while it has pending tasks, and then executes at
+ * most {@link #BATCH_SIZE} tasks before handing the thread back, so that many serial executors can share a small pool
+ * of threads fairly. No locks are used.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+public class SerialExecutor implements Executor {
+	/**
+	 * The maximum number of tasks executed before the serial executor yields its thread to other tasks of the backing
+	 * executor.
+	 */
+	public static final int BATCH_SIZE = 32;
+	private final Executor backingExecutor;
+	private final int capacity;
+	private final Queue<Runnable> tasks;
+	private final AtomicInteger pendingTasks;
+	private final AtomicBoolean scheduled;
+	private final Runnable drainer;
+	private volatile Thread runner; // the thread currently executing tasks, if any
+
+	/**
+	 * Creates a new {@link SerialExecutor} on the specified backing executor, with the specified capacity.
+	 * 
+	 * @param backingExecutor
+	 *            The executor that executes the tasks.
+	 * @param capacity
+	 *            The maximum number of pending tasks. If it is exceeded, {@link #execute(Runnable)} throws a
+	 *            {@link RejectedExecutionException}.
+	 */
+	public SerialExecutor(final Executor backingExecutor, final int capacity) {
+		this.backingExecutor = backingExecutor;
+		this.capacity = capacity;
+		tasks = new ConcurrentLinkedQueue<>();
+		pendingTasks = new AtomicInteger();
+		scheduled = new AtomicBoolean();
+		drainer = new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		};
+	}
+
+	@Override
+	public void execute(final Runnable task) throws RejectedExecutionException {
+		if (pendingTasks.incrementAndGet() > capacity) {
+			pendingTasks.decrementAndGet();
+			throw new RejectedExecutionException("More than " + capacity + " tasks pending!");
+		}
+		tasks.add(task);
+		schedule();
+	}
+
+	/**
+	 * Determines if the calling thread is the thread that is currently executing tasks of this executor, i.&thinsp;e.
+	 * if the caller is itself one of this executor's tasks.
+	 * 
+	 * @return <code>true</code> if the calling thread is executing a task of this executor, <code>false</code>
+	 *         otherwise.
+	 */
+	public boolean isExecutingThread() {
+		return runner == Thread.currentThread();
+	}
+
+	/**
+	 * Gets the number of tasks that have been submitted but not yet started.
+	 * 
+	 * @return The number of pending tasks.
+	 */
+	public int getPendingTaskCount() {
+		return pendingTasks.get();
+	}
+
+	/**
+	 * Private utility method to hand the drainer to the backing executor, unless it is already scheduled.
+	 */
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true))
+			try {
+				backingExecutor.execute(drainer);
+			} catch (final RejectedExecutionException e) {
+				scheduled.set(false);
+				throw e;
+			}
+	}
+
+	/**
+	 * Executes up to {@link #BATCH_SIZE} pending tasks and reschedules the drainer if more tasks are pending.
+	 */
+	private void drain() {
+		runner = Thread.currentThread();
+		try {
+			for (int i = 0; i < BATCH_SIZE; i++) {
+				final Runnable task = tasks.poll();
+				if (task == null)
+					break;
+				pendingTasks.decrementAndGet();
+				task.run();
+			}
+		} finally {
+			runner = null;
+			scheduled.set(false);
+			// A task that was added after the last poll() but before scheduled was reset didn't schedule the drainer
+			if (!tasks.isEmpty())
+				schedule();
+		}
+	}
+}
\ No newline at end of file
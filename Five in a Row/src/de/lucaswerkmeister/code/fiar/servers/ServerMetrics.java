@@ -0,0 +1,279 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.servers;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import de.lucaswerkmeister.code.fiar.framework.LatencyHistogram;
+import de.lucaswerkmeister.code.fiar.framework.StripedCounter;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
+
+/**
+ * Collects metrics about the games of one or more {@link FixedServer}s: how long each type of action takes, how long
+ * it takes to deliver events to the clients, how many moves are illegal and how many players forfeit, how many games
+ * are in each state, and how much memory their boards use.
+ * <p>
+ * All metrics are kept in lock-free {@link StripedCounter striped counters} and {@link LatencyHistogram histograms},
+ * so servers that run on different threads can share one instance without slowing each other down. The metrics can be
+ * read through the getters of the {@link ServerMetricsMXBean} interface, either directly, as a {@link #dump() text
+ * dump}, or with any JMX console once the metrics are {@link #register(String) registered}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.3
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+	/**
+	 * The JMX domain under which metrics are {@link #register(String) registered}.
+	 */
+	public static final String DOMAIN = "de.lucaswerkmeister.code.fiar";
+	private final LatencyHistogram[] actions; // indexed by action tag
+	private final AtomicReferenceArray<String> actionNames; // set when an action with that tag first happens
+	private final LatencyHistogram deliveries;
+	private final StripedCounter illegalMoves;
+	private final StripedCounter forfeits;
+	private final StripedCounter firedClients;
+	private final StripedCounter[] games; // indexed by state ordinal
+	private final StripedCounter boardMemory;
+
+	/**
+	 * Creates a new {@link ServerMetrics} instance with all metrics at zero.
+	 */
+	public ServerMetrics() {
+		actions = new LatencyHistogram[PlayerAction.TAG_COUNT];
+		for (int i = 0; i < actions.length; i++)
+			actions[i] = new LatencyHistogram();
+		actionNames = new AtomicReferenceArray<>(PlayerAction.TAG_COUNT);
+		deliveries = new LatencyHistogram();
+		illegalMoves = new StripedCounter();
+		forfeits = new StripedCounter();
+		firedClients = new StripedCounter();
+		games = new StripedCounter[GameState.values().length];
+		for (int i = 0; i < games.length; i++)
+			games[i] = new StripedCounter();
+		boardMemory = new StripedCounter();
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server, under the name
+	 * <code>{@value #DOMAIN}:type=ServerMetrics,name=<i>name</i></code>.
+	 * 
+	 * @param name
+	 *            The name that distinguishes these metrics from other metrics in the same virtual machine.
+	 * @return The object name under which the metrics were registered.
+	 * @throws JMException
+	 *             If the name is invalid or already taken.
+	 */
+	public ObjectName register(final String name) throws JMException {
+		final ObjectName objectName = new ObjectName(DOMAIN + ":type=ServerMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	/**
+	 * Records the execution of an action.
+	 * 
+	 * @param action
+	 *            The action.
+	 * @param nanos
+	 *            The time that executing the action took, in nanoseconds.
+	 */
+	void actionExecuted(final PlayerAction action, final long nanos) {
+		final int tag = action.getTag();
+		if (actionNames.get(tag) == null)
+			actionNames.set(tag, action.getClass().getSimpleName());
+		actions[tag].record(nanos);
+	}
+
+	/**
+	 * Records the delivery of an event to one client.
+	 * 
+	 * @param nanos
+	 *            The time that delivering the event took, in nanoseconds.
+	 */
+	void eventDelivered(final long nanos) {
+		deliveries.record(nanos);
+	}
+
+	/**
+	 * Records an action that was rejected because it was not allowed.
+	 */
+	void illegalMove() {
+		illegalMoves.increment();
+	}
+
+	/**
+	 * Records a player that forfeited.
+	 */
+	void forfeit() {
+		forfeits.increment();
+	}
+
+	/**
+	 * Records a client that was fired because an event could not be delivered to it.
+	 */
+	void clientFired() {
+		firedClients.increment();
+	}
+
+	/**
+	 * Records that a game changed its state, or that a game was added or removed.
+	 * 
+	 * @param oldState
+	 *            The state that the game left, or <code>null</code> if the game is new.
+	 * @param newState
+	 *            The state that the game entered, or <code>null</code> if the game was removed.
+	 */
+	void stateChanged(final GameState oldState, final GameState newState) {
+		if (oldState != null)
+			games[oldState.ordinal()].add(-1);
+		if (newState != null)
+			games[newState.ordinal()].increment();
+	}
+
+	/**
+	 * Records that the memory used by a game's board changed.
+	 * 
+	 * @param delta
+	 *            The change in bytes.
+	 */
+	void boardMemoryChanged(final long delta) {
+		boardMemory.add(delta);
+	}
+
+	@Override
+	public Map<String, Long> getActionCounts() {
+		final Map<String, Long> counts = new TreeMap<>();
+		for (int tag = 0; tag < actions.length; tag++)
+			if (actionNames.get(tag) != null)
+				counts.put(actionNames.get(tag), actions[tag].getCount());
+		return counts;
+	}
+
+	@Override
+	public Map<String, Long> getActionMedianNanos() {
+		return actionPercentiles(0.5);
+	}
+
+	@Override
+	public Map<String, Long> getActionP99Nanos() {
+		return actionPercentiles(0.99);
+	}
+
+	@Override
+	public long getEventDeliveries() {
+		return deliveries.getCount();
+	}
+
+	@Override
+	public long getEventDeliveryMedianNanos() {
+		return deliveries.getPercentile(0.5);
+	}
+
+	@Override
+	public long getEventDeliveryP99Nanos() {
+		return deliveries.getPercentile(0.99);
+	}
+
+	@Override
+	public long getIllegalMoves() {
+		return illegalMoves.sum();
+	}
+
+	@Override
+	public long getForfeits() {
+		return forfeits.sum();
+	}
+
+	@Override
+	public long getFiredClients() {
+		return firedClients.sum();
+	}
+
+	@Override
+	public Map<String, Long> getGamesPerState() {
+		final Map<String, Long> counts = new TreeMap<>();
+		for (final GameState state : GameState.values())
+			counts.put(state.name(), games[state.ordinal()].sum());
+		return counts;
+	}
+
+	@Override
+	public long getBoardMemory() {
+		return boardMemory.sum();
+	}
+
+	@Override
+	public String dump() {
+		final StringBuilder dump = new StringBuilder();
+		dump.append("Actions:\n");
+		for (int tag = 0; tag < actions.length; tag++)
+			if (actionNames.get(tag) != null)
+				dump(dump, actionNames.get(tag), actions[tag]);
+		dump.append("Event deliveries:\n");
+		dump(dump, "to one client", deliveries);
+		dump.append("Illegal moves: ").append(getIllegalMoves()).append('\n');
+		dump.append("Forfeits: ").append(getForfeits()).append('\n');
+		dump.append("Fired clients: ").append(getFiredClients()).append('\n');
+		dump.append("Games:\n");
+		for (final GameState state : GameState.values())
+			dump.append('\t').append(state.name()).append(": ").append(games[state.ordinal()].sum()).append('\n');
+		dump.append("Board memory: ").append(getBoardMemory()).append(" bytes\n");
+		return dump.toString();
+	}
+
+	@Override
+	public String toString() {
+		return dump();
+	}
+
+	/**
+	 * Private utility method to get a percentile of the durations of each action type.
+	 * 
+	 * @param percentile
+	 *            The percentile.
+	 * @return The percentiles in nanoseconds, keyed by action name.
+	 * @see LatencyHistogram#getPercentile(double)
+	 */
+	private Map<String, Long> actionPercentiles(final double percentile) {
+		final Map<String, Long> percentiles = new TreeMap<>();
+		for (int tag = 0; tag < actions.length; tag++)
+			if (actionNames.get(tag) != null)
+				percentiles.put(actionNames.get(tag), actions[tag].getPercentile(percentile));
+		return percentiles;
+	}
+
+	/**
+	 * Private utility method to append one line for a histogram to a text dump.
+	 * 
+	 * @param dump
+	 *            The text dump.
+	 * @param name
+	 *            The name of the histogram.
+	 * @param histogram
+	 *            The histogram.
+	 */
+	private static void dump(final StringBuilder dump, final String name, final LatencyHistogram histogram) {
+		dump.append('\t').append(name).append(": ").append(histogram).append('\n');
+	}
+}
\ No newline at end of file
@@ -0,0 +1,116 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.servers;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link ServerMetrics}, through which the metrics can be read with any JMX console.
+ * <p>
+ * Maps are keyed by the simple class name of the action, or by the name of the {@link GameState}; actions that never
+ * happened are left out.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+public interface ServerMetricsMXBean {
+	/**
+	 * Gets the number of actions executed, per action type, including actions that failed.
+	 * 
+	 * @return The action counts.
+	 */
+	Map<String, Long> getActionCounts();
+
+	/**
+	 * Gets an upper bound for the median time that executing an action took, per action type.
+	 * 
+	 * @return The median times in nanoseconds.
+	 */
+	Map<String, Long> getActionMedianNanos();
+
+	/**
+	 * Gets an upper bound for the 99th percentile of the time that executing an action took, per action type.
+	 * 
+	 * @return The 99th percentiles in nanoseconds.
+	 */
+	Map<String, Long> getActionP99Nanos();
+
+	/**
+	 * Gets the number of events delivered to single clients.
+	 * 
+	 * @return The number of deliveries.
+	 */
+	long getEventDeliveries();
+
+	/**
+	 * Gets an upper bound for the median time that delivering an event to one client took.
+	 * 
+	 * @return The median time in nanoseconds.
+	 */
+	long getEventDeliveryMedianNanos();
+
+	/**
+	 * Gets an upper bound for the 99th percentile of the time that delivering an event to one client took.
+	 * 
+	 * @return The 99th percentile in nanoseconds.
+	 */
+	long getEventDeliveryP99Nanos();
+
+	/**
+	 * Gets the number of actions that were rejected because they were not allowed.
+	 * 
+	 * @return The number of illegal moves.
+	 */
+	long getIllegalMoves();
+
+	/**
+	 * Gets the number of players that forfeited.
+	 * 
+	 * @return The number of forfeits.
+	 */
+	long getForfeits();
+
+	/**
+	 * Gets the number of clients that were fired because an event could not be delivered to them.
+	 * 
+	 * @return The number of fired clients.
+	 */
+	long getFiredClients();
+
+	/**
+	 * Gets the number of games in each state.
+	 * 
+	 * @return The number of games per state.
+	 */
+	Map<String, Long> getGamesPerState();
+
+	/**
+	 * Gets an estimate of the memory used by the boards of all games.
+	 * 
+	 * @return The memory in bytes.
+	 * @see de.lucaswerkmeister.code.fiar.framework.Board#getMemoryEstimate()
+	 */
+	long getBoardMemory();
+
+	/**
+	 * Writes all metrics as human-readable text.
+	 * 
+	 * @return The text dump.
+	 */
+	String dump();
+}
\ No newline at end of file
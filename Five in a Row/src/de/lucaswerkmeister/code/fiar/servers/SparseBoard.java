@@ -0,0 +1,366 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.servers;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+
+/**
+ * An implementation of the {@link Board} interface for very large boards, whose memory use is proportional to the
+ * number of occupied fields instead of the area of the board.
+ * <p>
+ * The board is divided into tiles of {@value #TILE_SIZE}&times;{@value #TILE_SIZE} fields, and only tiles that have
+ * been written to exist. They are kept in an open-addressing hash table whose keys are the tile coordinates packed
+ * into a <code>long</code>, so that looking up a field neither allocates nor boxes anything.
+ * <p>
+ * A board with a width or height of {@link #UNBOUNDED} is as good as infinite: stones can be placed anywhere in the
+ * first quadrant, and it will never fill up.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+public class SparseBoard extends Board {
+	private static final long serialVersionUID = -3484921373962805165L;
+	/**
+	 * The width or height of a board that has no bound in that direction.
+	 */
+	public static final int UNBOUNDED = Integer.MAX_VALUE;
+	/**
+	 * The largest number of fields for which {@link #newBoard(int, int)} creates a {@link BitBoard}.
+	 */
+	public static final int MAX_DENSE_FIELDS = 1 << 16;
+	/**
+	 * The width and height of one tile.
+	 */
+	public static final int TILE_SIZE = 8;
+	private static final int TILE_SHIFT = 3;
+	private static final int TILE_MASK = TILE_SIZE - 1;
+	private final int width;
+	private final int height;
+	private long[] keys; // packed tile coordinates
+	private Player[][] tiles; // tiles[i] holds the fields of the tile keys[i] row by row; null for empty slots
+	private int tileCount;
+	private int occupiedFields;
+
+	/**
+	 * Creates a new, empty {@link SparseBoard} with the specified dimensions.
+	 * 
+	 * @param width
+	 *            The width of the new SparseBoard; may be {@link #UNBOUNDED}.
+	 * @param height
+	 *            The height of the new SparseBoard; may be {@link #UNBOUNDED}.
+	 */
+	public SparseBoard(final int width, final int height) {
+		this.width = width;
+		this.height = height;
+		keys = new long[16];
+		tiles = new Player[16][];
+	}
+
+	/**
+	 * Creates a new, empty {@link SparseBoard} with the specified dimension.
+	 * 
+	 * @param boardSize
+	 *            The size of the new SparseBoard.
+	 */
+	public SparseBoard(final Dimension boardSize) {
+		this(boardSize.width, boardSize.height);
+	}
+
+	/**
+	 * Creates a copy of the specified {@link SparseBoard}.
+	 * 
+	 * @param original
+	 *            The board to copy.
+	 */
+	private SparseBoard(final SparseBoard original) {
+		super(original);
+		width = original.width;
+		height = original.height;
+		keys = original.keys.clone();
+		tiles = new Player[original.tiles.length][];
+		for (int i = 0; i < tiles.length; i++)
+			if (original.tiles[i] != null)
+				tiles[i] = original.tiles[i].clone();
+		tileCount = original.tileCount;
+		occupiedFields = original.occupiedFields;
+	}
+
+	/**
+	 * Creates an empty board of the specified size: a {@link BitBoard} if it has at most {@link #MAX_DENSE_FIELDS}
+	 * fields, and a {@link SparseBoard} otherwise.
+	 * 
+	 * @param width
+	 *            The width of the new board.
+	 * @param height
+	 *            The height of the new board.
+	 * @return The new board.
+	 */
+	public static Board newBoard(final int width, final int height) {
+		if ((long) width * height <= MAX_DENSE_FIELDS)
+			return new BitBoard(width, height);
+		return new SparseBoard(width, height);
+	}
+
+	@Override
+	public Player getPlayerAt(final int x, final int y) {
+		checkField(x, y);
+		final Player[] tile = findTile(x >>> TILE_SHIFT, y >>> TILE_SHIFT);
+		if (tile == null)
+			return NoPlayer.getInstance();
+		final Player p = tile[(y & TILE_MASK) << TILE_SHIFT | x & TILE_MASK];
+		return p == null ? NoPlayer.getInstance() : p;
+	}
+
+	@Override
+	public void setPlayerAt(final int x, final int y, final Player p) {
+		final Player old = getPlayerAt(x, y);
+		final boolean empty = p == null || p.getID() == 0;
+		Player[] tile = findTile(x >>> TILE_SHIFT, y >>> TILE_SHIFT);
+		if (tile == null) {
+			if (empty) {
+				fieldChanged(x, y, old, p);
+				return; // no need to create a tile just to keep it empty
+			}
+			tile = addTile(x >>> TILE_SHIFT, y >>> TILE_SHIFT);
+		}
+		tile[(y & TILE_MASK) << TILE_SHIFT | x & TILE_MASK] = empty ? null : p;
+		if (old.getID() == 0 && !empty)
+			occupiedFields++;
+		else if (old.getID() != 0 && empty)
+			occupiedFields--;
+		fieldChanged(x, y, old, p);
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Counts the fields that are occupied by anything other than the {@link NoPlayer}, including blocked fields and
+	 * joker fields.
+	 * 
+	 * @return The number of occupied fields.
+	 */
+	public int getOccupiedFieldCount() {
+		return occupiedFields;
+	}
+
+	/**
+	 * Gets the numbers of all occupied fields in ascending order. Fields are numbered row by row, so the field at
+	 * (x,y) has the number <code>(long) y * {@link #getWidth()} + x</code>.
+	 * 
+	 * @return The numbers of the occupied fields.
+	 */
+	public long[] getOccupiedFields() {
+		final long[] fields = new long[occupiedFields];
+		int count = 0;
+		for (int i = 0; i < tiles.length; i++)
+			if (tiles[i] != null)
+				for (int f = 0; f < tiles[i].length; f++)
+					if (tiles[i][f] != null) {
+						final long x = (keys[i] >>> 32 << TILE_SHIFT) + (f & TILE_MASK);
+						final long y = ((keys[i] & 0xFFFFFFFFL) << TILE_SHIFT) + (f >>> TILE_SHIFT);
+						fields[count++] = y * width + x;
+					}
+		Arrays.sort(fields);
+		return fields;
+	}
+
+	/*
+	 * A SparseBoard reports its changes to keep its hash up to date, but the row index would need memory for every
+	 * field of the board.
+	 * 
+	 * (non-Javadoc)
+	 * 
+	 * @see de.lucaswerkmeister.code.fiar.framework.Board#reportsFieldChanges()
+	 */
+	@Override
+	protected boolean reportsFieldChanges() {
+		return true;
+	}
+
+	@Override
+	protected boolean indexesRows() {
+		return false;
+	}
+
+	/*
+	 * A SparseBoard needs memory for the tiles that hold occupied fields and for its hash table, no matter how large
+	 * the board is.
+	 * 
+	 * (non-Javadoc)
+	 * 
+	 * @see de.lucaswerkmeister.code.fiar.framework.Board#getFieldMemoryEstimate()
+	 */
+	@Override
+	protected long getFieldMemoryEstimate() {
+		return (long) tileCount * TILE_SIZE * TILE_SIZE * 4 + keys.length * (8L + 4L);
+	}
+
+	@Override
+	public Board clone() {
+		return new SparseBoard(this);
+	}
+
+	/*
+	 * Comparing two SparseBoards only looks at the occupied fields of one of them: if both have the same number of
+	 * occupied fields and all fields occupied on this board are occupied by the same players on the other board, the
+	 * other board can't have any further occupied fields.
+	 * 
+	 * (non-Javadoc)
+	 * 
+	 * @see de.lucaswerkmeister.code.fiar.framework.Board#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object other) {
+		if (!(other instanceof SparseBoard))
+			return super.equals(other);
+		final SparseBoard otherBoard = (SparseBoard) other;
+		if (otherBoard.width != width || otherBoard.height != height)
+			return false;
+		if (otherBoard.getHash() != getHash() || otherBoard.occupiedFields != occupiedFields)
+			return false;
+		for (int i = 0; i < tiles.length; i++)
+			if (tiles[i] != null) {
+				final Player[] otherTile = otherBoard.findTile((int) (keys[i] >>> 32), (int) keys[i]);
+				for (int f = 0; f < tiles[i].length; f++)
+					if (tiles[i][f] != null && (otherTile == null || !tiles[i][f].equals(otherTile[f])))
+						return false;
+			}
+		return true;
+	}
+
+	/**
+	 * Private utility method to find a tile.
+	 * 
+	 * @param tileX
+	 *            The x coordinate of the tile.
+	 * @param tileY
+	 *            The y coordinate of the tile.
+	 * @return The fields of the tile, or <code>null</code> if the tile does not exist.
+	 */
+	private Player[] findTile(final int tileX, final int tileY) {
+		final long key = key(tileX, tileY);
+		final int mask = keys.length - 1;
+		for (int slot = slot(key, mask); tiles[slot] != null; slot = slot + 1 & mask)
+			if (keys[slot] == key)
+				return tiles[slot];
+		return null;
+	}
+
+	/**
+	 * Private utility method to add a new, empty tile. The tile must not exist yet.
+	 * 
+	 * @param tileX
+	 *            The x coordinate of the tile.
+	 * @param tileY
+	 *            The y coordinate of the tile.
+	 * @return The fields of the new tile.
+	 */
+	private Player[] addTile(final int tileX, final int tileY) {
+		if (2 * (tileCount + 1) > keys.length)
+			grow();
+		final Player[] tile = new Player[TILE_SIZE * TILE_SIZE];
+		insert(key(tileX, tileY), tile);
+		tileCount++;
+		return tile;
+	}
+
+	/**
+	 * Private utility method to double the size of the hash table.
+	 */
+	private void grow() {
+		final long[] oldKeys = keys;
+		final Player[][] oldTiles = tiles;
+		keys = new long[oldKeys.length * 2];
+		tiles = new Player[oldTiles.length * 2][];
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldTiles[i] != null)
+				insert(oldKeys[i], oldTiles[i]);
+	}
+
+	/**
+	 * Private utility method to put a tile into the first free slot for its key.
+	 * 
+	 * @param key
+	 *            The key of the tile.
+	 * @param tile
+	 *            The fields of the tile.
+	 */
+	private void insert(final long key, final Player[] tile) {
+		final int mask = keys.length - 1;
+		int slot = slot(key, mask);
+		while (tiles[slot] != null)
+			slot = slot + 1 & mask;
+		keys[slot] = key;
+		tiles[slot] = tile;
+	}
+
+	/**
+	 * Private utility method to pack the coordinates of a tile into a key.
+	 * 
+	 * @param tileX
+	 *            The x coordinate of the tile.
+	 * @param tileY
+	 *            The y coordinate of the tile.
+	 * @return The key.
+	 */
+	private static long key(final int tileX, final int tileY) {
+		return (long) tileX << 32 | tileY & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Private utility method to get the home slot of a key in the hash table.
+	 * 
+	 * @param key
+	 *            The key.
+	 * @param mask
+	 *            The size of the hash table minus one.
+	 * @return The slot.
+	 */
+	private static int slot(final long key, final int mask) {
+		final long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ hash >>> 32) & mask;
+	}
+
+	/**
+	 * Private utility method to check that a field lies on the board.
+	 * 
+	 * @param x
+	 *            The x coordinate of the field.
+	 * @param y
+	 *            The y coordinate of the field.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             If the field is not on the board.
+	 */
+	private void checkField(final int x, final int y) throws ArrayIndexOutOfBoundsException {
+		if (x < 0 || x >= width || y < 0 || y >= height)
+			throw new ArrayIndexOutOfBoundsException("Field " + x + "|" + y + " is not on the board!");
+	}
+}
\ No newline at end of file
@@ -0,0 +1,197 @@
+/*
+ * Five in a Row, a short game.
+ * Copyright (C) 2012/2013 Lucas Werkmeister
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lucaswerkmeister.code.fiar.servers;
+
+import java.io.Serializable;
+
+/**
+ * The seats of a game in turn order: a ring of {@link ClientPlayerPair}s with a current seat, indexed by player ID.
+ * <p>
+ * The ring is a doubly linked list over arrays, so moving to the next seat and removing a seat (when a player
+ * forfeits) both take constant time. Seats are found by player ID through an open-addressing hash table of primitive
+ * <code>int</code>s, without boxing the IDs; removed seats stay in the table, but are no longer reported.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+final class TurnOrder implements Serializable {
+	private static final long serialVersionUID = 3385163738002616493L;
+	private static final int NO_SEAT = -1;
+	private final ClientPlayerPair[] seats;
+	private final int[] next;
+	private final int[] prev; // prev[i] == NO_SEAT if seat i was removed
+	private final int[] keys; // player IDs, or 0 (the NoPlayer's ID) for empty slots
+	private final int[] values; // seat indices
+	private final int mask;
+	private int first;
+	private int current;
+	private int size;
+
+	/**
+	 * Creates a new {@link TurnOrder} with the specified seats, in that order.
+	 * 
+	 * @param pairs
+	 *            The client-player bindings. The player IDs must be positive and distinct.
+	 * @param current
+	 *            The index of the current seat.
+	 */
+	TurnOrder(final ClientPlayerPair[] pairs, final int current) {
+		seats = pairs.clone();
+		size = seats.length;
+		next = new int[size];
+		prev = new int[size];
+		for (int i = 0; i < size; i++) {
+			next[i] = (i + 1) % size;
+			prev[i] = (i + size - 1) % size;
+		}
+		int capacity = 4;
+		while (capacity < size * 2)
+			capacity <<= 1;
+		keys = new int[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < size; i++) {
+			int slot = slot(seats[i].getPlayer().getID());
+			while (keys[slot] != 0)
+				slot = slot + 1 & mask;
+			keys[slot] = seats[i].getPlayer().getID();
+			values[slot] = i;
+		}
+		first = 0;
+		this.current = current;
+	}
+
+	/**
+	 * Gets the number of seats that have not been removed.
+	 * 
+	 * @return The number of seats.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the seat of the player with the specified ID.
+	 * 
+	 * @param playerID
+	 *            The player ID.
+	 * @return The seat of that player, or <code>null</code> if the player has no seat or it was removed.
+	 */
+	ClientPlayerPair get(final int playerID) {
+		final int seat = find(playerID);
+		return seat == NO_SEAT ? null : seats[seat];
+	}
+
+	/**
+	 * Gets the current seat.
+	 * 
+	 * @return The current seat.
+	 */
+	ClientPlayerPair current() {
+		return seats[current];
+	}
+
+	/**
+	 * Makes the next seat the current seat.
+	 */
+	void advance() {
+		current = next[current];
+	}
+
+	/**
+	 * Makes the first remaining seat the current seat.
+	 */
+	void rewind() {
+		current = first;
+	}
+
+	/**
+	 * Removes the seat of the player with the specified ID. If that seat was the current seat, the next seat becomes
+	 * the current seat.
+	 * 
+	 * @param playerID
+	 *            The player ID.
+	 * @return The removed seat, or <code>null</code> if the player has no seat.
+	 */
+	ClientPlayerPair remove(final int playerID) {
+		final int seat = find(playerID);
+		if (seat == NO_SEAT)
+			return null;
+		next[prev[seat]] = next[seat];
+		prev[next[seat]] = prev[seat];
+		if (current == seat)
+			current = next[seat];
+		if (first == seat)
+			first = next[seat];
+		prev[seat] = NO_SEAT;
+		size--;
+		return seats[seat];
+	}
+
+	/**
+	 * Gets all remaining seats, in turn order starting with the first seat.
+	 * 
+	 * @return The seats.
+	 */
+	ClientPlayerPair[] toArray() {
+		final ClientPlayerPair[] ret = new ClientPlayerPair[size];
+		for (int i = 0, seat = first; i < size; i++, seat = next[seat])
+			ret[i] = seats[seat];
+		return ret;
+	}
+
+	/**
+	 * Gets the position of the current seat in the array returned by {@link #toArray()}.
+	 * 
+	 * @return The index of the current seat.
+	 */
+	int currentIndex() {
+		int index = 0;
+		for (int seat = first; seat != current; seat = next[seat])
+			index++;
+		return index;
+	}
+
+	/**
+	 * Private utility method to find a seat that has not been removed.
+	 * 
+	 * @param playerID
+	 *            The player ID.
+	 * @return The index of the seat, or {@link #NO_SEAT}.
+	 */
+	private int find(final int playerID) {
+		if (playerID == 0)
+			return NO_SEAT;
+		for (int slot = slot(playerID); keys[slot] != 0; slot = slot + 1 & mask)
+			if (keys[slot] == playerID)
+				return prev[values[slot]] == NO_SEAT ? NO_SEAT : values[slot];
+		return NO_SEAT;
+	}
+
+	/**
+	 * Private utility method to get the home slot of a player ID in the hash table.
+	 * 
+	 * @param playerID
+	 *            The player ID.
+	 * @return The slot.
+	 */
+	private int slot(final int playerID) {
+		final int hash = playerID * 0x9E3779B9;
+		return (hash ^ hash >>> 16) & mask;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,207 @@
+package de.lucaswerkmeister.code.fiar.test;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.rmi.RemoteException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.lucaswerkmeister.code.fiar.clients.ai.AIClient;
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Client;
+import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockField;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerField;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerVictory;
+import de.lucaswerkmeister.code.fiar.servers.ClientPlayerPair;
+import de.lucaswerkmeister.code.fiar.servers.GameEngine;
+
+/**
+ * The tests in this class test the {@link AIClient}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+public class AIClientTest {
+	private final Player p1 = new Player("Player 1", Color.blue, 1);
+	private final Player p2 = new Player("Player 2", Color.cyan, 2);
+
+	/**
+	 * Creates a new {@link AIClientTest}.
+	 * <p>
+	 * Does nothing, but pleases the Praktomat.
+	 */
+	public AIClientTest() {
+		// do nothing
+	}
+
+	/**
+	 * Lets two AI clients play against each other until the game ends.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testAgainstItself() throws Exception {
+		final GameEngine engine = new GameEngine(1);
+		final AIClient ai1 = new AIClient(new Dimension(9, 9), 20, p1);
+		final AIClient ai2 = new AIClient(new Dimension(12, 12), 20, p2);
+		final Set<ClientPlayerPair> pairs = new LinkedHashSet<>();
+		pairs.add(new ClientPlayerPair(ai1, p1));
+		pairs.add(new ClientPlayerPair(ai2, p2));
+		final Server server = engine.getServer(engine.createGame(pairs, Collections.<Client> emptySet()));
+		ai1.gameStarts(server);
+		ai2.gameStarts(server);
+		Assert.assertTrue(ai1.join(60000));
+		Assert.assertTrue(ai2.join(60000));
+		final Board board = server.getCurrentBoard(ai1);
+		Assert.assertEquals(9, board.getWidth()); // the smaller proposal
+		Assert.assertEquals(2, server.getPhase(ai1)[0]);
+		engine.shutdown();
+	}
+
+	/**
+	 * Plays against an AI client that has to honor blocks and jokers, see {@link #playAgainstRowBuilder(int)}.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testBlocksAndJokers() throws Exception {
+		playAgainstRowBuilder(1);
+	}
+
+	/**
+	 * Plays the game from {@link #testBlocksAndJokers()} against an AI client that searches with four threads.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testParallelSearch() throws Exception {
+		playAgainstRowBuilder(4);
+	}
+
+	/**
+	 * Private utility method to play against an AI client that has to honor blocks and jokers: the opponent blocks two
+	 * fields and places a joker, then keeps extending a row through the joker. The AI client must stop that row and
+	 * win in the end.
+	 * 
+	 * @param searchThreads
+	 *            The number of search threads of the AI client.
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	private void playAgainstRowBuilder(final int searchThreads) throws Exception {
+		final GameEngine engine = new GameEngine(1);
+		final AIClient ai = new AIClient(new Dimension(15, 15), 50, searchThreads, p1);
+		final EventCollector opponent = new EventCollector();
+		final Set<ClientPlayerPair> pairs = new LinkedHashSet<>();
+		pairs.add(new ClientPlayerPair(opponent, p2)); // the opponent moves first
+		pairs.add(new ClientPlayerPair(ai, p1));
+		final Server server = engine.getServer(engine.createGame(pairs, Collections.<Client> emptySet()));
+		server.action(opponent, new BoardSizeProposal(p2, new Dimension(10, 10)));
+		ai.gameStarts(server);
+		awaitPhase(server, opponent, 1);
+		server.action(opponent, new BlockField(p2, 4, 4));
+		server.action(opponent, new BlockField(p2, 5, 5));
+		server.action(opponent, new BlockDistributionAccepted(p2, server.getCurrentBoard(opponent)));
+		awaitPhase(server, opponent, 2);
+		server.action(opponent, new JokerField(p2, 2, 2));
+		server.action(opponent, new JokerDistributionAccepted(p2, server.getCurrentBoard(opponent)));
+
+		// the opponent builds a row along the diagonal through the joker
+		int next = 0;
+		while (true) {
+			final int[] phase = awaitTurn(server, opponent);
+			if (phase[0] == 2) {
+				Assert.assertEquals(p1.getID(), phase[2]);
+				break;
+			}
+			final Board board = server.getCurrentBoard(opponent);
+			Assert.assertEquals(Block.getInstance(), board.getPlayerAt(4, 4));
+			Assert.assertEquals(Block.getInstance(), board.getPlayerAt(5, 5));
+			while (!board.getPlayerAt(next % 10, next / 10 % 10).equals(NoPlayer.getInstance()))
+				next = next < 4 ? next + 1 : next + 11;
+			server.action(opponent, new PlaceStone(p2, next % 10, next / 10 % 10));
+		}
+		Assert.assertTrue(ai.join(10000));
+		GameEvent last = null;
+		for (final GameEvent e : opponent.events)
+			last = e;
+		Assert.assertTrue(last instanceof PlayerVictory);
+		engine.shutdown();
+	}
+
+	/**
+	 * Private utility method to wait until the server is in the specified setup phase.
+	 * 
+	 * @param server
+	 *            The server.
+	 * @param client
+	 *            The requesting client.
+	 * @param setupPhase
+	 *            The second element of the setup phase.
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	private static void awaitPhase(final Server server, final Client client, final int setupPhase) throws Exception {
+		final long deadline = System.currentTimeMillis() + 30000;
+		int[] phase;
+		while ((phase = server.getPhase(client))[0] == 0 && phase[1] < setupPhase
+				&& System.currentTimeMillis() < deadline)
+			Thread.sleep(5);
+		Assert.assertEquals(setupPhase, phase[1]);
+	}
+
+	/**
+	 * Private utility method to wait until it is the turn of player 2 or the game ended.
+	 * 
+	 * @param server
+	 *            The server.
+	 * @param client
+	 *            The requesting client.
+	 * @return The phase.
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	private int[] awaitTurn(final Server server, final Client client) throws Exception {
+		final long deadline = System.currentTimeMillis() + 30000;
+		int[] phase;
+		while (((phase = server.getPhase(client))[0] != 1 || phase[2] != p2.getID())
+				&& phase[0] != 2 && System.currentTimeMillis() < deadline)
+			Thread.sleep(5);
+		Assert.assertTrue(phase[0] != 0);
+		return phase;
+	}
+
+	/**
+	 * A client that collects all events it receives.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private static class EventCollector implements Client {
+		private final Queue<GameEvent> events = new ConcurrentLinkedQueue<>();
+
+		@Override
+		public void gameEvent(final GameEvent e) throws RemoteException {
+			events.add(e);
+		}
+	}
+}
\ No newline at end of file
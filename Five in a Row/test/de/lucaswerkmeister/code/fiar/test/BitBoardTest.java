@@ -0,0 +1,152 @@
+package de.lucaswerkmeister.code.fiar.test;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Joker;
+import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.servers.ArrayBoard;
+import de.lucaswerkmeister.code.fiar.servers.BitBoard;
+
+/**
+ * The tests in this class test the {@link BitBoard}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+public class BitBoardTest {
+	private final Player[] players = new Player[] {NoPlayer.getInstance(), Block.getInstance(), Joker.getInstance(),
+			new Player("Player 1", Color.blue, 1), new Player("Player 2", Color.cyan, 2),
+			new Player("Player 3", Color.pink, 3) };
+
+	/**
+	 * Creates a new {@link BitBoardTest}.
+	 * <p>
+	 * Does nothing, but pleases the Praktomat.
+	 */
+	public BitBoardTest() {
+		// do nothing
+	}
+
+	/**
+	 * Fills a {@link BitBoard} and an {@link ArrayBoard} with the same random moves and checks that both boards return
+	 * the same player at every field and are equal to each other.
+	 */
+	@Test
+	public void testSameAsArrayBoard() {
+		// 13×11 = 143 fields, which is not a multiple of 64
+		final Board bitBoard = new BitBoard(13, 11);
+		final Board arrayBoard = new ArrayBoard(13, 11);
+		final Random random = new Random(42);
+		for (int i = 0; i < 1000; i++) {
+			final int x = random.nextInt(13);
+			final int y = random.nextInt(11);
+			final Player p = players[random.nextInt(players.length)];
+			bitBoard.setPlayerAt(x, y, p);
+			arrayBoard.setPlayerAt(x, y, p);
+		}
+		for (int x = 0; x < 13; x++)
+			for (int y = 0; y < 11; y++)
+				Assert.assertEquals(arrayBoard.getPlayerAt(x, y), bitBoard.getPlayerAt(x, y));
+		Assert.assertEquals(arrayBoard, bitBoard);
+		Assert.assertEquals(bitBoard, arrayBoard);
+	}
+
+	/**
+	 * Tests that a clone is equal to the original board, but independent of it, and that a player that no longer
+	 * occupies any fields does not make two boards unequal.
+	 */
+	@Test
+	public void testCloneAndEquals() {
+		final BitBoard board = new BitBoard(10, 10);
+		board.setPlayerAt(3, 5, Block.getInstance());
+		board.setPlayerAt(0, 0, Joker.getInstance());
+		board.setPlayerAt(1, 1, players[3]);
+		final Board clone = board.clone();
+		Assert.assertEquals(board, clone);
+
+		clone.setPlayerAt(2, 2, players[4]);
+		Assert.assertFalse(board.equals(clone));
+		Assert.assertEquals(NoPlayer.getInstance(), board.getPlayerAt(2, 2));
+
+		// player 2 still has a (now empty) plane on the clone
+		clone.setPlayerAt(2, 2, NoPlayer.getInstance());
+		Assert.assertEquals(board, clone);
+		Assert.assertEquals(clone, board);
+		Assert.assertEquals(3, board.getOccupiedFieldCount());
+	}
+
+	/**
+	 * Plays random moves on a board that spans several chunks, takes clones of it on the way and keeps playing on
+	 * some of the clones as well. At the end, every board must still have exactly the contents of an
+	 * {@link ArrayBoard} that saw the same moves, no matter which chunks it shares with which other boards.
+	 */
+	@Test
+	public void testCopyOnWrite() {
+		final Random random = new Random(23);
+		final List<Board> boards = new ArrayList<>();
+		final List<Board> references = new ArrayList<>();
+		boards.add(new BitBoard(100, 70));
+		references.add(new ArrayBoard(100, 70));
+		for (int i = 0; i < 3000; i++) {
+			final int b = random.nextInt(boards.size());
+			if (random.nextInt(50) == 0) {
+				boards.add(boards.get(b).clone());
+				references.add(references.get(b).clone());
+			}
+			final int x = random.nextInt(100);
+			final int y = random.nextInt(70);
+			final Player p = players[random.nextInt(players.length)];
+			boards.get(b).setPlayerAt(x, y, p);
+			references.get(b).setPlayerAt(x, y, p);
+		}
+		Assert.assertTrue(boards.size() > 10);
+		for (int b = 0; b < boards.size(); b++) {
+			for (int x = 0; x < 100; x++)
+				for (int y = 0; y < 70; y++)
+					Assert.assertEquals(references.get(b).getPlayerAt(x, y), boards.get(b).getPlayerAt(x, y));
+			Assert.assertEquals(references.get(b), boards.get(b));
+			Assert.assertEquals(references.get(b).getHash(), boards.get(b).getHash());
+		}
+	}
+
+	/**
+	 * Serializes a board together with a clone that shares its chunks and checks that changing one of the
+	 * deserialized boards does not change the other one.
+	 * 
+	 * @throws Exception
+	 *             If serialization fails.
+	 */
+	@Test
+	public void testSerializeSharedChunks() throws Exception {
+		final Board board = new BitBoard(20, 20);
+		board.setPlayerAt(4, 4, players[3]);
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(new Board[] {board, board.clone() });
+		}
+		final Board[] read;
+		try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			read = (Board[]) in.readObject();
+		}
+		read[0].setPlayerAt(4, 4, players[4]);
+		read[0].setPlayerAt(5, 5, players[4]);
+		Assert.assertEquals(players[3], read[1].getPlayerAt(4, 4));
+		Assert.assertEquals(NoPlayer.getInstance(), read[1].getPlayerAt(5, 5));
+		Assert.assertEquals(board, read[1]);
+		Assert.assertFalse(board.equals(read[0]));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,191 @@
+package de.lucaswerkmeister.code.fiar.test;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JScrollBar;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.lucaswerkmeister.code.fiar.clients.swingClients.BoardCanvas;
+import de.lucaswerkmeister.code.fiar.clients.swingClients.BoardViewport;
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.servers.ArrayBoard;
+import de.lucaswerkmeister.code.fiar.servers.SparseBoard;
+
+/**
+ * The tests in this class test the {@link BoardCanvas}. They only paint into images, so they also run without a
+ * display.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+public class BoardCanvasTest {
+	private final Player p1 = new Player("Player 1", Color.blue, 1);
+	private final int fieldSize = 15;
+
+	/**
+	 * Creates a new {@link BoardCanvasTest}.
+	 * <p>
+	 * Does nothing, but pleases the Praktomat.
+	 */
+	public BoardCanvasTest() {
+		// do nothing
+	}
+
+	/**
+	 * Tests that pixels are mapped to the right fields, with x running downwards and y to the right, and that pixels
+	 * outside the board map to no field.
+	 */
+	@Test
+	public void testFieldAt() {
+		final BoardCanvas canvas = new BoardCanvas(new ArrayBoard(20, 10), fieldSize);
+		Assert.assertEquals(new Dimension(150, 300), canvas.getPreferredSize());
+		Assert.assertEquals(new Point(0, 0), canvas.fieldAt(0, 0));
+		Assert.assertEquals(new Point(0, 0), canvas.fieldAt(14, 14));
+		Assert.assertEquals(new Point(1, 2), canvas.fieldAt(30, 15));
+		Assert.assertEquals(new Point(19, 9), canvas.fieldAt(149, 299));
+		Assert.assertNull(canvas.fieldAt(150, 0));
+		Assert.assertNull(canvas.fieldAt(0, 300));
+		Assert.assertNull(canvas.fieldAt(-1, 0));
+	}
+
+	/**
+	 * Tests that fields occupied by players are disabled and stay disabled when the player leaves them, while blocked
+	 * fields stay enabled, and that fields can be disabled and enabled explicitly.
+	 */
+	@Test
+	public void testEnabled() {
+		final BoardCanvas canvas = new BoardCanvas(new ArrayBoard(10, 10), fieldSize);
+		Assert.assertTrue(canvas.isFieldEnabled(3, 4));
+		canvas.setPlayerAt(3, 4, Block.getInstance());
+		Assert.assertTrue(canvas.isFieldEnabled(3, 4));
+		canvas.setPlayerAt(3, 4, p1);
+		Assert.assertFalse(canvas.isFieldEnabled(3, 4));
+		Assert.assertTrue(canvas.isFieldEnabled(4, 3));
+		canvas.setPlayerAt(3, 4, NoPlayer.getInstance());
+		Assert.assertFalse(canvas.isFieldEnabled(3, 4));
+		canvas.setFieldEnabled(3, 4, true);
+		Assert.assertTrue(canvas.isFieldEnabled(3, 4));
+		canvas.setFieldEnabled(5, 5, false);
+		Assert.assertFalse(canvas.isFieldEnabled(5, 5));
+
+		// occupied fields of the initial board are disabled as well
+		final ArrayBoard board = new ArrayBoard(10, 10);
+		board.setPlayerAt(1, 2, p1);
+		final BoardCanvas canvas2 = new BoardCanvas(board, fieldSize);
+		Assert.assertFalse(canvas2.isFieldEnabled(1, 2));
+		Assert.assertEquals(p1, canvas2.getPlayerAt(1, 2));
+		// the canvas has its own copy of the board
+		board.setPlayerAt(1, 3, p1);
+		Assert.assertEquals(NoPlayer.getInstance(), canvas2.getPlayerAt(1, 3));
+	}
+
+	/**
+	 * Paints the canvas into an image, once completely and once clipped to one field, and checks that the fields
+	 * have the colors of their occupants and that nothing outside the clip is painted.
+	 */
+	@Test
+	public void testPaint() {
+		final BoardCanvas canvas = new BoardCanvas(new ArrayBoard(10, 10), fieldSize);
+		canvas.setSize(canvas.getPreferredSize());
+		canvas.setBackground(Color.white);
+		canvas.setPlayerAt(2, 3, p1);
+		canvas.setPlayerAt(7, 7, Block.getInstance());
+		final BufferedImage image = new BufferedImage(150, 150, BufferedImage.TYPE_INT_RGB);
+		Graphics g = image.getGraphics();
+		canvas.paint(g);
+		g.dispose();
+		// x downwards, y to the right
+		Assert.assertEquals(Color.blue.getRGB(), image.getRGB(3 * 15 + 7, 2 * 15 + 7));
+		Assert.assertEquals(Block.getInstance().getColor().getRGB(), image.getRGB(7 * 15 + 7, 7 * 15 + 7));
+		Assert.assertEquals(Color.white.getRGB(), image.getRGB(2 * 15 + 7, 3 * 15 + 7));
+		Assert.assertEquals(Color.black.getRGB(), image.getRGB(15, 20));
+
+		final BufferedImage clipped = new BufferedImage(150, 150, BufferedImage.TYPE_INT_RGB);
+		g = clipped.getGraphics();
+		g.setClip(3 * 15, 2 * 15, 15, 15);
+		canvas.paint(g);
+		g.dispose();
+		Assert.assertEquals(Color.blue.getRGB(), clipped.getRGB(3 * 15 + 7, 2 * 15 + 7));
+		Assert.assertEquals(Color.black.getRGB(), clipped.getRGB(7 * 15 + 7, 7 * 15 + 7)); // untouched image
+		Assert.assertEquals(Color.black.getRGB(), clipped.getRGB(2 * 15 + 7, 3 * 15 + 7)); // not painted white
+	}
+
+	/**
+	 * Scrolls and zooms a canvas on an unbounded board far away from the first field, and checks that clicks are
+	 * mapped to the right fields there, that zooming keeps the field under the mouse in place, and that zoomed-out
+	 * fields are painted without borders.
+	 */
+	@Test
+	public void testOriginAndZoom() {
+		final BoardCanvas canvas = new BoardCanvas(new SparseBoard(SparseBoard.UNBOUNDED, SparseBoard.UNBOUNDED),
+				fieldSize);
+		canvas.setSize(300, 300);
+		canvas.setBackground(Color.white);
+		Assert.assertEquals(20, canvas.getVisibleRows());
+		canvas.setOrigin(1000000, 2000000);
+		Assert.assertEquals(new Point(1000000, 2000000), canvas.fieldAt(0, 0));
+		Assert.assertEquals(new Point(1000002, 2000001), canvas.fieldAt(20, 30));
+		canvas.setPlayerAt(1000002, 2000001, p1);
+
+		final Point center = canvas.fieldAt(150, 150);
+		canvas.zoomAt(2, 150, 150);
+		Assert.assertEquals(2, canvas.getFieldSize());
+		Assert.assertEquals(150, canvas.getVisibleRows());
+		Assert.assertEquals(center, canvas.fieldAt(150, 150));
+		canvas.zoomAt(1000, 150, 150);
+		Assert.assertEquals(BoardCanvas.MAX_FIELD_SIZE, canvas.getFieldSize());
+		Assert.assertEquals(center, canvas.fieldAt(150, 150));
+		canvas.zoomAt(2, 150, 150);
+
+		final BufferedImage image = new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB);
+		final Graphics g = image.getGraphics();
+		canvas.paint(g);
+		g.dispose();
+		final int left = (2000001 - canvas.getOriginY()) * 2;
+		final int top = (1000002 - canvas.getOriginX()) * 2;
+		Assert.assertEquals(Color.blue.getRGB(), image.getRGB(left, top));
+		Assert.assertEquals(Color.blue.getRGB(), image.getRGB(left + 1, top + 1));
+		Assert.assertEquals(Color.white.getRGB(), image.getRGB(left + 2, top)); // no border
+	}
+
+	/**
+	 * Tests that the origin is clamped so that the canvas shows as much of the board as possible, and that the scroll
+	 * bars of a {@link BoardViewport} follow the canvas and are only shown when the board doesn't fit.
+	 */
+	@Test
+	public void testViewport() {
+		final BoardCanvas canvas = new BoardCanvas(new ArrayBoard(100, 20), fieldSize);
+		final BoardViewport viewport = new BoardViewport(canvas);
+		viewport.setSize(400, 400);
+		viewport.doLayout();
+		Assert.assertTrue(canvas.getVisibleColumns() >= 20);
+		canvas.setOrigin(50, 5);
+		Assert.assertEquals(50, canvas.getOriginX());
+		Assert.assertEquals(0, canvas.getOriginY()); // all columns are visible
+		canvas.setOrigin(1000, 0);
+		Assert.assertEquals(100 - canvas.getVisibleRows(), canvas.getOriginX());
+		Assert.assertNull(canvas.fieldAt(0, canvas.getVisibleRows() * fieldSize + fieldSize));
+
+		final JScrollBar rows = (JScrollBar) viewport.getComponent(1);
+		final JScrollBar columns = (JScrollBar) viewport.getComponent(2);
+		Assert.assertTrue(rows.isVisible());
+		Assert.assertFalse(columns.isVisible());
+		Assert.assertEquals(canvas.getOriginX(), rows.getValue());
+		rows.setValue(10);
+		Assert.assertEquals(10, canvas.getOriginX());
+
+		viewport.zoom(10, 0, 0); // zoom out until the whole board fits
+		viewport.doLayout();
+		Assert.assertEquals(0, canvas.getOriginX());
+		Assert.assertFalse(rows.isVisible());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,142 @@
+package de.lucaswerkmeister.code.fiar.test;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.rmi.RemoteException;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.lucaswerkmeister.code.fiar.clients.BoardMirror;
+import de.lucaswerkmeister.code.fiar.framework.BoardDelta;
+import de.lucaswerkmeister.code.fiar.framework.Client;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockField;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerField;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
+import de.lucaswerkmeister.code.fiar.framework.event.UnblockField;
+import de.lucaswerkmeister.code.fiar.framework.event.UnjokerField;
+import de.lucaswerkmeister.code.fiar.servers.FixedServer;
+
+/**
+ * The tests in this class test the {@link BoardMirror} and {@link FixedServer#getBoardChangesSince(Client, int)}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+public class BoardMirrorTest implements Client {
+	private final Player p1 = new Player("Player 1", Color.blue, 1);
+	private final Player p2 = new Player("Player 2", Color.cyan, 2);
+	private FixedServer server;
+	private BoardMirror mirror;
+
+	/**
+	 * Creates a new {@link BoardMirrorTest}.
+	 * <p>
+	 * Does nothing, but pleases the Praktomat.
+	 */
+	public BoardMirrorTest() {
+		// do nothing
+	}
+
+	/**
+	 * Plays a game with blocked fields and jokers and checks after every action that the mirror, which only sees the
+	 * events, is equal to the server's board and has the same version.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testMirror() throws Exception {
+		server = new FixedServer(new Client[] {this }, new Player[][] {{p1, p2 } });
+		mirror = new BoardMirror(server, this);
+		act(new BoardSizeProposal(p1, new Dimension(12, 8)));
+		act(new BoardSizeProposal(p2, new Dimension(12, 8)));
+		act(new BlockField(p1, 3, 5));
+		act(new BlockField(p2, 3, 6));
+		act(new UnblockField(p1, 3, 5));
+		act(new BlockDistributionAccepted(p1, mirror.getBoard()));
+		act(new BlockDistributionAccepted(p2, mirror.getBoard()));
+		act(new JokerField(p1, 0, 0));
+		act(new JokerField(p2, 11, 7));
+		act(new UnjokerField(p2, 0, 0));
+		act(new JokerDistributionAccepted(p1, mirror.getBoard()));
+		act(new JokerDistributionAccepted(p2, mirror.getBoard()));
+		act(new PlaceStone(p1, 1, 1));
+		act(new PlaceStone(p2, 2, 2));
+		act(new PlaceStone(p1, 1, 2));
+		Assert.assertEquals(9, mirror.getVersion());
+		Assert.assertEquals(p1, mirror.getPlayerAt(1, 2));
+	}
+
+	/**
+	 * Tests that a mirror that missed some or all events catches up with {@link BoardMirror#resync()}, and that the
+	 * server only sends the changes that the mirror is missing.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testResync() throws Exception {
+		server = new FixedServer(new Client[] {this }, new Player[][] {{p1, p2 } });
+		mirror = new BoardMirror(server, this);
+		final BoardMirror late = new BoardMirror(server, this);
+		late.resync(); // no board yet
+		Assert.assertNull(late.getBoard());
+		act(new BoardSizeProposal(p1, new Dimension(10, 10)));
+		act(new BoardSizeProposal(p2, new Dimension(10, 10)));
+		act(new BlockField(p1, 4, 4));
+		act(new BlockDistributionAccepted(p1, mirror.getBoard()));
+		act(new BlockDistributionAccepted(p2, mirror.getBoard()));
+		late.resync(); // builds the board from all changes, with the size from the delta
+		Assert.assertEquals(server.getCurrentBoard(this), late.getBoard());
+		Assert.assertEquals(1, late.getVersion());
+
+		act(new JokerDistributionAccepted(p1, mirror.getBoard()));
+		act(new JokerDistributionAccepted(p2, mirror.getBoard()));
+		act(new PlaceStone(p1, 0, 0));
+		act(new PlaceStone(p2, 9, 9));
+		final BoardDelta delta = server.getBoardChangesSince(this, late.getVersion());
+		Assert.assertEquals(10, delta.getWidth());
+		Assert.assertEquals(10, delta.getHeight());
+		Assert.assertEquals(2, delta.getChangeCount());
+		Assert.assertEquals(9, delta.getX(1));
+		Assert.assertEquals(p2, delta.getPlayer(1));
+		late.resync();
+		Assert.assertEquals(server.getCurrentBoard(this), late.getBoard());
+		Assert.assertEquals(mirror.getVersion(), late.getVersion());
+		Assert.assertEquals(0, server.getBoardChangesSince(this, late.getVersion()).getChangeCount());
+		try {
+			server.getBoardChangesSince(this, late.getVersion() + 1);
+			Assert.fail("Unknown version was accepted!");
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Performs the action and checks that the mirror is in sync with the server afterwards.
+	 * 
+	 * @param action
+	 *            The action.
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	private void act(final PlayerAction action) throws Exception {
+		server.action(this, action);
+		Assert.assertEquals(server.getCurrentBoard(this), mirror.getBoard());
+		if (mirror.getBoard() != null)
+			Assert.assertEquals(server.getBoardChangesSince(this, 0).getToVersion(), mirror.getVersion());
+	}
+
+	@Override
+	public void gameEvent(final GameEvent e) throws RemoteException {
+		mirror.gameEvent(e);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,215 @@
+package de.lucaswerkmeister.code.fiar.test;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Joker;
+import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.servers.ArrayBoard;
+import de.lucaswerkmeister.code.fiar.servers.BitBoard;
+
+/**
+ * The tests in this class test the logic implemented in {@link Board} itself.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.2
+ */
+public class BoardTest {
+	private final Player[] players = new Player[] {NoPlayer.getInstance(), Block.getInstance(), Joker.getInstance(),
+			new Player("Player 1", Color.blue, 1), new Player("Player 2", Color.cyan, 2) };
+
+	/**
+	 * Creates a new {@link BoardTest}.
+	 * <p>
+	 * Does nothing, but pleases the Praktomat.
+	 */
+	public BoardTest() {
+		// do nothing
+	}
+
+	/**
+	 * Plays random moves on boards that keep a row index and on a board that doesn't, and checks that
+	 * {@link Board#wasWinningMove(int, int)} agrees on all of them after every move. Stones are also removed again, so
+	 * that the index has to shorten rows as well.
+	 */
+	@Test
+	public void testWinningMoveIndex() {
+		final Board walking = new WalkingBoard(12, 9);
+		final Board[] indexed = new Board[] {new ArrayBoard(12, 9), new BitBoard(12, 9) };
+		final Random random = new Random(1337);
+		for (int i = 0; i < 5000; i++) {
+			final int x = random.nextInt(12);
+			final int y = random.nextInt(9);
+			// mostly real players, so that long rows form
+			final Player p = players[random.nextInt(8) < 6 ? 3 + random.nextInt(2) : random.nextInt(3)];
+			walking.setPlayerAt(x, y, p);
+			for (final Board b : indexed) {
+				b.setPlayerAt(x, y, p);
+				if (i % 7 == 0) {
+					// check the whole board from time to time, not just the changed field
+					for (int cx = 0; cx < 12; cx++)
+						for (int cy = 0; cy < 9; cy++)
+							if (walking.getPlayerAt(cx, cy).getID() > 0)
+								Assert.assertEquals(walking.wasWinningMove(cx, cy), b.wasWinningMove(cx, cy));
+				} else if (p.getID() > 0)
+					Assert.assertEquals(walking.wasWinningMove(x, y), b.wasWinningMove(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Tests that joker fields count for every player and that rows through them are updated when fields around them
+	 * change.
+	 */
+	@Test
+	public void testJokers() {
+		final Board b = new BitBoard(10, 10);
+		b.setPlayerAt(2, 2, Joker.getInstance());
+		b.setPlayerAt(4, 4, Joker.getInstance());
+		for (int i = 0; i < 5; i++)
+			if (i != 2 && i != 4)
+				b.setPlayerAt(i, i, players[3]);
+		Assert.assertTrue(b.wasWinningMove(0, 0));
+		Assert.assertTrue(b.wasWinningMove(3, 3));
+		b.setPlayerAt(2, 2, players[4]);
+		Assert.assertFalse(b.wasWinningMove(3, 3));
+		b.setPlayerAt(5, 5, players[3]);
+		Assert.assertFalse(b.wasWinningMove(3, 3));
+		b.setPlayerAt(6, 6, players[3]);
+		Assert.assertFalse(b.wasWinningMove(3, 3));
+		b.setPlayerAt(7, 7, players[3]);
+		Assert.assertTrue(b.wasWinningMove(3, 3));
+	}
+
+	/**
+	 * Plays random moves on two different board implementations and checks that a hash kept up to date with
+	 * {@link Board#fieldHash(int, int, Player)} always equals {@link Board#getHash()} of both boards, and that
+	 * different boards have different hashes.
+	 */
+	@Test
+	public void testHash() {
+		final Board arrayBoard = new ArrayBoard(15, 15);
+		final Board bitBoard = new BitBoard(15, 15);
+		Assert.assertEquals(0, arrayBoard.getHash());
+		final Random random = new Random(4711);
+		long hash = 0;
+		for (int i = 0; i < 2000; i++) {
+			final int x = random.nextInt(15);
+			final int y = random.nextInt(15);
+			final Player p = players[random.nextInt(players.length)];
+			hash ^= Board.fieldHash(x, y, arrayBoard.getPlayerAt(x, y)) ^ Board.fieldHash(x, y, p);
+			arrayBoard.setPlayerAt(x, y, p);
+			bitBoard.setPlayerAt(x, y, p);
+			Assert.assertEquals(hash, arrayBoard.getHash());
+			Assert.assertEquals(hash, bitBoard.getHash());
+		}
+		// the same stone on different fields, and different stones on the same field
+		Assert.assertFalse(Board.fieldHash(1, 2, players[3]) == Board.fieldHash(2, 1, players[3]));
+		Assert.assertFalse(Board.fieldHash(1, 2, players[3]) == Board.fieldHash(1, 2, players[4]));
+		Assert.assertEquals(0, Board.fieldHash(1, 2, players[0]));
+	}
+
+	/**
+	 * Checks that the hash that boards keep up to date is the same as the hash computed from all fields, that clones
+	 * keep it, and that it makes boards usable as keys in a {@link HashMap}.
+	 */
+	@Test
+	public void testIncrementalHash() {
+		final Board walking = new WalkingBoard(9, 9);
+		final Board[] indexed = new Board[] {new ArrayBoard(9, 9), new BitBoard(9, 9) };
+		final Map<Board, Integer> positions = new HashMap<>();
+		final Random random = new Random(815);
+		for (int i = 0; i < 500; i++) {
+			final int x = random.nextInt(9);
+			final int y = random.nextInt(9);
+			final Player p = players[random.nextInt(players.length)];
+			walking.setPlayerAt(x, y, p);
+			for (final Board b : indexed) {
+				b.setPlayerAt(x, y, p);
+				Assert.assertEquals(walking.getHash(), b.getHash());
+				Assert.assertEquals(walking.hashCode(), b.hashCode());
+			}
+			positions.put(indexed[i % 2].clone(), i);
+		}
+		for (final Board b : indexed) {
+			final Board clone = b.clone();
+			Assert.assertEquals(b.getHash(), clone.getHash());
+			Assert.assertEquals(Integer.valueOf(499), positions.get(clone));
+			clone.setPlayerAt(0, 0, players[3].equals(clone.getPlayerAt(0, 0)) ? players[4] : players[3]);
+			Assert.assertFalse(b.getHash() == clone.getHash());
+			Assert.assertFalse(b.equals(clone));
+			Assert.assertFalse(clone.equals(b));
+		}
+	}
+
+	/**
+	 * A board that does not report field changes and thus uses the original winning check.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private static class WalkingBoard extends Board {
+		private static final long serialVersionUID = 1L;
+		private final Player[][] fields;
+
+		/**
+		 * Creates a new {@link WalkingBoard} with the specified dimensions.
+		 * 
+		 * @param width
+		 *            The width.
+		 * @param height
+		 *            The height.
+		 */
+		WalkingBoard(final int width, final int height) {
+			fields = new Player[width][height];
+			for (final Player[] column : fields)
+				Arrays.fill(column, NoPlayer.getInstance());
+		}
+
+		@Override
+		public Player getPlayerAt(final int x, final int y) {
+			return fields[x][y];
+		}
+
+		@Override
+		public Player getPlayerAt(final Point position) {
+			return getPlayerAt(position.x, position.y);
+		}
+
+		@Override
+		public void setPlayerAt(final int x, final int y, final Player p) {
+			fields[x][y] = p;
+		}
+
+		@Override
+		public void setPlayerAt(final Point position, final Player p) {
+			setPlayerAt(position.x, position.y, p);
+		}
+
+		@Override
+		public int getWidth() {
+			return fields.length;
+		}
+
+		@Override
+		public int getHeight() {
+			return fields[0].length;
+		}
+
+		@Override
+		public Board clone() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
\ No newline at end of file
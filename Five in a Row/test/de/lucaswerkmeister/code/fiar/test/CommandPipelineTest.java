@@ -0,0 +1,100 @@
+package de.lucaswerkmeister.code.fiar.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.lucaswerkmeister.code.fiar.clients.swingClients.CommandPipeline;
+import de.lucaswerkmeister.code.fiar.clients.swingClients.CommandPipeline.Callback;
+
+/**
+ * The tests in this class test the {@link CommandPipeline}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+public class CommandPipelineTest {
+	/**
+	 * Creates a new {@link CommandPipelineTest}.
+	 * <p>
+	 * Does nothing, but pleases the Praktomat.
+	 */
+	public CommandPipelineTest() {
+		// do nothing
+	}
+
+	/**
+	 * Submits many commands, some of which fail, and checks that they are executed in order off the event dispatch
+	 * thread, that their callbacks are called in order on the event dispatch thread, and that every stage recorded the
+	 * latency of every command.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testPipeline() throws Exception {
+		final int commands = 100;
+		final CommandPipeline pipeline = new CommandPipeline();
+		final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+		final List<Integer> applied = Collections.synchronizedList(new ArrayList<Integer>());
+		final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch done = new CountDownLatch(commands);
+		for (int i = 0; i < commands; i++) {
+			final int command = i;
+			pipeline.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					if (SwingUtilities.isEventDispatchThread())
+						errors.add("Command " + command + " executed on the event dispatch thread");
+					executed.add(command);
+					if (command % 10 == 0)
+						throw new IllegalStateException("Command " + command);
+					return command;
+				}
+			}, new Callback<Integer>() {
+				@Override
+				public void succeeded(final Integer result) {
+					if (!SwingUtilities.isEventDispatchThread())
+						errors.add("Callback " + command + " called outside the event dispatch thread");
+					applied.add(result);
+					done.countDown();
+				}
+
+				@Override
+				public void failed(final Exception e) {
+					if (!(e instanceof IllegalStateException) || !e.getMessage().equals("Command " + command))
+						errors.add("Wrong exception for command " + command + ": " + e);
+					applied.add(-command);
+					done.countDown();
+				}
+			});
+		}
+		Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+		Assert.assertEquals(Collections.emptyList(), errors);
+		for (int i = 0; i < commands; i++) {
+			Assert.assertEquals(Integer.valueOf(i), executed.get(i));
+			Assert.assertEquals(Integer.valueOf(i % 10 == 0 ? -i : i), applied.get(i));
+		}
+		Assert.assertEquals(commands, pipeline.getQueueLatency().getCount());
+		Assert.assertEquals(commands, pipeline.getSendLatency().getCount());
+		// the last callback records its latency after it returned
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				// do nothing
+			}
+		});
+		Assert.assertEquals(commands, pipeline.getApplyLatency().getCount());
+		Assert.assertTrue(pipeline.toString().startsWith("Queue: " + commands + ", mean "));
+		pipeline.shutdown();
+	}
+}
\ No newline at end of file
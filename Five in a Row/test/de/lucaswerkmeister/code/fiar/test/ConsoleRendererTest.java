@@ -0,0 +1,104 @@
+package de.lucaswerkmeister.code.fiar.test;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.lucaswerkmeister.code.fiar.clients.ConsoleRenderer;
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Joker;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.servers.ArrayBoard;
+
+/**
+ * The tests in this class test the {@link ConsoleRenderer}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+public class ConsoleRendererTest {
+	private static final String NL = System.lineSeparator();
+	private final Player p1 = new Player("Player 1", Color.blue, 1);
+	private final Player p2 = new Player("Player 2", Color.yellow, 2);
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	private final PrintStream out = new PrintStream(bytes, true);
+
+	/**
+	 * Creates a new {@link ConsoleRendererTest}.
+	 * <p>
+	 * Does nothing, but pleases the Praktomat.
+	 */
+	public ConsoleRendererTest() {
+		// do nothing
+	}
+
+	/**
+	 * Tests that plain mode prints the whole board, row by row, after every change, and that a renderer that only saw
+	 * the changes prints the same as one that was given the whole board.
+	 */
+	@Test
+	public void testPlain() {
+		final ConsoleRenderer renderer = new ConsoleRenderer(out, false);
+		renderer.clear(5, 3);
+		renderer.fieldChanged(0, 0, Block.getInstance());
+		renderer.fieldChanged(4, 1, Joker.getInstance());
+		renderer.fieldChanged(2, 2, p1);
+		Assert.assertEquals("B····" + NL + "·····" + NL + "·····" + NL //
+				+ "B····" + NL + "····J" + NL + "·····" + NL //
+				+ "B····" + NL + "····J" + NL + "··X··" + NL, read());
+
+		renderer.fieldChanged(3, 2, p2);
+		final String frame = "B····" + NL + "····J" + NL + "··XO·" + NL;
+		Assert.assertEquals(frame, read());
+
+		final Board b = new ArrayBoard(5, 3);
+		b.setPlayerAt(0, 0, Block.getInstance());
+		b.setPlayerAt(4, 1, Joker.getInstance());
+		b.setPlayerAt(2, 2, p1);
+		b.setPlayerAt(3, 2, p2);
+		new ConsoleRenderer(out, false).render(b);
+		Assert.assertEquals(frame, read());
+
+		renderer.finish();
+		Assert.assertEquals("", read());
+	}
+
+	/**
+	 * Tests that ANSI mode draws the board once at the top of the screen and then only redraws the changed fields.
+	 */
+	@Test
+	public void testAnsi() {
+		final ConsoleRenderer renderer = new ConsoleRenderer(out, true);
+		renderer.clear(3, 2);
+		renderer.fieldChanged(1, 0, Block.getInstance());
+		Assert.assertEquals("\u001b[2J\u001b[H·B·" + NL + "···" + NL + "\u001b[3r\u001b[3;1H", read());
+
+		renderer.fieldChanged(2, 1, p1);
+		Assert.assertEquals("\u001b7\u001b[2;3HX\u001b8", read());
+		renderer.fieldChanged(1, 0, p2);
+		Assert.assertEquals("\u001b7\u001b[1;2HO\u001b8", read());
+
+		renderer.redraw();
+		Assert.assertEquals("\u001b[2J\u001b[H·O·" + NL + "··X" + NL + "\u001b[3r\u001b[3;1H", read());
+
+		renderer.finish();
+		Assert.assertEquals("\u001b7\u001b[r\u001b8", read());
+	}
+
+	/**
+	 * Reads and clears everything that was written to {@link #out} so far.
+	 * 
+	 * @return The written text.
+	 */
+	private String read() {
+		out.flush();
+		final String ret = new String(bytes.toByteArray());
+		bytes.reset();
+		return ret;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,133 @@
+package de.lucaswerkmeister.code.fiar.test;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Joker;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.event.AllOthersForfeit;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.InternalError;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerField;
+import de.lucaswerkmeister.code.fiar.framework.event.PhaseChange;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerVictory;
+import de.lucaswerkmeister.code.fiar.framework.event.Tie;
+import de.lucaswerkmeister.code.fiar.network.EventCodec;
+import de.lucaswerkmeister.code.fiar.servers.ArrayBoard;
+
+/**
+ * The tests in this class test the {@link EventCodec}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.1
+ */
+public class EventCodecTest {
+	private final Player p1 = new Player("Player 1", Color.blue, 1);
+	private final Player p2 = new Player("Player 2", Color.cyan, 300);
+	private final EventCodec codec = new EventCodec(Arrays.asList(p1, p2));
+
+	/**
+	 * Creates a new {@link EventCodecTest}.
+	 * <p>
+	 * Does nothing, but pleases the Praktomat.
+	 */
+	public EventCodecTest() {
+		// do nothing
+	}
+
+	/**
+	 * Encodes and decodes events of various classes and checks that the decoded events are equal to the original
+	 * ones.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		final PlaceStone placeStone = (PlaceStone) codec.decode(codec.encode(new PlaceStone(p2, 1000, 3)));
+		Assert.assertEquals(p2, placeStone.getActingPlayer());
+		Assert.assertEquals(1000, placeStone.getField().x);
+		Assert.assertEquals(3, placeStone.getField().y);
+
+		final BoardSizeProposal proposal = (BoardSizeProposal) codec.decode(codec.encode(new BoardSizeProposal(p1,
+				new Dimension(19, 15))));
+		Assert.assertEquals(new Dimension(19, 15), proposal.getSize());
+
+		final PhaseChange phaseChange = (PhaseChange) codec
+				.decode(codec.encode(new PhaseChange(new int[] {1, 1, 300 })));
+		Assert.assertTrue(Arrays.equals(new int[] {1, 1, 300 }, phaseChange.getNewPhase()));
+
+		final Board board = new ArrayBoard(30, 20);
+		board.setPlayerAt(0, 0, Block.getInstance());
+		board.setPlayerAt(29, 19, Joker.getInstance());
+		board.setPlayerAt(17, 4, p2);
+		final BlockDistributionAccepted accepted = (BlockDistributionAccepted) codec.decode(codec
+				.encode(new BlockDistributionAccepted(p1, board)));
+		Assert.assertEquals(p1, accepted.getActingPlayer());
+		Assert.assertEquals(board.getHash(), accepted.getAcceptedHash());
+
+		// subclasses must keep their class
+		Assert.assertEquals(AllOthersForfeit.class, codec.decode(codec.encode(new AllOthersForfeit(p1))).getClass());
+		Assert.assertEquals(PlayerVictory.class, codec.decode(codec.encode(new PlayerVictory(p1))).getClass());
+		Assert.assertEquals(JokerField.class, codec.decode(codec.encode(new JokerField(p1, 2, 2))).getClass());
+		Assert.assertEquals(Tie.class, codec.decode(codec.encode(new Tie())).getClass());
+		Assert.assertEquals("Server exploded",
+				((InternalError) codec.decode(codec.encode(new InternalError("Server exploded")))).getMessage());
+		Assert.assertNull(((InternalError) codec.decode(codec.encode(new InternalError((String) null)))).getMessage());
+	}
+
+	/**
+	 * Tests that events are much smaller than with Java serialization and that several events can be written to and
+	 * read from the same buffer.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testSizeAndBuffer() throws Exception {
+		final GameEvent e = new PlaceStone(p1, 7, 9);
+		final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+		try (final ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+			out.writeObject(e);
+		}
+		Assert.assertEquals(4, codec.encode(e).length);
+		Assert.assertTrue(serialized.size() > 100);
+
+		final ByteBuffer buffer = ByteBuffer.allocate(64);
+		codec.encode(e, buffer);
+		codec.encode(new Tie(), buffer);
+		buffer.flip();
+		Assert.assertEquals(PlaceStone.class, codec.decode(buffer).getClass());
+		Assert.assertEquals(Tie.class, codec.decode(buffer).getClass());
+		Assert.assertFalse(buffer.hasRemaining());
+	}
+
+	/**
+	 * Tests that invalid input is rejected.
+	 */
+	@Test
+	public void testInvalid() {
+		// unknown tag, truncated event, unknown player ID
+		for (final byte[] invalid : new byte[][] { {99 }, {8, 2 }, {8, 10, 0, 0 } })
+			try {
+				codec.decode(invalid);
+				Assert.fail("Invalid event " + Arrays.toString(invalid) + " was accepted!");
+			} catch (final StreamCorruptedException e) {
+				// expected
+			}
+	}
+}
\ No newline at end of file
@@ -2,7 +2,11 @@ package de.lucaswerkmeister.code.fiar.test;
 
 import java.awt.Color;
 import java.awt.Dimension;
+import java.lang.management.ManagementFactory;
 import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -10,15 +14,19 @@ import junit.framework.Assert;
 
 import org.junit.Test;
 
+import com.sun.management.ThreadMXBean;
+
 import de.lucaswerkmeister.code.fiar.framework.Block;
 import de.lucaswerkmeister.code.fiar.framework.Board;
 import de.lucaswerkmeister.code.fiar.framework.Client;
 import de.lucaswerkmeister.code.fiar.framework.Joker;
 import de.lucaswerkmeister.code.fiar.framework.Player;
 import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.AllOthersForfeit;
 import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
 import de.lucaswerkmeister.code.fiar.framework.event.BlockField;
 import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.Forfeit;
 import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
 import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
 import de.lucaswerkmeister.code.fiar.framework.event.JokerField;
@@ -29,13 +37,15 @@ import de.lucaswerkmeister.code.fiar.framework.event.PlayerVictory;
 import de.lucaswerkmeister.code.fiar.framework.event.UnblockField;
 import de.lucaswerkmeister.code.fiar.framework.event.UnjokerField;
 import de.lucaswerkmeister.code.fiar.framework.exception.IllegalMoveException;
+import de.lucaswerkmeister.code.fiar.framework.exception.UnknownPlayerException;
 import de.lucaswerkmeister.code.fiar.servers.FixedServer;
+import de.lucaswerkmeister.code.fiar.servers.SparseBoard;
 
 /**
  * The tests in this class test the {@link FixedServer}.
  * 
  * @author Lucas Werkmeister
- * @version 1.0
+ * @version 1.4
  */
 public class FixedServerTest implements Client {
 	private Queue<GameEvent> events;
@@ -291,6 +301,200 @@ public class FixedServerTest implements Client {
 		Assert.assertNull(events.poll());
 	}
 
+	/**
+	 * Tests that players who forfeit leave the turn order, whether it is their turn or not, and that the last remaining
+	 * player wins.
+	 * 
+	 * @throws IllegalMoveException
+	 *             If an illegal move is attempted. Should never happen.
+	 * @throws IllegalStateException
+	 *             If the server is in an illegal state. Should never happen.
+	 * @throws RemoteException
+	 *             If a remote error occurs.
+	 */
+	@Test
+	public void testForfeit() throws IllegalStateException, IllegalMoveException, RemoteException {
+		events = new LinkedList<>();
+		final Player[] p = new Player[4];
+		for (int i = 0; i < p.length; i++)
+			p[i] = new Player("Player " + (i + 1), Color.blue, i + 1);
+		final Server server = new FixedServer(new Client[] {this }, new Player[][] {p });
+		for (final Player player : p)
+			act(server, new BoardSizeProposal(player, new Dimension(10, 10)));
+		events.poll();
+		for (final Player player : p)
+			act(server, new BlockDistributionAccepted(player, server.getCurrentBoard(this)));
+		events.poll();
+		for (final Player player : p)
+			act(server, new JokerDistributionAccepted(player, server.getCurrentBoard(this)));
+		events.poll();
+
+		act(server, new PlaceStone(p[0], 0, 0));
+		act(server, new PlaceStone(p[1], 1, 0));
+		// it's the turn of player 3, who forfeits
+		act(server, new Forfeit(p[2]));
+		Assert.assertEquals(p[3].getID(), server.getPhase(this)[2]);
+		// player 2 forfeits out of turn
+		act(server, new Forfeit(p[1]));
+		Assert.assertEquals(p[3].getID(), server.getPhase(this)[2]);
+		try {
+			server.action(this, new PlaceStone(p[2], 5, 5));
+			Assert.fail("Player who forfeited must not act");
+		} catch (final UnknownPlayerException e) {
+			// expected
+		}
+		act(server, new PlaceStone(p[3], 2, 0));
+		act(server, new PlaceStone(p[0], 3, 0));
+		act(server, new Forfeit(p[3]));
+		Assert.assertTrue(AllOthersForfeit.class.isInstance(events.peek()));
+		Assert.assertEquals(p[0], ((AllOthersForfeit) events.poll()).getWinningPlayer());
+		Assert.assertEquals(2, server.getPhase(this)[0]);
+	}
+
+	/**
+	 * Tests a game on an unbounded board, with stones far away from the origin and a row along the far edge.
+	 * 
+	 * @throws IllegalMoveException
+	 *             If an illegal move is attempted. Should never happen.
+	 * @throws RemoteException
+	 *             If a remote error occurs.
+	 */
+	@Test
+	public void testUnboundedBoard() throws IllegalMoveException, RemoteException {
+		events = new LinkedList<>();
+		final Player p1 = new Player("Player 1", Color.blue, 1);
+		final Player p2 = new Player("Player 2", Color.red, 2);
+		final Server server = new FixedServer(new Client[] {this }, new Player[][] {{p1, p2 } });
+		final Dimension unbounded = new Dimension(SparseBoard.UNBOUNDED, SparseBoard.UNBOUNDED);
+		act(server, new BoardSizeProposal(p1, unbounded));
+		act(server, new BoardSizeProposal(p2, unbounded));
+		events.poll();
+		act(server, new BlockField(p1, 5000000, 5000000));
+		act(server, new BlockDistributionAccepted(p1, server.getCurrentBoard(this)));
+		act(server, new BlockDistributionAccepted(p2, server.getCurrentBoard(this)));
+		events.poll();
+		act(server, new JokerDistributionAccepted(p1, server.getCurrentBoard(this)));
+		act(server, new JokerDistributionAccepted(p2, server.getCurrentBoard(this)));
+		events.poll();
+
+		final int far = SparseBoard.UNBOUNDED - 1;
+		for (int i = 0; i < 4; i++) {
+			act(server, new PlaceStone(p1, far - i, 3));
+			act(server, new PlaceStone(p2, 1000000 + i, 1000000 + i));
+		}
+		Assert.assertEquals(1, server.getPhase(this)[0]);
+		act(server, new PlaceStone(p1, far - 4, 3));
+		Assert.assertTrue(PlayerVictory.class.isInstance(events.peek()));
+		Assert.assertEquals(p1, ((PlayerVictory) events.poll()).getWinningPlayer());
+		final Board board = server.getCurrentBoard(this);
+		Assert.assertEquals(SparseBoard.class, board.getClass());
+		Assert.assertEquals(10, ((SparseBoard) board).getOccupiedFieldCount());
+		Assert.assertEquals(p2, board.getPlayerAt(1000003, 1000003));
+	}
+
+	/**
+	 * Tests which actions the server allows in each phase, and that actions that are not allowed are rejected.
+	 * 
+	 * @throws IllegalMoveException
+	 *             If an illegal move is attempted. Should never happen.
+	 * @throws RemoteException
+	 *             If a remote error occurs.
+	 */
+	@Test
+	public void testAllowedActions() throws IllegalMoveException, RemoteException {
+		events = new LinkedList<>();
+		final Player p1 = new Player("Player 1", Color.blue, 1);
+		final Player p2 = new Player("Player 2", Color.cyan, 2);
+		final Server server = new FixedServer(new Client[] {this }, new Player[][] {{p1, p2 } });
+		Assert.assertEquals(Collections.singleton(BoardSizeProposal.class), server.getAllowedActions(this, p2));
+		Assert.assertTrue(server.canAct(this, p2));
+		try {
+			server.action(this, new PlaceStone(p1, 0, 0));
+			Assert.fail("Stones must not be placed before the game starts");
+		} catch (final IllegalStateException e) {
+			// expected
+		}
+		act(server, new BoardSizeProposal(p1, new Dimension(10, 10)));
+		act(server, new BoardSizeProposal(p2, new Dimension(10, 10)));
+		events.poll();
+		Assert.assertEquals(new HashSet<>(Arrays.asList(BlockField.class, UnblockField.class,
+				BlockDistributionAccepted.class)), server.getAllowedActions(this, p1));
+		act(server, new BlockDistributionAccepted(p1, server.getCurrentBoard(this)));
+		act(server, new BlockDistributionAccepted(p2, server.getCurrentBoard(this)));
+		events.poll();
+		act(server, new JokerDistributionAccepted(p1, server.getCurrentBoard(this)));
+		act(server, new JokerDistributionAccepted(p2, server.getCurrentBoard(this)));
+		events.poll();
+
+		Assert.assertEquals(new HashSet<>(Arrays.asList(PlaceStone.class, Forfeit.class)),
+				server.getAllowedActions(this, p1));
+		Assert.assertEquals(Collections.singleton(Forfeit.class), server.getAllowedActions(this, p2));
+		Assert.assertTrue(server.canAct(this, p1));
+		Assert.assertFalse(server.canAct(this, p2));
+		try {
+			server.action(this, new PlaceStone(p2, 0, 0));
+			Assert.fail("Player 2 must not place a stone out of turn");
+		} catch (final IllegalStateException e) {
+			// expected
+		}
+		act(server, new Forfeit(p2));
+		events.poll();
+		Assert.assertTrue(server.getAllowedActions(this, p1).isEmpty());
+		Assert.assertFalse(server.canAct(this, p1));
+	}
+
+	/**
+	 * Tests that placing stones does not allocate any memory on the server, by measuring the memory that the current
+	 * thread allocates while the moves of a second game are played (the first game loads and initializes all classes).
+	 * The measurement starts after the server's row index has been built and its list of board changes has grown to
+	 * its final size. The test is skipped on virtual machines that can't measure allocations per thread.
+	 * 
+	 * @throws IllegalMoveException
+	 *             If an illegal move is attempted. Should never happen.
+	 * @throws RemoteException
+	 *             If a remote error occurs.
+	 */
+	@Test
+	public void testMovesDoNotAllocate() throws IllegalMoveException, RemoteException {
+		final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof ThreadMXBean) || !((ThreadMXBean) threads).isThreadAllocatedMemorySupported())
+			return;
+		final ThreadMXBean allocations = (ThreadMXBean) threads;
+		allocations.setThreadAllocatedMemoryEnabled(true);
+		final long thread = Thread.currentThread().getId();
+		final Player p1 = new Player("Player 1", Color.blue, 1);
+		final Player p2 = new Player("Player 2", Color.cyan, 2);
+		final Client client = new Client() {
+			@Override
+			public void gameEvent(final GameEvent e) {
+				// do nothing
+			}
+		};
+		final int moves = 120;
+		final int unmeasured = 70;
+		long allocated = 0;
+		for (int game = 0; game < 2; game++) {
+			final Server server = new FixedServer(new Client[] {client }, new Player[][] {{p1, p2 } });
+			server.action(client, new BoardSizeProposal(p1, new Dimension(20, 20)));
+			server.action(client, new BoardSizeProposal(p2, new Dimension(20, 20)));
+			server.action(client, new BlockDistributionAccepted(p1, server.getCurrentBoard(client)));
+			server.action(client, new BlockDistributionAccepted(p2, server.getCurrentBoard(client)));
+			server.action(client, new JokerDistributionAccepted(p1, server.getCurrentBoard(client)));
+			server.action(client, new JokerDistributionAccepted(p2, server.getCurrentBoard(client)));
+			// stones in a checkerboard pattern on every other row: nobody ever gets a row of five
+			final PlaceStone[] stones = new PlaceStone[moves];
+			for (int i = 0; i < moves; i++)
+				stones[i] = new PlaceStone(i % 2 == 0 ? p1 : p2, i % 20, 2 * (i / 20));
+			for (int i = 0; i < unmeasured; i++)
+				server.action(client, stones[i]);
+			final long before = allocations.getThreadAllocatedBytes(thread);
+			for (int i = unmeasured; i < moves; i++)
+				server.action(client, stones[i]);
+			allocated = allocations.getThreadAllocatedBytes(thread) - before;
+		}
+		Assert.assertEquals(0, allocated);
+	}
+
 	/**
 	 * Combines sending an action to the player and checking if the server re-sent it.
 	 * 
@@ -0,0 +1,168 @@
+package de.lucaswerkmeister.code.fiar.test;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.lucaswerkmeister.code.fiar.framework.Client;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerVictory;
+import de.lucaswerkmeister.code.fiar.framework.exception.ClientFiredException;
+import de.lucaswerkmeister.code.fiar.servers.ClientPlayerPair;
+import de.lucaswerkmeister.code.fiar.servers.GameEngine;
+
+/**
+ * The tests in this class test the {@link GameEngine}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.2
+ */
+public class GameEngineTest {
+	private static final int GAMES = 2000;
+	private final Player p1 = new Player("Player 1", Color.blue, 1);
+	private final Player p2 = new Player("Player 2", Color.cyan, 2);
+
+	/**
+	 * Creates a new {@link GameEngineTest}.
+	 * <p>
+	 * Does nothing, but pleases the Praktomat.
+	 */
+	public GameEngineTest() {
+		// do nothing
+	}
+
+	/**
+	 * Plays the game from {@link FixedServerTest#testBasic()} in many games at once. The moves of all games are
+	 * submitted interleaved, without waiting for any of them; each game must still see its own moves in order.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testManyGames() throws Exception {
+		final GameEngine engine = new GameEngine(4);
+		final long[] ids = new long[GAMES];
+		final EventCollector[] clients = new EventCollector[GAMES];
+		for (int i = 0; i < GAMES; i++) {
+			clients[i] = new EventCollector();
+			final Set<ClientPlayerPair> pairs = new LinkedHashSet<>(); // p1 moves first
+			pairs.add(new ClientPlayerPair(clients[i], p1));
+			pairs.add(new ClientPlayerPair(clients[i], p2));
+			ids[i] = engine.createGame(pairs, Collections.<Client> emptySet());
+			final Server server = engine.getServer(ids[i]);
+			server.action(clients[i], new BoardSizeProposal(p1, new Dimension(10, 10)));
+			server.action(clients[i], new BoardSizeProposal(p2, new Dimension(10, 10)));
+			server.action(clients[i], new BlockDistributionAccepted(p1, server.getCurrentBoard(clients[i])));
+			server.action(clients[i], new BlockDistributionAccepted(p2, server.getCurrentBoard(clients[i])));
+			server.action(clients[i], new JokerDistributionAccepted(p1, server.getCurrentBoard(clients[i])));
+			server.action(clients[i], new JokerDistributionAccepted(p2, server.getCurrentBoard(clients[i])));
+		}
+		Assert.assertEquals(GAMES, engine.getGameCount());
+
+		final int[][] moves = new int[][] { {1, 1 }, {9, 9 }, {2, 1 }, {8, 8 }, {3, 1 }, {7, 7 }, {4, 1 }, {0, 1 },
+				{5, 1 } };
+		final List<Future<Void>> futures = new ArrayList<>();
+		for (int m = 0; m < moves.length; m++)
+			for (int i = 0; i < GAMES; i++)
+				futures.add(engine.submit(ids[i], clients[i], new PlaceStone(m % 2 == 0 ? p1 : p2, moves[m][0],
+						moves[m][1])));
+		for (final Future<Void> f : futures)
+			f.get();
+
+		// events are delivered asynchronously, so they may still be on their way
+		final long deadline = System.currentTimeMillis() + 30000;
+		for (int i = 0; i < GAMES; i++) {
+			GameEvent last = null;
+			while (!(last instanceof PlayerVictory) && System.currentTimeMillis() < deadline) {
+				for (final GameEvent e : clients[i].events)
+					last = e;
+				if (!(last instanceof PlayerVictory))
+					Thread.sleep(10);
+			}
+			Assert.assertTrue(last instanceof PlayerVictory);
+			Assert.assertEquals(p1, ((PlayerVictory) last).getWinningPlayer());
+			Assert.assertTrue(engine.getGames(clients[i]).contains(ids[i]));
+			engine.removeGame(ids[i]);
+			Assert.assertTrue(engine.getGames(clients[i]).isEmpty());
+		}
+		Assert.assertEquals(0, engine.getGameCount());
+		engine.shutdown();
+	}
+
+	/**
+	 * Tests that a client whose event delivery fails is fired and counted in the metrics, while the other clients of
+	 * the game keep receiving events.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testFiredClient() throws Exception {
+		final GameEngine engine = new GameEngine(1);
+		final EventCollector collector = new EventCollector();
+		final Client failing = new Client() {
+			@Override
+			public void gameEvent(final GameEvent e) throws RemoteException {
+				throw new RemoteException("Client is gone");
+			}
+		};
+		final Set<ClientPlayerPair> pairs = new LinkedHashSet<>();
+		pairs.add(new ClientPlayerPair(collector, p1));
+		pairs.add(new ClientPlayerPair(failing, p2));
+		final long id = engine.createGame(pairs, Collections.<Client> emptySet());
+		final Server server = engine.getServer(id);
+		// the failing client acts first, since it is fired as soon as the first event fails
+		server.action(failing, new BoardSizeProposal(p2, new Dimension(10, 10)));
+		server.action(collector, new BoardSizeProposal(p1, new Dimension(10, 10)));
+
+		final long deadline = System.currentTimeMillis() + 30000;
+		while (collector.events.size() < 3 && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		Assert.assertEquals(3, collector.events.size()); // two proposals and the phase change
+		try {
+			server.getPhase(failing);
+			Assert.fail("Failing client was not fired!");
+		} catch (final ClientFiredException e) {
+			Assert.assertEquals(failing, e.getFiredClient());
+		}
+		while (engine.getMetrics().getFiredClients() == 0 && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		Assert.assertEquals(1, engine.getMetrics().getFiredClients());
+		Assert.assertEquals(Arrays.toString(new int[] {0, 1 }), Arrays.toString(server.getPhase(collector)));
+		engine.shutdown();
+	}
+
+	/**
+	 * A client that collects all events it receives.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private static class EventCollector implements Client {
+		private final Queue<GameEvent> events = new ConcurrentLinkedQueue<>();
+
+		@Override
+		public void gameEvent(final GameEvent e) {
+			events.add(e);
+		}
+	}
+}
\ No newline at end of file
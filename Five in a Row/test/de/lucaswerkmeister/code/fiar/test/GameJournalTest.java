@@ -0,0 +1,276 @@
+package de.lucaswerkmeister.code.fiar.test;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.BoardDelta;
+import de.lucaswerkmeister.code.fiar.framework.Client;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockField;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerVictory;
+import de.lucaswerkmeister.code.fiar.servers.ArrayBoard;
+import de.lucaswerkmeister.code.fiar.servers.FixedServer;
+import de.lucaswerkmeister.code.fiar.servers.GameJournal;
+
+/**
+ * The tests in this class test the {@link GameJournal} and replaying a {@link FixedServer} from it.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.3
+ */
+public class GameJournalTest implements Client {
+	private final Player p1 = new Player("Player 1", Color.blue, 1);
+	private final Player p2 = new Player("Player 2", Color.cyan, 2);
+	private final List<GameEvent> events = new ArrayList<>();
+
+	/**
+	 * Creates a new {@link GameJournalTest}.
+	 * <p>
+	 * Does nothing, but pleases the Praktomat.
+	 */
+	public GameJournalTest() {
+		// do nothing
+	}
+
+	/**
+	 * Plays half a game on a journaled server, then "restarts" by opening the journal again and replaying it on a new
+	 * server, and checks that the new server continues the game where the old one stopped.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testReplay() throws Exception {
+		final File file = File.createTempFile("fiar", ".journal");
+		file.deleteOnExit();
+		GameJournal journal = new GameJournal(file);
+		FixedServer server = new FixedServer(new Client[] {this }, new Player[][] {{p1, p2 } });
+		server.setJournal(journal, 7);
+		server.action(this, new BoardSizeProposal(p1, new Dimension(10, 10)));
+		server.action(this, new BoardSizeProposal(p2, new Dimension(10, 10)));
+		server.action(this, new BlockField(p1, 5, 5));
+		server.action(this, new BlockDistributionAccepted(p1, server.getCurrentBoard(this)));
+		server.action(this, new BlockDistributionAccepted(p2, server.getCurrentBoard(this)));
+		server.action(this, new JokerDistributionAccepted(p1, server.getCurrentBoard(this)));
+		server.action(this, new JokerDistributionAccepted(p2, server.getCurrentBoard(this)));
+		server.action(this, new PlaceStone(p1, 1, 1));
+		server.action(this, new PlaceStone(p2, 9, 9));
+		server.action(this, new PlaceStone(p1, 2, 1));
+		final int[] phase = server.getPhase(this);
+		journal.close();
+
+		journal = new GameJournal(file);
+		Assert.assertTrue(journal.getGames().contains(7L));
+		server = new FixedServer(new Client[] {this }, new Player[][] {{p1, p2 } });
+		events.clear();
+		server.replay(journal, 7);
+		Assert.assertTrue("Replay must not send events", events.isEmpty());
+		Assert.assertTrue(Arrays.equals(phase, server.getPhase(this)));
+		Assert.assertEquals(Block.getInstance(), server.getCurrentBoard(this).getPlayerAt(5, 5));
+		Assert.assertEquals(p1, server.getCurrentBoard(this).getPlayerAt(2, 1));
+		server.action(this, new PlaceStone(p2, 8, 8));
+		server.action(this, new PlaceStone(p1, 3, 1));
+		journal.close();
+
+		// the game is continued in the journal as well
+		journal = new GameJournal(file);
+		server = new FixedServer(new Client[] {this }, new Player[][] {{p1, p2 } });
+		server.replay(journal, 7);
+		server.action(this, new PlaceStone(p2, 7, 7));
+		server.action(this, new PlaceStone(p1, 4, 1));
+		server.action(this, new PlaceStone(p2, 0, 1));
+		events.clear();
+		server.action(this, new PlaceStone(p1, 5, 1));
+		final GameEvent last = events.get(events.size() - 1);
+		Assert.assertTrue(last instanceof PlayerVictory);
+		Assert.assertEquals(p1, ((PlayerVictory) last).getWinningPlayer());
+		journal.close();
+	}
+
+	/**
+	 * Tests that a journaled server writes snapshots that contain only the board, not its history, and that a server
+	 * restored from a snapshot has the same board and turn order as the original server and a history that rebuilds
+	 * the board.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testSnapshot() throws Exception {
+		final File file = File.createTempFile("fiar", ".journal");
+		file.deleteOnExit();
+		GameJournal journal = new GameJournal(file);
+		final FixedServer original = new FixedServer(new Client[] {this }, new Player[][] {{p1, p2 } });
+		original.setJournal(journal, 3);
+		original.setSnapshotInterval(2);
+		original.action(this, new BoardSizeProposal(p1, new Dimension(10, 10)));
+		original.action(this, new BoardSizeProposal(p2, new Dimension(10, 10)));
+		original.action(this, new BlockField(p2, 0, 0));
+		original.action(this, new BlockDistributionAccepted(p1, original.getCurrentBoard(this)));
+		original.action(this, new BlockDistributionAccepted(p2, original.getCurrentBoard(this)));
+		original.action(this, new JokerDistributionAccepted(p1, original.getCurrentBoard(this)));
+		original.action(this, new JokerDistributionAccepted(p2, original.getCurrentBoard(this)));
+		original.action(this, new PlaceStone(p1, 1, 1));
+		original.action(this, new PlaceStone(p2, 9, 9));
+		original.action(this, new PlaceStone(p1, 2, 1));
+		original.action(this, new PlaceStone(p2, 8, 8));
+		original.action(this, new PlaceStone(p1, 3, 1));
+		journal.close();
+
+		journal = new GameJournal(file);
+		final List<byte[]> records = journal.read(3);
+		// two snapshots and the action after the second one
+		final byte[] snapshot = records.get(records.size() - 2);
+		Assert.assertEquals(0, snapshot[0]);
+		Assert.assertTrue(records.get(records.size() - 1)[0] != 0);
+		// header, phase, turn order and board size take 13 bytes, each of the five occupied fields three
+		Assert.assertEquals(13 + 5 * 3, snapshot.length);
+		final FixedServer restored = new FixedServer(new Client[] {this }, new Player[][] {{p1, p2 } });
+		restored.replay(journal, 3);
+		Assert.assertTrue(Arrays.equals(original.getPhase(this), restored.getPhase(this)));
+		Assert.assertEquals(original.getCurrentBoard(this), restored.getCurrentBoard(this));
+		// the history starts with the occupied fields of the restored board
+		final BoardDelta history = restored.getBoardChangesSince(this, 0);
+		Assert.assertEquals(6, history.getChangeCount());
+		final Board rebuilt = new ArrayBoard(10, 10);
+		history.applyTo(rebuilt);
+		Assert.assertEquals(original.getCurrentBoard(this), rebuilt);
+		restored.action(this, new PlaceStone(p2, 7, 7));
+		final BoardDelta move = restored.getBoardChangesSince(this, history.getToVersion());
+		Assert.assertEquals(1, move.getChangeCount());
+		Assert.assertEquals(p2, move.getPlayer(0));
+		restored.action(this, new PlaceStone(p1, 4, 1));
+		restored.action(this, new PlaceStone(p2, 0, 1));
+		restored.action(this, new PlaceStone(p1, 5, 1));
+		Assert.assertEquals(2, restored.getPhase(this)[0]);
+		journal.close();
+	}
+
+	/**
+	 * Tests that a record that was only partially written is cut off when the journal is opened again, and that the
+	 * records before it survive.
+	 * 
+	 * @throws IOException
+	 *             If the journal cannot be written or read.
+	 */
+	@Test
+	public void testTornRecord() throws IOException {
+		final File file = File.createTempFile("fiar", ".journal");
+		file.deleteOnExit();
+		GameJournal journal = new GameJournal(file);
+		journal.write(1, new byte[] {1, 2, 3 });
+		journal.write(2, new byte[] {4 });
+		journal.write(1, new byte[] {5, 6 });
+		journal.close();
+		final long length = file.length();
+		try (FileOutputStream out = new FileOutputStream(file, true)) {
+			// the header of a 100 byte record, but only part of its payload
+			out.write(new byte[] {0, 0, 0, 100, 1, 2, 3, 4, 0, 0, 0, 0, 0, 0, 0, 1, 9, 9, 9 });
+		}
+
+		journal = new GameJournal(file);
+		Assert.assertEquals(length, file.length());
+		final List<byte[]> records = journal.read(1);
+		Assert.assertEquals(2, records.size());
+		Assert.assertTrue(Arrays.equals(new byte[] {1, 2, 3 }, records.get(0)));
+		Assert.assertTrue(Arrays.equals(new byte[] {5, 6 }, records.get(1)));
+		journal.write(2, new byte[] {7 });
+		Assert.assertEquals(2, journal.read(2).size());
+		journal.close();
+	}
+
+	/**
+	 * Lets several threads write records concurrently and checks that all records of all threads are durable and in
+	 * order.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testConcurrentWrites() throws Exception {
+		final File file = File.createTempFile("fiar", ".journal");
+		file.deleteOnExit();
+		final GameJournal journal = new GameJournal(file);
+		final Thread[] threads = new Thread[4];
+		final IOException[] failures = new IOException[threads.length];
+		for (int t = 0; t < threads.length; t++) {
+			final int game = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < 50; i++)
+							journal.write(game, new byte[] {(byte) game, (byte) i });
+					} catch (final IOException e) {
+						failures[game] = e;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (final Thread thread : threads)
+			thread.join();
+		for (int t = 0; t < threads.length; t++) {
+			Assert.assertNull(failures[t]);
+			final List<byte[]> records = journal.read(t);
+			Assert.assertEquals(50, records.size());
+			for (int i = 0; i < 50; i++)
+				Assert.assertEquals(i, records.get(i)[1]);
+		}
+		journal.close();
+	}
+
+	/**
+	 * Tests that a server whose journal fails doesn't send the action that could not be written, and refuses all
+	 * further actions.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testJournalFailure() throws Exception {
+		final File file = File.createTempFile("fiar", ".journal");
+		file.deleteOnExit();
+		final GameJournal journal = new GameJournal(file);
+		final FixedServer server = new FixedServer(new Client[] {this }, new Player[][] {{p1, p2 } });
+		server.setJournal(journal, 5);
+		server.action(this, new BoardSizeProposal(p1, new Dimension(10, 10)));
+		journal.close();
+		events.clear();
+		try {
+			server.action(this, new BoardSizeProposal(p2, new Dimension(10, 10)));
+			Assert.fail("Action must fail if the journal can't be written");
+		} catch (final IllegalStateException e) {
+			// expected
+		}
+		Assert.assertTrue("Events that are not in the journal must not be sent", events.isEmpty());
+		try {
+			server.action(this, new BlockDistributionAccepted(p1, server.getCurrentBoard(this)));
+			Assert.fail("Server must refuse actions after the journal failed");
+		} catch (final IllegalStateException e) {
+			Assert.assertNotNull(e.getCause());
+		}
+	}
+
+	@Override
+	public void gameEvent(final GameEvent e) {
+		events.add(e);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,353 @@
+package de.lucaswerkmeister.code.fiar.test;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.lucaswerkmeister.code.fiar.framework.BoardDelta;
+import de.lucaswerkmeister.code.fiar.framework.Hoster;
+
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.RemoteClient;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerAction;
+import de.lucaswerkmeister.code.fiar.framework.event.PlayerVictory;
+import de.lucaswerkmeister.code.fiar.framework.exception.IllegalMoveException;
+import de.lucaswerkmeister.code.fiar.network.NioClient;
+import de.lucaswerkmeister.code.fiar.network.NioTransport;
+import de.lucaswerkmeister.code.fiar.servers.ClientPlayerPair;
+import de.lucaswerkmeister.code.fiar.servers.FixedServer;
+
+/**
+ * The tests in this class test the {@link NioTransport}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.2
+ */
+public class NioTransportTest {
+	private static final int GAMES = 200;
+	private static final int[][] MOVES = new int[][] { {1, 1 }, {9, 9 }, {2, 1 }, {8, 8 }, {3, 1 }, {7, 7 }, {4, 1 },
+			{0, 1 }, {5, 1 } };
+	private final Player p1 = new Player("Player 1", Color.blue, 1);
+	private final Player p2 = new Player("Player 2", Color.cyan, 2);
+
+	/**
+	 * Creates a new {@link NioTransportTest}.
+	 * <p>
+	 * Does nothing, but pleases the Praktomat.
+	 */
+	public NioTransportTest() {
+		// do nothing
+	}
+
+	/**
+	 * Plays the game from {@link FixedServerTest#testBasic()} in many games at once, each with two connections that
+	 * control one player each. Every move is sent in all games before the answers are awaited.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testManyGames() throws Exception {
+		final NioTransport transport = new NioTransport(2, 4);
+		final InetSocketAddress any = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+		final TestHoster[] hosters = new TestHoster[GAMES];
+		final NioClient[][] connections = new NioClient[GAMES][2];
+		final EventCollector[][] clients = new EventCollector[GAMES][2];
+		final Player[] players = new Player[] {p1, p2 };
+		for (int i = 0; i < GAMES; i++) {
+			hosters[i] = new TestHoster();
+			final InetSocketAddress address = transport.host(hosters[i], any);
+			for (int c = 0; c < 2; c++) {
+				connections[i][c] = transport.connect(address);
+				clients[i][c] = new EventCollector();
+				connections[i][c].addClient(clients[i][c]);
+				connections[i][c].addPlayer(clients[i][c], players[c]);
+			}
+			hosters[i].start();
+		}
+
+		final List<Future<Void>> futures = new ArrayList<>();
+		for (int step = 0; step < 3 + MOVES.length / 2 + 1; step++)
+			for (int c = 0; c < 2; c++) {
+				for (int i = 0; i < GAMES; i++) {
+					final Server server = clients[i][c].awaitServer();
+					final Player p = players[c];
+					if (step == 0)
+						futures.add(submit(server, clients[i][c], new BoardSizeProposal(p, new Dimension(10, 10))));
+					else if (step == 1)
+						futures.add(submit(server, clients[i][c], new BlockDistributionAccepted(p, server
+								.getCurrentBoard(clients[i][c]))));
+					else if (step == 2)
+						futures.add(submit(server, clients[i][c], new JokerDistributionAccepted(p, server
+								.getCurrentBoard(clients[i][c]))));
+					else if (2 * (step - 3) + c < MOVES.length) {
+						final int[] move = MOVES[2 * (step - 3) + c];
+						futures.add(submit(server, clients[i][c], new PlaceStone(p, move[0], move[1])));
+					}
+				}
+				// actions of different connections are only ordered if the earlier ones were answered
+				for (final Future<Void> f : futures)
+					f.get();
+				futures.clear();
+			}
+
+		for (int i = 0; i < GAMES; i++)
+			for (int c = 0; c < 2; c++) {
+				final GameEvent last = clients[i][c].awaitLastEvent(PlayerVictory.class);
+				Assert.assertTrue(last instanceof PlayerVictory);
+				Assert.assertEquals(p1, ((PlayerVictory) last).getWinningPlayer());
+				Assert.assertEquals(2, clients[i][c].joined.size());
+				Assert.assertEquals(clients[i][0].events.size(), clients[i][c].events.size());
+			}
+		transport.shutdown();
+	}
+
+	/**
+	 * Tests that actions submitted through one connection are executed in order without waiting for each other, and
+	 * that a rejected action fails its future with the server's exception.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testPipelining() throws Exception {
+		final NioTransport transport = new NioTransport(1, 2);
+		final TestHoster hoster = new TestHoster();
+		final NioClient connection = transport.connect(transport.host(hoster, new InetSocketAddress(InetAddress
+				.getLoopbackAddress(), 0)));
+		final EventCollector client = new EventCollector();
+		connection.addClient(client);
+		connection.addPlayer(client, p1);
+		connection.addPlayer(client, p2);
+		hoster.start();
+		final NioClient.ServerStub server = (NioClient.ServerStub) client.awaitServer();
+
+		final List<Future<Void>> futures = new ArrayList<>();
+		futures.add(server.submitAction(client, new BoardSizeProposal(p1, new Dimension(10, 10))));
+		futures.add(server.submitAction(client, new BoardSizeProposal(p2, new Dimension(10, 10))));
+		for (final Future<Void> f : futures)
+			f.get();
+		futures.add(server.submitAction(client, new BlockDistributionAccepted(p1, server.getCurrentBoard(client))));
+		futures.add(server.submitAction(client, new BlockDistributionAccepted(p2, server.getCurrentBoard(client))));
+		futures.add(server.submitAction(client, new JokerDistributionAccepted(p1, server.getCurrentBoard(client))));
+		futures.add(server.submitAction(client, new JokerDistributionAccepted(p2, server.getCurrentBoard(client))));
+		for (int m = 0; m < MOVES.length; m++)
+			futures.add(server.submitAction(client, new PlaceStone(m % 2 == 0 ? p1 : p2, MOVES[m][0], MOVES[m][1])));
+		final Future<Void> afterVictory = server.submitAction(client, new PlaceStone(p2, 6, 6));
+		for (final Future<Void> f : futures)
+			f.get(10, TimeUnit.SECONDS);
+		try {
+			afterVictory.get(10, TimeUnit.SECONDS);
+			Assert.fail("Action after the victory was executed!");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException
+					|| e.getCause() instanceof IllegalMoveException);
+		}
+		final GameEvent last = client.awaitLastEvent(PlayerVictory.class);
+		Assert.assertEquals(p1, ((PlayerVictory) last).getWinningPlayer());
+		Assert.assertEquals(2, server.getPhase(client)[0]);
+		final BoardDelta delta = server.getBoardChangesSince(client, 0);
+		Assert.assertEquals(MOVES.length, delta.getChangeCount());
+		Assert.assertEquals(server.getCurrentBoard(client).getWidth(), delta.getWidth());
+		Assert.assertEquals(server.getCurrentBoard(client).getHeight(), delta.getHeight());
+		transport.shutdown();
+	}
+
+	/**
+	 * Sends malformed frames to a hoster and checks that only their connections are closed: a client connecting
+	 * afterwards, through the same event loop, can still join.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testMalformedFrames() throws Exception {
+		final NioTransport transport = new NioTransport(1, 2);
+		final TestHoster hoster = new TestHoster();
+		final InetSocketAddress address = transport.host(hoster, new InetSocketAddress(InetAddress
+				.getLoopbackAddress(), 0));
+		final ByteBuffer[] frames = new ByteBuffer[] {
+				// empty frame
+				ByteBuffer.allocate(4).putInt(0),
+				// a type, but no request ID
+				ByteBuffer.allocate(5).putInt(1).put((byte) 1),
+				// a request ID varint that never ends
+				ByteBuffer.allocate(10).putInt(6).put((byte) 1).put(new byte[] {-1, -1, -1, -1, -1 }) };
+		for (final ByteBuffer frame : frames)
+			try (final SocketChannel channel = SocketChannel.open(address)) {
+				frame.flip();
+				while (frame.hasRemaining())
+					channel.write(frame);
+				channel.socket().setSoTimeout(10000);
+				Assert.assertEquals(-1, channel.socket().getInputStream().read());
+			}
+
+		final NioClient connection = transport.connect(address);
+		final EventCollector client = new EventCollector();
+		connection.addClient(client);
+		connection.addPlayer(client, p1);
+		connection.addPlayer(client, p2);
+		hoster.start();
+		Assert.assertEquals(0, client.awaitServer().getPhase(client)[0]);
+		transport.shutdown();
+	}
+
+	/**
+	 * Private utility method to submit an action.
+	 * 
+	 * @param server
+	 *            The server, which must be a {@link NioClient.ServerStub}.
+	 * @param client
+	 *            The requesting client.
+	 * @param action
+	 *            The action.
+	 * @return The future of the action.
+	 */
+	private static Future<Void> submit(final Server server, final RemoteClient client,
+			final PlayerAction action) {
+		return ((NioClient.ServerStub) server).submitAction(client, action);
+	}
+
+	/**
+	 * A minimal hoster that starts a {@link FixedServer} with all players that joined so far.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private static class TestHoster implements Hoster {
+		private static final long serialVersionUID = 1L;
+		private final Set<RemoteClient> clients = new LinkedHashSet<>();
+		private final Set<ClientPlayerPair> pairs = new LinkedHashSet<>();
+		private final List<Player> players = new ArrayList<>();
+
+		@Override
+		public synchronized void addClient(final RemoteClient client) throws RemoteException {
+			clients.add(client);
+			for (final Player p : players)
+				client.playerJoined(p);
+		}
+
+		@Override
+		public synchronized void removeClient(final RemoteClient client) {
+			clients.remove(client);
+		}
+
+		@Override
+		public synchronized void addPlayer(final RemoteClient controller, final Player player)
+				throws RemoteException {
+			pairs.add(new ClientPlayerPair(controller, player));
+			players.add(player);
+			for (final RemoteClient c : clients)
+				c.playerJoined(player);
+		}
+
+		@Override
+		public synchronized void removePlayer(final Player player) {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Starts the game.
+		 * 
+		 * @throws RemoteException
+		 *             If a client can't be told that the game starts.
+		 */
+		synchronized void start() throws RemoteException {
+			final Server server = new FixedServer(pairs, new LinkedHashSet<RemoteClient>());
+			for (final RemoteClient c : clients)
+				c.gameStarts(server);
+		}
+	}
+
+	/**
+	 * A client that collects all players and events it receives.
+	 * 
+	 * @author Lucas Werkmeister
+	 * @version 1.0
+	 */
+	private static class EventCollector implements RemoteClient {
+		private static final long serialVersionUID = 1L;
+		private final Queue<Player> joined = new ConcurrentLinkedQueue<>();
+		private final Queue<GameEvent> events = new ConcurrentLinkedQueue<>();
+		private final CountDownLatch started = new CountDownLatch(1);
+		private volatile Server server;
+
+		@Override
+		public void playerJoined(final Player player) {
+			joined.add(player);
+		}
+
+		@Override
+		public void playerLeft(final Player player) {
+			joined.remove(player);
+		}
+
+		@Override
+		public void gameStarts(final Server s) {
+			server = s;
+			started.countDown();
+		}
+
+		@Override
+		public void gameEvent(final GameEvent e) {
+			events.add(e);
+		}
+
+		/**
+		 * Waits until the game starts.
+		 * 
+		 * @return The server.
+		 * @throws InterruptedException
+		 *             If interrupted while waiting.
+		 */
+		Server awaitServer() throws InterruptedException {
+			Assert.assertTrue(started.await(30, TimeUnit.SECONDS));
+			return server;
+		}
+
+		/**
+		 * Waits until the last received event is of the specified class, since events are delivered asynchronously.
+		 * 
+		 * @param eventClass
+		 *            The class.
+		 * @return The last event.
+		 * @throws InterruptedException
+		 *             If interrupted while waiting.
+		 */
+		GameEvent awaitLastEvent(final Class<? extends GameEvent> eventClass) throws InterruptedException {
+			final long deadline = System.currentTimeMillis() + 30000;
+			GameEvent last = null;
+			while (!eventClass.isInstance(last) && System.currentTimeMillis() < deadline) {
+				for (final GameEvent e : events)
+					last = e;
+				if (!eventClass.isInstance(last))
+					Thread.sleep(10);
+			}
+			return last;
+		}
+	}
+}
\ No newline at end of file
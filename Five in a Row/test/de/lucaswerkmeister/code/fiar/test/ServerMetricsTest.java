@@ -0,0 +1,185 @@
+package de.lucaswerkmeister.code.fiar.test;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.lucaswerkmeister.code.fiar.framework.Client;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.framework.Server;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.BlockField;
+import de.lucaswerkmeister.code.fiar.framework.event.BoardSizeProposal;
+import de.lucaswerkmeister.code.fiar.framework.event.Forfeit;
+import de.lucaswerkmeister.code.fiar.framework.event.GameEvent;
+import de.lucaswerkmeister.code.fiar.framework.event.JokerDistributionAccepted;
+import de.lucaswerkmeister.code.fiar.framework.event.PlaceStone;
+import de.lucaswerkmeister.code.fiar.framework.exception.IllegalMoveException;
+import de.lucaswerkmeister.code.fiar.servers.ClientPlayerPair;
+import de.lucaswerkmeister.code.fiar.servers.FixedServer;
+import de.lucaswerkmeister.code.fiar.servers.GameEngine;
+import de.lucaswerkmeister.code.fiar.servers.ServerMetrics;
+
+/**
+ * The tests in this class test the {@link ServerMetrics} of {@link FixedServer}s and the {@link GameEngine}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+public class ServerMetricsTest implements Client {
+	private final Player p1 = new Player("Player 1", Color.blue, 1);
+	private final Player p2 = new Player("Player 2", Color.cyan, 2);
+
+	/**
+	 * Creates a new {@link ServerMetricsTest}.
+	 * <p>
+	 * Does nothing, but pleases the Praktomat.
+	 */
+	public ServerMetricsTest() {
+		// do nothing
+	}
+
+	/**
+	 * Plays a game with an illegal move and a forfeit on a server with metrics, and checks the counts of actions,
+	 * illegal moves, forfeits and games per state, the event deliveries and the board memory. Afterwards, the server
+	 * leaves the metrics again.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testFixedServer() throws Exception {
+		final ServerMetrics metrics = new ServerMetrics();
+		final FixedServer server = new FixedServer(new Client[] {this }, new Player[][] {{p1, p2 } });
+		server.setMetrics(metrics);
+		Assert.assertEquals(Long.valueOf(1), metrics.getGamesPerState().get("BOARD_SIZE"));
+		server.action(this, new BoardSizeProposal(p1, new Dimension(10, 10)));
+		server.action(this, new BoardSizeProposal(p2, new Dimension(10, 10)));
+		Assert.assertEquals(Long.valueOf(0), metrics.getGamesPerState().get("BOARD_SIZE"));
+		Assert.assertEquals(Long.valueOf(1), metrics.getGamesPerState().get("BLOCKS"));
+		server.action(this, new BlockField(p1, 5, 5));
+		server.action(this, new BlockDistributionAccepted(p1, server.getCurrentBoard(this)));
+		server.action(this, new BlockDistributionAccepted(p2, server.getCurrentBoard(this)));
+		server.action(this, new JokerDistributionAccepted(p1, server.getCurrentBoard(this)));
+		server.action(this, new JokerDistributionAccepted(p2, server.getCurrentBoard(this)));
+		server.action(this, new PlaceStone(p1, 1, 1));
+		try {
+			server.action(this, new PlaceStone(p2, 1, 1));
+			Assert.fail("Placing a stone on an occupied field must fail");
+		} catch (final IllegalMoveException e) {
+			// expected
+		}
+		try {
+			server.action(this, new PlaceStone(p1, 2, 2));
+			Assert.fail("Placing a stone out of turn must fail");
+		} catch (final IllegalStateException e) {
+			// expected
+		}
+		Assert.assertEquals(Long.valueOf(1), metrics.getGamesPerState().get("PLAY"));
+		Assert.assertTrue(metrics.getBoardMemory() > 0);
+		server.action(this, new Forfeit(p2));
+
+		final Map<String, Long> actions = metrics.getActionCounts();
+		Assert.assertEquals(Long.valueOf(2), actions.get("BoardSizeProposal"));
+		Assert.assertEquals(Long.valueOf(1), actions.get("BlockField"));
+		Assert.assertEquals(Long.valueOf(3), actions.get("PlaceStone"));
+		Assert.assertEquals(Long.valueOf(1), actions.get("Forfeit"));
+		Assert.assertFalse(actions.containsKey("UnblockField"));
+		Assert.assertTrue(metrics.getActionP99Nanos().get("PlaceStone") > 0);
+		Assert.assertTrue(metrics.getActionP99Nanos().get("PlaceStone") >= metrics.getActionMedianNanos().get(
+				"PlaceStone"));
+		Assert.assertEquals(2, metrics.getIllegalMoves());
+		Assert.assertEquals(1, metrics.getForfeits());
+		Assert.assertEquals(Long.valueOf(0), metrics.getGamesPerState().get("PLAY"));
+		Assert.assertEquals(Long.valueOf(1), metrics.getGamesPerState().get("OVER"));
+		// one client, and one event for each successful action and each phase change
+		Assert.assertTrue(metrics.getEventDeliveries() >= 9);
+
+		final String dump = metrics.dump();
+		Assert.assertTrue(dump, dump.contains("PlaceStone: 3"));
+		Assert.assertTrue(dump, dump.contains("Illegal moves: 2"));
+		Assert.assertTrue(dump, dump.contains("OVER: 1"));
+
+		server.setMetrics(null);
+		Assert.assertEquals(Long.valueOf(0), metrics.getGamesPerState().get("OVER"));
+		Assert.assertEquals(0, metrics.getBoardMemory());
+	}
+
+	/**
+	 * Plays many games at once on a {@link GameEngine}, whose worker threads all record into the same metrics, and
+	 * checks that no action is lost. The metrics are also read through the platform MBean server.
+	 * 
+	 * @throws Exception
+	 *             If anything goes wrong.
+	 */
+	@Test
+	public void testGameEngine() throws Exception {
+		final int games = 200;
+		final int moves = 20;
+		final GameEngine engine = new GameEngine(4);
+		final ServerMetrics metrics = engine.getMetrics();
+		final long[] ids = new long[games];
+		for (int i = 0; i < games; i++) {
+			final Set<ClientPlayerPair> pairs = new LinkedHashSet<>(); // p1 moves first
+			pairs.add(new ClientPlayerPair(this, p1));
+			pairs.add(new ClientPlayerPair(this, p2));
+			ids[i] = engine.createGame(pairs, Collections.<Client> emptySet());
+			final Server server = engine.getServer(ids[i]);
+			server.action(this, new BoardSizeProposal(p1, new Dimension(moves, moves)));
+			server.action(this, new BoardSizeProposal(p2, new Dimension(moves, moves)));
+			server.action(this, new BlockDistributionAccepted(p1, server.getCurrentBoard(this)));
+			server.action(this, new BlockDistributionAccepted(p2, server.getCurrentBoard(this)));
+			server.action(this, new JokerDistributionAccepted(p1, server.getCurrentBoard(this)));
+			server.action(this, new JokerDistributionAccepted(p2, server.getCurrentBoard(this)));
+		}
+		Assert.assertEquals(Long.valueOf(games), metrics.getGamesPerState().get("PLAY"));
+
+		final List<Future<Void>> futures = new ArrayList<>();
+		for (int m = 0; m < moves; m++)
+			for (int i = 0; i < games; i++)
+				// p1 on even rows, p2 on odd rows, never four in a row
+				futures.add(engine.submit(ids[i], this, new PlaceStone(m % 2 == 0 ? p1 : p2, m / 2 * 4 % moves, m
+						/ 2 * 4 / moves * 2 + m % 2)));
+		for (final Future<Void> f : futures)
+			f.get();
+		Assert.assertEquals(Long.valueOf(games * moves), metrics.getActionCounts().get("PlaceStone"));
+		Assert.assertEquals(0, metrics.getIllegalMoves());
+
+		final MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+		final ObjectName name = metrics.register("ServerMetricsTest");
+		try {
+			Assert.assertEquals(metrics.getBoardMemory(), mbeans.getAttribute(name, "BoardMemory"));
+			Assert.assertEquals(Long.valueOf(0), mbeans.getAttribute(name, "IllegalMoves"));
+		} finally {
+			mbeans.unregisterMBean(name);
+		}
+
+		for (final long id : ids)
+			engine.removeGame(id);
+		final long deadline = System.currentTimeMillis() + 30000;
+		while (metrics.getGamesPerState().get("PLAY") > 0 && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		Assert.assertEquals(Long.valueOf(0), metrics.getGamesPerState().get("PLAY"));
+		Assert.assertEquals(0, metrics.getBoardMemory());
+		engine.shutdown();
+	}
+
+	@Override
+	public void gameEvent(final GameEvent e) {
+		// do nothing
+	}
+}
\ No newline at end of file
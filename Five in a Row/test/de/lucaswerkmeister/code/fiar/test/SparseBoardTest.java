@@ -0,0 +1,116 @@
+package de.lucaswerkmeister.code.fiar.test;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.lucaswerkmeister.code.fiar.framework.Block;
+import de.lucaswerkmeister.code.fiar.framework.Board;
+import de.lucaswerkmeister.code.fiar.framework.Joker;
+import de.lucaswerkmeister.code.fiar.framework.NoPlayer;
+import de.lucaswerkmeister.code.fiar.framework.Player;
+import de.lucaswerkmeister.code.fiar.servers.ArrayBoard;
+import de.lucaswerkmeister.code.fiar.servers.BitBoard;
+import de.lucaswerkmeister.code.fiar.servers.SparseBoard;
+
+/**
+ * The tests in this class test the {@link SparseBoard}.
+ * 
+ * @author Lucas Werkmeister
+ * @version 1.0
+ */
+public class SparseBoardTest {
+	private final Player[] players = new Player[] {NoPlayer.getInstance(), Block.getInstance(), Joker.getInstance(),
+			new Player("Player 1", Color.blue, 1), new Player("Player 2", Color.cyan, 2) };
+
+	/**
+	 * Creates a new {@link SparseBoardTest}.
+	 * <p>
+	 * Does nothing, but pleases the Praktomat.
+	 */
+	public SparseBoardTest() {
+		// do nothing
+	}
+
+	/**
+	 * Fills a {@link SparseBoard} and an {@link ArrayBoard} with the same random moves and checks that both boards
+	 * return the same player at every field, have the same hash and occupied fields, and that clones are independent
+	 * of the original.
+	 */
+	@Test
+	public void testSameAsArrayBoard() {
+		// 61×37 is not a multiple of the tile size
+		final SparseBoard sparseBoard = new SparseBoard(61, 37);
+		final Board arrayBoard = new ArrayBoard(61, 37);
+		final Random random = new Random(99);
+		Board clone = null;
+		for (int i = 0; i < 3000; i++) {
+			final int x = random.nextInt(61);
+			final int y = random.nextInt(37);
+			final Player p = players[random.nextInt(players.length)];
+			sparseBoard.setPlayerAt(x, y, p);
+			arrayBoard.setPlayerAt(x, y, p);
+			if (i == 1500)
+				clone = sparseBoard.clone();
+		}
+		int occupied = 0;
+		final long[] fields = new long[61 * 37];
+		for (int y = 0; y < 37; y++)
+			for (int x = 0; x < 61; x++) {
+				Assert.assertEquals(arrayBoard.getPlayerAt(x, y), sparseBoard.getPlayerAt(x, y));
+				if (arrayBoard.getPlayerAt(x, y).getID() != 0)
+					fields[occupied++] = y * 61 + x;
+			}
+		Assert.assertEquals(occupied, sparseBoard.getOccupiedFieldCount());
+		Assert.assertTrue(Arrays.equals(Arrays.copyOf(fields, occupied), sparseBoard.getOccupiedFields()));
+		Assert.assertEquals(arrayBoard.getHash(), sparseBoard.getHash());
+		Assert.assertEquals(arrayBoard, sparseBoard);
+		Assert.assertEquals(sparseBoard, arrayBoard);
+		Assert.assertEquals(sparseBoard, sparseBoard.clone());
+		Assert.assertFalse(sparseBoard.equals(clone));
+		Assert.assertFalse(clone.equals(sparseBoard));
+	}
+
+	/**
+	 * Tests that an unbounded board accepts stones far away from each other and at its far edges, and that the winning
+	 * check works there.
+	 */
+	@Test
+	public void testUnbounded() {
+		final Board board = new SparseBoard(SparseBoard.UNBOUNDED, SparseBoard.UNBOUNDED);
+		final int far = SparseBoard.UNBOUNDED - 1;
+		board.setPlayerAt(0, 0, players[3]);
+		board.setPlayerAt(far, far, players[4]);
+		board.setPlayerAt(1000000, 7, Joker.getInstance());
+		for (int i = 1; i < 5; i++)
+			board.setPlayerAt(far - i, far - i, players[4]);
+		Assert.assertTrue(board.wasWinningMove(far, far));
+		Assert.assertFalse(board.wasWinningMove(0, 0));
+		for (int x = 999996; x < 1000000; x++)
+			board.setPlayerAt(x, 7, players[3]);
+		Assert.assertTrue(board.wasWinningMove(999996, 7));
+		Assert.assertEquals(NoPlayer.getInstance(), board.getPlayerAt(far, 0));
+		Assert.assertEquals(11, ((SparseBoard) board).getOccupiedFieldCount());
+		try {
+			board.getPlayerAt(-1, 0);
+			Assert.fail("Negative coordinates must not be on the board");
+		} catch (final ArrayIndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that {@link SparseBoard#newBoard(int, int)} only creates sparse boards for large boards.
+	 */
+	@Test
+	public void testNewBoard() {
+		Assert.assertEquals(BitBoard.class, SparseBoard.newBoard(19, 19).getClass());
+		Assert.assertEquals(BitBoard.class, SparseBoard.newBoard(256, 256).getClass());
+		Assert.assertEquals(SparseBoard.class, SparseBoard.newBoard(1000, 1000).getClass());
+		Assert.assertEquals(SparseBoard.class, SparseBoard.newBoard(SparseBoard.UNBOUNDED, 10).getClass());
+	}
+}
\ No newline at end of file